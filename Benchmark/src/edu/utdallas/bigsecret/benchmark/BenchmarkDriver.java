@@ -0,0 +1,236 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Command line driver shared by the benchmark suites. Runs every benchmark of a suite<br>
+ * for each payload size and thread count with BenchmarkRunner, and prints the report<br>
+ * table. Results can be saved as CSV, and compared against a saved baseline.<br>
+ * Options: [-t threads] [-s sizes] [-w warmupMillis] [-m measureMillis]<br>
+ * 			[-f nameFilter] [-o output.csv] [-b baseline.csv] [-r tolerancePercent]<br>
+ * Thread counts and sizes are comma separated lists, e.g. -t 1,8 -s 8,4096
+ */
+public class BenchmarkDriver
+{
+	/**
+	 * Returns thread counts from 1 to maxThreads, doubled at each step. The largest<br>
+	 * thread count is always included.
+	 * @param maxThreads Largest thread count.
+	 * @return Thread counts, such as 1,2,4,6 for 6 threads.
+	 */
+	public static int[] getThreadCounts(int maxThreads)
+	{
+		List<Integer> list = new ArrayList<Integer>();
+		
+		int threads = 1;
+		while(threads < maxThreads)
+		{
+			list.add(threads);
+			threads *= 2;
+		}
+		list.add(Math.max(1, maxThreads));
+		
+		int[] result = new int[list.size()];
+		for(int a = 0; a<result.length; a++)
+			result[a] = list.get(a);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Parses a comma separated list of integers.
+	 * @param value List, such as 1,8
+	 * @return Parsed integers.
+	 */
+	public static int[] parseList(String value)
+	{
+		String[] parts = value.split(",");
+		int[] result = new int[parts.length];
+		
+		for(int a = 0; a<parts.length; a++)
+			result[a] = Integer.parseInt(parts[a].trim());
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Reads results that were saved with the -o option.
+	 * @param fileName CSV file.
+	 * @return Results by their configuration key.
+	 * @throws Exception Throws exception if the file can not be read.
+	 */
+	protected static Map<String, BenchmarkResult> readBaseline(String fileName) throws Exception
+	{
+		Map<String, BenchmarkResult> baseline = new HashMap<String, BenchmarkResult>();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				if(line.trim().length() == 0 || line.startsWith(BenchmarkResult.CSV_HEADER))
+					continue;
+				
+				BenchmarkResult result = BenchmarkResult.fromCsv(line);
+				baseline.put(result.getKey(), result);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		return baseline;
+	}
+	
+	
+	/**
+	 * Compares a result with its baseline.
+	 * @param result New result.
+	 * @param base Baseline result, may be null.
+	 * @param tolerance Allowed relative slowdown or allocation increase, such as 0.1
+	 * @return Description of the regression, null if there is none.
+	 */
+	protected static String checkRegression(BenchmarkResult result, BenchmarkResult base, double tolerance)
+	{
+		if(base == null)
+			return null;
+		
+		if(result.getOpsPerSecond() < base.getOpsPerSecond() * (1 - tolerance))
+		{
+			return String.format("throughput %.0f ops/s, baseline %.0f ops/s", result.getOpsPerSecond(), base.getOpsPerSecond());
+		}
+		
+		//allocation counts are exact, but allow a few bytes for TLAB and sampling noise
+		if(result.getBytesPerOp() >= 0 && base.getBytesPerOp() >= 0 && 
+		   result.getBytesPerOp() > base.getBytesPerOp() * (1 + tolerance) + 16)
+		{
+			return String.format("allocation %.1f bytes/op, baseline %.1f bytes/op", result.getBytesPerOp(), base.getBytesPerOp());
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Runs the benchmarks with the options in args, and prints the report table.
+	 * @param args Command line options.
+	 * @param benchmarks Benchmarks of the suite.
+	 * @param defaultSizes Payload sizes used when there is no -s option.
+	 * @param defaultThreadCounts Thread counts used when there is no -t option.
+	 * @return Number of configurations that regressed against the baseline.
+	 * @throws Exception Throws exception if an option is unknown, or a benchmark fails.
+	 */
+	public static int run(String[] args, List<MicroBenchmark> benchmarks, int[] defaultSizes, int[] defaultThreadCounts) throws Exception
+	{
+		int[] threadCounts = defaultThreadCounts;
+		int[] sizes = defaultSizes;
+		long warmupMillis = 1000;
+		long measureMillis = 2000;
+		String filter = null;
+		String outputFile = null;
+		String baselineFile = null;
+		double tolerance = 0.1;
+		
+		for(int a = 0; a + 1<args.length; a += 2)
+		{
+			if(args[a].equals("-t"))
+				threadCounts = parseList(args[a + 1]);
+			else if(args[a].equals("-s"))
+				sizes = parseList(args[a + 1]);
+			else if(args[a].equals("-w"))
+				warmupMillis = Long.parseLong(args[a + 1]);
+			else if(args[a].equals("-m"))
+				measureMillis = Long.parseLong(args[a + 1]);
+			else if(args[a].equals("-f"))
+				filter = args[a + 1];
+			else if(args[a].equals("-o"))
+				outputFile = args[a + 1];
+			else if(args[a].equals("-b"))
+				baselineFile = args[a + 1];
+			else if(args[a].equals("-r"))
+				tolerance = Double.parseDouble(args[a + 1]) / 100;
+			else
+				throw new Exception("Unknown option: " + args[a]);
+		}
+		
+		Map<String, BenchmarkResult> baseline = null;
+		if(baselineFile != null)
+			baseline = readBaseline(baselineFile);
+		
+		BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+		List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+		int regressions = 0;
+		
+		System.out.println(BenchmarkResult.getTableHeader());
+		
+		for(MicroBenchmark benchmark : benchmarks)
+		{
+			if(filter != null && benchmark.getName().indexOf(filter) < 0)
+				continue;
+			
+			for(int size : sizes)
+			{
+				for(int threads : threadCounts)
+				{
+					BenchmarkResult result = runner.run(benchmark, size, threads);
+					results.add(result);
+					
+					String regression = null;
+					if(baseline != null)
+						regression = checkRegression(result, baseline.get(result.getKey()), tolerance);
+					
+					if(regression == null)
+					{
+						System.out.println(result);
+					}
+					else
+					{
+						System.out.println(result + "  REGRESSION: " + regression);
+						regressions++;
+					}
+				}
+			}
+		}
+		
+		if(outputFile != null)
+		{
+			PrintWriter writer = new PrintWriter(outputFile, "UTF-8");
+			writer.println(BenchmarkResult.CSV_HEADER);
+			for(BenchmarkResult result : results)
+				writer.println(result.toCsv());
+			writer.close();
+		}
+		
+		if(regressions > 0)
+			System.out.println(regressions + " configuration(s) regressed more than " + Math.round(tolerance * 100) + "%");
+		
+		return regressions;
+	}
+}
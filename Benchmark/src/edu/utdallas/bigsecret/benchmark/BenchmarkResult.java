@@ -0,0 +1,200 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+
+/**
+ * Measurement of one benchmark, for one payload size and thread count.<br>
+ * Results can be written to, and read from a CSV line, so that a run can be<br>
+ * compared against an earlier baseline run.
+ */
+public class BenchmarkResult
+{
+	/**
+	 * Header of the CSV format.
+	 */
+	public static final String CSV_HEADER = "benchmark,payload,threads,opsPerSecond,nsPerByte,bytesPerOp";
+	
+	/**
+	 * Name of the benchmark.
+	 */
+	protected String m_name;
+	
+	/**
+	 * Size of the input of each call in bytes.
+	 */
+	protected int m_payloadSize;
+	
+	/**
+	 * Number of worker threads.
+	 */
+	protected int m_threadCount;
+	
+	/**
+	 * Total number of calls per second, summed over all threads.
+	 */
+	protected double m_opsPerSecond;
+	
+	/**
+	 * Bytes allocated on the heap per call, -1 if the JVM can not report it.
+	 */
+	protected double m_bytesPerOp;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param name Name of the benchmark.
+	 * @param payloadSize Size of the input of each call in bytes.
+	 * @param threadCount Number of worker threads.
+	 * @param opsPerSecond Total number of calls per second.
+	 * @param bytesPerOp Bytes allocated per call, -1 if unknown.
+	 */
+	public BenchmarkResult(String name, int payloadSize, int threadCount, double opsPerSecond, double bytesPerOp)
+	{
+		m_name = name;
+		m_payloadSize = payloadSize;
+		m_threadCount = threadCount;
+		m_opsPerSecond = opsPerSecond;
+		m_bytesPerOp = bytesPerOp;
+	}
+	
+	
+	/**
+	 * Returns name of the benchmark.
+	 * @return Name of the benchmark.
+	 */
+	public String getName()
+	{
+		return m_name;
+	}
+	
+	
+	/**
+	 * Returns payload size.
+	 * @return Size of the input of each call in bytes.
+	 */
+	public int getPayloadSize()
+	{
+		return m_payloadSize;
+	}
+	
+	
+	/**
+	 * Returns number of worker threads.
+	 * @return Number of worker threads.
+	 */
+	public int getThreadCount()
+	{
+		return m_threadCount;
+	}
+	
+	
+	/**
+	 * Returns throughput.
+	 * @return Total number of calls per second, summed over all threads.
+	 */
+	public double getOpsPerSecond()
+	{
+		return m_opsPerSecond;
+	}
+	
+	
+	/**
+	 * Returns the wall clock time spent for each input byte, over all threads.
+	 * @return Nanoseconds per byte.
+	 */
+	public double getNsPerByte()
+	{
+		if(m_opsPerSecond == 0)
+			return 0;
+		
+		return 1e9 / (m_opsPerSecond * m_payloadSize);
+	}
+	
+	
+	/**
+	 * Returns heap allocation per call.
+	 * @return Bytes allocated per call, -1 if the JVM can not report it.
+	 */
+	public double getBytesPerOp()
+	{
+		return m_bytesPerOp;
+	}
+	
+	
+	/**
+	 * Returns the key that identifies the measured configuration.
+	 * @return Benchmark name, payload size and thread count.
+	 */
+	public String getKey()
+	{
+		return m_name + "," + m_payloadSize + "," + m_threadCount;
+	}
+	
+	
+	/**
+	 * Converts the result to a CSV line, in the order of CSV_HEADER.
+	 * @return CSV line.
+	 */
+	public String toCsv()
+	{
+		return getKey() + "," + m_opsPerSecond + "," + getNsPerByte() + "," + m_bytesPerOp;
+	}
+	
+	
+	/**
+	 * Parses a CSV line that was created by toCsv.
+	 * @param line CSV line.
+	 * @return Parsed result.
+	 * @throws Exception Throws exception if the line is not a valid result line.
+	 */
+	public static BenchmarkResult fromCsv(String line) throws Exception
+	{
+		String[] parts = line.trim().split(",");
+		
+		if(parts.length != 6)
+			throw new Exception("Invalid result line: " + line);
+		
+		return new BenchmarkResult(parts[0], 
+								   Integer.parseInt(parts[1]), 
+								   Integer.parseInt(parts[2]), 
+								   Double.parseDouble(parts[3]), 
+								   Double.parseDouble(parts[5]));
+	}
+	
+	
+	/**
+	 * Formats the result as a row of the report table.
+	 * @return Report row.
+	 */
+	public String toString()
+	{
+		String alloc = m_bytesPerOp < 0 ? "n/a" : String.format("%.1f", m_bytesPerOp);
+		
+		return String.format("%-24s %9d %7d %14.0f %10.3f %12s", m_name, m_payloadSize, m_threadCount, m_opsPerSecond, getNsPerByte(), alloc);
+	}
+	
+	
+	/**
+	 * Returns header of the report table.
+	 * @return Header row, aligned with toString.
+	 */
+	public static String getTableHeader()
+	{
+		return String.format("%-24s %9s %7s %14s %10s %12s", "benchmark", "payload", "threads", "ops/s", "ns/byte", "bytes/op");
+	}
+}
@@ -0,0 +1,225 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Runs a MicroBenchmark with a fixed number of worker threads.<br>
+ * Every worker prepares its own Operation, then calls it in a loop during a warm up<br>
+ * period and a measurement period. Phases are switched by the runner thread, and<br>
+ * throughput is the number of calls of all workers over that single time window. Heap allocation of each worker is<br>
+ * read from the ThreadMXBean of HotSpot, when the JVM supports it.
+ */
+public class BenchmarkRunner
+{
+	/**
+	 * Phase values of a run.
+	 */
+	protected static final int PHASE_WARMUP = 0;
+	protected static final int PHASE_MEASURE = 1;
+	protected static final int PHASE_STOP = 2;
+	
+	/**
+	 * Duration of warm up in milliseconds.
+	 */
+	protected long m_warmupMillis;
+	
+	/**
+	 * Duration of measurement in milliseconds.
+	 */
+	protected long m_measureMillis;
+	
+	/**
+	 * Current phase of the run.
+	 */
+	protected volatile int m_phase;
+	
+	/**
+	 * Results of the operations are written here, so that they are not optimized away.
+	 */
+	protected volatile int m_sink;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param warmupMillis Duration of warm up in milliseconds.
+	 * @param measureMillis Duration of measurement in milliseconds.
+	 * @throws Exception Throws exception if measurement duration is not positive.
+	 */
+	public BenchmarkRunner(long warmupMillis, long measureMillis) throws Exception
+	{
+		if(warmupMillis < 0 || measureMillis <= 0)
+			throw new Exception("Invalid benchmark duration");
+		
+		m_warmupMillis = warmupMillis;
+		m_measureMillis = measureMillis;
+	}
+	
+	
+	/**
+	 * Returns number of bytes allocated by the calling thread so far.
+	 * @return Allocated bytes, -1 if the JVM can not report it.
+	 */
+	protected static long getAllocatedBytes()
+	{
+		try
+		{
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			
+			if(bean instanceof com.sun.management.ThreadMXBean)
+			{
+				com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+				
+				if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+					return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		catch (Throwable e)
+		{
+			//not a HotSpot JVM
+		}
+		
+		return -1;
+	}
+	
+	
+	/**
+	 * Measures the benchmark.
+	 * @param benchmark Benchmark to run.
+	 * @param payloadSize Size of the input of each call in bytes.
+	 * @param threadCount Number of worker threads.
+	 * @return Result of the measurement.
+	 * @throws Exception Throws exception if a worker fails to prepare or run its operation.
+	 */
+	public synchronized BenchmarkResult run(final MicroBenchmark benchmark, final int payloadSize, int threadCount) throws Exception
+	{
+		if(benchmark == null)
+			throw new Exception("Benchmark is null");
+		else if(payloadSize <= 0 || threadCount <= 0)
+			throw new Exception("Invalid payload size or thread count");
+		
+		final long[] ops = new long[threadCount];
+		final long[] allocated = new long[threadCount];
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final CountDownLatch ready = new CountDownLatch(threadCount);
+		
+		m_phase = PHASE_WARMUP;
+		
+		Thread[] threads = new Thread[threadCount];
+		for(int a = 0; a<threadCount; a++)
+		{
+			final int threadNo = a;
+			threads[a] = new Thread()
+			{
+				public void run()
+				{
+					MicroBenchmark.Operation op;
+					try
+					{
+						op = benchmark.prepare(payloadSize);
+					}
+					catch (Exception e)
+					{
+						failure.compareAndSet(null, e);
+						return;
+					}
+					finally
+					{
+						ready.countDown();
+					}
+					
+					int sink = 0;
+					try
+					{
+						while(m_phase == PHASE_WARMUP)
+							sink += op.run();
+						
+						op.startMeasurement();
+						
+						long count = 0;
+						long startAlloc = getAllocatedBytes();
+						
+						while(m_phase == PHASE_MEASURE)
+						{
+							sink += op.run();
+							count++;
+						}
+						
+						long endAlloc = getAllocatedBytes();
+						
+						ops[threadNo] = count;
+						allocated[threadNo] = (startAlloc < 0 || endAlloc < 0) ? -1 : endAlloc - startAlloc;
+					}
+					catch (Exception e)
+					{
+						failure.compareAndSet(null, e);
+						m_phase = PHASE_STOP;
+					}
+					
+					m_sink += sink;
+				}
+			};
+			threads[a].setName("benchmark-" + a);
+			threads[a].start();
+		}
+		
+		//wait until every worker has its operation, then time the phases
+		ready.await();
+		
+		long elapsed = 0;
+		if(failure.get() == null)
+		{
+			Thread.sleep(m_warmupMillis);
+			if(m_phase == PHASE_WARMUP)
+				m_phase = PHASE_MEASURE;
+			
+			long start = System.nanoTime();
+			Thread.sleep(m_measureMillis);
+			m_phase = PHASE_STOP;
+			elapsed = System.nanoTime() - start;
+		}
+		m_phase = PHASE_STOP;
+		
+		for(int a = 0; a<threadCount; a++)
+			threads[a].join();
+		
+		if(failure.get() != null)
+			throw failure.get();
+		
+		long totalOps = 0;
+		long totalAllocated = 0;
+		for(int a = 0; a<threadCount; a++)
+		{
+			totalOps += ops[a];
+			
+			if(totalAllocated >= 0)
+				totalAllocated = allocated[a] < 0 ? -1 : totalAllocated + allocated[a];
+		}
+		
+		double opsPerSecond = totalOps * 1e9 / elapsed;
+		
+		double bytesPerOp = -1;
+		if(totalAllocated >= 0 && totalOps > 0)
+			bytesPerOp = (double)totalAllocated / totalOps;
+		
+		return new BenchmarkResult(benchmark.getName(), payloadSize, threadCount, opsPerSecond, bytesPerOp);
+	}
+}
@@ -0,0 +1,185 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import edu.utdallas.bigsecret.hash.CachingHasher;
+import edu.utdallas.bigsecret.hash.Hasher;
+import edu.utdallas.bigsecret.hash.Sha256;
+
+
+/**
+ * Benchmark for CachingHasher.<br>
+ * Hashes row keys such as YCSB's "user" + digits, drawn from a Zipfian distribution,<br>
+ * with a plain Sha256 and with Sha256 behind caches of several sizes. Worker threads<br>
+ * share the hasher, as the proxy does. Payload is the size of a row key.<br>
+ * Usage: CachingHasherBenchmark [-k keyCount] [-z zipfConstant] [BenchmarkDriver options]
+ */
+public class CachingHasherBenchmark
+{
+	/**
+	 * Number of draws of each worker thread, the worker cycles through them.
+	 */
+	protected static final int DRAW_COUNT = 1 << 20;
+	
+	
+	/**
+	 * Returns indexes of keys drawn from a Zipfian distribution.
+	 * @param count Number of draws.
+	 * @param keyCount Number of distinct keys.
+	 * @param theta Zipfian constant, 0.99 in YCSB.
+	 * @param seed Seed of the draws.
+	 * @return Key indexes, 0 is the most popular.
+	 */
+	public static int[] zipfian(int count, int keyCount, double theta, long seed)
+	{
+		double[] cumulative = new double[keyCount];
+		double sum = 0;
+		for(int a = 0; a<keyCount; a++)
+		{
+			sum += 1 / Math.pow(a + 1, theta);
+			cumulative[a] = sum;
+		}
+		
+		Random rand = new Random(seed);
+		int[] result = new int[count];
+		for(int a = 0; a<count; a++)
+		{
+			int index = Arrays.binarySearch(cumulative, rand.nextDouble() * sum);
+			result[a] = index >= 0 ? index : Math.min(-index - 1, keyCount - 1);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Benchmark for getHash calls on Zipfian row keys, with a hasher that all worker<br>
+	 * threads share.
+	 */
+	protected static class ZipfianHashBenchmark extends MicroBenchmark
+	{
+		protected Hasher m_hasher;
+		protected int m_keyCount;
+		protected double m_theta;
+		protected byte[][] m_keys;
+		protected int m_seed = 0;
+		
+		public ZipfianHashBenchmark(String name, Hasher hasher, int keyCount, double theta)
+		{
+			super(name);
+			m_hasher = hasher;
+			m_keyCount = keyCount;
+			m_theta = theta;
+		}
+		
+		/**
+		 * Returns the row keys of the given size, creates them at the first call.
+		 * @param keySize Size of each key in bytes.
+		 * @return Row keys.
+		 */
+		protected synchronized byte[][] getKeys(int keySize) throws Exception
+		{
+			if(m_keys == null || m_keys[0].length != keySize)
+			{
+				String format = "user%0" + Math.max(1, keySize - 4) + "d";
+				
+				m_keys = new byte[m_keyCount][];
+				for(int a = 0; a<m_keyCount; a++)
+					m_keys[a] = Arrays.copyOf(String.format(format, a).getBytes("UTF-8"), keySize);
+			}
+			
+			return m_keys;
+		}
+		
+		/**
+		 * Returns a new seed for the draws of a worker thread.
+		 */
+		protected synchronized int nextSeed()
+		{
+			return m_seed++;
+		}
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final byte[][] keys = getKeys(payloadSize);
+			final int[] draws = zipfian(DRAW_COUNT, m_keyCount, m_theta, 42 + nextSeed());
+			final byte[] out = new byte[m_hasher.hashSize()];
+			
+			return new Operation()
+			{
+				protected int m_next = 0;
+				
+				public int run() throws Exception
+				{
+					byte[] key = keys[draws[m_next]];
+					m_next = (m_next + 1) & (DRAW_COUNT - 1);
+					
+					return m_hasher.getHash(key, 0, key.length, out, 0) + out[0];
+				}
+			};
+		}
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int keyCount = 1000000;
+		double theta = 0.99;
+		int[] sizes = {23};
+		int[] threadCounts = {1, Math.max(2, Runtime.getRuntime().availableProcessors())};
+		
+		//key count and Zipfian constant are the options of this suite, the others go to the driver
+		List<String> driverArgs = new ArrayList<String>();
+		for(int a = 0; a<args.length; a++)
+		{
+			if(args[a].equals("-k") && a + 1<args.length)
+				keyCount = Integer.parseInt(args[++a]);
+			else if(args[a].equals("-z") && a + 1<args.length)
+				theta = Double.parseDouble(args[++a]);
+			else
+				driverArgs.add(args[a]);
+		}
+		
+		List<MicroBenchmark> benchmarks = new ArrayList<MicroBenchmark>();
+		List<CachingHasher> caches = new ArrayList<CachingHasher>();
+		
+		benchmarks.add(new ZipfianHashBenchmark("Sha256.getHash", new Sha256(PrimitiveBenchmark.KEY), keyCount, theta));
+		
+		long[] cacheSizes = {1 << 16, 1 << 20, 1 << 24};
+		for(int a = 0; a<cacheSizes.length; a++)
+		{
+			CachingHasher cached = new CachingHasher(new Sha256(PrimitiveBenchmark.KEY), cacheSizes[a]);
+			caches.add(cached);
+			benchmarks.add(new ZipfianHashBenchmark("CachingHasher/" + (cacheSizes[a] >> 10) + "K", cached, keyCount, theta));
+		}
+		
+		System.out.println("Keys: " + keyCount + ", zipfian constant: " + theta);
+		
+		int regressions = BenchmarkDriver.run(driverArgs.toArray(new String[driverArgs.size()]), benchmarks, sizes, threadCounts);
+		
+		for(int a = 0; a<caches.size(); a++)
+			System.out.println(String.format("Hit rate of %d byte cache: %.3f", cacheSizes[a], caches.get(a).getHitRate()));
+		
+		if(regressions > 0)
+			System.exit(1);
+	}
+}
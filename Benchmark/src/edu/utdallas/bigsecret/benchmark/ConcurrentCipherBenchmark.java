@@ -0,0 +1,127 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.ConcurrentCipher;
+
+
+/**
+ * Contention benchmark for sharing a cipher between threads.<br>
+ * Compares a single AesCtr instance guarded by a lock (the only safe way to share<br>
+ * it before ConcurrentCipher) with a ConcurrentCipher, for 1 to N threads.<br>
+ * Every call is an encrypt + decrypt round on the shared cipher.<br>
+ * Usage: ConcurrentCipherBenchmark [BenchmarkDriver options]
+ */
+public class ConcurrentCipherBenchmark
+{
+	/**
+	 * AesCtr instance that is shared by synchronizing on it.
+	 */
+	protected static class LockedCipher extends Cipher
+	{
+		protected Cipher m_cipher;
+		
+		public LockedCipher(Cipher cipher) throws Exception
+		{
+			m_cipher = cipher;
+		}
+		
+		public synchronized byte[] encrypt(byte[] data) throws Exception
+		{
+			return m_cipher.encrypt(data);
+		}
+		
+		public synchronized byte[] decrypt(byte[] data) throws Exception
+		{
+			return m_cipher.decrypt(data);
+		}
+		
+		public synchronized byte[] decrypt(byte[] data, int offset) throws Exception
+		{
+			return m_cipher.decrypt(data, offset);
+		}
+		
+		public int getEncryptedSize(int length)
+		{
+			return m_cipher.getEncryptedSize(length);
+		}
+		
+		public int getDecryptedSize(int length)
+		{
+			return m_cipher.getDecryptedSize(length);
+		}
+	}
+	
+	
+	/**
+	 * Benchmark for encrypt + decrypt rounds on a cipher that all worker threads share.
+	 */
+	protected static class SharedCipherBenchmark extends MicroBenchmark
+	{
+		protected Cipher m_cipher;
+		
+		public SharedCipherBenchmark(String name, Cipher cipher)
+		{
+			super(name);
+			m_cipher = cipher;
+		}
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final byte[] input = PrimitiveBenchmark.randomPayload(payloadSize);
+			
+			return new Operation()
+			{
+				public int run() throws Exception
+				{
+					return PrimitiveBenchmark.consume(m_cipher.decrypt(m_cipher.encrypt(input)));
+				}
+			};
+		}
+	}
+	
+	
+	/**
+	 * Returns all benchmarks of this class.
+	 * @return List of benchmarks.
+	 * @throws Exception Throws exception if a cipher can not be created.
+	 */
+	public static List<MicroBenchmark> getBenchmarks() throws Exception
+	{
+		List<MicroBenchmark> list = new ArrayList<MicroBenchmark>();
+		
+		list.add(new SharedCipherBenchmark("AesCtr.locked.round", new LockedCipher(new AesCtr(PrimitiveBenchmark.KEY))));
+		list.add(new SharedCipherBenchmark("ConcurrentCipher.round", new ConcurrentCipher(AesCtr.class, PrimitiveBenchmark.KEY)));
+		
+		return list;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int[] sizes = {64};
+		int[] threadCounts = BenchmarkDriver.getThreadCounts(Runtime.getRuntime().availableProcessors());
+		
+		if(BenchmarkDriver.run(args, getBenchmarks(), sizes, threadCounts) > 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,111 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.utdallas.bigsecret.hash.ConcurrentSha256;
+import edu.utdallas.bigsecret.hash.Hasher;
+import edu.utdallas.bigsecret.hash.Sha256;
+
+
+/**
+ * Scaling benchmark for sharing a hasher between threads.<br>
+ * Compares a single Sha256 instance guarded by a lock (the only safe way to share<br>
+ * it before ConcurrentSha256) with a ConcurrentSha256, for 1 to 32 threads.<br>
+ * Usage: ConcurrentSha256Benchmark [BenchmarkDriver options]
+ */
+public class ConcurrentSha256Benchmark
+{
+	/**
+	 * Sha256 instance that is shared by synchronizing on it.
+	 */
+	protected static class LockedHasher extends Hasher
+	{
+		protected Hasher m_hasher;
+		
+		public LockedHasher(Hasher hasher) throws Exception
+		{
+			m_hasher = hasher;
+		}
+		
+		public synchronized byte[] getHash(byte[] data) throws Exception
+		{
+			return m_hasher.getHash(data);
+		}
+		
+		public int hashSize()
+		{
+			return m_hasher.hashSize();
+		}
+	}
+	
+	
+	/**
+	 * Benchmark for getHash calls on a hasher that all worker threads share.
+	 */
+	protected static class SharedHasherBenchmark extends MicroBenchmark
+	{
+		protected Hasher m_hasher;
+		
+		public SharedHasherBenchmark(String name, Hasher hasher)
+		{
+			super(name);
+			m_hasher = hasher;
+		}
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final byte[] input = PrimitiveBenchmark.randomPayload(payloadSize);
+			
+			return new Operation()
+			{
+				public int run() throws Exception
+				{
+					return PrimitiveBenchmark.consume(m_hasher.getHash(input));
+				}
+			};
+		}
+	}
+	
+	
+	/**
+	 * Returns all benchmarks of this class.
+	 * @return List of benchmarks.
+	 * @throws Exception Throws exception if a hasher can not be created.
+	 */
+	public static List<MicroBenchmark> getBenchmarks() throws Exception
+	{
+		List<MicroBenchmark> list = new ArrayList<MicroBenchmark>();
+		
+		list.add(new SharedHasherBenchmark("Sha256.locked.getHash", new LockedHasher(new Sha256(PrimitiveBenchmark.KEY))));
+		list.add(new SharedHasherBenchmark("ConcurrentSha256.getHash", new ConcurrentSha256(PrimitiveBenchmark.KEY)));
+		
+		return list;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int[] sizes = {32};
+		int[] threadCounts = BenchmarkDriver.getThreadCounts(32);
+		
+		if(BenchmarkDriver.run(args, getBenchmarks(), sizes, threadCounts) > 0)
+			System.exit(1);
+	}
+}
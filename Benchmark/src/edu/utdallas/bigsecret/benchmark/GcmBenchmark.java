@@ -0,0 +1,177 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.AesGcm;
+import edu.utdallas.bigsecret.cipher.Cipher;
+
+
+/**
+ * Throughput benchmark for authenticated value encryption.<br>
+ * Compares AesGcm with AesCtr followed by HmacSHA256 over the encrypted value<br>
+ * (encrypt-then-MAC, 32 byte tag), for value sizes around YCSB field sizes.<br>
+ * Every call is an encrypt + verify + decrypt round.<br>
+ * Usage: GcmBenchmark [BenchmarkDriver options]
+ */
+public class GcmBenchmark
+{
+	/**
+	 * Key of the HMAC.
+	 */
+	protected static final byte[] MAC_KEY = {16, 15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1};
+	
+	
+	/**
+	 * AesCtr with an HMAC over iv + encrypted data appended.
+	 */
+	protected static class AesCtrHmac extends Cipher
+	{
+		protected AesCtr m_cipher;
+		protected Mac m_mac;
+		
+		public AesCtrHmac(byte[] key, byte[] macKey) throws Exception
+		{
+			m_cipher = new AesCtr(key);
+			m_mac = Mac.getInstance("HmacSHA256");
+			m_mac.init(new SecretKeySpec(macKey, "HmacSHA256"));
+		}
+		
+		public byte[] encrypt(byte[] data) throws Exception
+		{
+			int encSize = m_cipher.getEncryptedSize(data.length);
+			byte[] result = new byte[encSize + m_mac.getMacLength()];
+			
+			m_cipher.encrypt(data, 0, data.length, result, 0);
+			m_mac.update(result, 0, encSize);
+			m_mac.doFinal(result, encSize);
+			
+			return result;
+		}
+		
+		public byte[] decrypt(byte[] data) throws Exception
+		{
+			return decrypt(data, 0);
+		}
+		
+		public byte[] decrypt(byte[] data, int offset) throws Exception
+		{
+			int encSize = data.length - offset - m_mac.getMacLength();
+			
+			m_mac.update(data, offset, encSize);
+			byte[] tag = m_mac.doFinal();
+			
+			if(! Arrays.equals(tag, Arrays.copyOfRange(data, offset + encSize, data.length)))
+				throw new Exception("Data is modified");
+			
+			byte[] result = new byte[m_cipher.getDecryptedSize(encSize)];
+			m_cipher.decrypt(data, offset, encSize, result, 0);
+			
+			return result;
+		}
+		
+		public int getEncryptedSize(int length)
+		{
+			return m_cipher.getEncryptedSize(length) + m_mac.getMacLength();
+		}
+		
+		public int getDecryptedSize(int length)
+		{
+			return m_cipher.getDecryptedSize(length - m_mac.getMacLength());
+		}
+	}
+	
+	
+	/**
+	 * Benchmark for encrypt + decrypt rounds of a Cipher.
+	 */
+	protected static abstract class RoundBenchmark extends MicroBenchmark
+	{
+		public RoundBenchmark(String name)
+		{
+			super(name + ".round");
+		}
+		
+		/**
+		 * Creates the cipher instance of a worker thread.
+		 */
+		protected abstract Cipher newCipher() throws Exception;
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final Cipher cipher = newCipher();
+			final byte[] input = PrimitiveBenchmark.randomPayload(payloadSize);
+			
+			return new Operation()
+			{
+				public int run() throws Exception
+				{
+					return PrimitiveBenchmark.consume(cipher.decrypt(cipher.encrypt(input)));
+				}
+			};
+		}
+	}
+	
+	
+	/**
+	 * Returns all benchmarks of this class.
+	 * @return List of benchmarks.
+	 */
+	public static List<MicroBenchmark> getBenchmarks()
+	{
+		List<MicroBenchmark> list = new ArrayList<MicroBenchmark>();
+		
+		list.add(new RoundBenchmark("AesGcm")
+		{
+			protected Cipher newCipher() throws Exception
+			{
+				return new AesGcm(PrimitiveBenchmark.KEY);
+			}
+		});
+		list.add(new RoundBenchmark("AesCtrHmac")
+		{
+			protected Cipher newCipher() throws Exception
+			{
+				return new AesCtrHmac(PrimitiveBenchmark.KEY, MAC_KEY);
+			}
+		});
+		
+		return list;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		//value sizes: 8 byte counters, 100 byte YCSB fields, and larger blobs
+		int[] sizes = {8, 32, 100, 256, 1000, 4096, 16384};
+		int[] threadCounts = {1};
+		
+		System.out.println("Stored overhead per value: AesGcm " + 
+							(new AesGcm(PrimitiveBenchmark.KEY).getEncryptedSize(0)) + " bytes, AesCtrHmac " + 
+							(new AesCtrHmac(PrimitiveBenchmark.KEY, MAC_KEY).getEncryptedSize(0)) + " bytes");
+		
+		if(BenchmarkDriver.run(args, getBenchmarks(), sizes, threadCounts) > 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,167 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.CounterIvGenerator;
+import edu.utdallas.bigsecret.cipher.IvGenerator;
+import edu.utdallas.bigsecret.cipher.RandomIvGenerator;
+
+
+/**
+ * Microbenchmark for iv generation of AesCtr with small values.<br>
+ * Compares the BigInteger based iv creation that AesCtr used before IvGenerator,<br>
+ * RandomIvGenerator and CounterIvGenerator, on their own and inside AesCtr.encrypt.<br>
+ * Payload of a nextIv call is the number of iv bytes it fills.<br>
+ * Usage: IvGeneratorBenchmark [BenchmarkDriver options]
+ */
+public class IvGeneratorBenchmark
+{
+	/**
+	 * Iv generator that creates ivs the way AesCtr did before, through BigInteger.
+	 */
+	protected static class BigIntegerIvGenerator extends IvGenerator
+	{
+		protected SecureRandom m_secureRandom = new SecureRandom();
+		
+		public void nextIv(byte[] out, int offset)
+		{
+			byte[] randomNumber = (new BigInteger(128, m_secureRandom)).toByteArray();
+			int a;
+			for(a = 0; a<randomNumber.length && a<16; a++)
+				out[offset + a] = randomNumber[a];
+			for(; a<16; a++)
+				out[offset + a] = 0;
+		}
+		
+		public int getIvSize()
+		{
+			return 16;
+		}
+	}
+	
+	
+	/**
+	 * Benchmarks of an iv generator, on its own and inside AesCtr.encrypt.
+	 */
+	protected static abstract class GeneratorBenchmark extends MicroBenchmark
+	{
+		protected boolean m_encrypt;
+		
+		public GeneratorBenchmark(String name, boolean encrypt)
+		{
+			super(encrypt ? "AesCtr/" + name + ".encrypt" : name + ".nextIv");
+			m_encrypt = encrypt;
+		}
+		
+		/**
+		 * Creates the iv generator of a worker thread.
+		 */
+		protected abstract IvGenerator newGenerator() throws Exception;
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final IvGenerator gen = newGenerator();
+			
+			if(m_encrypt)
+			{
+				final Cipher cipher = new AesCtr(PrimitiveBenchmark.KEY, gen);
+				final byte[] input = PrimitiveBenchmark.randomPayload(payloadSize);
+				final byte[] out = new byte[cipher.getEncryptedSize(payloadSize)];
+				
+				return new Operation()
+				{
+					public int run() throws Exception
+					{
+						return cipher.encrypt(input, 0, input.length, out, 0) + out[0];
+					}
+				};
+			}
+			else
+			{
+				final int ivSize = gen.getIvSize();
+				final byte[] out = new byte[Math.max(ivSize, payloadSize - payloadSize % ivSize)];
+				
+				return new Operation()
+				{
+					public int run() throws Exception
+					{
+						for(int a = 0; a<out.length; a += ivSize)
+							gen.nextIv(out, a);
+						
+						return out[0];
+					}
+				};
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns all benchmarks of this class.
+	 * @return List of benchmarks.
+	 */
+	public static List<MicroBenchmark> getBenchmarks()
+	{
+		List<MicroBenchmark> list = new ArrayList<MicroBenchmark>();
+		
+		for(int a = 0; a<2; a++)
+		{
+			boolean encrypt = (a == 1);
+			
+			list.add(new GeneratorBenchmark("BigInteger", encrypt)
+			{
+				protected IvGenerator newGenerator() throws Exception
+				{
+					return new BigIntegerIvGenerator();
+				}
+			});
+			list.add(new GeneratorBenchmark("Random", encrypt)
+			{
+				protected IvGenerator newGenerator() throws Exception
+				{
+					return new RandomIvGenerator(16);
+				}
+			});
+			list.add(new GeneratorBenchmark("Counter", encrypt)
+			{
+				protected IvGenerator newGenerator() throws Exception
+				{
+					return new CounterIvGenerator();
+				}
+			});
+		}
+		
+		return list;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int[] sizes = {16, 32, 64};
+		int[] threadCounts = {1};
+		
+		if(BenchmarkDriver.run(args, getBenchmarks(), sizes, threadCounts) > 0)
+			System.exit(1);
+	}
+}
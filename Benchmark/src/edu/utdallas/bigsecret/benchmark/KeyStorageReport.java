@@ -0,0 +1,180 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.AesEcb;
+import edu.utdallas.bigsecret.cipher.AesFfx;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.crypter.CrypterBase;
+import edu.utdallas.bigsecret.crypter.CrypterMode2;
+import edu.utdallas.bigsecret.crypter.CrypterMode3;
+import edu.utdallas.bigsecret.hash.Sha256;
+
+
+/**
+ * Storage report of the key cipher of Mode 2 and Mode 3. Both modes put the encrypted<br>
+ * key tuple (row||fam||qua||ts with sizes) in the qualifier, and HBase repeats the<br>
+ * qualifier in every KeyValue on disk, in the block cache and on the wire. This report<br>
+ * wraps sample cells with AesEcb (PKCS5 padding) and with AesFfx (length-preserving) as<br>
+ * the key cipher, and prints the qualifier size and the stored cell size of each.<br>
+ * Value cipher is AesCtr in both layouts.<br>
+ * Usage: KeyStorageReport
+ */
+public class KeyStorageReport
+{
+	/**
+	 * Fixed part of a KeyValue: key length(4), value length(4), row length(2),<br>
+	 * family length(1), timestamp(8) and type(1).
+	 */
+	public static final int CELL_INFRASTRUCTURE_SIZE = 20;
+	
+	
+	/**
+	 * Returns the size of a KeyValue with the given parts.
+	 * @param row Row key.
+	 * @param family Family.
+	 * @param qualifier Qualifier.
+	 * @param value Value.
+	 * @return Size of the KeyValue in bytes.
+	 */
+	public static int getCellSize(byte[] row, byte[] family, byte[] qualifier, byte[] value)
+	{
+		return CELL_INFRASTRUCTURE_SIZE + row.length + family.length + qualifier.length + value.length;
+	}
+	
+	
+	/**
+	 * Creates a crypter of the given mode.
+	 * @param mode 2 or 3.
+	 * @param keyCipher Cipher for the key tuple.
+	 * @return Crypter instance.
+	 * @throws Exception Throws exception if the crypter can not be created.
+	 */
+	protected static CrypterBase getCrypter(int mode, Cipher keyCipher) throws Exception
+	{
+		Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+		
+		if(mode == 2)
+		{
+			return new CrypterMode2(new Sha256(Bytes.toBytes("123")), 
+									new Sha256(Bytes.toBytes("123")), 
+									new Sha256(Bytes.toBytes("123")), 
+									new Sha256(Bytes.toBytes("123"), 7), 
+									keyCipher, 
+									valCipher);
+		}
+		else
+		{
+			return new CrypterMode3(new Sha256(Bytes.toBytes("123")), keyCipher, valCipher);
+		}
+	}
+	
+	
+	/**
+	 * Returns the stored size of the cell, wrapped by the crypter.
+	 * @param cr Crypter.
+	 * @param cell Plain cell.
+	 * @return {qualifier size, cell size}
+	 * @throws Exception Throws exception if the cell can not be wrapped.
+	 */
+	protected static int[] getWrappedSize(CrypterBase cr, KeyValue cell) throws Exception
+	{
+		byte[] qualifier = cr.wrapQualifier(cell);
+		
+		int[] result = new int[2];
+		result[0] = qualifier.length;
+		result[1] = getCellSize(cr.wrapRow(cell), cr.wrapFamily(cell), qualifier, cr.wrapValue(cell));
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Creates a byte array of the given size.
+	 * @param prefix Content of the array, repeated.
+	 * @param size Size of the array.
+	 * @return Array.
+	 */
+	protected static byte[] fill(String prefix, int size)
+	{
+		byte[] result = new byte[size];
+		byte[] pattern = Bytes.toBytes(prefix);
+		
+		for(int a = 0; a<size; a++)
+			result[a] = pattern[a % pattern.length];
+		
+		return result;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		byte[] keyCipherKey = Bytes.toBytes("1234567890123459");
+		
+		//sample cells: {row size, family size, qualifier size, value size}
+		int[][] shapes = {{23, 6, 6, 100},		//YCSB row "user" + 19 digits, "family", "field0"
+						  {8, 1, 1, 8},			//narrow cells, e.g. counters
+						  {16, 2, 16, 32},
+						  {32, 4, 24, 1000}};
+		
+		System.out.println("Per-cell storage of the key cipher, sizes in bytes");
+		System.out.println(String.format("%4s %-16s %9s %9s %9s %9s %9s %9s", 
+										 "mode", "row/fam/qua/val", "plain", "ecb qua", "ffx qua", "ecb cell", "ffx cell", "saved"));
+		
+		for(int mode = 2; mode<=3; mode++)
+		{
+			CrypterBase ecb = getCrypter(mode, new AesEcb(keyCipherKey));
+			CrypterBase ffx = getCrypter(mode, new AesFfx(keyCipherKey));
+			
+			for(int[] shape : shapes)
+			{
+				KeyValue cell = new KeyValue(fill("user", shape[0]), fill("family", shape[1]), fill("field", shape[2]), 
+											 System.currentTimeMillis(), fill("value", shape[3]));
+				
+				int plain = getCellSize(cell.getRow(), cell.getFamily(), cell.getQualifier(), cell.getValue());
+				int[] ecbSize = getWrappedSize(ecb, cell);
+				int[] ffxSize = getWrappedSize(ffx, cell);
+				
+				System.out.println(String.format("%4d %-16s %9d %9d %9d %9d %9d %8.1f%%", 
+												 mode, shape[0] + "/" + shape[1] + "/" + shape[2] + "/" + shape[3], plain,
+												 ecbSize[0], ffxSize[0], ecbSize[1], ffxSize[1], 
+												 100.0 * (ecbSize[1] - ffxSize[1]) / ecbSize[1]));
+			}
+			
+			//padding depends on the tuple size, average it over qualifier sizes 1..64
+			long ecbTotal = 0;
+			long ffxTotal = 0;
+			for(int size = 1; size<=64; size++)
+			{
+				KeyValue cell = new KeyValue(fill("user", 23), fill("family", 6), fill("field", size), 1, fill("value", 100));
+				
+				ecbTotal += getWrappedSize(ecb, cell)[0];
+				ffxTotal += getWrappedSize(ffx, cell)[0];
+			}
+			
+			System.out.println(String.format("mode %d: qualifier sizes 1..64 save %.2f bytes per cell on average", 
+											 mode, (ecbTotal - ffxTotal) / 64.0));
+			
+			ecb.close();
+			ffx.close();
+		}
+	}
+}
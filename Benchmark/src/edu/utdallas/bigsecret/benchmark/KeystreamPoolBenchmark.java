@@ -0,0 +1,230 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.CounterIvGenerator;
+import edu.utdallas.bigsecret.cipher.KeystreamPool;
+
+
+/**
+ * Latency benchmark for AesCtr with a keystream pool under bursty load.<br>
+ * Each call of the benchmark is one burst: the worker is idle for a while, then encrypts<br>
+ * a burst of values. Latency of each encryption in the measurement period is recorded,<br>
+ * and p50, p99 and max latency are reported with and without a pool.<br>
+ * Usage: KeystreamPoolBenchmark [valueSize] [burstSize] [idleMillis] [measureMillis]
+ */
+public class KeystreamPoolBenchmark
+{
+	/**
+	 * One burst of encryptions, which records the latency of each encryption.
+	 */
+	protected static class BurstOperation extends MicroBenchmark.Operation
+	{
+		protected Cipher m_cipher;
+		protected byte[] m_value;
+		protected byte[] m_out;
+		protected int m_burstSize;
+		protected long m_idleMillis;
+		protected long[] m_latencies = new long[1024];
+		protected int m_count = 0;
+		
+		public BurstOperation(Cipher cipher, int valueSize, int burstSize, long idleMillis)
+		{
+			m_cipher = cipher;
+			m_value = PrimitiveBenchmark.randomPayload(valueSize);
+			m_out = new byte[cipher.getEncryptedSize(valueSize)];
+			m_burstSize = burstSize;
+			m_idleMillis = idleMillis;
+		}
+		
+		public int run() throws Exception
+		{
+			Thread.sleep(m_idleMillis);
+			
+			if(m_count + m_burstSize > m_latencies.length)
+				m_latencies = Arrays.copyOf(m_latencies, Math.max(m_latencies.length * 2, m_count + m_burstSize));
+			
+			for(int a = 0; a<m_burstSize; a++)
+			{
+				long start = System.nanoTime();
+				m_cipher.encrypt(m_value, 0, m_value.length, m_out, 0);
+				m_latencies[m_count++] = System.nanoTime() - start;
+			}
+			
+			return m_out[0];
+		}
+		
+		public void startMeasurement()
+		{
+			m_count = 0;
+		}
+	}
+	
+	
+	/**
+	 * Benchmark for bursts of AesCtr encryptions, with or without a keystream pool.
+	 */
+	protected static class BurstBenchmark extends MicroBenchmark
+	{
+		protected boolean m_pooled;
+		protected int m_burstSize;
+		protected long m_idleMillis;
+		protected List<BurstOperation> m_operations = new ArrayList<BurstOperation>();
+		protected List<KeystreamPool> m_pools = new ArrayList<KeystreamPool>();
+		
+		public BurstBenchmark(boolean pooled, int burstSize, long idleMillis)
+		{
+			super(pooled ? "AesCtr/pool.burst" : "AesCtr.burst");
+			m_pooled = pooled;
+			m_burstSize = burstSize;
+			m_idleMillis = idleMillis;
+		}
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			Cipher cipher;
+			if(m_pooled)
+			{
+				KeystreamPool pool = new KeystreamPool(PrimitiveBenchmark.KEY, new CounterIvGenerator(), payloadSize, m_burstSize, 1);
+				synchronized(this)
+				{
+					m_pools.add(pool);
+				}
+				cipher = new AesCtr(PrimitiveBenchmark.KEY, pool);
+			}
+			else
+			{
+				cipher = new AesCtr(PrimitiveBenchmark.KEY);
+			}
+			
+			BurstOperation op = new BurstOperation(cipher, payloadSize, m_burstSize, m_idleMillis);
+			synchronized(this)
+			{
+				m_operations.add(op);
+			}
+			
+			return op;
+		}
+		
+		/**
+		 * Returns the latencies recorded by all workers in the measurement period.
+		 * @return Sorted latencies in nanoseconds.
+		 */
+		public synchronized long[] getLatencies()
+		{
+			int total = 0;
+			for(BurstOperation op : m_operations)
+				total += op.m_count;
+			
+			long[] result = new long[total];
+			int count = 0;
+			for(BurstOperation op : m_operations)
+			{
+				System.arraycopy(op.m_latencies, 0, result, count, op.m_count);
+				count += op.m_count;
+			}
+			
+			Arrays.sort(result);
+			return result;
+		}
+		
+		/**
+		 * Returns number of pool hits and misses of all workers.
+		 * @return Hit count and miss count.
+		 */
+		public synchronized long[] getPoolCounts()
+		{
+			long[] result = new long[2];
+			for(KeystreamPool pool : m_pools)
+			{
+				result[0] += pool.getHitCount();
+				result[1] += pool.getMissCount();
+			}
+			
+			return result;
+		}
+		
+		/**
+		 * Closes the pools and forgets the workers of the last run.
+		 * @throws Exception Throws exception if a pool worker failed.
+		 */
+		public synchronized void close() throws Exception
+		{
+			for(KeystreamPool pool : m_pools)
+				pool.close();
+			
+			m_pools.clear();
+			m_operations.clear();
+		}
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int valueSize = 64;
+		int burstSize = 1000;
+		long idleMillis = 50;
+		long measureMillis = 5000;
+		
+		if(args.length > 0)
+			valueSize = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			burstSize = Integer.parseInt(args[1]);
+		if(args.length > 2)
+			idleMillis = Long.parseLong(args[2]);
+		if(args.length > 3)
+			measureMillis = Long.parseLong(args[3]);
+		
+		BenchmarkRunner runner = new BenchmarkRunner(measureMillis / 5, measureMillis);
+		BurstBenchmark[] benchmarks = {new BurstBenchmark(false, burstSize, idleMillis), new BurstBenchmark(true, burstSize, idleMillis)};
+		
+		System.out.println("Value size: " + valueSize + " bytes, burst: " + burstSize + " values, idle: " + idleMillis + " ms");
+		System.out.println(String.format("%-24s %10s %10s %10s %10s %10s", "benchmark", "p50 ns", "p99 ns", "max ns", "hits", "misses"));
+		
+		for(BurstBenchmark benchmark : benchmarks)
+		{
+			try
+			{
+				runner.run(benchmark, valueSize, 1);
+				
+				long[] latencies = benchmark.getLatencies();
+				long[] poolCounts = benchmark.getPoolCounts();
+				
+				if(latencies.length == 0)
+					throw new Exception("No burst finished in the measurement period");
+				
+				System.out.println(String.format("%-24s %10d %10d %10d %10d %10d", 
+									benchmark.getName(),
+									latencies[latencies.length / 2],
+									latencies[(int)(latencies.length * 0.99)],
+									latencies[latencies.length - 1],
+									poolCounts[0],
+									poolCounts[1]));
+			}
+			finally
+			{
+				benchmark.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+
+/**
+ * A single primitive to be measured by BenchmarkRunner, such as AesCtr encryption.<br>
+ * Cipher and Hasher instances are not thread-safe, so the runner asks for a separate<br>
+ * Operation for every worker thread. Each Operation owns its own primitive instance<br>
+ * and input buffer, and is called repeatedly in a tight loop.
+ */
+public abstract class MicroBenchmark
+{
+	/**
+	 * One unit of work, executed by a single worker thread.
+	 */
+	public static abstract class Operation
+	{
+		/**
+		 * Executes the measured call once.<br>
+		 * Implementations should return a value that depends on the output, so that<br>
+		 * the JIT compiler can not eliminate the call.
+		 * @return Any value derived from the output of the call.
+		 * @throws Exception Throws exception thrown by the measured primitive.
+		 */
+		public abstract int run() throws Exception;
+		
+		/**
+		 * Called once by the worker thread when warm up ends, before the first measured call.<br>
+		 * Operations that collect their own statistics, such as latencies, reset them here.
+		 */
+		public void startMeasurement()
+		{
+		}
+	}
+	
+	
+	/**
+	 * Name of the benchmark, as it appears in the report.
+	 */
+	protected String m_name;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param name Name of the benchmark.
+	 */
+	public MicroBenchmark(String name)
+	{
+		m_name = name;
+	}
+	
+	
+	/**
+	 * Returns name of the benchmark.
+	 * @return Name of the benchmark.
+	 */
+	public String getName()
+	{
+		return m_name;
+	}
+	
+	
+	/**
+	 * Creates the state of one worker thread. Called by the worker thread itself,<br>
+	 * before warm up starts, so setup cost is not measured.
+	 * @param payloadSize Size of the input of each call in bytes.
+	 * @return Operation that is used only by the calling thread.
+	 * @throws Exception Throws exception if the primitive can not be created.
+	 */
+	public abstract Operation prepare(int payloadSize) throws Exception;
+}
@@ -0,0 +1,93 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+
+
+/**
+ * Throughput benchmark for parallel chunked AesCtr on large values.<br>
+ * Compares single threaded encryption + decryption with chunked encryption +<br>
+ * decryption in the shared fork join pool, for several value sizes.<br>
+ * Usage: ParallelCtrBenchmark [-c chunkSizeKB] [BenchmarkDriver options]
+ */
+public class ParallelCtrBenchmark
+{
+	/**
+	 * Benchmark for encrypt + decrypt rounds of AesCtr into reused arrays.
+	 */
+	protected static class CtrRoundBenchmark extends MicroBenchmark
+	{
+		protected int m_chunkSize;
+		
+		public CtrRoundBenchmark(int chunkSize)
+		{
+			super(chunkSize > 0 ? "AesCtr/parallel.round" : "AesCtr.round");
+			m_chunkSize = chunkSize;
+		}
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final AesCtr cipher = new AesCtr(PrimitiveBenchmark.KEY);
+			if(m_chunkSize > 0)
+				cipher.setParallelThreshold(m_chunkSize, m_chunkSize);
+			
+			final byte[] value = PrimitiveBenchmark.randomPayload(payloadSize);
+			final byte[] enc = new byte[cipher.getEncryptedSize(payloadSize)];
+			final byte[] dec = new byte[payloadSize];
+			
+			return new Operation()
+			{
+				public int run() throws Exception
+				{
+					cipher.encrypt(value, 0, value.length, enc, 0);
+					return cipher.decrypt(enc, 0, enc.length, dec, 0) + dec[0];
+				}
+			};
+		}
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int chunkSize = 256 * 1024;
+		int[] sizes = {256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024};
+		int[] threadCounts = {1};
+		
+		//chunk size is the only option of this suite, the others go to the driver
+		List<String> driverArgs = new ArrayList<String>();
+		for(int a = 0; a<args.length; a++)
+		{
+			if(args[a].equals("-c") && a + 1<args.length)
+				chunkSize = Integer.parseInt(args[++a]) * 1024;
+			else
+				driverArgs.add(args[a]);
+		}
+		
+		List<MicroBenchmark> benchmarks = new ArrayList<MicroBenchmark>();
+		benchmarks.add(new CtrRoundBenchmark(0));
+		benchmarks.add(new CtrRoundBenchmark(chunkSize));
+		
+		System.out.println("Processors: " + Runtime.getRuntime().availableProcessors() + ", chunk size: " + chunkSize / 1024 + " KB");
+		
+		if(BenchmarkDriver.run(driverArgs.toArray(new String[driverArgs.size()]), benchmarks, sizes, threadCounts) > 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,242 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.AesEcb;
+import edu.utdallas.bigsecret.cipher.AesFfx;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.NullCipher;
+import edu.utdallas.bigsecret.hash.Hasher;
+import edu.utdallas.bigsecret.hash.Sha256;
+import edu.utdallas.bigsecret.hash.SipHash;
+
+
+/**
+ * Benchmarks the Cipher and Hasher primitives that the proxy calls for every key-part<br>
+ * and value: AesEcb, AesCtr, AesFfx, NullCipher, Sha256 with and without trim, and<br>
+ * SipHash, for payload sizes from 8 bytes to 1 MB, single- and multi-threaded. Reports<br>
+ * ops/s, ns/byte and heap bytes allocated per call. Results can be saved as CSV, and compared against a<br>
+ * saved baseline; the program exits with status 1 if any configuration regressed.<br>
+ * Usage: PrimitiveBenchmark [-t threads] [-s sizes] [-w warmupMillis] [-m measureMillis]<br>
+ * 							 [-f nameFilter] [-o output.csv] [-b baseline.csv] [-r tolerancePercent]<br>
+ * Thread counts and sizes are comma separated lists, e.g. -t 1,8 -s 8,4096
+ */
+public class PrimitiveBenchmark
+{
+	/**
+	 * Default payload sizes, from 8 bytes to 1 MB.
+	 */
+	public static final int[] DEFAULT_SIZES = {8, 64, 512, 4096, 65536, 1048576};
+	
+	/**
+	 * Key used by every primitive.
+	 */
+	protected static final byte[] KEY = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+	
+	
+	/**
+	 * Creates a random input of the given size.
+	 * @param size Size in bytes.
+	 * @return Random bytes.
+	 */
+	protected static byte[] randomPayload(int size)
+	{
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+	
+	
+	/**
+	 * Returns a value that depends on the output, to keep the call alive.
+	 * @param out Output of the measured call.
+	 * @return Value derived from the output.
+	 */
+	protected static int consume(byte[] out)
+	{
+		return out.length + out[out.length - 1];
+	}
+	
+	
+	/**
+	 * Benchmark for encryption or decryption of a Cipher.
+	 */
+	protected static abstract class CipherBenchmark extends MicroBenchmark
+	{
+		protected boolean m_decrypt;
+		
+		public CipherBenchmark(String name, boolean decrypt)
+		{
+			super(name + (decrypt ? ".decrypt" : ".encrypt"));
+			m_decrypt = decrypt;
+		}
+		
+		/**
+		 * Creates the cipher instance of a worker thread.
+		 */
+		protected abstract Cipher newCipher() throws Exception;
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final Cipher cipher = newCipher();
+			final byte[] input = m_decrypt ? cipher.encrypt(randomPayload(payloadSize)) : randomPayload(payloadSize);
+			
+			if(m_decrypt)
+			{
+				return new Operation()
+				{
+					public int run() throws Exception
+					{
+						return consume(cipher.decrypt(input));
+					}
+				};
+			}
+			else
+			{
+				return new Operation()
+				{
+					public int run() throws Exception
+					{
+						return consume(cipher.encrypt(input));
+					}
+				};
+			}
+		}
+	}
+	
+	
+	/**
+	 * Benchmark for Hasher.getHash.
+	 */
+	protected static abstract class HasherBenchmark extends MicroBenchmark
+	{
+		public HasherBenchmark(String name)
+		{
+			super(name);
+		}
+		
+		/**
+		 * Creates the hasher instance of a worker thread.
+		 */
+		protected abstract Hasher newHasher() throws Exception;
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final Hasher hasher = newHasher();
+			final byte[] input = randomPayload(payloadSize);
+			
+			return new Operation()
+			{
+				public int run() throws Exception
+				{
+					return consume(hasher.getHash(input));
+				}
+			};
+		}
+	}
+	
+	
+	/**
+	 * Returns all benchmarks of this class.
+	 * @return List of benchmarks.
+	 */
+	public static List<MicroBenchmark> getBenchmarks()
+	{
+		List<MicroBenchmark> list = new ArrayList<MicroBenchmark>();
+		
+		for(int a = 0; a<2; a++)
+		{
+			boolean decrypt = (a == 1);
+			
+			list.add(new CipherBenchmark("AesEcb", decrypt)
+			{
+				protected Cipher newCipher() throws Exception
+				{
+					return new AesEcb(KEY);
+				}
+			});
+			list.add(new CipherBenchmark("AesCtr", decrypt)
+			{
+				protected Cipher newCipher() throws Exception
+				{
+					return new AesCtr(KEY);
+				}
+			});
+			list.add(new CipherBenchmark("AesFfx", decrypt)
+			{
+				protected Cipher newCipher() throws Exception
+				{
+					return new AesFfx(KEY);
+				}
+			});
+		}
+		
+		//NullCipher does not decrypt, it is the baseline cost of a Cipher call
+		list.add(new CipherBenchmark("NullCipher", false)
+		{
+			protected Cipher newCipher() throws Exception
+			{
+				return new NullCipher();
+			}
+		});
+		
+		list.add(new HasherBenchmark("Sha256.getHash")
+		{
+			protected Hasher newHasher() throws Exception
+			{
+				return new Sha256(KEY);
+			}
+		});
+		list.add(new HasherBenchmark("Sha256.getHash/trim8")
+		{
+			protected Hasher newHasher() throws Exception
+			{
+				return new Sha256(KEY, 8);
+			}
+		});
+		list.add(new HasherBenchmark("SipHash.getHash")
+		{
+			protected Hasher newHasher() throws Exception
+			{
+				return new SipHash(KEY);
+			}
+		});
+		list.add(new HasherBenchmark("SipHash.getHash/16")
+		{
+			protected Hasher newHasher() throws Exception
+			{
+				return new SipHash(KEY, 16);
+			}
+		});
+		
+		return list;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int[] threadCounts = {1, Math.max(2, Runtime.getRuntime().availableProcessors())};
+		
+		if(BenchmarkDriver.run(args, getBenchmarks(), DEFAULT_SIZES, threadCounts) > 0)
+			System.exit(1);
+	}
+}
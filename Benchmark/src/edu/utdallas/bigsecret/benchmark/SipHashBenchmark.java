@@ -0,0 +1,117 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.utdallas.bigsecret.hash.Hasher;
+import edu.utdallas.bigsecret.hash.Sha256;
+import edu.utdallas.bigsecret.hash.SipHash;
+
+
+/**
+ * Latency benchmark for index digests.<br>
+ * Compares Sha256 with SipHash, both trimmed to the same digest size, for the inputs<br>
+ * of Mode 2 index digests: 8 byte timestamps, short families and qualifiers, and<br>
+ * row keys such as YCSB's "user" + 19 digits.<br>
+ * Usage: SipHashBenchmark [-d digestSize] [BenchmarkDriver options]
+ */
+public class SipHashBenchmark
+{
+	/**
+	 * Benchmark for getHash calls on inputs that change at every call.
+	 */
+	protected static abstract class DigestBenchmark extends MicroBenchmark
+	{
+		public DigestBenchmark(String name)
+		{
+			super(name);
+		}
+		
+		/**
+		 * Creates the hasher instance of a worker thread.
+		 */
+		protected abstract Hasher newHasher() throws Exception;
+		
+		public Operation prepare(int payloadSize) throws Exception
+		{
+			final Hasher hasher = newHasher();
+			final byte[] input = PrimitiveBenchmark.randomPayload(payloadSize);
+			
+			return new Operation()
+			{
+				public int run() throws Exception
+				{
+					input[0]++;
+					return hasher.getHash(input)[0];
+				}
+			};
+		}
+	}
+	
+	
+	/**
+	 * Returns all benchmarks of this class.
+	 * @param digestSize Size of digests in bytes.
+	 * @return List of benchmarks.
+	 */
+	public static List<MicroBenchmark> getBenchmarks(final int digestSize)
+	{
+		List<MicroBenchmark> list = new ArrayList<MicroBenchmark>();
+		
+		list.add(new DigestBenchmark("Sha256.getHash/trim" + digestSize)
+		{
+			protected Hasher newHasher() throws Exception
+			{
+				return new Sha256(PrimitiveBenchmark.KEY, digestSize);
+			}
+		});
+		list.add(new DigestBenchmark("SipHash.getHash/" + digestSize)
+		{
+			protected Hasher newHasher() throws Exception
+			{
+				return new SipHash(PrimitiveBenchmark.KEY, digestSize);
+			}
+		});
+		
+		return list;
+	}
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int digestSize = 7;
+		
+		//timestamps, families/qualifiers, row keys, and larger keys
+		int[] sizes = {8, 6, 16, 23, 64, 256};
+		int[] threadCounts = {1};
+		
+		//digest size is the only option of this suite, the others go to the driver
+		List<String> driverArgs = new ArrayList<String>();
+		for(int a = 0; a<args.length; a++)
+		{
+			if(args[a].equals("-d") && a + 1<args.length)
+				digestSize = Integer.parseInt(args[++a]);
+			else
+				driverArgs.add(args[a]);
+		}
+		
+		if(BenchmarkDriver.run(driverArgs.toArray(new String[driverArgs.size()]), getBenchmarks(digestSize), sizes, threadCounts) > 0)
+			System.exit(1);
+	}
+}
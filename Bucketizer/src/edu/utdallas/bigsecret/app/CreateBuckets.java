@@ -16,12 +16,18 @@
 
 package edu.utdallas.bigsecret.app;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 
+import edu.utdallas.bigsecret.bucketizer.BucketProgress;
 import edu.utdallas.bigsecret.bucketizer.ByteBucketizer;
+import edu.utdallas.bigsecret.bucketizer.EquiDepthLongBucketizer;
+import edu.utdallas.bigsecret.bucketizer.HBaseBucketizer;
 import edu.utdallas.bigsecret.bucketizer.LongBucketizer;
 
 //*****************
@@ -39,14 +45,47 @@ import edu.utdallas.bigsecret.bucketizer.LongBucketizer;
 
 public class CreateBuckets 
 {
+	/**
+	 * Prints progress and throughput of bucket value creation.
+	 */
+	protected static BucketProgress.Listener PROGRESS_PRINTER = new BucketProgress.Listener()
+	{
+		public void update(BucketProgress progress)
+		{
+			System.out.println(String.format("%s number of buckets: %d / %d (%.1f%%), %.0f buckets/s, %.1f s",
+											 progress.getAction(), 
+											 progress.getCommitted(), 
+											 progress.getTotal(), 
+											 100 * progress.getFraction(), 
+											 progress.getRowsPerSecond(), 
+											 progress.getElapsedMillis() / 1000.0));
+		}
+	};
+	
+	
+	/**
+	 * Usage: CreateBuckets [threads] [writeBufferMB]<br>
+	 * Optional arguments set the number of threads and the write buffer size of each<br>
+	 * thread that writes bucket values.
+	 */
 	public static void main(String[] args) throws Exception
 	{
+		int threads = 8;
+		long writeBufferSize = 8 * 1024 * 1024;
+		
+		if(args.length > 0)
+			threads = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			writeBufferSize = Long.parseLong(args[1]) * 1024 * 1024;
+		
 		Scanner sc = new Scanner(System.in);
 		
 		//get bucketizer type
 		System.out.println("Enter type of bucketizer: ");
 		System.out.println("1 - Byte HBase ");
 		System.out.println("2 - Long HBase ");
+		System.out.println("3 - Export snapshot of existing buckets ");
+		System.out.println("4 - Equi-depth Long HBase from a sample file ");
 		int bucketizerType = sc.nextInt();
 		
 		if(bucketizerType == 1)
@@ -74,6 +113,11 @@ public class CreateBuckets
 			
 			//create bucketizer and buckets
 			ByteBucketizer b = new ByteBucketizer(conf, id, inputBits);
+			b.setCreationThreads(threads);
+			b.setWriteBufferSize(writeBufferSize);
+			b.setProgressListener(PROGRESS_PRINTER);
+			
+			System.out.println("Total number of buckets: " + b.getNumberOfBuckets());
 			b.createBuckets();
 			b.close();
 		}
@@ -109,6 +153,112 @@ public class CreateBuckets
 			int numberOfBuckets = sc.nextInt();
 			
 			LongBucketizer b = new LongBucketizer(conf, id, min, max, numberOfBuckets);
+			b.setCreationThreads(threads);
+			b.setWriteBufferSize(writeBufferSize);
+			b.setProgressListener(PROGRESS_PRINTER);
+			
+			System.out.println("Total number of buckets: " + b.getNumberOfBuckets());
+			b.createBuckets();
+			b.close();
+		}
+		else if(bucketizerType == 3)
+		{
+			//create configuration
+			Configuration conf = HBaseConfiguration.create();
+			
+			//get zookeeper quorum ip
+			System.out.println("Enter zookeeper IP");
+			String zookeeperIP = sc.next();
+			conf.set("hbase.zookeeper.quorum", zookeeperIP);
+			
+			//get zookeeper port
+			System.out.println("Enter zookeeper Port");
+			String zookeeperPort = sc.next();
+			conf.set("hbase.zookeeper.property.clientPort", zookeeperPort);
+			
+			//get type of the existing bucketizer
+			System.out.println("Enter type of existing bucketizer (1 - Byte, 2 - Long, 3 - Equi-depth Long) ");
+			int existingType = sc.nextInt();
+			
+			//get bucketizer id
+			System.out.println("Enter bucketizer id ");
+			String id = sc.next();
+			
+			//get snapshot file name
+			System.out.println("Enter snapshot file name ");
+			String fileName = sc.next();
+			
+			HBaseBucketizer b;
+			if(existingType == 1)
+				b = new ByteBucketizer(id, 0, conf);
+			else if(existingType == 3)
+				b = new EquiDepthLongBucketizer(id, 0, conf);
+			else
+				b = new LongBucketizer(id, 0, conf);
+			
+			b.exportSnapshot(new File(fileName));
+			b.close();
+		}
+		else if(bucketizerType == 4)
+		{
+			//create configuration
+			Configuration conf = HBaseConfiguration.create();
+			
+			//get zookeeper quorum ip
+			System.out.println("Enter zookeeper IP");
+			String zookeeperIP = sc.next();
+			conf.set("hbase.zookeeper.quorum", zookeeperIP);
+			
+			//get zookeeper port
+			System.out.println("Enter zookeeper Port");
+			String zookeeperPort = sc.next();
+			conf.set("hbase.zookeeper.property.clientPort", zookeeperPort);
+			
+			//get bucketizer id
+			System.out.println("Enter bucketizer id ");
+			String id = sc.next();
+			
+			//get sample file name, one long value per line
+			System.out.println("Enter sample file name ");
+			String fileName = sc.next();
+			
+			//get bucketizer number of buckets
+			System.out.println("Enter number of buckets ");
+			int numberOfBuckets = sc.nextInt();
+			
+			//read sample
+			List<Long> values = new ArrayList<Long>();
+			Scanner fileScanner = new Scanner(new File(fileName));
+			while(fileScanner.hasNextLong())
+				values.add(fileScanner.nextLong());
+			fileScanner.close();
+			
+			long[] sample = new long[values.size()];
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			for(int a = 0; a<sample.length; a++)
+			{
+				sample[a] = values.get(a);
+				min = Math.min(min, sample[a]);
+				max = Math.max(max, sample[a]);
+			}
+			
+			EquiDepthLongBucketizer b = new EquiDepthLongBucketizer(conf, id, sample, numberOfBuckets);
+			
+			//compare with equal width buckets over the range of the sample
+			if(min < max)
+			{
+				double before = EquiDepthLongBucketizer.getEqualWidthFalsePositiveRatio(sample, min, max, numberOfBuckets);
+				System.out.println("Expected false positives per matching row with equal width buckets: " + before);
+			}
+			double after = EquiDepthLongBucketizer.getEquiDepthFalsePositiveRatio(sample, b.getBoundaries());
+			System.out.println("Expected false positives per matching row with equi-depth buckets: " + after);
+			
+			b.setCreationThreads(threads);
+			b.setWriteBufferSize(writeBufferSize);
+			b.setProgressListener(PROGRESS_PRINTER);
+			
+			System.out.println("Total number of buckets: " + b.getNumberOfBuckets());
 			b.createBuckets();
 			b.close();
 		}
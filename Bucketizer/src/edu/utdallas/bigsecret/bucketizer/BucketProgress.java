@@ -0,0 +1,177 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Progress and throughput of a parallel operation of HBaseBucketizer, such as creating,<br>
+ * removing or caching bucket values. Rows are counted when they are committed to HBase,<br>
+ * i.e. after the write buffer of the thread is flushed.<br>
+ * This class is thread-safe, it can be queried while the operation is running.
+ */
+public class BucketProgress
+{
+	/**
+	 * Callback that is notified while an operation is running, and once when it finishes.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called every few seconds by the thread that waits for the operation, and once<br>
+		 * after every row is committed.
+		 * @param progress Progress of the operation.
+		 */
+		void update(BucketProgress progress);
+	}
+	
+	
+	/**
+	 * Name of the operation, such as "Created".
+	 */
+	protected String m_action;
+	
+	/**
+	 * Number of rows of the operation.
+	 */
+	protected long m_total;
+	
+	/**
+	 * Number of committed rows.
+	 */
+	protected AtomicLong m_committed = new AtomicLong(0);
+	
+	/**
+	 * Start time of the operation in milliseconds.
+	 */
+	protected long m_startTime;
+	
+	/**
+	 * End time of the operation in milliseconds, 0 while it is running.
+	 */
+	protected volatile long m_endTime = 0;
+	
+	
+	/**
+	 * Class constructor. Operation starts at the time of the call.
+	 * @param action Name of the operation.
+	 * @param total Number of rows of the operation.
+	 */
+	public BucketProgress(String action, long total)
+	{
+		m_action = action;
+		m_total = total;
+		m_startTime = System.currentTimeMillis();
+	}
+	
+	
+	/**
+	 * Adds committed rows.
+	 * @param rows Number of rows that are committed to HBase.
+	 */
+	protected void addCommitted(long rows)
+	{
+		m_committed.addAndGet(rows);
+	}
+	
+	
+	/**
+	 * Marks the operation as finished.
+	 */
+	protected void finish()
+	{
+		m_endTime = System.currentTimeMillis();
+	}
+	
+	
+	/**
+	 * Returns name of the operation.
+	 * @return Name of the operation, such as "Created".
+	 */
+	public String getAction()
+	{
+		return m_action;
+	}
+	
+	
+	/**
+	 * Returns number of rows of the operation.
+	 * @return Number of rows.
+	 */
+	public long getTotal()
+	{
+		return m_total;
+	}
+	
+	
+	/**
+	 * Returns number of rows that are committed to HBase so far.
+	 * @return Number of committed rows.
+	 */
+	public long getCommitted()
+	{
+		return m_committed.get();
+	}
+	
+	
+	/**
+	 * Returns committed share of the rows.
+	 * @return Value between 0 and 1.
+	 */
+	public double getFraction()
+	{
+		if(m_total == 0)
+			return 1;
+		
+		return (double)getCommitted() / m_total;
+	}
+	
+	
+	/**
+	 * Returns time spent so far, or duration of the operation if it is finished.
+	 * @return Milliseconds.
+	 */
+	public long getElapsedMillis()
+	{
+		long end = m_endTime;
+		if(end == 0)
+			end = System.currentTimeMillis();
+		
+		return end - m_startTime;
+	}
+	
+	
+	/**
+	 * Returns average throughput of the operation.
+	 * @return Committed rows per second.
+	 */
+	public double getRowsPerSecond()
+	{
+		return getCommitted() * 1000.0 / Math.max(1, getElapsedMillis());
+	}
+	
+	
+	/**
+	 * Checks if the operation is finished.
+	 * @return true if every row is committed, or the operation failed.
+	 */
+	public boolean isFinished()
+	{
+		return m_endTime != 0;
+	}
+}
@@ -0,0 +1,272 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Read-only, memory-mapped copy of the bucket ID to bucket value mapping of a bucketizer.<br>
+ * File starts with a header (magic, version, number of buckets, bucketizer ID), and then<br>
+ * holds the 4 byte value of every bucket ID in order, so a lookup is a single array access<br>
+ * that needs neither HBase nor heap memory. Buckets that do not exist are stored as -1.<br>
+ * A mapping can not be larger than 2GB, so values are mapped in chunks of 2^28 buckets.
+ */
+public class BucketSnapshot
+{
+	/**
+	 * First 4 bytes of a snapshot file, "BSNP".
+	 */
+	public static final int MAGIC = 0x42534E50;
+	
+	/**
+	 * Version of the file format.
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * Value stored for bucket IDs that have no value.
+	 */
+	public static final int MISSING_VALUE = -1;
+	
+	/**
+	 * Number of bucket values in a mapped chunk.
+	 */
+	protected static final int CHUNK_BITS = 28;
+	
+	
+	/**
+	 * Writes a snapshot file sequentially. Bucket IDs should be given in increasing order,<br>
+	 * skipped IDs are stored as missing. Data is written to a temporary file, which is renamed<br>
+	 * when it is complete, so readers never see a partial snapshot.
+	 */
+	public static class Writer
+	{
+		protected File m_file;
+		protected File m_tempFile;
+		protected DataOutputStream m_out;
+		protected int m_bucketCount;
+		protected int m_nextId;
+		
+		/**
+		 * Class constructor. Writes the header.
+		 * @param file Snapshot file to create.
+		 * @param id Bucketizer ID.
+		 * @param bucketCount Number of bucket IDs.
+		 * @throws Exception Throws exception if id is null or empty, or bucket count is negative.<br>
+		 * 					 Throws exception if the file can not be written.
+		 */
+		public Writer(File file, byte[] id, int bucketCount) throws Exception
+		{
+			if(id == null || id.length == 0)
+				throw new Exception("ID is null or has no data");
+			else if(bucketCount < 0)
+				throw new Exception("Number of buckets can not be negative");
+			
+			m_file = file;
+			m_tempFile = new File(file.getPath() + ".tmp");
+			m_bucketCount = bucketCount;
+			m_nextId = 0;
+			m_out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_tempFile), 1 << 16));
+			
+			m_out.writeInt(MAGIC);
+			m_out.writeInt(VERSION);
+			m_out.writeInt(bucketCount);
+			m_out.writeInt(id.length);
+			m_out.write(id);
+			
+			//align values to 4 bytes
+			m_out.write(new byte[getHeaderSize(id.length) - 16 - id.length]);
+		}
+		
+		/**
+		 * Writes value of a bucket.
+		 * @param bucketId Bucket ID, larger than the previous one.
+		 * @param value Bucket value.
+		 * @throws Exception Throws exception if bucket ID is out of order or out of range.
+		 */
+		public void write(int bucketId, int value) throws Exception
+		{
+			if(bucketId < m_nextId || bucketId >= m_bucketCount)
+				throw new Exception("Bucket ID " + bucketId + " is out of order or out of range");
+			
+			for(; m_nextId<bucketId; m_nextId++)
+				m_out.writeInt(MISSING_VALUE);
+			
+			m_out.writeInt(value);
+			m_nextId++;
+		}
+		
+		/**
+		 * Marks the remaining bucket IDs as missing, closes the file, and moves it to its name.
+		 * @throws Exception Throws exception if the file can not be written or renamed.
+		 */
+		public void close() throws Exception
+		{
+			for(; m_nextId<m_bucketCount; m_nextId++)
+				m_out.writeInt(MISSING_VALUE);
+			
+			m_out.close();
+			
+			m_file.delete();
+			if(!m_tempFile.renameTo(m_file))
+				throw new Exception("Snapshot could not be renamed to " + m_file);
+		}
+		
+		/**
+		 * Closes and deletes an unfinished file.
+		 */
+		public void discard()
+		{
+			try
+			{
+				m_out.close();
+			}
+			catch (Exception e)
+			{
+				//file is deleted anyway
+			}
+			
+			m_tempFile.delete();
+		}
+	}
+	
+	
+	/**
+	 * ID of the bucketizer.
+	 */
+	protected byte[] m_id;
+	
+	/**
+	 * Number of bucket IDs.
+	 */
+	protected int m_bucketCount;
+	
+	/**
+	 * Mapped chunks of bucket values.
+	 */
+	protected IntBuffer[] m_chunks;
+	
+	
+	/**
+	 * Maps the given snapshot file.
+	 * @param file Snapshot file.
+	 * @throws Exception Throws exception if the file is not a snapshot file, or it is truncated.
+	 */
+	public BucketSnapshot(File file) throws Exception
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		
+		try
+		{
+			if(raf.length() < 16 || raf.readInt() != MAGIC)
+				throw new Exception(file + " is not a bucket snapshot");
+			else if(raf.readInt() != VERSION)
+				throw new Exception(file + " has an unknown snapshot version");
+			
+			m_bucketCount = raf.readInt();
+			int idLength = raf.readInt();
+			if(m_bucketCount < 0 || idLength <= 0 || idLength > raf.length())
+				throw new Exception(file + " has an invalid header");
+			
+			m_id = new byte[idLength];
+			raf.readFully(m_id);
+			
+			long headerSize = getHeaderSize(idLength);
+			if(raf.length() != headerSize + 4L * m_bucketCount)
+				throw new Exception(file + " is truncated");
+			
+			//mapping stays valid after the file is closed
+			FileChannel channel = raf.getChannel();
+			int chunkCount = (int)(((long)m_bucketCount + (1 << CHUNK_BITS) - 1) >> CHUNK_BITS);
+			m_chunks = new IntBuffer[chunkCount];
+			for(int a = 0; a<chunkCount; a++)
+			{
+				long first = (long)a << CHUNK_BITS;
+				long count = Math.min(1 << CHUNK_BITS, m_bucketCount - first);
+				
+				m_chunks[a] = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + 4 * first, 4 * count).asIntBuffer();
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+	
+	
+	/**
+	 * Returns size of the header, which is a multiple of 4 bytes.
+	 * @param idLength Length of bucketizer ID.
+	 * @return Header size in bytes.
+	 */
+	protected static int getHeaderSize(int idLength)
+	{
+		return 16 + ((idLength + 3) & ~3);
+	}
+	
+	
+	/**
+	 * Returns value of the given bucket ID.
+	 * @param bucketId Bucket ID.
+	 * @return Bucket value, MISSING_VALUE if bucket does not exist.
+	 */
+	public int getValue(int bucketId)
+	{
+		if(bucketId < 0 || bucketId >= m_bucketCount)
+			return MISSING_VALUE;
+		
+		return m_chunks[bucketId >>> CHUNK_BITS].get(bucketId & ((1 << CHUNK_BITS) - 1));
+	}
+	
+	
+	/**
+	 * Returns number of bucket IDs in the snapshot.
+	 * @return Number of buckets.
+	 */
+	public int getBucketCount()
+	{
+		return m_bucketCount;
+	}
+	
+	
+	/**
+	 * Returns ID of the bucketizer that the snapshot belongs to.
+	 * @return Bucketizer ID.
+	 */
+	public byte[] getId()
+	{
+		return m_id.clone();
+	}
+	
+	
+	/**
+	 * Checks if the snapshot belongs to the given bucketizer.
+	 * @param id Bucketizer ID.
+	 * @return true if IDs are the same, false otherwise.
+	 */
+	public boolean belongsTo(byte[] id)
+	{
+		return Arrays.equals(m_id, id);
+	}
+}
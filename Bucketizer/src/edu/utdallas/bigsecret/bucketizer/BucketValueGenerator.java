@@ -0,0 +1,246 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+import java.security.SecureRandom;
+
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import edu.utdallas.bigsecret.cipher.ProviderRegistry;
+
+/**
+ * Generates increasing bucket values in independent partitions of the bucket IDs.<br>
+ * Value of a bucket is the value of the previous bucket plus a random increment between<br>
+ * 1 and maxIncrement, as in the sequential loop of createBuckets. Increments of a partition<br>
+ * are drawn from an AES-CTR key stream whose counter starts at the partition number, so a<br>
+ * partition can be generated twice with the same increments: once to sum them, and once<br>
+ * to write the values after the sums of the previous partitions are known.<br>
+ * Usage: sumPartition for every partition (in any order or thread), setPartitionSums,<br>
+ * then getPartitionValues for every partition.
+ */
+public class BucketValueGenerator
+{
+	/**
+	 * Number of key stream bytes that are encrypted at once.
+	 */
+	protected static final int STREAM_BLOCK_SIZE = 4096;
+	
+	/**
+	 * Secret key of the key stream, chosen randomly for every generator.
+	 */
+	protected SecretKeySpec m_key;
+	
+	/**
+	 * Number of buckets.
+	 */
+	protected int m_numberOfBuckets;
+	
+	/**
+	 * Increments are between 1 and this value.
+	 */
+	protected int m_maxIncrement;
+	
+	/**
+	 * Number of buckets in a partition, last partition may be smaller.
+	 */
+	protected int m_partitionSize;
+	
+	/**
+	 * Value before the first bucket of each partition.
+	 */
+	protected long[] m_bases;
+	
+	
+	/**
+	 * Random numbers of a partition, read from the key stream.
+	 */
+	protected class PartitionRandom
+	{
+		protected javax.crypto.Cipher m_cipher;
+		protected byte[] m_zeros = new byte[STREAM_BLOCK_SIZE];
+		protected byte[] m_stream = new byte[STREAM_BLOCK_SIZE];
+		protected int m_position = STREAM_BLOCK_SIZE;
+		
+		public PartitionRandom(int partition) throws Exception
+		{
+			//counter block is partition number followed by the block number in the partition
+			byte[] iv = new byte[16];
+			Bytes.putInt(iv, 4, partition);
+			
+			m_cipher = ProviderRegistry.getCipher("AES/CTR/NoPadding");
+			m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_key, new IvParameterSpec(iv));
+		}
+		
+		/**
+		 * Returns a random number between 0 and bound-1, without modulo bias.
+		 */
+		public int nextInt(int bound) throws Exception
+		{
+			int bits;
+			int value;
+			do
+			{
+				if(m_position == STREAM_BLOCK_SIZE)
+				{
+					m_cipher.update(m_zeros, 0, STREAM_BLOCK_SIZE, m_stream, 0);
+					m_position = 0;
+				}
+				
+				bits = Bytes.toInt(m_stream, m_position) >>> 1;
+				m_position += 4;
+				value = bits % bound;
+			}
+			while(bits - value + (bound - 1) < 0);
+			
+			return value;
+		}
+	}
+	
+	
+	/**
+	 * Class constructor.
+	 * @param numberOfBuckets Number of buckets.
+	 * @param maxIncrement Largest difference between two consecutive bucket values.
+	 * @param partitionSize Number of buckets in a partition.
+	 * @throws Exception Throws exception if a parameter is not positive.
+	 */
+	public BucketValueGenerator(int numberOfBuckets, int maxIncrement, int partitionSize) throws Exception
+	{
+		//check inputs
+		if(numberOfBuckets <= 0)
+			throw new Exception("Number of buckets should be positive");
+		else if(maxIncrement <= 0)
+			throw new Exception("Max increment should be positive");
+		else if(partitionSize <= 0)
+			throw new Exception("Partition size should be positive");
+		
+		m_numberOfBuckets = numberOfBuckets;
+		m_maxIncrement = maxIncrement;
+		m_partitionSize = partitionSize;
+		
+		byte[] key = new byte[16];
+		new SecureRandom().nextBytes(key);
+		m_key = new SecretKeySpec(key, "AES");
+	}
+	
+	
+	/**
+	 * Returns number of partitions.
+	 * @return Number of partitions.
+	 */
+	public int getPartitionCount()
+	{
+		return (int)(((long)m_numberOfBuckets + m_partitionSize - 1) / m_partitionSize);
+	}
+	
+	
+	/**
+	 * Returns the first bucket ID of a partition.
+	 * @param partition Partition number.
+	 * @return Bucket ID.
+	 */
+	public int getPartitionStart(int partition)
+	{
+		return (int)((long)partition * m_partitionSize);
+	}
+	
+	
+	/**
+	 * Returns number of buckets in a partition.
+	 * @param partition Partition number.
+	 * @return Number of buckets.
+	 */
+	public int getPartitionLength(int partition)
+	{
+		return (int)Math.min(m_partitionSize, (long)m_numberOfBuckets - getPartitionStart(partition));
+	}
+	
+	
+	/**
+	 * Returns the sum of the increments of a partition.
+	 * @param partition Partition number.
+	 * @return Difference between the last value of the partition and the value before it.
+	 * @throws Exception Throws exception if key stream can not be created.
+	 */
+	public long sumPartition(int partition) throws Exception
+	{
+		PartitionRandom random = new PartitionRandom(partition);
+		int length = getPartitionLength(partition);
+		
+		long sum = 0;
+		for(int a = 0; a<length; a++)
+			sum += 1 + random.nextInt(m_maxIncrement);
+		
+		return sum;
+	}
+	
+	
+	/**
+	 * Sets the sums of all partitions, so that the values of a partition start after the<br>
+	 * last value of the previous partition.
+	 * @param sums Result of sumPartition for every partition.
+	 * @throws Exception Throws exception if number of sums is wrong.<br>
+	 * Throws exception if the last value does not fit into 4 bytes.
+	 */
+	public void setPartitionSums(long[] sums) throws Exception
+	{
+		if(sums == null || sums.length != getPartitionCount())
+			throw new Exception("There should be a sum for every partition");
+		
+		//first bucket value is at least 0, as in the sequential loop
+		long[] bases = new long[sums.length];
+		long base = -1;
+		for(int a = 0; a<sums.length; a++)
+		{
+			bases[a] = base;
+			base += sums[a];
+		}
+		
+		if(base > Integer.MAX_VALUE)
+			throw new Exception("Bucket values do not fit into 4 bytes");
+		
+		m_bases = bases;
+	}
+	
+	
+	/**
+	 * Returns the values of the buckets of a partition.
+	 * @param partition Partition number.
+	 * @return Bucket values, starting with the bucket at getPartitionStart.
+	 * @throws Exception Throws exception if partition sums are not set.
+	 */
+	public int[] getPartitionValues(int partition) throws Exception
+	{
+		if(m_bases == null)
+			throw new Exception("Partition sums are not set");
+		
+		PartitionRandom random = new PartitionRandom(partition);
+		int[] values = new int[getPartitionLength(partition)];
+		
+		long value = m_bases[partition];
+		for(int a = 0; a<values.length; a++)
+		{
+			value += 1 + random.nextInt(m_maxIncrement);
+			values[a] = (int)value;
+		}
+		
+		return values;
+	}
+}
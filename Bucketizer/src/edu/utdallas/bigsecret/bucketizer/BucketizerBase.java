@@ -76,4 +76,13 @@ public abstract class BucketizerBase
 	 * @throws Exception
 	 */
 	public abstract void removeBuckets() throws Exception;
+	
+	
+	/**
+	 * Releases resources of this bucketizer. Does nothing by default.
+	 * @throws Exception
+	 */
+	public void close() throws Exception
+	{
+	}
 }
@@ -16,8 +16,6 @@
 
 package edu.utdallas.bigsecret.bucketizer;
 
-import java.security.SecureRandom;
-
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.Bytes;
 
@@ -147,7 +145,7 @@ public class ByteBucketizer extends HBaseBucketizer
 		//calculate bucket id for this input
 		int bucketId = getBucketId(input);
 		
-		return getBucketValueFromHBase(Bytes.toBytes(bucketId));
+		return getBucketValueById(bucketId);
 	}
 
 	
@@ -172,7 +170,7 @@ public class ByteBucketizer extends HBaseBucketizer
 		else
 		{
 			//otherwise return next bucket id's value
-			return getBucketValueFromHBase(Bytes.toBytes(bucketId + 1));
+			return getBucketValueById(bucketId + 1);
 		}
 	}
 
@@ -198,11 +196,20 @@ public class ByteBucketizer extends HBaseBucketizer
 		else
 		{
 			//otherwise return prev bucket id's value
-			return getBucketValueFromHBase(Bytes.toBytes(bucketId - 1));
+			return getBucketValueById(bucketId - 1);
 		}
 	}
 
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getNumberOfBuckets()
+	{
+		return m_numberOfBuckets;
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -277,36 +284,16 @@ public class ByteBucketizer extends HBaseBucketizer
 		//put bucketizer info, input bit depth, to hbase
 		putBucketInfoToHBase(Bytes.toBytes("inBits"), Bytes.toBytes(m_inputBitDepth));
 				
-		//init bucket limits
-		int bucketId = 0;
-		
-		//start bucket values
-		int bucketValue = -1;
-		
 		//there is a mapping from input bits to output bits
 		//on the average, there can be 2^(outbits - inbits) difference between each bucket values 
 		int bitDiff = 1;
 		for(int a = 0; a<30 - m_inputBitDepth; a++)
 			bitDiff *= 2;
 		
-		//create secure random generator
-		SecureRandom ranGen = new SecureRandom();
-		
-		//print number of buckets
-		System.out.println("Total number of buckets: " + m_numberOfBuckets);
-		
-		//create mappings
-		for(; bucketId<m_numberOfBuckets; bucketId++)
-		{
-			if(bucketId % 10000 == 0)
-				System.out.println("Finished number of buckets: " + bucketId);
-			
-			bucketValue += 1 + ranGen.nextInt(bitDiff);
-			putBucketValueToHBase(Bytes.toBytes(bucketId), Bytes.toBytes(bucketValue));
-		}
+		//create mappings in parallel, values are written before the info is flushed
+		createBucketValues(m_numberOfBuckets, bitDiff);
 		
 		m_tableBucketInfo.flushCommits();
-		m_tableBucketMap.flushCommits();		
 	}
 	
 	
@@ -317,10 +304,10 @@ public class ByteBucketizer extends HBaseBucketizer
 	{
 		if(doesExist())
 		{
-			removeBucketInfoFromHBase();
+			//remove values first, so that a failed removal can be run again
+			removeBucketValues(m_numberOfBuckets);
 			
-			for(int a = 0; a<m_numberOfBuckets; a++)
-				removeBucketValueFromHBase(Bytes.toBytes(a));
+			removeBucketInfoFromHBase();
 		}
 	}
 }
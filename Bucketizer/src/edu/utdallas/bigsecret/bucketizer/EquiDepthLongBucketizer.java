@@ -0,0 +1,455 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import edu.utdallas.bigsecret.util.Utilities;
+
+/**
+ * This class is used to bucketize long values with equi-depth buckets.<br>
+ * LongBucketizer splits [min, max] into intervals of equal width, so with skewed data<br>
+ * a few buckets hold most of the rows. This bucketizer takes a sample of the data, and<br>
+ * places bucket boundaries at its quantiles, so that every bucket holds about the same<br>
+ * number of rows. Boundaries are stored in BucketInfoTable, and searched by binary search.<br>
+ * Bucket i holds the values v with boundary[i-1] <= v < boundary[i].
+ */
+public class EquiDepthLongBucketizer extends HBaseBucketizer
+{
+	/**
+	 * Number of buckets in this bucketizer
+	 */
+	protected int m_numberOfBuckets;
+	
+	/**
+	 * Sorted lower boundaries of buckets 1 to numberOfBuckets - 1.
+	 */
+	protected long[] m_boundaries;
+	
+	
+	/**
+	 * Constructor that can be used for creating buckets. This constructor should not be used in Proxy.<br>
+	 * Equal sample values are never split, so fewer buckets than requested may be created.
+	 * @param conf Configuration instance for HBase connection.
+	 * @param id Bucketizer ID.
+	 * @param sample Sample of the values that will be bucketized.
+	 * @param numberOfBuckets Number of buckets
+	 * @throws Exception Throws exception if sample is null or empty.<br>
+	 * Throws exception number of buckets is invalid.<br>
+	 * Throws exception if another bucketizer exists with the given id, but with different info.
+	 */
+	public EquiDepthLongBucketizer(Configuration conf, String id, long[] sample, int numberOfBuckets) throws Exception
+	{
+		//call super class constructor
+		super(id, conf);
+		
+		//set parameters
+		m_boundaries = computeBoundaries(sample, numberOfBuckets);
+		m_numberOfBuckets = m_boundaries.length + 1;
+		
+		if(doesExist())
+		{
+			//check if boundaries are true
+			byte[] hdata = getBucketInfoFromHBase(Bytes.toBytes("bounds"));
+			if(hdata == null)
+			{
+				throw new Exception("bounds data does not exist for bucketizer id=" + id);
+			}
+			else
+			{
+				if(!Arrays.equals(toLongs(hdata), m_boundaries))
+				{
+					throw new Exception("Bucketizer info does not match. Different bounds values");
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Constructor for use in Proxy.
+	 * @param conf Configuration instance for HBase connection.
+	 * @param id Bucketizer ID.
+	 * @throws Exception Throws exception if an equi-depth bucketizer does not exist with the given ID.
+	 */
+	public EquiDepthLongBucketizer(String id, Configuration conf) throws Exception
+	{
+		this(id, 1024 * 64, conf);
+	}
+	
+	
+	/**
+	 * Constructor for use in Proxy.
+	 * @param conf Configuration instance for HBase connection.
+	 * @param id Bucketizer ID.
+	 * @param cacheSize Size of the cache.
+	 * @throws Exception Throws exception if an equi-depth bucketizer does not exist with the given ID.
+	 */
+	public EquiDepthLongBucketizer(String id, int cacheSize, Configuration conf) throws Exception
+	{
+		//call super constructor
+		super(id, cacheSize, conf);
+		
+		if(doesExist())
+		{
+			//get boundaries
+			byte[] hdata = getBucketInfoFromHBase(Bytes.toBytes("bounds"));
+			if(hdata == null)
+			{
+				throw new Exception("bounds data does not exist for bucketizer id=" + id);
+			}
+			else
+			{
+				m_boundaries = toLongs(hdata);
+				m_numberOfBuckets = m_boundaries.length + 1;
+			}
+		}
+		else
+		{
+			throw new Exception("Bucketizer with id=" + id + " does not exist");
+		}
+	}
+	
+	
+	/**
+	 * Calculates equi-depth bucket boundaries from a sample.<br>
+	 * Boundary i is the sample value at quantile (i + 1) / numberOfBuckets. Repeated<br>
+	 * boundaries are removed, since a value can not be split between two buckets.
+	 * @param sample Sample of the values. Is not modified.
+	 * @param numberOfBuckets Requested number of buckets.
+	 * @return Sorted, distinct lower boundaries of buckets 1 and above.
+	 * @throws Exception Throws exception if sample is null or empty, or number of buckets is not positive.
+	 */
+	public static long[] computeBoundaries(long[] sample, int numberOfBuckets) throws Exception
+	{
+		//check inputs
+		if(sample == null || sample.length == 0)
+			throw new Exception("Sample is null or has no data");
+		else if(numberOfBuckets <= 0)
+			throw new Exception("Number of buckets can not be non positive");
+		
+		long[] sorted = sample.clone();
+		Arrays.sort(sorted);
+		
+		long[] boundaries = new long[numberOfBuckets - 1];
+		int count = 0;
+		for(int a = 1; a<numberOfBuckets; a++)
+		{
+			long boundary = sorted[(int)((long)a * sorted.length / numberOfBuckets)];
+			
+			//smallest value is in bucket 0, and a boundary is used only once
+			if(boundary == sorted[0] || (count > 0 && boundary == boundaries[count - 1]))
+				continue;
+			
+			boundaries[count++] = boundary;
+		}
+		
+		return Arrays.copyOf(boundaries, count);
+	}
+	
+	
+	/**
+	 * Finds the bucket of a value with binary search.
+	 * @param boundaries Sorted lower boundaries of buckets 1 and above.
+	 * @param value Input value.
+	 * @return Number of boundaries that are smaller than or equal to the value.
+	 */
+	public static int getBucketId(long[] boundaries, long value)
+	{
+		int low = 0;
+		int high = boundaries.length;
+		
+		while(low < high)
+		{
+			int mid = (low + high) >>> 1;
+			
+			if(boundaries[mid] <= value)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		
+		return low;
+	}
+	
+	
+	/**
+	 * Calculates expected false positive ratio of point queries on the sample.<br>
+	 * A query for a row fetches all rows of its bucket, so the expected number of fetched<br>
+	 * rows is the sum of squared bucket sizes, and the expected number of matching rows<br>
+	 * is the sum of squared value counts. Ratio is the number of discarded rows per matching row.
+	 * @param sortedSample Sorted sample.
+	 * @param bucketIds Bucket id of every sample value. Should be non decreasing.
+	 * @return Expected number of false positives per matching row.
+	 */
+	protected static double getFalsePositiveRatio(long[] sortedSample, int[] bucketIds)
+	{
+		double fetched = 0;
+		double matched = 0;
+		
+		long bucketSize = 0;
+		long valueCount = 0;
+		for(int a = 0; a<sortedSample.length; a++)
+		{
+			//a new bucket or a new value closes the previous run
+			if(a > 0 && bucketIds[a] != bucketIds[a - 1])
+			{
+				fetched += (double)bucketSize * bucketSize;
+				bucketSize = 0;
+			}
+			if(a > 0 && sortedSample[a] != sortedSample[a - 1])
+			{
+				matched += (double)valueCount * valueCount;
+				valueCount = 0;
+			}
+			
+			bucketSize++;
+			valueCount++;
+		}
+		fetched += (double)bucketSize * bucketSize;
+		matched += (double)valueCount * valueCount;
+		
+		return (fetched - matched) / matched;
+	}
+	
+	
+	/**
+	 * Calculates expected false positive ratio of the sample, if it is bucketized by<br>
+	 * a LongBucketizer with the given parameters.
+	 * @param sample Sample of the values.
+	 * @param minValue Minimum value of the LongBucketizer.
+	 * @param maxValue Maximum value of the LongBucketizer.
+	 * @param numberOfBuckets Number of buckets of the LongBucketizer.
+	 * @return Expected number of false positives per matching row.
+	 * @throws Exception Throws exception if sample is null or empty, or other parameters are invalid.
+	 */
+	public static double getEqualWidthFalsePositiveRatio(long[] sample, long minValue, long maxValue, int numberOfBuckets) throws Exception
+	{
+		//check inputs
+		if(sample == null || sample.length == 0)
+			throw new Exception("Sample is null or has no data");
+		else if(minValue >= maxValue)
+			throw new Exception("Min value should be smaller than max value");
+		else if(numberOfBuckets <= 0)
+			throw new Exception("Number of buckets can not be non positive");
+		
+		long[] sorted = sample.clone();
+		Arrays.sort(sorted);
+		
+		//same partitioning as LongBucketizer
+		long divisor = Math.max(1, (maxValue - minValue) / numberOfBuckets);
+		
+		int[] bucketIds = new int[sorted.length];
+		for(int a = 0; a<sorted.length; a++)
+		{
+			long bucketId = (sorted[a] - minValue) / divisor;
+			bucketIds[a] = (int)Math.max(0, Math.min(numberOfBuckets - 1, bucketId));
+		}
+		
+		return getFalsePositiveRatio(sorted, bucketIds);
+	}
+	
+	
+	/**
+	 * Calculates expected false positive ratio of the sample, if it is bucketized with<br>
+	 * the given boundaries.
+	 * @param sample Sample of the values.
+	 * @param boundaries Sorted lower boundaries of buckets 1 and above.
+	 * @return Expected number of false positives per matching row.
+	 * @throws Exception Throws exception if sample is null or empty, or boundaries is null.
+	 */
+	public static double getEquiDepthFalsePositiveRatio(long[] sample, long[] boundaries) throws Exception
+	{
+		//check inputs
+		if(sample == null || sample.length == 0)
+			throw new Exception("Sample is null or has no data");
+		else if(boundaries == null)
+			throw new Exception("Boundaries is null");
+		
+		long[] sorted = sample.clone();
+		Arrays.sort(sorted);
+		
+		int[] bucketIds = new int[sorted.length];
+		for(int a = 0; a<sorted.length; a++)
+			bucketIds[a] = getBucketId(boundaries, sorted[a]);
+		
+		return getFalsePositiveRatio(sorted, bucketIds);
+	}
+	
+	
+	/**
+	 * Converts boundaries to a byte array of 8 byte longs.
+	 * @param values Long values.
+	 * @return Byte array representation.
+	 */
+	protected static byte[] toBytes(long[] values)
+	{
+		byte[] result = new byte[values.length * 8];
+		
+		for(int a = 0; a<values.length; a++)
+			Bytes.putLong(result, a * 8, values[a]);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Converts a byte array of 8 byte longs to boundaries.
+	 * @param data Byte array representation.
+	 * @return Long values.
+	 * @throws Exception Throws exception if length of data is not a multiple of 8.
+	 */
+	protected static long[] toLongs(byte[] data) throws Exception
+	{
+		if(data.length % 8 != 0)
+			throw new Exception("Invalid bounds data");
+		
+		long[] result = new long[data.length / 8];
+		
+		for(int a = 0; a<result.length; a++)
+			result[a] = Bytes.toLong(data, a * 8);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Get boundaries of this bucketizer.
+	 * @return Sorted lower boundaries of buckets 1 and above.
+	 */
+	public long[] getBoundaries()
+	{
+		return m_boundaries.clone();
+	}
+	
+	
+	@Override
+	public byte[] getBucketValue(byte[] input) throws Exception 
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Bucket ID is null or has no data");
+		
+		//values outside of the sample fall into the first or the last bucket
+		int bucketId = getBucketId(m_boundaries, Utilities.getLong(input));
+		
+		return getBucketValueById(bucketId);
+	}
+	
+	
+	@Override
+	public byte[] getNextBucketValue(byte[] input) throws Exception 
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Bucket ID is null or has no data");
+		
+		//calculate bucket id for this input
+		int bucketId = getBucketId(m_boundaries, Utilities.getLong(input));
+		
+		//check if that is the last bucket id
+		if(bucketId >= m_numberOfBuckets - 1)
+		{
+			//if so, return null
+			return null;
+		}
+		else
+		{
+			//otherwise return next bucket id's value
+			return getBucketValueById(bucketId + 1);
+		}
+	}
+	
+	
+	@Override
+	public byte[] getPrevBucketValue(byte[] input) throws Exception 
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Bucket ID is null or has no data");
+		
+		//calculate bucket id for this input
+		int bucketId = getBucketId(m_boundaries, Utilities.getLong(input));
+		
+		//check if that is the first bucket id
+		if(bucketId <= 0)
+		{
+			//if so, return null
+			return null;
+		}
+		else
+		{
+			//otherwise return prev bucket id's value
+			return getBucketValueById(bucketId - 1);
+		}
+	}
+	
+	
+	@Override
+	public int getNumberOfBuckets()
+	{
+		return m_numberOfBuckets;
+	}
+	
+	
+	@Override
+	public int getBucketValueSize() 
+	{
+		//size of int
+		return 4;
+	}
+	
+	
+	@Override
+	public void createBuckets() throws Exception 
+	{
+		//check if there is already information about this bucketizer
+		if(doesExist())
+		{
+			throw new Exception("Bucketizer already exists");
+		}
+		
+		//put bucketizer info to hbase
+		putBucketInfoToHBase(Bytes.toBytes("bounds"), toBytes(m_boundaries));
+		putBucketInfoToHBase(Bytes.toBytes("buckets"), Bytes.toBytes(m_numberOfBuckets));
+		
+		int bitDiff = 8;
+		
+		//create mappings in parallel, values are written before the info is flushed
+		createBucketValues(m_numberOfBuckets, bitDiff);
+		
+		m_tableBucketInfo.flushCommits();
+	}
+	
+	
+	/**
+	 * Remove this bucketizer's data from the bucket table.
+	 */
+	public void removeBuckets() throws Exception
+	{
+		if(doesExist())
+		{
+			//remove values first, so that a failed removal can be run again
+			removeBucketValues(m_numberOfBuckets);
+			
+			removeBucketInfoFromHBase();
+		}
+	}
+}
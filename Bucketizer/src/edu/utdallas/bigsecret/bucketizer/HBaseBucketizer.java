@@ -16,6 +16,17 @@
 
 package edu.utdallas.bigsecret.bucketizer;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
@@ -23,11 +34,17 @@ import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.HTablePool;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.client.Result;
 
-import edu.utdallas.bigsecret.util.Cache;
+import edu.utdallas.bigsecret.util.ByteArray;
+import edu.utdallas.bigsecret.util.IntCache;
+import edu.utdallas.bigsecret.util.SingleFlight;
 
 
 /**
@@ -77,9 +94,57 @@ public abstract class HBaseBucketizer extends BucketizerBase
 	protected HTable m_tableBucketInfo;
 	
 	/**
-	 * Cache to hold already queried bucketId and bucketValue pairings.
+	 * Pool of BucketValueTable instances for bucket value lookups.<br>
+	 * HTable is not thread-safe, so every lookup borrows its own instance.
+	 */
+	protected HTablePool m_tablePool;
+	
+	/**
+	 * Maximum number of idle tables that are kept in the pool.
+	 */
+	protected static int TABLE_POOL_SIZE = 32;
+	
+	/**
+	 * HBase Gets in progress. Concurrent misses on the same bucket id share one Get.
+	 */
+	protected SingleFlight<ByteArray, byte[]> m_lookups;
+	
+	/**
+	 * Cache to hold already queried bucketId and bucketValue pairings.<br>
+	 * Both are ints, so they are held in a primitive cache.
 	 */
-	protected Cache m_cache;
+	protected IntCache m_cache;
+	
+	/**
+	 * Number of threads that create, remove or cache bucket values.
+	 */
+	protected int m_creationThreads = 8;
+	
+	/**
+	 * Write buffer size of each thread that creates bucket values, in bytes.
+	 */
+	protected long m_writeBufferSize = 8 * 1024 * 1024;
+	
+	/**
+	 * Number of Puts or Deletes that are sent to HTable at once, while creating or removing bucket values.
+	 */
+	protected static int PUT_BATCH_SIZE = 1000;
+	
+	/**
+	 * Local copy of all bucket values. If it is loaded, bucket values are read from it<br>
+	 * instead of the cache and HBase.
+	 */
+	protected volatile BucketSnapshot m_snapshot;
+	
+	/**
+	 * Progress of the running, or the last parallel operation. null before the first one.
+	 */
+	protected volatile BucketProgress m_progress;
+	
+	/**
+	 * Listener that is notified of the progress of parallel operations, may be null.
+	 */
+	protected volatile BucketProgress.Listener m_progressListener;
 	
 	
 	/**
@@ -120,7 +185,7 @@ public abstract class HBaseBucketizer extends BucketizerBase
 			throw new Exception("Cache size cannot be negative.");
 		
 		//set cache
-		m_cache = new Cache(cacheSize);
+		m_cache = new IntCache(cacheSize);
 		
 		//create hbaseadmin instance
 		HBaseAdmin admin = new HBaseAdmin(m_conf);
@@ -161,6 +226,10 @@ public abstract class HBaseBucketizer extends BucketizerBase
 		m_tableBucketInfo = new HTable(m_conf, BUCKET_INFO_TABLE_NAME);
 		m_tableBucketInfo.setAutoFlush(false);
 		
+		//create table pool and in progress gets for bucket value lookups
+		m_tablePool = new HTablePool(m_conf, TABLE_POOL_SIZE);
+		m_lookups = new SingleFlight<ByteArray, byte[]>();
+		
 		//close admin
 		admin.close();
 	}
@@ -172,9 +241,13 @@ public abstract class HBaseBucketizer extends BucketizerBase
 	 */
 	public void close() throws Exception
 	{
+		//mapped snapshot is released by the garbage collector
+		m_snapshot = null;
+		
 		//close tables
 		m_tableBucketInfo.close();
 		m_tableBucketMap.close();
+		m_tablePool.close();
 	}
 	
 	
@@ -267,6 +340,321 @@ public abstract class HBaseBucketizer extends BucketizerBase
 	}
 	
 	
+	/**
+	 * Set number of threads that create, remove or cache bucket values.
+	 * @param threads Number of threads.
+	 * @throws Exception Throws exception if threads is not positive.
+	 */
+	public void setCreationThreads(int threads) throws Exception
+	{
+		if(threads <= 0)
+			throw new Exception("Number of threads should be positive");
+		
+		m_creationThreads = threads;
+	}
+	
+	
+	/**
+	 * Set write buffer size of each thread that creates bucket values in createBuckets.
+	 * @param bytes Write buffer size in bytes.
+	 * @throws Exception Throws exception if bytes is not positive.
+	 */
+	public void setWriteBufferSize(long bytes) throws Exception
+	{
+		if(bytes <= 0)
+			throw new Exception("Write buffer size should be positive");
+		
+		m_writeBufferSize = bytes;
+	}
+	
+	
+	/**
+	 * Set listener that is notified of the progress of creating, removing or caching<br>
+	 * bucket values.
+	 * @param listener Listener, null to remove it.
+	 */
+	public void setProgressListener(BucketProgress.Listener listener)
+	{
+		m_progressListener = listener;
+	}
+	
+	
+	/**
+	 * Returns progress of the running, or the last operation that created, removed or<br>
+	 * cached bucket values.
+	 * @return Progress, null if there was no such operation.
+	 */
+	public BucketProgress getProgress()
+	{
+		return m_progress;
+	}
+	
+	
+	/**
+	 * Notifies the progress listener, if there is one.
+	 * @param progress Progress of the operation.
+	 */
+	protected void notifyProgress(BucketProgress progress)
+	{
+		BucketProgress.Listener listener = m_progressListener;
+		if(listener != null)
+			listener.update(progress);
+	}
+	
+	
+	/**
+	 * Task that reads or writes a contiguous range of bucket IDs through a table.
+	 */
+	protected interface BucketRangeTask
+	{
+		/**
+		 * Processes bucket IDs from start to start + length - 1.
+		 * @param table HTable for BucketValueTable that is used only by the calling thread.
+		 * @param range Range number.
+		 * @param start First bucket ID of the range.
+		 * @param length Number of bucket IDs in the range.
+		 * @throws Exception
+		 */
+		void run(HTable table, int range, int start, int length) throws Exception;
+	}
+	
+	
+	/**
+	 * Returns the number of bucket IDs in each range of a parallel operation, enough ranges<br>
+	 * to balance the threads, but small enough to keep a range in memory.
+	 * @param numberOfBuckets Number of bucket IDs.
+	 * @return Range size.
+	 */
+	protected int getRangeSize(int numberOfBuckets)
+	{
+		return (int)Math.max(1024, Math.min(65536, (long)numberOfBuckets / (m_creationThreads * 4L)));
+	}
+	
+	
+	/**
+	 * Runs a task for every range of bucket IDs with m_creationThreads threads. Every thread<br>
+	 * has its own HTable with m_writeBufferSize write buffer, which is flushed after every<br>
+	 * range. Rows of a range are counted in m_progress after the flush, and the progress<br>
+	 * listener is notified every few seconds.
+	 * @param numberOfBuckets Number of bucket IDs.
+	 * @param rangeSize Number of bucket IDs in a range.
+	 * @param task Task to run for every range.
+	 * @param action Name of the operation in progress.
+	 * @throws Exception Throws exception thrown by a task.
+	 */
+	protected void runOnRanges(int numberOfBuckets, final int rangeSize, final BucketRangeTask task, String action) throws Exception
+	{
+		final int rangeCount = (int)(((long)numberOfBuckets + rangeSize - 1) / rangeSize);
+		final int lastId = numberOfBuckets;
+		
+		final BucketProgress progress = new BucketProgress(action, numberOfBuckets);
+		m_progress = progress;
+		
+		final ThreadLocal<HTable> tables = new ThreadLocal<HTable>();
+		final List<HTable> allTables = new ArrayList<HTable>();
+		ExecutorService executor = Executors.newFixedThreadPool(m_creationThreads);
+		
+		try
+		{
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(rangeCount);
+			for(int a = 0; a<rangeCount; a++)
+			{
+				final int range = a;
+				futures.add(executor.submit(new Callable<Object>()
+				{
+					public Object call() throws Exception
+					{
+						HTable table = tables.get();
+						if(table == null)
+						{
+							table = new HTable(m_conf, BUCKET_VALUE_TABLE_NAME);
+							table.setAutoFlush(false);
+							table.setWriteBufferSize(m_writeBufferSize);
+							tables.set(table);
+							
+							synchronized(allTables)
+							{
+								allTables.add(table);
+							}
+						}
+						
+						int start = range * rangeSize;
+						int length = Math.min(rangeSize, lastId - start);
+						task.run(table, range, start, length);
+						
+						//rows are committed only after the buffered operations are sent
+						table.flushCommits();
+						progress.addCommitted(length);
+						
+						return null;
+					}
+				}));
+			}
+			
+			//report progress until every range is finished
+			for(int a = 0; a<rangeCount; a++)
+			{
+				while(true)
+				{
+					try
+					{
+						futures.get(a).get(5, TimeUnit.SECONDS);
+						break;
+					}
+					catch (TimeoutException e)
+					{
+						notifyProgress(progress);
+					}
+				}
+			}
+			
+			progress.finish();
+			notifyProgress(progress);
+		}
+		catch (ExecutionException e)
+		{
+			//unwrap the exception of the task
+			if(e.getCause() instanceof Exception)
+				throw (Exception)e.getCause();
+			else
+				throw e;
+		}
+		finally
+		{
+			executor.shutdownNow();
+			
+			//failed operations are finished too
+			if(!progress.isFinished())
+				progress.finish();
+			
+			synchronized(allTables)
+			{
+				for(HTable table : allTables)
+				{
+					try
+					{
+						table.close();
+					}
+					catch (Exception e)
+					{
+						//already failed, or flushed after the last range
+					}
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Creates and stores increasing values for all bucket IDs in parallel.<br>
+	 * Bucket IDs are split into partitions. In the first pass, threads sum the random<br>
+	 * increments of each partition; in the second pass, they generate the values of each<br>
+	 * partition again, starting after the last value of the previous partition, and write<br>
+	 * them with batched Puts.
+	 * @param numberOfBuckets Number of bucket IDs.
+	 * @param maxIncrement Largest difference between two consecutive bucket values.
+	 * @throws Exception Throws exception thrown by a creation thread.
+	 */
+	protected void createBucketValues(int numberOfBuckets, int maxIncrement) throws Exception
+	{
+		int partitionSize = getRangeSize(numberOfBuckets);
+		final BucketValueGenerator generator = new BucketValueGenerator(numberOfBuckets, maxIncrement, partitionSize);
+		int partitionCount = generator.getPartitionCount();
+		
+		//first pass, sum increments of every partition
+		ExecutorService executor = Executors.newFixedThreadPool(m_creationThreads);
+		try
+		{
+			List<Future<Long>> futures = new ArrayList<Future<Long>>(partitionCount);
+			for(int a = 0; a<partitionCount; a++)
+			{
+				final int partition = a;
+				futures.add(executor.submit(new Callable<Long>()
+				{
+					public Long call() throws Exception
+					{
+						return generator.sumPartition(partition);
+					}
+				}));
+			}
+			
+			long[] sums = new long[partitionCount];
+			for(int a = 0; a<partitionCount; a++)
+				sums[a] = futures.get(a).get();
+			generator.setPartitionSums(sums);
+		}
+		catch (ExecutionException e)
+		{
+			if(e.getCause() instanceof Exception)
+				throw (Exception)e.getCause();
+			else
+				throw e;
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		//second pass, write values of every partition
+		runOnRanges(numberOfBuckets, partitionSize, new BucketRangeTask()
+		{
+			public void run(HTable table, int range, int start, int length) throws Exception
+			{
+				int[] values = generator.getPartitionValues(range);
+				
+				List<Put> batch = new ArrayList<Put>(PUT_BATCH_SIZE);
+				for(int a = 0; a<length; a++)
+				{
+					Put putItem = new Put(Bytes.toBytes(start + a));
+					putItem.add(BUCKET_VALUE_FAMILY_NAME, m_id, Bytes.toBytes(values[a]));
+					batch.add(putItem);
+					
+					if(batch.size() == PUT_BATCH_SIZE || a == length - 1)
+					{
+						table.put(batch);
+						batch = new ArrayList<Put>(PUT_BATCH_SIZE);
+					}
+				}
+			}
+		}, "Created");
+	}
+	
+	
+	/**
+	 * Deletes values of all bucket IDs of this bucketizer in parallel, with batched Deletes<br>
+	 * over contiguous ranges of bucket IDs.
+	 * @param numberOfBuckets Number of bucket IDs.
+	 * @throws Exception Throws exception thrown by a deleting thread.
+	 */
+	protected void removeBucketValues(int numberOfBuckets) throws Exception
+	{
+		runOnRanges(numberOfBuckets, getRangeSize(numberOfBuckets), new BucketRangeTask()
+		{
+			public void run(HTable table, int range, int start, int length) throws Exception
+			{
+				List<Delete> batch = new ArrayList<Delete>(PUT_BATCH_SIZE);
+				for(int a = 0; a<length; a++)
+				{
+					Delete deleteItem = new Delete(Bytes.toBytes(start + a));
+					deleteItem.deleteColumns(BUCKET_VALUE_FAMILY_NAME, m_id);
+					batch.add(deleteItem);
+					
+					if(batch.size() == PUT_BATCH_SIZE || a == length - 1)
+					{
+						//deletes are not buffered, HTable sends the batch at once
+						table.delete(batch);
+						batch = new ArrayList<Delete>(PUT_BATCH_SIZE);
+					}
+				}
+			}
+		}, "Removed");
+		
+		//cached values are not valid anymore
+		m_cache.clear();
+		m_snapshot = null;
+	}
+	
+	
 	/**
 	 * Remove all information that belongs to this bucketizer.
 	 * @throws Exception
@@ -296,39 +684,177 @@ public abstract class HBaseBucketizer extends BucketizerBase
 	
 	
 	/**
-	 * Get bucket value for the given bucket ID
+	 * Get bucket value for the given bucket ID.<br>
+	 * Can be called by many threads. If several threads miss the cache for the same<br>
+	 * bucket ID at the same time, only one of them sends a Get to HBase.
 	 * @param bucketId Bucket ID
 	 * @return null if this bucket does not exist, return value otherwise
 	 * @throws Exception Throws exception if bucketId is null or empty.
 	 */
-	protected byte[] getBucketValueFromHBase(byte[] bucketId) throws Exception
+	protected byte[] getBucketValueFromHBase(final byte[] bucketId) throws Exception
 	{
 		//check inputs
 		if(bucketId == null || bucketId.length == 0)
 			throw new Exception("Bucket ID is null or has no data");
 		
-		byte[] value = m_cache.get(bucketId);
+		//bucket ids and values are 4 byte ints, other sizes are not cached
+		final boolean cacheable = bucketId.length == 4;
+		if(cacheable)
+		{
+			int cached = m_cache.get(Bytes.toInt(bucketId));
+			if(cached != IntCache.MISSING)
+				return Bytes.toBytes(cached);
+		}
+		
+		//join the get of this bucket id if another thread has already sent it
+		byte[] value = m_lookups.execute(new ByteArray(bucketId), new Callable<byte[]>()
+		{
+			public byte[] call() throws Exception
+			{
+				//create a get item to get data from bucket value table
+				Get getItem = new Get(bucketId);
+				getItem.addColumn(BUCKET_VALUE_FAMILY_NAME, m_id);
+				
+				//borrow a table from the pool, closing it returns it to the pool
+				HTableInterface table = m_tablePool.getTable(BUCKET_VALUE_TABLE_NAME);
+				Result result;
+				try
+				{
+					result = table.get(getItem);
+				}
+				finally
+				{
+					table.close();
+				}
+				
+				byte[] value = result.value();
+				
+				//fill the cache before the get is finished, so that later calls hit it
+				if(cacheable && value != null && value.length == 4)
+					m_cache.put(Bytes.toInt(bucketId), Bytes.toInt(value));
+				
+				return value;
+			}
+		});
 		
+		//every waiting thread gets its own copy
 		if(value == null)
-		{			
-			//create a get item to get data from table info table
-			Get getItem = new Get(bucketId);
-			getItem.addColumn(BUCKET_VALUE_FAMILY_NAME, m_id);
-			
-			Result result = m_tableBucketMap.get(getItem);
+			return null;
+		else
+			return value.clone();
+	}
+	
+	
+	/**
+	 * Get bucket value for the given bucket ID, from the snapshot if it is loaded.
+	 * @param bucketId Bucket ID
+	 * @return null if this bucket does not exist, return value otherwise
+	 * @throws Exception
+	 */
+	protected byte[] getBucketValueById(int bucketId) throws Exception
+	{
+		if(m_snapshot != null)
+		{
+			int value = m_snapshot.getValue(bucketId);
 			
-			if(result != null)
-				m_cache.put(bucketId, result.value());
+			if(value == BucketSnapshot.MISSING_VALUE)
+				return null;
+			else
+				return Bytes.toBytes(value);
+		}
+		
+		//cache lookup by int, without wrapping the id
+		int cached = m_cache.get(bucketId);
+		if(cached != IntCache.MISSING)
+			return Bytes.toBytes(cached);
+		
+		return getBucketValueFromHBase(Bytes.toBytes(bucketId));
+	}
+	
+	
+	/**
+	 * Get number of bucket IDs of this bucketizer.
+	 * @return Number of buckets.
+	 */
+	public abstract int getNumberOfBuckets();
+	
+	
+	/**
+	 * Writes all bucketId-bucketValue pairs of this bucketizer to a local snapshot file.<br>
+	 * Values are read with a single scan of BucketValueTable.
+	 * @param file Snapshot file to create.
+	 * @throws Exception Throws exception if file is null, or this bucketizer does not exist.<br>
+	 * Throws exception if a bucket value is not 4 bytes.<br>
+	 * May throw exception based on HBase and file operations.
+	 */
+	public void exportSnapshot(File file) throws Exception
+	{
+		//check inputs
+		if(file == null)
+			throw new Exception("Snapshot file is null");
+		else if(!doesExist())
+			throw new Exception("Bucketizer does not exist");
+		
+		int numberOfBuckets = getNumberOfBuckets();
+		
+		//bucket ids are positive ints, so their byte order is their numeric order
+		Scan scan = new Scan(Bytes.toBytes(0), Bytes.toBytes(numberOfBuckets));
+		scan.addColumn(BUCKET_VALUE_FAMILY_NAME, m_id);
+		scan.setCaching(10000);
+		scan.setCacheBlocks(false);
+		
+		BucketSnapshot.Writer writer = new BucketSnapshot.Writer(file, m_id, numberOfBuckets);
+		ResultScanner scanner = m_tableBucketMap.getScanner(scan);
+		
+		try
+		{
+			for(Result result : scanner)
+			{
+				byte[] value = result.value();
+				if(value == null || value.length != 4)
+					throw new Exception("Bucket value should be 4 bytes");
+				
+				writer.write(Bytes.toInt(result.getRow()), Bytes.toInt(value));
+			}
 			
-			return result.value();
+			writer.close();
 		}
-		else
+		catch (Exception e)
+		{
+			writer.discard();
+			throw e;
+		}
+		finally
 		{
-			return value;
+			scanner.close();
 		}
 	}
 	
 	
+	/**
+	 * Maps a snapshot file that is created by exportSnapshot. After this call, bucket<br>
+	 * values are read from the file, and HBase is not queried for them.
+	 * @param file Snapshot file.
+	 * @throws Exception Throws exception if file is null, or it is not a valid snapshot.<br>
+	 * Throws exception if the snapshot belongs to another bucketizer, or has a different number of buckets.
+	 */
+	public void loadSnapshot(File file) throws Exception
+	{
+		//check inputs
+		if(file == null)
+			throw new Exception("Snapshot file is null");
+		
+		BucketSnapshot snapshot = new BucketSnapshot(file);
+		
+		if(!snapshot.belongsTo(m_id))
+			throw new Exception("Snapshot belongs to bucketizer id=" + Bytes.toString(snapshot.getId()));
+		else if(snapshot.getBucketCount() != getNumberOfBuckets())
+			throw new Exception("Snapshot info does not match. Different number of buckets");
+		
+		m_snapshot = snapshot;
+	}
+	
+	
 	/**
 	 * Remove the given bucketId-bucketValue pair from this bucketizer.
 	 * @param bucketId BucketId to be deleted.
@@ -348,15 +874,49 @@ public abstract class HBaseBucketizer extends BucketizerBase
 	
 	
 	/**
-	 * To improve initial performance, cache is filled with a set of values.
+	 * To improve initial performance, cache is filled with the values of the first bucket IDs.<br>
+	 * Values are streamed from BucketValueTable with parallel range scans. Warm up time and<br>
+	 * rows/s can be read from getProgress.
 	 * @throws Exception
 	 */
 	public void fillCache() throws Exception
 	{
-		int cacheSize = m_cache.getSize();
-		for(int a = 0; a<cacheSize; a++)
-		{			
-			getBucketValueFromHBase(Bytes.toBytes(a));
-		}
+		//nothing to cache if values are read from the snapshot
+		if(m_snapshot != null)
+			return;
+		
+		int cacheSize = Math.min(m_cache.getSize(), getNumberOfBuckets());
+		if(cacheSize <= 0)
+			return;
+		
+		//a few large scans, one per thread
+		int rangeSize = Math.max(1024, (cacheSize + m_creationThreads - 1) / m_creationThreads);
+		
+		runOnRanges(cacheSize, rangeSize, new BucketRangeTask()
+		{
+			public void run(HTable table, int range, int start, int length) throws Exception
+			{
+				Scan scan = new Scan(Bytes.toBytes(start), Bytes.toBytes(start + length));
+				scan.addColumn(BUCKET_VALUE_FAMILY_NAME, m_id);
+				scan.setCaching(Math.min(length, 10000));
+				scan.setCacheBlocks(false);
+				
+				//cache is thread-safe, rows are loaded as they arrive
+				ResultScanner scanner = table.getScanner(scan);
+				try
+				{
+					for(Result result : scanner)
+					{
+						byte[] value = result.value();
+						if(value != null && value.length == 4)
+							m_cache.put(Bytes.toInt(result.getRow()), Bytes.toInt(value));
+					}
+				}
+				finally
+				{
+					scanner.close();
+				}
+			}
+		}, "Cached");
 	}
 }
\ No newline at end of file
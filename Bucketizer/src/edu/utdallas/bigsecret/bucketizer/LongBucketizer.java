@@ -16,8 +16,6 @@
 
 package edu.utdallas.bigsecret.bucketizer;
 
-import java.security.SecureRandom;
-
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.Bytes;
 
@@ -227,7 +225,7 @@ public class LongBucketizer extends HBaseBucketizer
 		else if(bucketId < 0)
 			bucketId = 0;
 		
-		byte[] result = getBucketValueFromHBase(Bytes.toBytes(bucketId));
+		byte[] result = getBucketValueById(bucketId);
 		
 		return result;
 	}
@@ -252,7 +250,7 @@ public class LongBucketizer extends HBaseBucketizer
 		else
 		{
 			//otherwise return next bucket id's value
-			return getBucketValueFromHBase(Bytes.toBytes(bucketId + 1));
+			return getBucketValueById(bucketId + 1);
 		}
 	}
 	
@@ -276,7 +274,7 @@ public class LongBucketizer extends HBaseBucketizer
 		else
 		{
 			//otherwise return prev bucket id's value
-			return getBucketValueFromHBase(Bytes.toBytes(bucketId - 1));
+			return getBucketValueById(bucketId - 1);
 		}
 	}
 	
@@ -302,6 +300,13 @@ public class LongBucketizer extends HBaseBucketizer
 	}
 	
 
+	@Override
+	public int getNumberOfBuckets()
+	{
+		return m_numberOfBuckets;
+	}
+	
+	
 	@Override
 	public int getBucketValueSize() 
 	{
@@ -325,24 +330,12 @@ public class LongBucketizer extends HBaseBucketizer
 		putBucketInfoToHBase(Bytes.toBytes("divisor"), Bytes.toBytes(m_divisor));
 		putBucketInfoToHBase(Bytes.toBytes("buckets"), Bytes.toBytes(m_numberOfBuckets));
 		
-		int bucketId = 0;
-		int bucketValue = -1;
-		
 		int bitDiff = 8;
 		
-		SecureRandom ranGen = new SecureRandom();
-		
-		for(; bucketId<m_numberOfBuckets; bucketId++)
-		{
-			if(bucketId % 10000 == 0)
-				System.out.println("Finished number of buckets: " + bucketId);
-			
-			bucketValue += 1 + ranGen.nextInt(bitDiff);
-			putBucketValueToHBase(Bytes.toBytes(bucketId), Bytes.toBytes(bucketValue));
-		}
+		//create mappings in parallel, values are written before the info is flushed
+		createBucketValues(m_numberOfBuckets, bitDiff);
 		
 		m_tableBucketInfo.flushCommits();
-		m_tableBucketMap.flushCommits();
 	}
 	
 	
@@ -353,10 +346,10 @@ public class LongBucketizer extends HBaseBucketizer
 	{
 		if(doesExist())
 		{
-			removeBucketInfoFromHBase();
+			//remove values first, so that a failed removal can be run again
+			removeBucketValues(m_numberOfBuckets);
 			
-			for(int a = 0; a<m_numberOfBuckets; a++)
-				removeBucketValueFromHBase(Bytes.toBytes(a));
+			removeBucketInfoFromHBase();
 		}
 	}
 }
\ No newline at end of file
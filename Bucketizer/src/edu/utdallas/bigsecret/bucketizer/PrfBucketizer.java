@@ -0,0 +1,233 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import edu.utdallas.bigsecret.hash.SipHash;
+
+/**
+ * Bucketizer whose bucket values are computed from a secret key instead of being stored.<br>
+ * Bucket IDs 0..n-1 are mapped to strictly increasing values in [0, 2^outputBits) by<br>
+ * recursive interval splitting: the value of the middle ID of an ID interval is chosen<br>
+ * pseudorandomly inside the value interval, leaving enough room for the IDs on both sides,<br>
+ * and the two halves are split the same way. Choices are made by SipHash of the interval,<br>
+ * so a lookup needs about log2(n) SipHash calls, and no storage, network or warm up.<br>
+ * Sub-classes define how an input is mapped to a bucket ID.
+ */
+public abstract class PrfBucketizer extends BucketizerBase
+{
+	/**
+	 * Keyed pseudorandom function that makes the split choices.
+	 */
+	protected SipHash m_prf;
+	
+	/**
+	 * Number of buckets in this bucketizer
+	 */
+	protected int m_numberOfBuckets;
+	
+	/**
+	 * Number of bits of bucket values.
+	 */
+	protected int m_outputBits;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param key 16 byte secret key.
+	 * @param numberOfBuckets Number of bucket IDs.
+	 * @param outputBits Number of bits of bucket values, at most 31.
+	 * @throws Exception Throws exception if key is not 16 bytes.<br>
+	 * Throws exception if number of buckets is not positive, or does not fit into output bits.
+	 */
+	public PrfBucketizer(byte[] key, int numberOfBuckets, int outputBits) throws Exception
+	{
+		//check inputs
+		if(numberOfBuckets <= 0)
+			throw new Exception("Number of buckets should be positive");
+		else if(outputBits < 1 || outputBits > 31)
+			throw new Exception("Output bits should be between 1 and 31");
+		else if((1L << outputBits) < numberOfBuckets)
+			throw new Exception("Output bits are not enough for the number of buckets");
+		
+		m_prf = new SipHash(key);
+		m_numberOfBuckets = numberOfBuckets;
+		m_outputBits = outputBits;
+	}
+	
+	
+	/**
+	 * Calculates bucket ID of an input.
+	 * @param input Input byte array.
+	 * @return Bucket ID.
+	 * @throws Exception Throws exception if input is invalid.
+	 */
+	protected abstract int getBucketId(byte[] input) throws Exception;
+	
+	
+	/**
+	 * Computes value of the given bucket ID.
+	 * @param bucketId Bucket ID between 0 and number of buckets - 1.
+	 * @return Bucket value.
+	 * @throws Exception
+	 */
+	protected int getValue(int bucketId) throws Exception
+	{
+		byte[] node = new byte[8];
+		byte[] digest = new byte[8];
+		
+		//bucket ids in [idLow, idHigh] have values in [valueLow, valueHigh]
+		int idLow = 0;
+		int idHigh = m_numberOfBuckets - 1;
+		long valueLow = 0;
+		long valueHigh = (1L << m_outputBits) - 1;
+		
+		while(true)
+		{
+			int middle = (int)(((long)idLow + idHigh) >>> 1);
+			
+			//interval is the input of the prf, so every split has its own choice
+			Bytes.putInt(node, 0, idLow);
+			Bytes.putInt(node, 4, idHigh);
+			m_prf.getHash(node, 0, 8, digest, 0);
+			
+			//leave one value for every id on both sides of the middle
+			long choices = (valueHigh - valueLow) - (idHigh - idLow) + 1;
+			long value = valueLow + (middle - idLow) + ((Bytes.toLong(digest) >>> 1) % choices);
+			
+			if(bucketId == middle)
+				return (int)value;
+			else if(bucketId < middle)
+			{
+				idHigh = middle - 1;
+				valueHigh = value - 1;
+			}
+			else
+			{
+				idLow = middle + 1;
+				valueLow = value + 1;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns value of the given bucket ID in byte array form.
+	 * @param bucketId Bucket ID.
+	 * @return Bucket value.
+	 * @throws Exception
+	 */
+	protected byte[] getBucketValueById(int bucketId) throws Exception
+	{
+		return Bytes.toBytes(getValue(bucketId));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] getBucketValue(byte[] input) throws Exception
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Input is null or has no data");
+		
+		int bucketId = getBucketId(input);
+		
+		if(bucketId >= m_numberOfBuckets)
+			bucketId = m_numberOfBuckets - 1;
+		else if(bucketId < 0)
+			bucketId = 0;
+		
+		return getBucketValueById(bucketId);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] getNextBucketValue(byte[] input) throws Exception
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Input is null or has no data");
+		
+		int bucketId = getBucketId(input);
+		
+		//check if that is the last bucket id
+		if(bucketId >= m_numberOfBuckets - 1 || bucketId < 0)
+			return null;
+		else
+			return getBucketValueById(bucketId + 1);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] getPrevBucketValue(byte[] input) throws Exception
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Input is null or has no data");
+		
+		int bucketId = getBucketId(input);
+		
+		//check if that is the first bucket id
+		if(bucketId <= 0 || bucketId >= m_numberOfBuckets)
+			return null;
+		else
+			return getBucketValueById(bucketId - 1);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getBucketValueSize()
+	{
+		//size of int
+		return 4;
+	}
+	
+	
+	/**
+	 * Get number of bucket IDs of this bucketizer.
+	 * @return Number of buckets.
+	 */
+	public int getNumberOfBuckets()
+	{
+		return m_numberOfBuckets;
+	}
+	
+	
+	/**
+	 * Bucket values are computed on demand, there is nothing to create.
+	 */
+	public void createBuckets() throws Exception
+	{
+	}
+	
+	
+	/**
+	 * Bucket values are computed on demand, there is nothing to remove.
+	 */
+	public void removeBuckets() throws Exception
+	{
+	}
+}
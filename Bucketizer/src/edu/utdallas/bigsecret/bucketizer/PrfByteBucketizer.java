@@ -0,0 +1,84 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+/**
+ * PrfBucketizer for byte arrays. Like ByteBucketizer, bucket ID of an input is its first<br>
+ * inputBits bits, and inputs that are shorter than 4 bytes are padded with 0.
+ */
+public class PrfByteBucketizer extends PrfBucketizer
+{
+	/**
+	 * Number of bits for input
+	 */
+	protected int m_inputBitDepth;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param key 16 byte secret key.
+	 * @param inputBits Number of bits for input, between 1 and 30.
+	 * @param outputBits Number of bits of bucket values, between inputBits and 31.
+	 * @throws Exception Throws exception if key is not 16 bytes, or bit numbers are invalid.
+	 */
+	public PrfByteBucketizer(byte[] key, int inputBits, int outputBits) throws Exception
+	{
+		super(key, 1 << checkInputBits(inputBits), outputBits);
+		
+		m_inputBitDepth = inputBits;
+	}
+	
+	
+	/**
+	 * Checks number of input bits before it is used.
+	 * @param inputBits Number of bits for input.
+	 * @return inputBits
+	 * @throws Exception Throws exception if inputBits isn't between 1 and 30.
+	 */
+	private static int checkInputBits(int inputBits) throws Exception
+	{
+		if(inputBits < 1) 
+			throw new Exception("Input bits should be greater than 0");
+		else if(inputBits > 30)
+			throw new Exception("Input bits should be less than 31");
+		
+		return inputBits;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	protected int getBucketId(byte[] input) throws Exception
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Input is null or has no data");
+		
+		//first 4 bytes, input[0] is the most significant byte
+		int firstBytes = 0;
+		for(int a = 0; a<4; a++)
+		{
+			firstBytes <<= 8;
+			if(a < input.length)
+				firstBytes |= input[a] & 0xff;
+		}
+		
+		//unsigned shift, so that ids follow the byte order of inputs
+		return firstBytes >>> (32 - m_inputBitDepth);
+	}
+}
@@ -0,0 +1,89 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer;
+
+import edu.utdallas.bigsecret.util.Utilities;
+
+/**
+ * PrfBucketizer for long values. Like LongBucketizer, [min, max] domain is divided into<br>
+ * equal partitions, and values out of the domain are put into the first or last bucket.
+ */
+public class PrfLongBucketizer extends PrfBucketizer
+{
+	/**
+	 * Domain of a partitioned bucket.
+	 */
+	protected long m_divisor;
+	
+	/**
+	 * Minimum value in the long domain.
+	 */
+	protected long m_minValue;
+	
+	/**
+	 * Maximum value in the long domain.
+	 */
+	protected long m_maxValue;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param key 16 byte secret key.
+	 * @param minValue Minimum value that will be bucketized.
+	 * @param maxValue Maximum value that will be bucketized.
+	 * @param numberOfBuckets Number of buckets
+	 * @param outputBits Number of bits of bucket values, at most 31.
+	 * @throws Exception Throws exception if min or max values are invalid.<br>
+	 * Throws exception if number of buckets or output bits are invalid.
+	 */
+	public PrfLongBucketizer(byte[] key, long minValue, long maxValue, int numberOfBuckets, int outputBits) throws Exception
+	{
+		super(key, numberOfBuckets, outputBits);
+		
+		//check inputs
+		if(minValue >= maxValue)
+			throw new Exception("Min value should be smaller than max value");
+		
+		m_minValue = minValue;
+		m_maxValue = maxValue;
+		m_divisor = (m_maxValue - m_minValue) / m_numberOfBuckets;
+		
+		if(m_divisor <= 0)
+			throw new Exception("Number of buckets is larger than the domain");
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	protected int getBucketId(byte[] input) throws Exception
+	{
+		//check input
+		if(input == null || input.length == 0)
+			throw new Exception("Input is null or has no data");
+		
+		long bucketId = (Utilities.getLong(input) - m_minValue) / m_divisor;
+		
+		//keep ids that are out of the domain out of int overflow
+		if(bucketId > m_numberOfBuckets)
+			return m_numberOfBuckets;
+		else if(bucketId < -1)
+			return -1;
+		
+		return (int)bucketId;
+	}
+}
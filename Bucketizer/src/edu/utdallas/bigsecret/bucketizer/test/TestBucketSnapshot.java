@@ -0,0 +1,139 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.bucketizer.BucketSnapshot;
+
+/**
+ * Test class for BucketSnapshot class. Does not need HBase.
+ */
+public class TestBucketSnapshot
+{
+	@Test
+	public void testWriteAndMap()
+	{
+		File file = null;
+		try
+		{
+			file = File.createTempFile("bucket", ".snapshot");
+			
+			//every third bucket is missing
+			BucketSnapshot.Writer writer = new BucketSnapshot.Writer(file, Bytes.toBytes("row1"), 1000);
+			for(int a = 0; a<1000; a++)
+			{
+				if(a % 3 != 0)
+					writer.write(a, a * 5);
+			}
+			writer.close();
+			
+			BucketSnapshot snapshot = new BucketSnapshot(file);
+			
+			if(snapshot.getBucketCount() != 1000 || !snapshot.belongsTo(Bytes.toBytes("row1")))
+			{
+				fail("Snapshot header is wrong.");
+			}
+			
+			for(int a = 0; a<1000; a++)
+			{
+				int expected = (a % 3 == 0) ? BucketSnapshot.MISSING_VALUE : a * 5;
+				if(snapshot.getValue(a) != expected)
+				{
+					fail("Snapshot value of bucket " + a + " is wrong.");
+				}
+			}
+			
+			if(snapshot.getValue(-1) != BucketSnapshot.MISSING_VALUE || snapshot.getValue(1000) != BucketSnapshot.MISSING_VALUE)
+			{
+				fail("Snapshot should not have values out of range.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Snapshot test failed.");
+		}
+		finally
+		{
+			if(file != null)
+				file.delete();
+		}
+	}
+	
+	@Test
+	public void testOutOfOrder()
+	{
+		File file = null;
+		BucketSnapshot.Writer writer = null;
+		try
+		{
+			file = File.createTempFile("bucket", ".snapshot");
+			writer = new BucketSnapshot.Writer(file, Bytes.toBytes("row1"), 10);
+			writer.write(5, 1);
+			writer.write(4, 1);
+			
+			fail("Snapshot writer should not accept bucket IDs out of order.");
+		}
+		catch (Exception e)
+		{
+		}
+		finally
+		{
+			if(writer != null)
+				writer.discard();
+			if(file != null)
+				file.delete();
+		}
+	}
+	
+	@Test
+	public void testInvalidFile()
+	{
+		File file = null;
+		try
+		{
+			file = File.createTempFile("bucket", ".snapshot");
+			
+			BucketSnapshot.Writer writer = new BucketSnapshot.Writer(file, Bytes.toBytes("row1"), 10);
+			writer.close();
+			
+			//cut the last value
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(raf.length() - 4);
+			raf.close();
+			
+			new BucketSnapshot(file);
+			
+			fail("Truncated snapshot should not be mapped.");
+		}
+		catch (Exception e)
+		{
+		}
+		finally
+		{
+			if(file != null)
+				file.delete();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.bucketizer.BucketValueGenerator;
+
+/**
+ * Test class for BucketValueGenerator class. Does not need HBase.
+ */
+public class TestBucketValueGenerator
+{
+	@Test
+	public void testGlobalOrder()
+	{
+		try
+		{
+			//last partition is smaller than the others
+			BucketValueGenerator g = new BucketValueGenerator(10000, 64, 1024);
+			
+			if(g.getPartitionCount() != 10 || g.getPartitionLength(9) != 784)
+			{
+				fail("Partitions are wrong.");
+			}
+			
+			//sums are computed out of order, as threads would do
+			long[] sums = new long[g.getPartitionCount()];
+			for(int a = sums.length - 1; a>=0; a--)
+				sums[a] = g.sumPartition(a);
+			g.setPartitionSums(sums);
+			
+			long previous = -1;
+			for(int a = 0; a<g.getPartitionCount(); a++)
+			{
+				int[] values = g.getPartitionValues(a);
+				
+				if(values.length != g.getPartitionLength(a))
+				{
+					fail("Partition " + a + " has a wrong number of values.");
+				}
+				
+				for(int b = 0; b<values.length; b++)
+				{
+					long increment = values[b] - previous;
+					if(increment < 1 || increment > 64)
+					{
+						fail("Increment of bucket " + (g.getPartitionStart(a) + b) + " is out of range.");
+					}
+					previous = values[b];
+				}
+				
+				if(!Arrays.equals(values, g.getPartitionValues(a)))
+				{
+					fail("Partition " + a + " is not generated the same way twice.");
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("BucketValueGenerator test failed.");
+		}
+	}
+	
+	@Test
+	public void testOverflow()
+	{
+		try
+		{
+			BucketValueGenerator g = new BucketValueGenerator(1 << 28, 1 << 10, 1 << 16);
+			
+			long[] sums = new long[g.getPartitionCount()];
+			Arrays.fill(sums, (1L << 16) * 512);
+			g.setPartitionSums(sums);
+			
+			fail("Bucket values larger than 4 bytes should not be accepted.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+}
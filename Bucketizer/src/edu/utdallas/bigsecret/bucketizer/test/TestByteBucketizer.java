@@ -18,6 +18,7 @@ package edu.utdallas.bigsecret.bucketizer.test;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configuration;
@@ -191,4 +192,46 @@ public class TestByteBucketizer
 		
 		b.close();
 	}
+	
+	@Test
+	public void testSnapshot() throws Exception 
+	{
+		Configuration conf = HBaseConfiguration.create();
+		ByteBucketizer b = null;
+		ByteBucketizer snapshotB = null;
+		
+		File file = File.createTempFile("byte1", ".snapshot");
+		
+		try 
+		{
+			b = new ByteBucketizer(bucketizerId, conf);
+			snapshotB = new ByteBucketizer(bucketizerId, conf);
+			
+			b.exportSnapshot(file);
+			snapshotB.loadSnapshot(file);
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("Snapshot could not be created.");
+		}
+		
+		for(int a = 0; a<256; a++)
+		{
+			byte[] input = new byte[4];
+			input[0] = (byte)a;
+			input[1] = (byte)(a * 7);
+			
+			if(!Arrays.equals(b.getBucketValue(input), snapshotB.getBucketValue(input)) ||
+			   !Arrays.equals(b.getNextBucketValue(input), snapshotB.getNextBucketValue(input)) ||
+			   !Arrays.equals(b.getPrevBucketValue(input), snapshotB.getPrevBucketValue(input)))
+			{
+				fail("Snapshot values should be equal to HBase values.");
+			}
+		}
+		
+		b.close();
+		snapshotB.close();
+		file.delete();
+	}
 }
@@ -0,0 +1,156 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.bucketizer.EquiDepthLongBucketizer;
+
+/**
+ * Test class for boundaries of EquiDepthLongBucketizer class. Does not need HBase.
+ */
+public class TestEquiDepthLongBucketizer
+{
+	/**
+	 * Creates a skewed sample, most values are close to 0.
+	 * @param size Number of values.
+	 * @return Sample values between 0 and 10^12.
+	 */
+	public static long[] createSkewedSample(int size)
+	{
+		Random rand = new Random(12345);
+		long[] sample = new long[size];
+		
+		for(int a = 0; a<size; a++)
+			sample[a] = (long)(1e12 * Math.pow(rand.nextDouble(), 4));
+		
+		return sample;
+	}
+	
+	@Test
+	public void testBoundaries()
+	{
+		try
+		{
+			long[] sample = createSkewedSample(100000);
+			long[] boundaries = EquiDepthLongBucketizer.computeBoundaries(sample, 100);
+			
+			//boundaries are strictly increasing
+			for(int a = 1; a<boundaries.length; a++)
+			{
+				if(boundaries[a] <= boundaries[a - 1])
+				{
+					fail("Boundaries are not increasing at " + a);
+				}
+			}
+			
+			//every bucket holds about the same number of values
+			int[] counts = new int[boundaries.length + 1];
+			for(int a = 0; a<sample.length; a++)
+				counts[EquiDepthLongBucketizer.getBucketId(boundaries, sample[a])]++;
+			
+			for(int a = 0; a<counts.length; a++)
+			{
+				if(counts[a] > 2 * sample.length / 100)
+				{
+					fail("Bucket " + a + " holds " + counts[a] + " values.");
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("EquiDepthLongBucketizer boundaries test failed.");
+		}
+	}
+	
+	@Test
+	public void testRepeatedValues()
+	{
+		try
+		{
+			//a single value can not be split, so only 2 buckets are created
+			long[] sample = new long[1000];
+			Arrays.fill(sample, 0, 500, 7);
+			Arrays.fill(sample, 500, 1000, 9);
+			
+			long[] boundaries = EquiDepthLongBucketizer.computeBoundaries(sample, 10);
+			
+			if(!Arrays.equals(boundaries, new long[] {9}))
+			{
+				fail("Repeated values should not create repeated boundaries.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("EquiDepthLongBucketizer repeated values test failed.");
+		}
+	}
+	
+	@Test
+	public void testBucketId()
+	{
+		long[] boundaries = {10, 20, 30};
+		
+		//values equal to a boundary start that bucket
+		long[] values = {Long.MIN_VALUE, 9, 10, 19, 20, 29, 30, Long.MAX_VALUE};
+		int[] expected = {0, 0, 1, 1, 2, 2, 3, 3};
+		
+		for(int a = 0; a<values.length; a++)
+		{
+			if(EquiDepthLongBucketizer.getBucketId(boundaries, values[a]) != expected[a])
+			{
+				fail("Wrong bucket id for value " + values[a]);
+			}
+		}
+	}
+	
+	@Test
+	public void testFalsePositiveRatio()
+	{
+		try
+		{
+			long[] sample = createSkewedSample(100000);
+			
+			double before = EquiDepthLongBucketizer.getEqualWidthFalsePositiveRatio(sample, 0, 1000000000000L, 100);
+			double after = EquiDepthLongBucketizer.getEquiDepthFalsePositiveRatio(sample, EquiDepthLongBucketizer.computeBoundaries(sample, 100));
+			
+			if(after >= before)
+			{
+				fail("Equi-depth buckets should have less false positives: " + before + " " + after);
+			}
+			
+			//a bucket per distinct value has no false positives
+			long[] sample2 = {1, 1, 2, 3, 3, 3};
+			if(EquiDepthLongBucketizer.getEquiDepthFalsePositiveRatio(sample2, new long[] {2, 3}) != 0)
+			{
+				fail("Distinct buckets should not have false positives.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("EquiDepthLongBucketizer false positive test failed.");
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.bucketizer.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.bucketizer.PrfByteBucketizer;
+import edu.utdallas.bigsecret.bucketizer.PrfLongBucketizer;
+
+/**
+ * Test class for PrfBucketizer classes. Does not need HBase.
+ */
+public class TestPrfBucketizer
+{
+	@Test
+	public void testOrder()
+	{
+		try
+		{
+			PrfByteBucketizer b = new PrfByteBucketizer(Bytes.toBytes("1234567890123456"), 12, 16);
+			
+			//every bucket value is larger than the previous one, and fits into output bits
+			int previous = -1;
+			for(int a = 0; a<4096; a++)
+			{
+				byte[] input = Bytes.toBytes(a << 20);
+				int value = Bytes.toInt(b.getBucketValue(input));
+				
+				if(value <= previous || value >= (1 << 16))
+				{
+					fail("Bucket values are not increasing at bucket " + a);
+				}
+				previous = value;
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("PrfByteBucketizer order test failed.");
+		}
+	}
+	
+	@Test
+	public void testBucketExactNextPrev()
+	{
+		try
+		{
+			PrfByteBucketizer b = new PrfByteBucketizer(Bytes.toBytes("1234567890123456"), 16, 24);
+			PrfByteBucketizer other = new PrfByteBucketizer(Bytes.toBytes("1234567890123456"), 16, 24);
+			
+			byte[] input1 = {10, 20, 30, 40};
+			byte[] input2 = {10, 20, 20, 50};
+			byte[] input3 = {10, 21, 20, 50};
+			
+			if(!Arrays.equals(b.getBucketValue(input1), b.getBucketValue(input2)))
+			{
+				fail("Bucket values should be equal.");
+			}
+			else if(!Arrays.equals(b.getBucketValue(input1), other.getBucketValue(input1)))
+			{
+				fail("Bucketizers with the same key should give the same values.");
+			}
+			else if(!Arrays.equals(b.getNextBucketValue(input1), b.getBucketValue(input3)) ||
+					!Arrays.equals(b.getPrevBucketValue(input3), b.getBucketValue(input1)))
+			{
+				fail("Next and previous bucket values are wrong.");
+			}
+			
+			//unsigned order of bytes
+			byte[] high = {(byte)0xff, 0, 0, 0};
+			if(Bytes.toInt(b.getBucketValue(high)) <= Bytes.toInt(b.getBucketValue(input1)) || b.getNextBucketValue(new byte[]{(byte)0xff, (byte)0xff}) != null)
+			{
+				fail("Inputs with a high first byte should be in the last buckets.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("PrfByteBucketizer test failed.");
+		}
+	}
+	
+	@Test
+	public void testKeys()
+	{
+		try
+		{
+			PrfByteBucketizer b1 = new PrfByteBucketizer(Bytes.toBytes("1234567890123456"), 16, 24);
+			PrfByteBucketizer b2 = new PrfByteBucketizer(Bytes.toBytes("1234567890123457"), 16, 24);
+			
+			int different = 0;
+			for(int a = 0; a<100; a++)
+			{
+				byte[] input = Bytes.toBytes(a << 16);
+				if(!Arrays.equals(b1.getBucketValue(input), b2.getBucketValue(input)))
+					different++;
+			}
+			
+			if(different < 90)
+			{
+				fail("Bucket values do not depend on the key.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("PrfBucketizer key test failed.");
+		}
+	}
+	
+	@Test
+	public void testLong()
+	{
+		try
+		{
+			PrfLongBucketizer b = new PrfLongBucketizer(Bytes.toBytes("1234567890123456"), 0, 1024 * 1024, 1024, 16);
+			
+			if(!Arrays.equals(b.getBucketValue(Bytes.toBytes(100L)), b.getBucketValue(Bytes.toBytes(1000L))))
+			{
+				fail("Values in the same partition should have the same bucket.");
+			}
+			else if(!Arrays.equals(b.getNextBucketValue(Bytes.toBytes(100L)), b.getBucketValue(Bytes.toBytes(1100L))))
+			{
+				fail("Next bucket value is wrong.");
+			}
+			else if(!Arrays.equals(b.getBucketValue(Bytes.toBytes(Long.MAX_VALUE)), b.getBucketValue(Bytes.toBytes(1024L * 1024 - 1))) ||
+					!Arrays.equals(b.getBucketValue(Bytes.toBytes(-5000L)), b.getBucketValue(Bytes.toBytes(0L))))
+			{
+				fail("Values out of the domain should be in the last or first bucket.");
+			}
+			else if(b.getPrevBucketValue(Bytes.toBytes(-5000L)) != null || b.getNextBucketValue(Bytes.toBytes(Long.MAX_VALUE)) != null)
+			{
+				fail("Values out of the domain should not have next or previous buckets.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("PrfLongBucketizer test failed.");
+		}
+	}
+	
+	@Test
+	public void testInvalidParameters()
+	{
+		try
+		{
+			new PrfByteBucketizer(Bytes.toBytes("1234567890123456"), 16, 8);
+			fail("PrfByteBucketizer should not accept less output bits than input bits.");
+		}
+		catch (Exception e)
+		{
+		}
+		
+		try
+		{
+			new PrfByteBucketizer(Bytes.toBytes("short"), 16, 24);
+			fail("PrfByteBucketizer should not accept a short key.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+}
@@ -16,23 +16,71 @@
 
 package edu.utdallas.bigsecret.cipher;
 
-import java.math.BigInteger;
-import java.security.SecureRandom;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.apache.commons.lang.ArrayUtils;
-
 /**
  * This class extends abstract Cipher class. It implements AES in counter mode.
  */
 public class AesCtr extends JavaxCipher
 {
 	/**
-	 * Secure random generator.
+	 * Iv generator that is shared by AesCtr instances that are not given one.
+	 */
+	protected static IvGenerator DEFAULT_IV_GENERATOR = new CounterIvGenerator();
+	
+	/**
+	 * Iv generator.
+	 */
+	protected IvGenerator m_ivGenerator;
+	
+	/**
+	 * Pool of precomputed keystream. null if values are always encrypted on the calling thread.
+	 */
+	protected KeystreamPool m_keystreamPool;
+	
+	/**
+	 * Temporary output for keystream bytes that are skipped in batch operations.
 	 */
-	protected SecureRandom m_secureRandom;
+	protected byte[] m_skipBuffer = new byte[16];
+	
+	/**
+	 * Values of at least this many bytes are processed in parallel chunks. 0 if disabled.
+	 */
+	protected int m_parallelThreshold = 0;
+	
+	/**
+	 * Number of bytes in each parallel chunk, a multiple of the block size.
+	 */
+	protected int m_parallelChunkSize;
+	
+	/**
+	 * Fork join pool for parallel chunks, shared by all AesCtr instances.
+	 */
+	protected static ForkJoinPool PARALLEL_POOL;
+	
+	/**
+	 * AES CTR cipher instance of each fork join worker.
+	 */
+	protected static ThreadLocal<javax.crypto.Cipher> CHUNK_CIPHER = new ThreadLocal<javax.crypto.Cipher>()
+	{
+		protected javax.crypto.Cipher initialValue()
+		{
+			try
+			{
+				return ProviderRegistry.getCipher("AES/CTR/NoPadding");
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException("Cipher instance could not be created", e);
+			}
+		}
+	};
 	
 	/**
 	 * Number of bytes in a block, which is constant for AES.
@@ -49,6 +97,11 @@ public class AesCtr extends JavaxCipher
 	 */
 	protected int KEY_SIZE_BYTES;
 	
+	/**
+	 * Number of bytes read at a time in stream operations.
+	 */
+	protected static int STREAM_BUFFER_SIZE = 64 * 1024;
+	
 	
 	/**
 	 * Class constructor. Creates a Javax.Crypto.Cipher instance with AES in CTR<br>
@@ -58,10 +111,30 @@ public class AesCtr extends JavaxCipher
 	 * 					 May throw exception based on Javax.Crypto classes.
 	 */
 	public AesCtr(byte[] key) throws Exception
+	{
+		this(key, DEFAULT_IV_GENERATOR);
+	}
+	
+	
+	/**
+	 * Class constructor with a given iv generator.
+	 * @param key Input key for the cipher. Should be 16, 24, or 32 bytes long
+	 * @param ivGenerator Iv generator that creates 16 byte ivs.
+	 * @throws Exception Throws exception if key length is not 16, 24, or 32 bytes.<br>
+	 * 					 Throws exception if iv generator is null or its iv size is not 16.<br>
+	 * 					 May throw exception based on Javax.Crypto classes.
+	 */
+	public AesCtr(byte[] key, IvGenerator ivGenerator) throws Exception
 	{
 		//use default constructor for cipher.Cipher
 		super();
 		
+		//check if iv generator is ok
+		if(ivGenerator == null || ivGenerator.getIvSize() != BLOCK_SIZE_BYTES)
+		{
+			throw new Exception("Iv generator should create 16 byte ivs");
+		}
+		
 		//check if input key is ok
 		if(key.length != 16 && key.length != 24 && key.length != 32)
 		{
@@ -75,10 +148,77 @@ public class AesCtr extends JavaxCipher
 		m_keySpec = new SecretKeySpec(key, "AES");
 		
 		//create cipher instance
-		m_cipher = javax.crypto.Cipher.getInstance("AES/CTR/NoPadding");
+		m_cipher = ProviderRegistry.getCipher("AES/CTR/NoPadding");
+		
+		//set iv generator
+		m_ivGenerator = ivGenerator;
+	}
+	
+	
+	/**
+	 * Class constructor with a pool of precomputed keystream.<br>
+	 * Values that fit in a keystream segment are encrypted by XORing them with a<br>
+	 * segment of the pool. Other values, and values that find the pool empty, are<br>
+	 * encrypted as usual. Output format does not change.
+	 * @param key Input key for the cipher. Should be 16, 24, or 32 bytes long
+	 * @param keystreamPool Keystream pool that is created with the same key.
+	 * @throws Exception Throws exception if key length is not 16, 24, or 32 bytes.<br>
+	 * 					 Throws exception if keystream pool is null, or it has a different key.<br>
+	 * 					 May throw exception based on Javax.Crypto classes.
+	 */
+	public AesCtr(byte[] key, KeystreamPool keystreamPool) throws Exception
+	{
+		this(key, DEFAULT_IV_GENERATOR);
+		
+		//check if keystream pool is ok
+		if(keystreamPool == null)
+		{
+			throw new Exception("Keystream pool is null");
+		}
+		else if(! keystreamPool.hasKey(key))
+		{
+			throw new Exception("Keystream pool has a different key");
+		}
 		
-		//create secure random number generator instance
-		m_secureRandom = new SecureRandom();
+		//set keystream pool
+		m_keystreamPool = keystreamPool;
+	}
+	
+	
+	/**
+	 * Enables parallel encryption and decryption of large values. Values of at least<br>
+	 * threshold bytes are split into chunks, and each chunk is processed in a shared<br>
+	 * fork join pool with the counter of its first block. Output format does not change.
+	 * @param threshold Minimum value size for parallel processing. 0 disables it.
+	 * @param chunkSize Number of bytes in each chunk. Should be a positive multiple of 16.
+	 * @throws Exception Throws exception if threshold is negative, or chunk size is invalid.
+	 */
+	public void setParallelThreshold(int threshold, int chunkSize) throws Exception
+	{
+		if(threshold < 0)
+		{
+			throw new Exception("Threshold should not be negative");
+		}
+		else if(chunkSize <= 0 || chunkSize % BLOCK_SIZE_BYTES != 0)
+		{
+			throw new Exception("Chunk size should be a positive multiple of 16");
+		}
+		
+		m_parallelThreshold = threshold;
+		m_parallelChunkSize = chunkSize;
+	}
+	
+	
+	/**
+	 * Returns the fork join pool for parallel chunks, and creates it at the first call.
+	 * @return Fork join pool with one worker per processor.
+	 */
+	protected static synchronized ForkJoinPool getParallelPool()
+	{
+		if(PARALLEL_POOL == null)
+			PARALLEL_POOL = new ForkJoinPool();
+		
+		return PARALLEL_POOL;
 	}
 
 	
@@ -97,23 +237,188 @@ public class AesCtr extends JavaxCipher
 			throw new Exception("No data to encrypt");
 		}
 		
-		//create iv
-		byte[] iv = new byte[BLOCK_SIZE_BYTES];
-		byte[] randomNumber = (new BigInteger(BLOCK_SIZE_BITS, m_secureRandom)).toByteArray();
-		int a;
-		for(a = 0; a<randomNumber.length && a<BLOCK_SIZE_BYTES; a++)
-			iv[a] = randomNumber[a];
-		for(; a<BLOCK_SIZE_BYTES; a++)
-			iv[a] = 0;
+		//create result array and write iv + encrypted data into it
+		byte[] result = new byte[getEncryptedSize(data.length)];
+		encrypt(data, 0, data.length, result, 0);
 		
-		//init cipher instance
-		m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec, new IvParameterSpec(iv));
+		return result;
+	}
 
-		//return concatenation of iv + encrypted data		
-		return ArrayUtils.addAll(iv, m_cipher.doFinal(data));
+	
+	/**
+	 * Encrypts large values in parallel chunks if it is enabled. Otherwise encrypts<br>
+	 * with a precomputed keystream segment if there is one available, or as usual.<br>
+	 * In place encryption (src == dst) always uses the usual path, which copies input<br>
+	 * overlapping the output before the iv is written.
+	 * @param src Input data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to encrypt.
+	 * @param dst Output array.
+	 * @param dstOff Starting index in output array.
+	 * @return Number of bytes written to dst, that is len + 16.
+	 * @throws Exception Throws exception if there is no data to encrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public int encrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		if(isParallel(src, len, dst))
+		{
+			//create iv in place, then encrypt chunks in parallel
+			m_ivGenerator.nextIv(dst, dstOff);
+			getParallelPool().invoke(new ChunkTask(m_keySpec, copyIv(dst, dstOff), src, off, len, dst, dstOff + BLOCK_SIZE_BYTES, m_parallelChunkSize));
+			
+			return BLOCK_SIZE_BYTES + len;
+		}
+		
+		if(m_keystreamPool != null && src != null && src != dst && len > 0 && len <= m_keystreamPool.getSegmentSize())
+		{
+			byte[] segment = m_keystreamPool.poll();
+			
+			if(segment != null)
+			{
+				//copy iv, then XOR data with keystream
+				System.arraycopy(segment, 0, dst, dstOff, BLOCK_SIZE_BYTES);
+				
+				int outOff = dstOff + BLOCK_SIZE_BYTES;
+				for(int a = 0; a<len; a++)
+					dst[outOff + a] = (byte)(src[off + a] ^ segment[BLOCK_SIZE_BYTES + a]);
+				
+				return BLOCK_SIZE_BYTES + len;
+			}
+		}
+		
+		return super.encrypt(src, off, len, dst, dstOff);
 	}
 
 	
+	/**
+	 * Decrypts large values in parallel chunks if it is enabled, otherwise decrypts<br>
+	 * as usual. In place decryption (src == dst) always uses the usual path, which reads<br>
+	 * the iv before any output is written.
+	 * @param src Input data, iv + encrypted data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to decrypt, including iv.
+	 * @param dst Output array.
+	 * @param dstOff Starting index in output array.
+	 * @return Number of bytes written to dst, that is len - 16.
+	 * @throws Exception Throws exception if there is no data to decrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public int decrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		if(src != null && off >= 0 && len > BLOCK_SIZE_BYTES && src.length >= off + len && isParallel(src, len - BLOCK_SIZE_BYTES, dst))
+		{
+			//decryption is the same operation as encryption in CTR mode
+			getParallelPool().invoke(new ChunkTask(m_keySpec, copyIv(src, off), src, off + BLOCK_SIZE_BYTES, len - BLOCK_SIZE_BYTES, dst, dstOff, m_parallelChunkSize));
+			
+			return len - BLOCK_SIZE_BYTES;
+		}
+		
+		return super.decrypt(src, off, len, dst, dstOff);
+	}
+	
+	
+	/**
+	 * Checks if data of the given size is processed in parallel chunks.
+	 * @param src Input array.
+	 * @param length Number of bytes without iv.
+	 * @param dst Output array.
+	 * @return true if parallel processing is enabled, length is above threshold, and src is not dst.
+	 */
+	protected boolean isParallel(byte[] src, int length, byte[] dst)
+	{
+		return m_parallelThreshold > 0 && length >= m_parallelThreshold && src != null && src != dst;
+	}
+	
+	
+	/**
+	 * Copies the iv that starts from offset.
+	 * @param data Array that holds the iv.
+	 * @param offset Starting index of the iv.
+	 * @return Copy of the iv.
+	 */
+	protected static byte[] copyIv(byte[] data, int offset)
+	{
+		byte[] iv = new byte[BLOCK_SIZE_BYTES];
+		System.arraycopy(data, offset, iv, 0, BLOCK_SIZE_BYTES);
+		
+		return iv;
+	}
+	
+	
+	/**
+	 * Fork join task that encrypts (or decrypts) a range of a value. Ranges larger than<br>
+	 * a chunk are split in two at a block boundary. Each chunk starts from the counter<br>
+	 * of its first block, that is iv + (chunk offset / 16), so the result is the same as<br>
+	 * processing the whole value with a single cipher.
+	 */
+	protected static class ChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected SecretKeySpec m_keySpec;
+		protected byte[] m_counter;
+		protected byte[] m_src;
+		protected int m_srcOff;
+		protected int m_length;
+		protected byte[] m_dst;
+		protected int m_dstOff;
+		protected int m_chunkSize;
+		
+		/**
+		 * Class constructor.
+		 * @param keySpec Secret key.
+		 * @param counter Counter of the first block of the range.
+		 * @param src Input array.
+		 * @param srcOff Starting index of the range in input array.
+		 * @param length Number of bytes in the range.
+		 * @param dst Output array.
+		 * @param dstOff Starting index of the range in output array.
+		 * @param chunkSize Largest range that is processed without splitting.
+		 */
+		public ChunkTask(SecretKeySpec keySpec, byte[] counter, byte[] src, int srcOff, int length, byte[] dst, int dstOff, int chunkSize)
+		{
+			m_keySpec = keySpec;
+			m_counter = counter;
+			m_src = src;
+			m_srcOff = srcOff;
+			m_length = length;
+			m_dst = dst;
+			m_dstOff = dstOff;
+			m_chunkSize = chunkSize;
+		}
+		
+		protected void compute()
+		{
+			if(m_length <= m_chunkSize)
+			{
+				try
+				{
+					javax.crypto.Cipher cipher = CHUNK_CIPHER.get();
+					cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec, new IvParameterSpec(m_counter));
+					cipher.doFinal(m_src, m_srcOff, m_length, m_dst, m_dstOff);
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException("Chunk could not be processed", e);
+				}
+				
+				return;
+			}
+			
+			//split at a chunk boundary near the middle
+			int chunks = (m_length + m_chunkSize - 1) / m_chunkSize;
+			int leftLength = (chunks / 2) * m_chunkSize;
+			
+			byte[] rightCounter = m_counter.clone();
+			addToCounter(rightCounter, leftLength / BLOCK_SIZE_BYTES);
+			
+			invokeAll(new ChunkTask(m_keySpec, m_counter, m_src, m_srcOff, leftLength, m_dst, m_dstOff, m_chunkSize),
+					  new ChunkTask(m_keySpec, rightCounter, m_src, m_srcOff + leftLength, m_length - leftLength, m_dst, m_dstOff + leftLength, m_chunkSize));
+		}
+	}
+	
+	
 	/**
 	 * Decrypts input data with AES CTR mode
 	 * @param data Input byte array.
@@ -146,14 +451,356 @@ public class AesCtr extends JavaxCipher
 			throw new Exception("No data to decrypt");
 		}
 		
-		//get iv value from the beggining of data
+		//create result array and decrypt into it
+		byte[] result = new byte[getDecryptedSize(data.length - offset)];
+		decrypt(data, offset, data.length - offset, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the size of iv + encrypted data.
+	 * @param length Size of the input data.
+	 * @return length + 16
+	 */
+	public int getEncryptedSize(int length)
+	{
+		return BLOCK_SIZE_BYTES + length;
+	}
+	
+	
+	/**
+	 * Returns the size of decrypted data, that is the size without iv.
+	 * @param length Size of the encrypted data, including iv.
+	 * @return length - 16
+	 */
+	public int getDecryptedSize(int length)
+	{
+		return length - BLOCK_SIZE_BYTES;
+	}
+	
+	
+	/**
+	 * Iv is the header of encrypted data.
+	 * @return 16
+	 */
+	protected int getHeaderSize()
+	{
+		return BLOCK_SIZE_BYTES;
+	}
+	
+	
+	/**
+	 * Creates a new iv, writes it to out, and initializes cipher for encryption.
+	 * @param out Output array for the iv.
+	 * @param offset Starting index of the iv.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void initEncrypt(byte[] out, int offset) throws Exception
+	{
+		//create iv in place
+		m_ivGenerator.nextIv(out, offset);
+		
+		//init cipher instance
+		m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec, new IvParameterSpec(out, offset, BLOCK_SIZE_BYTES));
+	}
+	
+	
+	/**
+	 * Reads iv from in, and initializes cipher for decryption.
+	 * @param in Input array that holds the iv.
+	 * @param offset Starting index of the iv.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void initDecrypt(byte[] in, int offset) throws Exception
+	{
+		//init cipher instance
+		m_cipher.init(javax.crypto.Cipher.DECRYPT_MODE, m_keySpec, new IvParameterSpec(in, offset, BLOCK_SIZE_BYTES));
+	}
+	
+	
+	/**
+	 * Encrypts every element of data with AES CTR mode. Cipher is initialized once<br>
+	 * for the whole batch. Each value starts from the next block boundary of the<br>
+	 * keystream, and its iv is the counter of that block. Hence every result has<br>
+	 * the usual iv + encrypted data format, and can be decrypted alone.
+	 * @param data Input data.
+	 * @return Encryption results, in the same order as data.
+	 * @throws Exception Throws exception if data is null, or an element has no data to encrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[][] encryptBatch(byte[][] data) throws Exception
+	{
+		if(data == null)
+		{
+			throw new Exception("Batch is null");
+		}
+		
+		byte[][] result = new byte[data.length][];
+		if(data.length == 0)
+			return result;
+		
+		//create iv of the first value and init cipher instance once
 		byte[] iv = new byte[BLOCK_SIZE_BYTES];
-		System.arraycopy(data, offset, iv, 0, BLOCK_SIZE_BYTES);
+		m_ivGenerator.nextIv(iv, 0);
+		m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec, new IvParameterSpec(iv));
+		
+		for(int a = 0; a<data.length; a++)
+		{
+			//check if there is data to encrypt
+			if(data[a] == null || data[a].length == 0)
+			{
+				throw new Exception("No data to encrypt");
+			}
+			
+			int length = data[a].length;
+			result[a] = new byte[BLOCK_SIZE_BYTES + length];
+			System.arraycopy(iv, 0, result[a], 0, BLOCK_SIZE_BYTES);
+			
+			//provider may keep partial blocks, then use the usual path
+			if(m_cipher.update(data[a], 0, length, result[a], BLOCK_SIZE_BYTES) != length)
+				return super.encryptBatch(data);
+			
+			//move to the next block boundary
+			int blocks = skipToBlockBoundary(length);
+			addToCounter(iv, blocks);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Decrypts every element of data with AES CTR mode. Cipher is initialized once<br>
+	 * for each run of values whose ivs follow each other, as encryptBatch creates them.<br>
+	 * Other values cause a new initialization.
+	 * @param data Input data.
+	 * @return Decryption results, in the same order as data.
+	 * @throws Exception Throws exception if data is null, or an element has no data to decrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[][] decryptBatch(byte[][] data) throws Exception
+	{
+		if(data == null)
+		{
+			throw new Exception("Batch is null");
+		}
+		
+		byte[][] result = new byte[data.length][];
+		
+		//counter of the next block in the keystream
+		byte[] iv = new byte[BLOCK_SIZE_BYTES];
+		boolean initialized = false;
+		
+		for(int a = 0; a<data.length; a++)
+		{
+			//check if there is data to decrypt after the iv
+			if(data[a] == null || data[a].length <= BLOCK_SIZE_BYTES)
+			{
+				throw new Exception("No data to decrypt");
+			}
+			
+			//init cipher instance if iv of this value does not continue the keystream
+			if(! initialized || ! isCounter(data[a], iv))
+			{
+				System.arraycopy(data[a], 0, iv, 0, BLOCK_SIZE_BYTES);
+				m_cipher.init(javax.crypto.Cipher.DECRYPT_MODE, m_keySpec, new IvParameterSpec(iv));
+				initialized = true;
+			}
+			
+			int length = data[a].length - BLOCK_SIZE_BYTES;
+			result[a] = new byte[length];
+			
+			//provider may keep partial blocks, then use the usual path
+			if(m_cipher.update(data[a], BLOCK_SIZE_BYTES, length, result[a], 0) != length)
+				return super.decryptBatch(data);
+			
+			//move to the next block boundary
+			int blocks = skipToBlockBoundary(length);
+			addToCounter(iv, blocks);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Skips the keystream bytes that are left in the current block.
+	 * @param length Number of bytes processed since the last block boundary.
+	 * @return Number of blocks used by length bytes.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected int skipToBlockBoundary(int length) throws Exception
+	{
+		int blocks = (length + BLOCK_SIZE_BYTES - 1) / BLOCK_SIZE_BYTES;
+		int skip = blocks * BLOCK_SIZE_BYTES - length;
+		
+		if(skip > 0)
+			m_cipher.update(m_skipBuffer, 0, skip, m_skipBuffer, 0);
+		
+		return blocks;
+	}
+	
+	
+	/**
+	 * Adds the given number of blocks to a 128 bit big-endian counter, as CTR mode does.
+	 * @param counter Counter to be incremented.
+	 * @param blocks Number of blocks.
+	 */
+	protected static void addToCounter(byte[] counter, int blocks)
+	{
+		long carry = blocks & 0xffffffffL;
+		
+		for(int a = BLOCK_SIZE_BYTES - 1; a >= 0 && carry != 0; a--)
+		{
+			long sum = (counter[a] & 0xff) + carry;
+			counter[a] = (byte)sum;
+			carry = sum >>> 8;
+		}
+	}
+	
+	
+	/**
+	 * Checks if data starts with the given counter.
+	 * @param data Encrypted data that starts with an iv.
+	 * @param counter Counter.
+	 * @return true if iv of data is equal to counter.
+	 */
+	protected static boolean isCounter(byte[] data, byte[] counter)
+	{
+		for(int a = 0; a<BLOCK_SIZE_BYTES; a++)
+		{
+			if(data[a] != counter[a])
+				return false;
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Encrypts all bytes of in with AES CTR mode, and writes iv + encrypted data to out.<br>
+	 * Memory use does not depend on the size of the input. Streams are not closed.
+	 * @param in Input data.
+	 * @param out Output stream for the encryption result.
+	 * @return Number of bytes written to out, that is input size + 16.
+	 * @throws Exception Throws exception if there is no data to encrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class or streams.
+	 */
+	public long encrypt(InputStream in, OutputStream out) throws Exception
+	{
+		if(in == null || out == null)
+		{
+			throw new Exception("Stream is null");
+		}
+		
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		byte[] outBuffer = new byte[STREAM_BUFFER_SIZE + BLOCK_SIZE_BYTES];
+		
+		//read first part before writing iv, so that empty input writes nothing
+		int read = readSome(in, buffer);
+		if(read == -1)
+		{
+			throw new Exception("No data to encrypt");
+		}
+		
+		//create iv, write it and init cipher instance
+		byte[] iv = new byte[BLOCK_SIZE_BYTES];
+		initEncrypt(iv, 0);
+		out.write(iv);
+		
+		long total = BLOCK_SIZE_BYTES;
+		while(read != -1)
+		{
+			int written = m_cipher.update(buffer, 0, read, outBuffer, 0);
+			out.write(outBuffer, 0, written);
+			total += written;
+			
+			read = readSome(in, buffer);
+		}
+		
+		int written = m_cipher.doFinal(outBuffer, 0);
+		out.write(outBuffer, 0, written);
+		
+		return total + written;
+	}
+	
+	
+	/**
+	 * Reads iv + encrypted data from in, decrypts it with AES CTR mode and writes the<br>
+	 * result to out. Memory use does not depend on the size of the input. Streams are not closed.
+	 * @param in Input data.
+	 * @param out Output stream for the decryption result.
+	 * @return Number of bytes written to out, that is input size - 16.
+	 * @throws Exception Throws exception if there is no data to decrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class or streams.
+	 */
+	public long decrypt(InputStream in, OutputStream out) throws Exception
+	{
+		if(in == null || out == null)
+		{
+			throw new Exception("Stream is null");
+		}
+		
+		//read iv completely
+		byte[] iv = new byte[BLOCK_SIZE_BYTES];
+		int ivSize = 0;
+		while(ivSize < BLOCK_SIZE_BYTES)
+		{
+			int read = in.read(iv, ivSize, BLOCK_SIZE_BYTES - ivSize);
+			if(read == -1)
+			{
+				throw new Exception("No data to decrypt");
+			}
+			ivSize += read;
+		}
+		
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		byte[] outBuffer = new byte[STREAM_BUFFER_SIZE + BLOCK_SIZE_BYTES];
+		
+		int read = readSome(in, buffer);
+		if(read == -1)
+		{
+			throw new Exception("No data to decrypt");
+		}
 		
 		//init cipher instance
-		m_cipher.init(javax.crypto.Cipher.DECRYPT_MODE, m_keySpec, new IvParameterSpec(iv));
+		initDecrypt(iv, 0);
+		
+		long total = 0;
+		while(read != -1)
+		{
+			int written = m_cipher.update(buffer, 0, read, outBuffer, 0);
+			out.write(outBuffer, 0, written);
+			total += written;
+			
+			read = readSome(in, buffer);
+		}
+		
+		int written = m_cipher.doFinal(outBuffer, 0);
+		out.write(outBuffer, 0, written);
+		
+		return total + written;
+	}
+	
+	
+	/**
+	 * Reads at least one byte from in, unless the stream has ended.
+	 * @param in Input stream.
+	 * @param buffer Output buffer.
+	 * @return Number of bytes read, -1 at the end of the stream.
+	 * @throws Exception May throw exception based on the stream.
+	 */
+	protected static int readSome(InputStream in, byte[] buffer) throws Exception
+	{
+		int read;
+		do
+		{
+			read = in.read(buffer);
+		}
+		while(read == 0);
 		
-		//return decrypted value
-		return m_cipher.doFinal(data, (BLOCK_SIZE_BYTES + offset), data.length - (BLOCK_SIZE_BYTES + offset));
+		return read;
 	}
 }
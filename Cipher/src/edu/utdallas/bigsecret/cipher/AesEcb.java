@@ -23,6 +23,11 @@ import javax.crypto.spec.SecretKeySpec;
  */
 public class AesEcb extends JavaxCipher
 {
+	/**
+	 * Number of bytes in a block, which is constant for AES.
+	 */
+	protected static int BLOCK_SIZE_BYTES = 16;
+	
 	/**
 	 * Number of bytes for key
 	 */
@@ -53,7 +58,7 @@ public class AesEcb extends JavaxCipher
 		m_keySpec = new SecretKeySpec(key, "AES");
 		
 		//init cipher instance
-		m_cipher = javax.crypto.Cipher.getInstance("AES/ECB/PKCS5Padding");
+		m_cipher = ProviderRegistry.getCipher("AES/ECB/PKCS5Padding");
 	}
 
 	
@@ -118,4 +123,121 @@ public class AesEcb extends JavaxCipher
 		//return decrypted result
 		return m_cipher.doFinal(data, offset, data.length - offset);
 	}
+	
+	
+	/**
+	 * Returns the size of encrypted data with PKCS5 padding.
+	 * @param length Size of the input data.
+	 * @return Next multiple of 16 that is larger than length.
+	 */
+	public int getEncryptedSize(int length)
+	{
+		return (length / BLOCK_SIZE_BYTES + 1) * BLOCK_SIZE_BYTES;
+	}
+	
+	
+	/**
+	 * Returns the maximum size of decrypted data. Padding is removed after decryption,<br>
+	 * so the actual size is smaller.
+	 * @param length Size of the encrypted data.
+	 * @return length
+	 */
+	public int getDecryptedSize(int length)
+	{
+		return length;
+	}
+	
+	
+	/**
+	 * Initializes cipher for encryption. ECB mode has no header.
+	 * @param out Not used.
+	 * @param offset Not used.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void initEncrypt(byte[] out, int offset) throws Exception
+	{
+		m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec);
+	}
+	
+	
+	/**
+	 * Initializes cipher for decryption. ECB mode has no header.
+	 * @param in Not used.
+	 * @param offset Not used.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void initDecrypt(byte[] in, int offset) throws Exception
+	{
+		m_cipher.init(javax.crypto.Cipher.DECRYPT_MODE, m_keySpec);
+	}
+	
+	
+	/**
+	 * Encrypts every element of data with AES ECB mode. Cipher is initialized once<br>
+	 * for the whole batch.
+	 * @param data Input data.
+	 * @return Encryption results, in the same order as data.
+	 * @throws Exception Throws exception if data is null, or an element has no data to encrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[][] encryptBatch(byte[][] data) throws Exception
+	{
+		if(data == null)
+		{
+			throw new Exception("Batch is null");
+		}
+		
+		byte[][] result = new byte[data.length][];
+		
+		//init cipher instance once, doFinal resets it to this state
+		m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec);
+		
+		for(int a = 0; a<data.length; a++)
+		{
+			//check if there is data to encrypt
+			if(data[a] == null || data[a].length == 0)
+			{
+				throw new Exception("No data to encrypt");
+			}
+			
+			result[a] = m_cipher.doFinal(data[a]);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Decrypts every element of data with AES ECB mode. Cipher is initialized once<br>
+	 * for the whole batch.
+	 * @param data Input data.
+	 * @return Decryption results, in the same order as data.
+	 * @throws Exception Throws exception if data is null, or an element has no data to decrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[][] decryptBatch(byte[][] data) throws Exception
+	{
+		if(data == null)
+		{
+			throw new Exception("Batch is null");
+		}
+		
+		byte[][] result = new byte[data.length][];
+		
+		//init cipher instance once, doFinal resets it to this state
+		m_cipher.init(javax.crypto.Cipher.DECRYPT_MODE, m_keySpec);
+		
+		for(int a = 0; a<data.length; a++)
+		{
+			//check if there is data to decrypt
+			if(data[a] == null || data[a].length == 0)
+			{
+				throw new Exception("No data to decrypt");
+			}
+			
+			result[a] = m_cipher.doFinal(data[a]);
+		}
+		
+		return result;
+	}
 }
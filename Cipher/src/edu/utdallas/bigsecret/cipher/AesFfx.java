@@ -0,0 +1,340 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import java.util.Arrays;
+
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Deterministic and length-preserving cipher for key-parts. It is a Feistel network<br>
+ * on bytes, in the style of the FFX format-preserving modes (NIST FF1): the input is<br>
+ * split into a left and a right half, and each round XORs one half with a pseudorandom<br>
+ * function of the other half. The round function is AES CBC-MAC of a header block<br>
+ * (round number and input length) followed by the zero padded half, expanded with AES<br>
+ * when the half is longer than a block.<br>
+ * Unlike AesEcb, encryption result has the same size as the input, so there is no<br>
+ * padding, and every output byte depends on every input byte, so equal prefixes of<br>
+ * different inputs are not revealed. Equal inputs still give equal outputs, which is<br>
+ * what key-parts need. Inputs should be at least 2 bytes long; BigSecret key tuples<br>
+ * are at least 23 bytes long.
+ */
+public class AesFfx extends Cipher
+{
+	/**
+	 * Number of bytes in a block, which is constant for AES.
+	 */
+	protected static final int BLOCK_SIZE_BYTES = 16;
+	
+	/**
+	 * Number of Feistel rounds. FF3-1 uses 8 rounds, which is a large margin for<br>
+	 * halves of 11 bytes or more.
+	 */
+	protected static final int ROUNDS = 8;
+	
+	/**
+	 * Minimum input size, so that both halves have data.
+	 */
+	public static final int MIN_DATA_SIZE = 2;
+	
+	/**
+	 * AES CBC instance with zero IV, used as CBC-MAC.
+	 */
+	protected javax.crypto.Cipher m_mac;
+	
+	/**
+	 * AES ECB instance, used to expand the round function output.
+	 */
+	protected javax.crypto.Cipher m_block;
+	
+	/**
+	 * Input of the CBC-MAC: header block followed by the padded half.
+	 */
+	protected byte[] m_macInput;
+	
+	/**
+	 * Output of the CBC-MAC.
+	 */
+	protected byte[] m_macOutput;
+	
+	/**
+	 * Expansion blocks, and their encryption.
+	 */
+	protected byte[] m_expandInput;
+	protected byte[] m_expandOutput;
+	
+	
+	/**
+	 * Constructor for this class.
+	 * @param key Secret key for the cipher. Should be 16, 24 or 32 bytes long
+	 * @throws Exception Throws exception if key length is not 16, 24, or 32 bytes long. 
+	 */
+	public AesFfx(byte[] key) throws Exception
+	{
+		//call constructor of super class
+		super();
+		
+		//check input key
+		if(key == null || (key.length != 16 && key.length != 24 && key.length != 32))
+		{
+			throw new Exception("Key length should be 16, 24, or 32 bytes long");
+		}
+		
+		SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+		
+		//both instances are initialized once, doFinal resets them to this state
+		m_mac = ProviderRegistry.getCipher("AES/CBC/NoPadding");
+		m_mac.init(javax.crypto.Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(new byte[BLOCK_SIZE_BYTES]));
+		
+		m_block = ProviderRegistry.getCipher("AES/ECB/NoPadding");
+		m_block.init(javax.crypto.Cipher.ENCRYPT_MODE, keySpec);
+		
+		m_macInput = new byte[0];
+		m_expandInput = new byte[0];
+	}
+	
+	
+	/**
+	 * Encrypts input data. Result has the same size as the input.
+	 * @param data Input byte array.
+	 * @return Encryption result.
+	 * @throws Exception Throws exception if data is shorter than MIN_DATA_SIZE.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class
+	 */
+	public byte[] encrypt(byte[] data) throws Exception
+	{
+		//check if there is data to encrypt
+		if(data == null || data.length == 0)
+		{
+			throw new Exception("No data to encrypt");
+		}
+		
+		byte[] result = new byte[data.length];
+		encrypt(data, 0, data.length, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Decrypts input data.
+	 * @param data Input byte array.
+	 * @return Decryption result.
+	 * @throws Exception Throws exception if data is shorter than MIN_DATA_SIZE.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[] decrypt(byte[] data) throws Exception
+	{
+		//call overloaded function with offset = 0
+		return decrypt(data, 0);
+	}
+	
+	
+	/**
+	 * Decrypts input data starting and including the offset index position.
+	 * @param data Input byte array.
+	 * @param offset Offset to start decryption.
+	 * @return Decryption result.
+	 * @throws Exception Throws exception if there is no data to decrypt.<br>
+	 * 					 Throws exception if offset is invalid.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[] decrypt(byte[] data, int offset) throws Exception
+	{
+		//check if there is data to decrypt after the offset
+		if(data == null || data.length == 0 || data.length <= offset)
+		{
+			throw new Exception("No data to decrypt");
+		}
+		
+		byte[] result = new byte[data.length - offset];
+		decrypt(data, offset, result.length, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the size of encrypted data, which is the input size.
+	 * @param length Size of the input data.
+	 * @return length
+	 */
+	public int getEncryptedSize(int length)
+	{
+		return length;
+	}
+	
+	
+	/**
+	 * Returns the size of decrypted data, which is the input size.
+	 * @param length Size of the encrypted data.
+	 * @return length
+	 */
+	public int getDecryptedSize(int length)
+	{
+		return length;
+	}
+	
+	
+	/**
+	 * Encrypts len bytes of src into dst. src and dst may be the same array.
+	 * @param src Input data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to encrypt.
+	 * @param dst Output array.
+	 * @param dstOff Starting index in output array.
+	 * @return len
+	 * @throws Exception Throws exception if len is smaller than MIN_DATA_SIZE.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public int encrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		if(src == null || len < MIN_DATA_SIZE)
+		{
+			throw new Exception("Data should be at least " + MIN_DATA_SIZE + " bytes long");
+		}
+		
+		System.arraycopy(src, off, dst, dstOff, len);
+		
+		for(int round = 0; round<ROUNDS; round++)
+			doRound(dst, dstOff, len, round);
+		
+		return len;
+	}
+	
+	
+	/**
+	 * Decrypts len bytes of src into dst. src and dst may be the same array.
+	 * @param src Input data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to decrypt.
+	 * @param dst Output array.
+	 * @param dstOff Starting index in output array.
+	 * @return len
+	 * @throws Exception Throws exception if len is smaller than MIN_DATA_SIZE.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public int decrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		if(src == null || len < MIN_DATA_SIZE || off < 0 || src.length < off + len)
+		{
+			throw new Exception("No data to decrypt");
+		}
+		
+		System.arraycopy(src, off, dst, dstOff, len);
+		
+		//rounds are XORs, so decryption runs them in reverse order
+		for(int round = ROUNDS - 1; round>=0; round--)
+			doRound(dst, dstOff, len, round);
+		
+		return len;
+	}
+	
+	
+	/**
+	 * Runs one Feistel round in place. Even rounds change the left half with the<br>
+	 * right half as the round function input, odd rounds do the opposite.
+	 * @param data Data array.
+	 * @param offset Starting index of the data.
+	 * @param length Size of the data.
+	 * @param round Round number.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void doRound(byte[] data, int offset, int length, int round) throws Exception
+	{
+		int leftSize = length / 2;
+		int rightSize = length - leftSize;
+		
+		if(round % 2 == 0)
+			xorRoundFunction(data, offset + leftSize, rightSize, data, offset, leftSize, length, round);
+		else
+			xorRoundFunction(data, offset, leftSize, data, offset + leftSize, rightSize, length, round);
+	}
+	
+	
+	/**
+	 * XORs the round function of the input half into the output half.
+	 * @param in Array of the input half.
+	 * @param inOff Starting index of the input half.
+	 * @param inLen Size of the input half.
+	 * @param out Array of the output half.
+	 * @param outOff Starting index of the output half.
+	 * @param outLen Size of the output half.
+	 * @param length Size of the whole data.
+	 * @param round Round number.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void xorRoundFunction(byte[] in, int inOff, int inLen, byte[] out, int outOff, int outLen, int length, int round) throws Exception
+	{
+		//header block || input half padded with zeros
+		int macSize = BLOCK_SIZE_BYTES + (inLen + BLOCK_SIZE_BYTES - 1) / BLOCK_SIZE_BYTES * BLOCK_SIZE_BYTES;
+		if(m_macInput.length < macSize)
+		{
+			m_macInput = new byte[macSize];
+			m_macOutput = new byte[macSize];
+		}
+		
+		//header fixes round and both half sizes, so zero padding is unambiguous
+		Arrays.fill(m_macInput, 0, macSize, (byte)0);
+		m_macInput[0] = 1;
+		m_macInput[1] = (byte)ROUNDS;
+		m_macInput[2] = (byte)round;
+		m_macInput[4] = (byte)(length >>> 24);
+		m_macInput[5] = (byte)(length >>> 16);
+		m_macInput[6] = (byte)(length >>> 8);
+		m_macInput[7] = (byte)length;
+		System.arraycopy(in, inOff, m_macInput, BLOCK_SIZE_BYTES, inLen);
+		
+		//last CBC block is the MAC
+		m_mac.doFinal(m_macInput, 0, macSize, m_macOutput, 0);
+		int macOff = macSize - BLOCK_SIZE_BYTES;
+		
+		int first = Math.min(outLen, BLOCK_SIZE_BYTES);
+		for(int a = 0; a<first; a++)
+			out[outOff + a] ^= m_macOutput[macOff + a];
+		
+		if(outLen <= BLOCK_SIZE_BYTES)
+			return;
+		
+		//expand as in FF1: MAC || AES(MAC xor 1) || AES(MAC xor 2) || ...
+		int blocks = (outLen - 1) / BLOCK_SIZE_BYTES;
+		int expandSize = blocks * BLOCK_SIZE_BYTES;
+		if(m_expandInput.length < expandSize)
+		{
+			m_expandInput = new byte[expandSize];
+			m_expandOutput = new byte[expandSize];
+		}
+		
+		for(int b = 0; b<blocks; b++)
+		{
+			int pos = b * BLOCK_SIZE_BYTES;
+			System.arraycopy(m_macOutput, macOff, m_expandInput, pos, BLOCK_SIZE_BYTES);
+			
+			int counter = b + 1;
+			m_expandInput[pos + 12] ^= (byte)(counter >>> 24);
+			m_expandInput[pos + 13] ^= (byte)(counter >>> 16);
+			m_expandInput[pos + 14] ^= (byte)(counter >>> 8);
+			m_expandInput[pos + 15] ^= (byte)counter;
+		}
+		
+		m_block.doFinal(m_expandInput, 0, expandSize, m_expandOutput, 0);
+		
+		for(int a = BLOCK_SIZE_BYTES; a<outLen; a++)
+			out[outOff + a] ^= m_expandOutput[a - BLOCK_SIZE_BYTES];
+	}
+}
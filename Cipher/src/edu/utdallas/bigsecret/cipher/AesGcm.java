@@ -0,0 +1,257 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class extends abstract Cipher class. It implements AES in Galois/Counter mode,<br>
+ * which authenticates the data while encrypting it in a single pass.<br>
+ * Encryption result is nonce (12 bytes) || encrypted data || tag (16 bytes). Like<br>
+ * AesCtr, the header is in front of the encrypted data, so decrypt(data, offset) works<br>
+ * the same way. Decryption throws exception if the data is modified.<br>
+ * Javax GCM provider comes with Java 8 or later.
+ */
+public class AesGcm extends JavaxCipher
+{
+	/**
+	 * Number of bytes in a nonce.
+	 */
+	protected static int NONCE_SIZE_BYTES = 12;
+	
+	/**
+	 * Number of bytes in an authentication tag.
+	 */
+	protected static int TAG_SIZE_BYTES = 16;
+	
+	/**
+	 * Number of bits in an authentication tag.
+	 */
+	protected static int TAG_SIZE_BITS = 128;
+	
+	/**
+	 * Number of bytes in key.
+	 */
+	protected int KEY_SIZE_BYTES;
+	
+	/**
+	 * Nonce generator that is shared by AesGcm instances that are not given one.<br>
+	 * It is created after the constants above, as it uses NONCE_SIZE_BYTES.
+	 */
+	protected static IvGenerator DEFAULT_NONCE_GENERATOR = createDefaultNonceGenerator();
+	
+	/**
+	 * Nonce generator.
+	 */
+	protected IvGenerator m_nonceGenerator;
+	
+	
+	/**
+	 * Class constructor. Creates a Javax.Crypto.Cipher instance with AES in GCM<br>
+	 * mode, without any padding.
+	 * @param key Input key for the cipher. Should be 16, 24, or 32 bytes long
+	 * @throws Exception Throws exception if key length is not 16, 24, or 32 bytes.<br>
+	 * 					 May throw exception based on Javax.Crypto classes.
+	 */
+	public AesGcm(byte[] key) throws Exception
+	{
+		this(key, DEFAULT_NONCE_GENERATOR);
+	}
+	
+	
+	/**
+	 * Class constructor with a given nonce generator.
+	 * @param key Input key for the cipher. Should be 16, 24, or 32 bytes long
+	 * @param nonceGenerator Iv generator that creates 12 byte nonces. Nonces should never repeat for a key.
+	 * @throws Exception Throws exception if key length is not 16, 24, or 32 bytes.<br>
+	 * 					 Throws exception if nonce generator is null or its iv size is not 12.<br>
+	 * 					 May throw exception based on Javax.Crypto classes.
+	 */
+	public AesGcm(byte[] key, IvGenerator nonceGenerator) throws Exception
+	{
+		//use default constructor for cipher.Cipher
+		super();
+		
+		//check if nonce generator is ok
+		if(nonceGenerator == null || nonceGenerator.getIvSize() != NONCE_SIZE_BYTES)
+		{
+			throw new Exception("Nonce generator should create 12 byte nonces");
+		}
+		
+		//check if input key is ok
+		if(key == null || (key.length != 16 && key.length != 24 && key.length != 32))
+		{
+			throw new Exception("Key length should be 16, 24, or 32 bytes long");
+		}
+		
+		//set key length
+		KEY_SIZE_BYTES = key.length;
+		
+		//create secret key spec instance
+		m_keySpec = new SecretKeySpec(key, "AES");
+		
+		//create cipher instance
+		m_cipher = ProviderRegistry.getCipher("AES/GCM/NoPadding");
+		
+		//set nonce generator
+		m_nonceGenerator = nonceGenerator;
+	}
+	
+	
+	/**
+	 * Creates the default nonce generator.
+	 * @return Counter based generator of 12 byte nonces.
+	 */
+	protected static IvGenerator createDefaultNonceGenerator()
+	{
+		try
+		{
+			return new CounterIvGenerator(NONCE_SIZE_BYTES);
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	
+	/**
+	 * Encrypts input data with AES GCM mode.
+	 * @param data Input byte array.
+	 * @return Encryption result.
+	 * @throws Exception Throws exception if there is no data to encrypt.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class
+	 */
+	public byte[] encrypt(byte[] data) throws Exception 
+	{
+		//check if there is data to encrypt
+		if(data == null || data.length == 0)
+		{
+			throw new Exception("No data to encrypt");
+		}
+		
+		//create result array and write nonce + encrypted data + tag into it
+		byte[] result = new byte[getEncryptedSize(data.length)];
+		encrypt(data, 0, data.length, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Decrypts input data with AES GCM mode
+	 * @param data Input byte array.
+	 * @return Decryption result.
+	 * @throws Exception Throws exception if there is no data to decrypt.<br>
+	 * 					 Throws exception if data is modified.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[] decrypt(byte[] data) throws Exception 
+	{
+		//call overriden function with offset = 0
+		return decrypt(data, 0);
+	}
+	
+	
+	/**
+	 * Decrypts input data starting and including the offset index position<br>
+	 * with AES GCM mode.
+	 * @param data Input byte array.
+	 * @param offset Offset to start decryption.
+	 * @return Decryption result.
+	 * @throws Exception Throws exception if there is no data to decrypt.<br>
+	 * 					 Throws exception if offset is invalid.<br>
+	 * 					 Throws exception if data is modified.<br>
+	 * 					 May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	public byte[] decrypt(byte[] data, int offset) throws Exception 
+	{
+		//check if there is data to decrypt after the offset, nonce and tag
+		if(data == null || offset < 0 || data.length <= NONCE_SIZE_BYTES + TAG_SIZE_BYTES + offset)
+		{
+			throw new Exception("No data to decrypt");
+		}
+		
+		//create result array and decrypt into it
+		byte[] result = new byte[getDecryptedSize(data.length - offset)];
+		decrypt(data, offset, data.length - offset, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the size of nonce + encrypted data + tag.
+	 * @param length Size of the input data.
+	 * @return length + 28
+	 */
+	public int getEncryptedSize(int length)
+	{
+		return NONCE_SIZE_BYTES + length + TAG_SIZE_BYTES;
+	}
+	
+	
+	/**
+	 * Returns the size of decrypted data, that is the size without nonce and tag.
+	 * @param length Size of the encrypted data, including nonce and tag.
+	 * @return length - 28
+	 */
+	public int getDecryptedSize(int length)
+	{
+		return length - NONCE_SIZE_BYTES - TAG_SIZE_BYTES;
+	}
+	
+	
+	/**
+	 * Nonce is the header of encrypted data.
+	 * @return 12
+	 */
+	protected int getHeaderSize()
+	{
+		return NONCE_SIZE_BYTES;
+	}
+	
+	
+	/**
+	 * Creates a new nonce, writes it to out, and initializes cipher for encryption.
+	 * @param out Output array for the nonce.
+	 * @param offset Starting index of the nonce.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void initEncrypt(byte[] out, int offset) throws Exception
+	{
+		//create nonce in place
+		m_nonceGenerator.nextIv(out, offset);
+		
+		//init cipher instance
+		m_cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, m_keySpec, new GCMParameterSpec(TAG_SIZE_BITS, out, offset, NONCE_SIZE_BYTES));
+	}
+	
+	
+	/**
+	 * Reads nonce from in, and initializes cipher for decryption.
+	 * @param in Input array that holds the nonce.
+	 * @param offset Starting index of the nonce.
+	 * @throws Exception May throw exception based on Javax.Crypto.Cipher class.
+	 */
+	protected void initDecrypt(byte[] in, int offset) throws Exception
+	{
+		//init cipher instance
+		m_cipher.init(javax.crypto.Cipher.DECRYPT_MODE, m_keySpec, new GCMParameterSpec(TAG_SIZE_BITS, in, offset, NONCE_SIZE_BYTES));
+	}
+}
@@ -16,9 +16,18 @@
 
 package edu.utdallas.bigsecret.cipher;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * Abstract class to perform encryption, decryption, and decryption by an offset.
+ * Abstract class to perform encryption, decryption, and decryption by an offset.<br>
+ * Besides the functions that return a new array, there are functions that write<br>
+ * their result into a caller provided byte array or ByteBuffer. Default implementations<br>
+ * of those copy the result of the array functions, sub-classes override them to<br>
+ * avoid temporary arrays.
  */
 public abstract class Cipher 
 {	
@@ -57,4 +66,201 @@ public abstract class Cipher
 	 * @throws Exception
 	 */
 	public abstract byte[] decrypt(byte[] data, int offset) throws Exception;
+	
+	
+	/**
+	 * Returns the size of the encryption result for an input of the given size.
+	 * @param length Size of the input data.
+	 * @return Size of the encryption result.
+	 */
+	public abstract int getEncryptedSize(int length);
+	
+	
+	/**
+	 * Returns the maximum size of the decryption result for an input of the given size.<br>
+	 * Actual size may be smaller, e.g. when padding is removed.
+	 * @param length Size of the encrypted data.
+	 * @return Maximum size of the decryption result.
+	 */
+	public abstract int getDecryptedSize(int length);
+	
+	
+	/**
+	 * Encrypt len bytes of src starting from off, and write the result to dst starting from dstOff.<br>
+	 * dst should have at least getEncryptedSize(len) bytes after dstOff.
+	 * @param src Input data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to encrypt.
+	 * @param dst Output array.
+	 * @param dstOff Starting index in output array.
+	 * @return Number of bytes written to dst.
+	 * @throws Exception
+	 */
+	public int encrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		byte[] result = encrypt(Arrays.copyOfRange(src, off, off + len));
+		System.arraycopy(result, 0, dst, dstOff, result.length);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Decrypt len bytes of src starting from off, and write the result to dst starting from dstOff.<br>
+	 * dst should have at least getDecryptedSize(len) bytes after dstOff.
+	 * @param src Input data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to decrypt.
+	 * @param dst Output array.
+	 * @param dstOff Starting index in output array.
+	 * @return Number of bytes written to dst.
+	 * @throws Exception
+	 */
+	public int decrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		byte[] result = decrypt(Arrays.copyOfRange(src, off, off + len));
+		System.arraycopy(result, 0, dst, dstOff, result.length);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Encrypt remaining bytes of src, and write the result to dst. Both buffers may be direct.<br>
+	 * Position of src is moved to its limit, position of dst is moved by the number of written bytes.
+	 * @param src Input data.
+	 * @param dst Output buffer. Should have at least getEncryptedSize(src.remaining()) bytes remaining.
+	 * @return Number of bytes written to dst.
+	 * @throws Exception
+	 */
+	public int encrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		byte[] data = new byte[src.remaining()];
+		src.get(data);
+		
+		byte[] result = encrypt(data);
+		dst.put(result);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Decrypt remaining bytes of src, and write the result to dst. Both buffers may be direct.<br>
+	 * Position of src is moved to its limit, position of dst is moved by the number of written bytes.
+	 * @param src Input data.
+	 * @param dst Output buffer. Should have at least getDecryptedSize(src.remaining()) bytes remaining.
+	 * @return Number of bytes written to dst.
+	 * @throws Exception
+	 */
+	public int decrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		byte[] data = new byte[src.remaining()];
+		src.get(data);
+		
+		byte[] result = decrypt(data);
+		dst.put(result);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Encrypt every element of data.<br>
+	 * Default implementation encrypts elements one by one. Sub-classes override this<br>
+	 * to initialize the cipher once for the whole batch.
+	 * @param data Input data. Elements should not be null or empty.
+	 * @return Encryption results, in the same order as data.
+	 * @throws Exception Throws exception if data is null.
+	 */
+	public byte[][] encryptBatch(byte[][] data) throws Exception
+	{
+		if(data == null)
+			throw new Exception("Batch is null");
+		
+		byte[][] result = new byte[data.length][];
+		for(int a = 0; a<data.length; a++)
+			result[a] = encrypt(data[a]);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Decrypt every element of data.<br>
+	 * Default implementation decrypts elements one by one. Sub-classes override this<br>
+	 * to initialize the cipher once for the whole batch.
+	 * @param data Input data. Elements should not be null or empty.
+	 * @return Decryption results, in the same order as data.
+	 * @throws Exception Throws exception if data is null.
+	 */
+	public byte[][] decryptBatch(byte[][] data) throws Exception
+	{
+		if(data == null)
+			throw new Exception("Batch is null");
+		
+		byte[][] result = new byte[data.length][];
+		for(int a = 0; a<data.length; a++)
+			result[a] = decrypt(data[a]);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Encrypt all bytes of in, and write the result to out. Streams are not closed.<br>
+	 * Default implementation reads the whole input into memory. Sub-classes override<br>
+	 * this to process the input with a bounded buffer.
+	 * @param in Input data.
+	 * @param out Output stream for the encryption result.
+	 * @return Number of bytes written to out.
+	 * @throws Exception
+	 */
+	public long encrypt(InputStream in, OutputStream out) throws Exception
+	{
+		byte[] result = encrypt(readAll(in));
+		out.write(result);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Decrypt all bytes of in, and write the result to out. Streams are not closed.<br>
+	 * Default implementation reads the whole input into memory. Sub-classes override<br>
+	 * this to process the input with a bounded buffer.
+	 * @param in Input data.
+	 * @param out Output stream for the decryption result.
+	 * @return Number of bytes written to out.
+	 * @throws Exception
+	 */
+	public long decrypt(InputStream in, OutputStream out) throws Exception
+	{
+		byte[] result = decrypt(readAll(in));
+		out.write(result);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Reads all bytes of the input stream.
+	 * @param in Input stream.
+	 * @return Bytes of in.
+	 * @throws Exception Throws exception if in is null.
+	 */
+	protected static byte[] readAll(InputStream in) throws Exception
+	{
+		if(in == null)
+			throw new Exception("Input stream is null");
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		
+		int read;
+		while((read = in.read(buffer)) != -1)
+			data.write(buffer, 0, read);
+		
+		return data.toByteArray();
+	}
 }
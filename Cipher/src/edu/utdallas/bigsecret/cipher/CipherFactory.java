@@ -0,0 +1,34 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+
+/**
+ * Creates new cipher instances. ConcurrentCipher uses a factory to create the cipher<br>
+ * of each thread, so the wrapped ciphers can be configured freely, for example an AesCtr<br>
+ * with a KeystreamPool or an IvGenerator, or an AesGcm with its own nonce generator.
+ */
+public interface CipherFactory
+{
+	/**
+	 * Creates a new cipher instance. Every call should return a different instance,<br>
+	 * since the returned cipher is used only by the calling thread.
+	 * @return New cipher instance.
+	 * @throws Exception Throws exception if the cipher can not be created.
+	 */
+	public Cipher newCipher() throws Exception;
+}
@@ -0,0 +1,280 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Thread-safe Cipher. JavaxCipher subclasses hold a single javax.crypto.Cipher<br>
+ * instance, and re-initialize it on every call, so they can not be shared between<br>
+ * threads. This class keeps one instance of the wrapped cipher class per thread, and<br>
+ * forwards every call to the instance of the calling thread. Hence a single<br>
+ * ConcurrentCipher can be given to a Crypter that is used by many proxy threads.<br>
+ * Per-thread instances are created by a CipherFactory, or by the (byte[] key)<br>
+ * constructor of the wrapped cipher class.
+ */
+public class ConcurrentCipher extends Cipher
+{
+	/**
+	 * Factory that creates the cipher instance of each thread.
+	 */
+	protected CipherFactory m_factory;
+	
+	/**
+	 * Cipher instance of each thread.
+	 */
+	protected ThreadLocal<Cipher> m_cipher;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param cipherClass Cipher class to be used by each thread, such as AesCtr.class
+	 * @param key Secret key for the cipher.
+	 * @throws Exception Throws exception if cipher class is null, or it does not have a (byte[] key) constructor.<br>
+	 * 					 Throws exception if the wrapped cipher does not accept the key.
+	 */
+	public ConcurrentCipher(Class<? extends Cipher> cipherClass, byte[] key) throws Exception
+	{
+		this(getClassFactory(cipherClass, key));
+	}
+	
+	
+	/**
+	 * Class constructor.
+	 * @param factory Factory that creates the cipher instance of each thread.
+	 * @throws Exception Throws exception if factory is null, or it can not create a cipher.
+	 */
+	public ConcurrentCipher(CipherFactory factory) throws Exception
+	{
+		//call constructor of super class
+		super();
+		
+		//check input
+		if(factory == null)
+			throw new Exception("Cipher factory is null");
+		
+		m_factory = factory;
+		
+		//create an instance for the calling thread, so that invalid keys are reported here
+		final Cipher first = newInstance();
+		
+		m_cipher = new ThreadLocal<Cipher>()
+		{
+			protected Cipher initialValue()
+			{
+				try
+				{
+					return newInstance();
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException("Cipher instance could not be created", e);
+				}
+			}
+		};
+		m_cipher.set(first);
+	}
+	
+	
+	/**
+	 * Returns a factory that creates instances of the given class with its (byte[] key) constructor.
+	 * @param cipherClass Cipher class, such as AesCtr.class
+	 * @param key Secret key for the cipher.
+	 * @return Cipher factory.
+	 * @throws Exception Throws exception if cipher class or key is null, or the class does not have a (byte[] key) constructor.
+	 */
+	public static CipherFactory getClassFactory(Class<? extends Cipher> cipherClass, byte[] key) throws Exception
+	{
+		//check inputs
+		if(cipherClass == null)
+			throw new Exception("Cipher class is null");
+		else if(key == null)
+			throw new Exception("Key is null");
+		
+		//get (byte[] key) constructor of the cipher class
+		final Constructor<? extends Cipher> constructor = cipherClass.getConstructor(byte[].class);
+		
+		//keep own copy of the key
+		final byte[] factoryKey = key.clone();
+		
+		return new CipherFactory()
+		{
+			public Cipher newCipher() throws Exception
+			{
+				try
+				{
+					return constructor.newInstance((Object)factoryKey.clone());
+				}
+				catch (InvocationTargetException e)
+				{
+					//unwrap the exception of the cipher constructor
+					if(e.getCause() instanceof Exception)
+						throw (Exception)e.getCause();
+					else
+						throw e;
+				}
+			}
+		};
+	}
+	
+	
+	/**
+	 * Creates a new instance of the wrapped cipher with the factory.
+	 * @return New cipher instance.
+	 * @throws Exception Throws exception thrown by the factory, or if the factory returns null.
+	 */
+	protected Cipher newInstance() throws Exception
+	{
+		Cipher result = m_factory.newCipher();
+		if(result == null)
+			throw new Exception("Cipher factory returned null");
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns the cipher instance of the calling thread.
+	 * @return Cipher instance that is used only by the calling thread.
+	 */
+	public Cipher getLocalCipher()
+	{
+		return m_cipher.get();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] encrypt(byte[] data) throws Exception
+	{
+		return m_cipher.get().encrypt(data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] decrypt(byte[] data) throws Exception
+	{
+		return m_cipher.get().decrypt(data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] decrypt(byte[] data, int offset) throws Exception
+	{
+		return m_cipher.get().decrypt(data, offset);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getEncryptedSize(int length)
+	{
+		return m_cipher.get().getEncryptedSize(length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getDecryptedSize(int length)
+	{
+		return m_cipher.get().getDecryptedSize(length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int encrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		return m_cipher.get().encrypt(src, off, len, dst, dstOff);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int decrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		return m_cipher.get().decrypt(src, off, len, dst, dstOff);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int encrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		return m_cipher.get().encrypt(src, dst);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int decrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		return m_cipher.get().decrypt(src, dst);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[][] encryptBatch(byte[][] data) throws Exception
+	{
+		return m_cipher.get().encryptBatch(data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[][] decryptBatch(byte[][] data) throws Exception
+	{
+		return m_cipher.get().decryptBatch(data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long encrypt(InputStream in, OutputStream out) throws Exception
+	{
+		return m_cipher.get().encrypt(in, out);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long decrypt(InputStream in, OutputStream out) throws Exception
+	{
+		return m_cipher.get().decrypt(in, out);
+	}
+}
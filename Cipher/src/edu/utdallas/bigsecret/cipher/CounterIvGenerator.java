@@ -0,0 +1,158 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import java.security.SecureRandom;
+
+
+/**
+ * This class extends IvGenerator. It creates 16 byte ivs for AES CTR mode without<br>
+ * drawing random bits for every iv. Each thread keeps its own SecureRandom and state,<br>
+ * so threads never wait for each other. The layout of an iv is:<br>
+ * random prefix (8 bytes) || message counter (4 bytes) || block counter (4 bytes, 0)<br>
+ * Message counter is incremented for every iv. When it wraps around, a new random<br>
+ * prefix is drawn. Block counter starts from 0 and is incremented by AES CTR mode itself<br>
+ * for each block of a message, so keystreams of two ivs never overlap for messages<br>
+ * shorter than 2^32 blocks (64 GB).<br>
+ * It can also create 12 byte nonces for AES GCM mode, which are the same without the<br>
+ * block counter.
+ */
+public class CounterIvGenerator extends IvGenerator
+{
+	/**
+	 * Number of bytes in an iv, which is the block size of AES.
+	 */
+	protected static int IV_SIZE_BYTES = 16;
+	
+	/**
+	 * Number of bytes in a nonce without block counter.
+	 */
+	protected static int NONCE_SIZE_BYTES = 12;
+	
+	/**
+	 * Number of bytes created for each iv, either IV_SIZE_BYTES or NONCE_SIZE_BYTES.
+	 */
+	protected int m_ivSize;
+	
+	
+	/**
+	 * Iv generation state of a single thread.
+	 */
+	protected static class State
+	{
+		/**
+		 * Random generator that is used only by this thread.
+		 */
+		protected SecureRandom m_random = new SecureRandom();
+		
+		/**
+		 * Current random prefix.
+		 */
+		protected long m_prefix;
+		
+		/**
+		 * Message counter. A new prefix is drawn when this value is 0.
+		 */
+		protected int m_counter = 0;
+	}
+	
+	
+	/**
+	 * State of each thread.
+	 */
+	protected ThreadLocal<State> m_state;
+	
+	
+	/**
+	 * Class constructor. Creates 16 byte ivs.
+	 */
+	public CounterIvGenerator()
+	{
+		m_ivSize = IV_SIZE_BYTES;
+		
+		m_state = new ThreadLocal<State>()
+		{
+			protected State initialValue()
+			{
+				return new State();
+			}
+		};
+	}
+	
+	
+	/**
+	 * Class constructor with a given iv size.
+	 * @param ivSize 16 for ivs with block counter, 12 for nonces without block counter.
+	 * @throws Exception Throws exception if ivSize is not 16 or 12.
+	 */
+	public CounterIvGenerator(int ivSize) throws Exception
+	{
+		this();
+		
+		if(ivSize != IV_SIZE_BYTES && ivSize != NONCE_SIZE_BYTES)
+			throw new Exception("Iv size should be 16 or 12 bytes");
+		
+		m_ivSize = ivSize;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void nextIv(byte[] out, int offset)
+	{
+		State state = m_state.get();
+		
+		//draw a new prefix at the first use, and every time counter wraps around
+		if(state.m_counter == 0)
+			state.m_prefix = state.m_random.nextLong();
+		
+		long prefix = state.m_prefix;
+		int counter = state.m_counter++;
+		
+		//write prefix
+		for(int a = 7; a >= 0; a--)
+		{
+			out[offset + a] = (byte)prefix;
+			prefix >>>= 8;
+		}
+		
+		//write message counter
+		out[offset + 8] = (byte)(counter >>> 24);
+		out[offset + 9] = (byte)(counter >>> 16);
+		out[offset + 10] = (byte)(counter >>> 8);
+		out[offset + 11] = (byte)counter;
+		
+		if(m_ivSize == NONCE_SIZE_BYTES)
+			return;
+		
+		//block counter starts from 0
+		out[offset + 12] = 0;
+		out[offset + 13] = 0;
+		out[offset + 14] = 0;
+		out[offset + 15] = 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIvSize()
+	{
+		return m_ivSize;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+
+/**
+ * Abstract class for the generation of initialization vectors.<br>
+ * Implementations write the iv directly into the given array, so that the iv<br>
+ * can be generated in place, in front of the encrypted data.
+ */
+public abstract class IvGenerator
+{
+	/**
+	 * Default constructor.
+	 */
+	public IvGenerator()
+	{
+	}
+	
+	
+	/**
+	 * Write a new iv to out, starting from offset.
+	 * @param out Output array. Should have at least getIvSize() bytes after offset.
+	 * @param offset Starting index of the iv.
+	 */
+	public abstract void nextIv(byte[] out, int offset);
+	
+	
+	/**
+	 * Returns the number of bytes in an iv.
+	 * @return Size of an iv.
+	 */
+	public abstract int getIvSize();
+}
@@ -16,9 +16,14 @@
 
 package edu.utdallas.bigsecret.cipher;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * Cipher class that uses built-in Javax library Cipher instances.
+ * Cipher class that uses built-in Javax library Cipher instances.<br>
+ * Encryption result is a header (e.g. an IV, may be empty) followed by the output of<br>
+ * the javax cipher. Sub-classes define the header by implementing initEncrypt and<br>
+ * initDecrypt, and this class writes results directly into caller provided buffers.
  */
 public abstract class JavaxCipher extends Cipher
 {
@@ -32,6 +37,11 @@ public abstract class JavaxCipher extends Cipher
 	 */
 	protected javax.crypto.spec.SecretKeySpec m_keySpec;
 	
+	/**
+	 * Temporary header data for ByteBuffer operations.
+	 */
+	protected byte[] m_header;
+	
 	
 	/**
 	 * Default constructor.
@@ -41,4 +51,150 @@ public abstract class JavaxCipher extends Cipher
 	{
 		
 	}
+	
+	
+	/**
+	 * Returns the size of the header that is put in front of the encrypted data.
+	 * @return Size of the header. 0 by default.
+	 */
+	protected int getHeaderSize()
+	{
+		return 0;
+	}
+	
+	
+	/**
+	 * Initializes m_cipher for encryption, and writes the header to out starting from offset.
+	 * @param out Output array for the header.
+	 * @param offset Starting index of the header.
+	 * @throws Exception
+	 */
+	protected abstract void initEncrypt(byte[] out, int offset) throws Exception;
+	
+	
+	/**
+	 * Initializes m_cipher for decryption, with the header read from in starting from offset.
+	 * @param in Input array that holds the header.
+	 * @param offset Starting index of the header.
+	 * @throws Exception
+	 */
+	protected abstract void initDecrypt(byte[] in, int offset) throws Exception;
+	
+	
+	/**
+	 * Returns the temporary header array for ByteBuffer operations.
+	 * @return Header array of size getHeaderSize().
+	 */
+	protected byte[] getHeaderArray()
+	{
+		if(m_header == null)
+			m_header = new byte[getHeaderSize()];
+		
+		return m_header;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * src and dst may be the same array. Since the header is written before the input is read,
+	 * input that overlaps the output is copied first.
+	 */
+	public int encrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		//check if there is data to encrypt
+		if(src == null || len <= 0)
+		{
+			throw new Exception("No data to encrypt");
+		}
+		
+		int headerSize = getHeaderSize();
+		
+		//copy input that the header or the cipher text would overwrite
+		if(src == dst && off < dstOff + headerSize + len && dstOff < off + len)
+		{
+			src = Arrays.copyOfRange(src, off, off + len);
+			off = 0;
+		}
+		
+		//write header and init cipher instance
+		initEncrypt(dst, dstOff);
+		
+		//encrypt data right after the header
+		return headerSize + m_cipher.doFinal(src, off, len, dst, dstOff + headerSize);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int decrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		int headerSize = getHeaderSize();
+		
+		//check if there is data to decrypt after the header
+		if(src == null || len <= headerSize || off < 0 || src.length < off + len)
+		{
+			throw new Exception("No data to decrypt");
+		}
+		
+		//read header and init cipher instance
+		initDecrypt(src, off);
+		
+		//decrypt data after the header
+		return m_cipher.doFinal(src, off + headerSize, len - headerSize, dst, dstOff);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * Heap buffers backed by the same array are supported, the input is copied before the header is written.
+	 * Direct buffers must not share memory.
+	 */
+	public int encrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		//check if there is data to encrypt
+		if(src == null || !src.hasRemaining())
+		{
+			throw new Exception("No data to encrypt");
+		}
+		
+		//copy input that shares its array with the output
+		if(src.hasArray() && dst.hasArray() && src.array() == dst.array())
+		{
+			ByteBuffer copy = ByteBuffer.allocate(src.remaining());
+			copy.put(src);
+			copy.flip();
+			src = copy;
+		}
+		
+		//write header and init cipher instance
+		byte[] header = getHeaderArray();
+		initEncrypt(header, 0);
+		dst.put(header);
+		
+		//encrypt data right after the header
+		return header.length + m_cipher.doFinal(src, dst);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int decrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		byte[] header = getHeaderArray();
+		
+		//check if there is data to decrypt after the header
+		if(src == null || src.remaining() <= header.length)
+		{
+			throw new Exception("No data to decrypt");
+		}
+		
+		//read header and init cipher instance
+		src.get(header);
+		initDecrypt(header, 0);
+		
+		//decrypt data after the header
+		return m_cipher.doFinal(src, dst);
+	}
 }
@@ -0,0 +1,290 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Bounded pool of precomputed AES CTR keystream segments.<br>
+ * Worker threads create a fresh iv, encrypt a block of zeros with it, and put<br>
+ * iv || keystream into a bounded queue. Workers block when the queue is full and<br>
+ * continue as soon as segments are taken, so the pool refills itself.<br>
+ * Each segment is handed out only once. AesCtr instances that are given a pool<br>
+ * encrypt short values by XORing them with a segment, and fall back to the normal<br>
+ * path when the pool is empty or the value is longer than a segment.<br>
+ * If a worker fails, the pool stops handing out segments, and poll and close throw<br>
+ * the failure, so that a broken pool is not mistaken for an empty one.<br>
+ * Note that keystream is kept in memory until it is used, so a memory dump<br>
+ * reveals the values that will be encrypted with it.
+ */
+public class KeystreamPool
+{
+	/**
+	 * Number of bytes in an iv, which is the block size of AES.
+	 */
+	protected static int IV_SIZE_BYTES = 16;
+	
+	/**
+	 * Secret key of the keystream.
+	 */
+	protected byte[] m_key;
+	
+	/**
+	 * Iv generator of the workers.
+	 */
+	protected IvGenerator m_ivGenerator;
+	
+	/**
+	 * Number of keystream bytes in each segment.
+	 */
+	protected int m_segmentSize;
+	
+	/**
+	 * Ready segments. Each one is iv || keystream.
+	 */
+	protected BlockingQueue<byte[]> m_segments;
+	
+	/**
+	 * Worker threads.
+	 */
+	protected Thread[] m_workers;
+	
+	/**
+	 * Set when the pool is closed.
+	 */
+	protected volatile boolean m_closed;
+	
+	/**
+	 * Number of segments handed out.
+	 */
+	protected AtomicLong m_hitCount;
+	
+	/**
+	 * Number of requests that found the pool empty.
+	 */
+	protected AtomicLong m_missCount;
+	
+	/**
+	 * First exception thrown by a worker. Null while all workers are running.
+	 */
+	protected volatile Exception m_failure;
+	
+	
+	/**
+	 * Class constructor. Starts the worker threads.
+	 * @param key Secret key. Should be the key of the AesCtr instances that use this pool.
+	 * @param ivGenerator Iv generator that creates 16 byte ivs.
+	 * @param segmentSize Number of keystream bytes in each segment, that is the largest value size served by the pool.
+	 * @param capacity Maximum number of ready segments.
+	 * @param threadCount Number of worker threads.
+	 * @throws Exception Throws exception if key length is not 16, 24, or 32 bytes.<br>
+	 * 					 Throws exception if iv generator is null or its iv size is not 16.<br>
+	 * 					 Throws exception if segmentSize, capacity or threadCount is not positive.<br>
+	 * 					 May throw exception based on Javax.Crypto classes.
+	 */
+	public KeystreamPool(byte[] key, IvGenerator ivGenerator, int segmentSize, int capacity, int threadCount) throws Exception
+	{
+		//check inputs
+		if(key == null || (key.length != 16 && key.length != 24 && key.length != 32))
+			throw new Exception("Key length should be 16, 24, or 32 bytes long");
+		else if(ivGenerator == null || ivGenerator.getIvSize() != IV_SIZE_BYTES)
+			throw new Exception("Iv generator should create 16 byte ivs");
+		else if(segmentSize <= 0)
+			throw new Exception("Segment size should be positive");
+		else if(capacity <= 0)
+			throw new Exception("Capacity should be positive");
+		else if(threadCount <= 0)
+			throw new Exception("Thread count should be positive");
+		
+		m_key = key.clone();
+		m_ivGenerator = ivGenerator;
+		m_segmentSize = segmentSize;
+		m_segments = new ArrayBlockingQueue<byte[]>(capacity);
+		m_hitCount = new AtomicLong(0);
+		m_missCount = new AtomicLong(0);
+		m_closed = false;
+		
+		//create cipher instances here, so that provider errors are reported to the caller
+		m_workers = new Thread[threadCount];
+		for(int a = 0; a<threadCount; a++)
+		{
+			final javax.crypto.Cipher cipher = ProviderRegistry.getCipher("AES/CTR/NoPadding");
+			
+			m_workers[a] = new Thread("KeystreamPool-" + a)
+			{
+				public void run()
+				{
+					fill(cipher);
+				}
+			};
+			m_workers[a].setDaemon(true);
+		}
+		
+		for(int a = 0; a<threadCount; a++)
+			m_workers[a].start();
+	}
+	
+	
+	/**
+	 * Worker loop. Creates segments until the pool is closed.
+	 * @param cipher Cipher instance of the worker.
+	 */
+	protected void fill(javax.crypto.Cipher cipher)
+	{
+		SecretKeySpec keySpec = new SecretKeySpec(m_key, "AES");
+		byte[] zeros = new byte[m_segmentSize];
+		
+		try
+		{
+			while(! m_closed)
+			{
+				byte[] segment = new byte[IV_SIZE_BYTES + m_segmentSize];
+				
+				//keystream of an iv is the encryption of zeros with it
+				m_ivGenerator.nextIv(segment, 0);
+				cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(segment, 0, IV_SIZE_BYTES));
+				cipher.doFinal(zeros, 0, m_segmentSize, segment, IV_SIZE_BYTES);
+				
+				//wait while the pool is full
+				m_segments.put(segment);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			//pool is closed
+		}
+		catch (Exception e)
+		{
+			//keep the first failure, it is thrown to the users of the pool
+			synchronized(this)
+			{
+				if(m_failure == null)
+					m_failure = e;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Takes a ready segment from the pool without waiting.
+	 * @return iv (16 bytes) || keystream (getSegmentSize() bytes), or null if the pool is empty.
+	 * @throws Exception Throws exception if a worker has failed.
+	 */
+	public byte[] poll() throws Exception
+	{
+		if(m_failure != null)
+			throw new Exception("Keystream pool worker failed", m_failure);
+		
+		byte[] segment = m_segments.poll();
+		
+		if(segment == null)
+			m_missCount.incrementAndGet();
+		else
+			m_hitCount.incrementAndGet();
+		
+		return segment;
+	}
+	
+	
+	/**
+	 * Returns the number of keystream bytes in each segment.
+	 * @return Segment size.
+	 */
+	public int getSegmentSize()
+	{
+		return m_segmentSize;
+	}
+	
+	
+	/**
+	 * Checks if the pool creates keystream with the given key.
+	 * @param key Secret key.
+	 * @return true if key is the key of the pool.
+	 */
+	public boolean hasKey(byte[] key)
+	{
+		return Arrays.equals(m_key, key);
+	}
+	
+	
+	/**
+	 * Returns the number of ready segments.
+	 * @return Number of segments in the pool.
+	 */
+	public int size()
+	{
+		return m_segments.size();
+	}
+	
+	
+	/**
+	 * Returns the number of segments handed out.
+	 * @return Hit count.
+	 */
+	public long getHitCount()
+	{
+		return m_hitCount.get();
+	}
+	
+	
+	/**
+	 * Returns the number of requests that found the pool empty.
+	 * @return Miss count.
+	 */
+	public long getMissCount()
+	{
+		return m_missCount.get();
+	}
+	
+	
+	/**
+	 * Returns the first exception thrown by a worker.
+	 * @return null if no worker has failed.
+	 */
+	public Exception getFailure()
+	{
+		return m_failure;
+	}
+	
+	
+	/**
+	 * Stops the worker threads and drops ready segments.
+	 * @throws Exception Throws exception if the calling thread is interrupted while waiting for the workers.<br>
+	 * 					 Throws exception if a worker has failed.
+	 */
+	public void close() throws Exception
+	{
+		m_closed = true;
+		
+		for(int a = 0; a<m_workers.length; a++)
+			m_workers[a].interrupt();
+		for(int a = 0; a<m_workers.length; a++)
+			m_workers[a].join();
+		
+		m_segments.clear();
+		
+		if(m_failure != null)
+			throw new Exception("Keystream pool worker failed", m_failure);
+	}
+}
@@ -16,6 +16,7 @@
 
 package edu.utdallas.bigsecret.cipher;
 
+import java.nio.ByteBuffer;
 
 /**
  * This class is created for just ease of use, in the implementation of proxy mode 3.<br>
@@ -69,4 +70,77 @@ public class NullCipher extends Cipher
 	{
 		return null;
 	}
+	
+	
+	/**
+	 * Result of encryption is always 1 byte.
+	 * @param length Is not used.
+	 * @return 1
+	 */
+	public int getEncryptedSize(int length)
+	{
+		return 1;
+	}
+	
+	
+	/**
+	 * Is not used.
+	 * @param length Is not used.
+	 * @return Always returns 0.
+	 */
+	public int getDecryptedSize(int length)
+	{
+		return 0;
+	}
+	
+	
+	/**
+	 * Writes the constant value 0 to dst.
+	 * @param src Is not used.
+	 * @param off Is not used.
+	 * @param len Is not used.
+	 * @param dst Output array.
+	 * @param dstOff Index in output array.
+	 * @return 1
+	 */
+	public int encrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		dst[dstOff] = 0;
+		
+		return 1;
+	}
+	
+	
+	/**
+	 * Is not used.
+	 * @return Always returns 0.
+	 */
+	public int decrypt(byte[] src, int off, int len, byte[] dst, int dstOff) throws Exception
+	{
+		return 0;
+	}
+	
+	
+	/**
+	 * Writes the constant value 0 to dst.
+	 * @param src Is not used.
+	 * @param dst Output buffer.
+	 * @return 1
+	 */
+	public int encrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		dst.put((byte)0);
+		
+		return 1;
+	}
+	
+	
+	/**
+	 * Is not used.
+	 * @return Always returns 0.
+	 */
+	public int decrypt(ByteBuffer src, ByteBuffer dst) throws Exception
+	{
+		return 0;
+	}
 }
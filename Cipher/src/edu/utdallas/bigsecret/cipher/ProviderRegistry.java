@@ -0,0 +1,454 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Registry of the JCE providers that are used by Cipher and Hasher classes.<br>
+ * Throughput of installed providers may differ a lot for the same algorithm. This class<br>
+ * measures every provider that supports an algorithm used in this project, and pins<br>
+ * the fastest one. Results can be saved to a file and loaded at the next start, so the<br>
+ * calibration runs only once per host.<br>
+ * Until calibrate or load is called, the default provider is used, as before.
+ */
+public class ProviderRegistry
+{
+	/**
+	 * Cipher transformations used by Cipher classes.<br>
+	 * AesFfx uses AES/CBC/NoPadding for its mac and AES/ECB/NoPadding for its round function.
+	 */
+	public static String[] CIPHER_ALGORITHMS = {"AES/CTR/NoPadding", "AES/ECB/PKCS5Padding", "AES/GCM/NoPadding", "AES/CBC/NoPadding", "AES/ECB/NoPadding"};
+	
+	/**
+	 * Mac algorithms used by Hasher classes.
+	 */
+	public static String[] MAC_ALGORITHMS = {"HmacSHA256"};
+	
+	/**
+	 * Number of bytes processed by each operation during calibration.
+	 */
+	protected static int CALIBRATION_DATA_SIZE = 1024;
+	
+	/**
+	 * Pinned provider of each algorithm.
+	 */
+	protected static Map<String, Provider> SELECTED_PROVIDERS = new ConcurrentHashMap<String, Provider>();
+	
+	/**
+	 * Measured throughput in MB/s, for each algorithm and provider name.
+	 */
+	protected static Map<String, Map<String, Double>> CALIBRATION_RESULTS = new TreeMap<String, Map<String, Double>>();
+	
+	
+	/**
+	 * Loads calibration results from the given file if it exists, otherwise runs the<br>
+	 * calibration and saves the results to the file.
+	 * @param cacheFile File for calibration results.
+	 * @param millis Measurement time for each algorithm and provider.
+	 * @throws Exception Throws exception if the file can not be read or written.
+	 */
+	public static synchronized void initialize(File cacheFile, long millis) throws Exception
+	{
+		if(cacheFile.exists())
+		{
+			load(cacheFile);
+		}
+		else
+		{
+			calibrate(millis);
+			save(cacheFile);
+		}
+	}
+	
+	
+	/**
+	 * Measures every installed provider for every algorithm, and pins the fastest ones.
+	 * @param millis Measurement time for each algorithm and provider.
+	 */
+	public static synchronized void calibrate(long millis)
+	{
+		Provider[] providers = Security.getProviders();
+		
+		for(int a = 0; a<CIPHER_ALGORITHMS.length + MAC_ALGORITHMS.length; a++)
+		{
+			boolean isCipher = a < CIPHER_ALGORITHMS.length;
+			String algorithm = isCipher ? CIPHER_ALGORITHMS[a] : MAC_ALGORITHMS[a - CIPHER_ALGORITHMS.length];
+			
+			Map<String, Double> algorithmResults = new TreeMap<String, Double>();
+			Provider fastest = null;
+			double fastestRate = 0;
+			
+			for(int b = 0; b<providers.length; b++)
+			{
+				double rate;
+				try
+				{
+					rate = isCipher ? measureCipher(algorithm, providers[b], millis) : measureMac(algorithm, providers[b], millis);
+				}
+				catch (Exception e)
+				{
+					//provider does not support the algorithm
+					continue;
+				}
+				
+				algorithmResults.put(providers[b].getName(), rate);
+				
+				if(fastest == null || rate > fastestRate)
+				{
+					fastest = providers[b];
+					fastestRate = rate;
+				}
+			}
+			
+			CALIBRATION_RESULTS.put(algorithm, algorithmResults);
+			
+			if(fastest != null)
+				SELECTED_PROVIDERS.put(algorithm, fastest);
+			else
+				SELECTED_PROVIDERS.remove(algorithm);
+		}
+	}
+	
+	
+	/**
+	 * Measures encryption throughput of a cipher transformation with a provider.
+	 * @param transformation Cipher transformation.
+	 * @param provider Provider.
+	 * @param millis Measurement time.
+	 * @return Throughput in MB/s.
+	 * @throws Exception Throws exception if the provider does not support the transformation.
+	 */
+	protected static double measureCipher(String transformation, Provider provider, long millis) throws Exception
+	{
+		javax.crypto.Cipher cipher = javax.crypto.Cipher.getInstance(transformation, provider);
+		SecretKeySpec keySpec = new SecretKeySpec(new byte[16], "AES");
+		
+		byte[] data = new byte[CALIBRATION_DATA_SIZE];
+		byte[] out = new byte[CALIBRATION_DATA_SIZE + 32];
+		byte[] iv = new byte[16];
+		long ivCounter = 0;
+		
+		//warm up for half of the time, then measure
+		long operations = 0;
+		long start = 0;
+		long warmUpEnd = System.currentTimeMillis() + millis / 2;
+		long end = warmUpEnd + millis / 2;
+		
+		while(true)
+		{
+			long now = System.currentTimeMillis();
+			if(start == 0 && now >= warmUpEnd)
+			{
+				start = System.nanoTime();
+				operations = 0;
+			}
+			else if(now >= end)
+			{
+				break;
+			}
+			
+			//every operation uses a new iv, as the Cipher classes do
+			ivCounter++;
+			for(int c = 0; c<8; c++)
+				iv[c] = (byte)(ivCounter >>> (8 * c));
+			
+			if(transformation.startsWith("AES/GCM"))
+				cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, keySpec, new GCMParameterSpec(128, iv, 0, 12));
+			else if(transformation.startsWith("AES/CTR") || transformation.startsWith("AES/CBC"))
+				cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(iv));
+			else
+				cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, keySpec);
+			
+			cipher.doFinal(data, 0, data.length, out, 0);
+			operations++;
+		}
+		
+		return toRate(operations, System.nanoTime() - start);
+	}
+	
+	
+	/**
+	 * Measures throughput of a mac algorithm with a provider.
+	 * @param algorithm Mac algorithm.
+	 * @param provider Provider.
+	 * @param millis Measurement time.
+	 * @return Throughput in MB/s.
+	 * @throws Exception Throws exception if the provider does not support the algorithm.
+	 */
+	protected static double measureMac(String algorithm, Provider provider, long millis) throws Exception
+	{
+		Mac mac = Mac.getInstance(algorithm, provider);
+		mac.init(new SecretKeySpec(new byte[32], algorithm));
+		
+		byte[] data = new byte[CALIBRATION_DATA_SIZE];
+		
+		//warm up for half of the time, then measure
+		long operations = 0;
+		long start = 0;
+		long warmUpEnd = System.currentTimeMillis() + millis / 2;
+		long end = warmUpEnd + millis / 2;
+		
+		while(true)
+		{
+			long now = System.currentTimeMillis();
+			if(start == 0 && now >= warmUpEnd)
+			{
+				start = System.nanoTime();
+				operations = 0;
+			}
+			else if(now >= end)
+			{
+				break;
+			}
+			
+			mac.doFinal(data);
+			operations++;
+		}
+		
+		return toRate(operations, System.nanoTime() - start);
+	}
+	
+	
+	/**
+	 * Converts number of calibration operations to throughput.
+	 * @param operations Number of operations.
+	 * @param nanos Elapsed time.
+	 * @return Throughput in MB/s.
+	 */
+	protected static double toRate(long operations, long nanos)
+	{
+		if(nanos <= 0)
+			return 0;
+		
+		return (double)operations * CALIBRATION_DATA_SIZE / (1024 * 1024) / (nanos / 1e9);
+	}
+	
+	
+	/**
+	 * Saves calibration results and pinned providers to a file.
+	 * @param file Output file.
+	 * @throws Exception Throws exception if the file can not be written.
+	 */
+	public static synchronized void save(File file) throws Exception
+	{
+		Properties properties = new Properties();
+		
+		Iterator<Map.Entry<String, Provider>> itrSelected = SELECTED_PROVIDERS.entrySet().iterator();
+		while(itrSelected.hasNext())
+		{
+			Map.Entry<String, Provider> entry = itrSelected.next();
+			properties.setProperty("selected." + entry.getKey(), entry.getValue().getName());
+		}
+		
+		Iterator<Map.Entry<String, Map<String, Double>>> itrResults = CALIBRATION_RESULTS.entrySet().iterator();
+		while(itrResults.hasNext())
+		{
+			Map.Entry<String, Map<String, Double>> entry = itrResults.next();
+			
+			Iterator<Map.Entry<String, Double>> itrRates = entry.getValue().entrySet().iterator();
+			while(itrRates.hasNext())
+			{
+				Map.Entry<String, Double> rate = itrRates.next();
+				properties.setProperty("result." + entry.getKey() + "." + rate.getKey(), rate.getValue().toString());
+			}
+		}
+		
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			properties.store(out, "BigSecret JCE provider calibration");
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	
+	/**
+	 * Loads calibration results and pinned providers from a file.<br>
+	 * Providers that are not installed anymore are ignored.
+	 * @param file Input file.
+	 * @throws Exception Throws exception if the file can not be read.
+	 */
+	public static synchronized void load(File file) throws Exception
+	{
+		Properties properties = new Properties();
+		
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			properties.load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		SELECTED_PROVIDERS.clear();
+		CALIBRATION_RESULTS.clear();
+		
+		Iterator<String> itr = properties.stringPropertyNames().iterator();
+		while(itr.hasNext())
+		{
+			String key = itr.next();
+			String value = properties.getProperty(key);
+			
+			if(key.startsWith("selected."))
+			{
+				Provider provider = Security.getProvider(value);
+				if(provider != null)
+					SELECTED_PROVIDERS.put(key.substring("selected.".length()), provider);
+			}
+			else if(key.startsWith("result."))
+			{
+				//provider names do not contain dots, algorithm names may
+				String name = key.substring("result.".length());
+				int split = name.lastIndexOf('.');
+				String algorithm = name.substring(0, split);
+				
+				Map<String, Double> algorithmResults = CALIBRATION_RESULTS.get(algorithm);
+				if(algorithmResults == null)
+				{
+					algorithmResults = new TreeMap<String, Double>();
+					CALIBRATION_RESULTS.put(algorithm, algorithmResults);
+				}
+				algorithmResults.put(name.substring(split + 1), Double.valueOf(value));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns a cipher instance from the pinned provider of the transformation,<br>
+	 * or from the default provider if there is no pinned provider.
+	 * @param transformation Cipher transformation, such as AES/CTR/NoPadding
+	 * @return Cipher instance.
+	 * @throws Exception May throw exception based on Javax.Crypto classes.
+	 */
+	public static javax.crypto.Cipher getCipher(String transformation) throws Exception
+	{
+		Provider provider = SELECTED_PROVIDERS.get(transformation);
+		
+		if(provider == null)
+			return javax.crypto.Cipher.getInstance(transformation);
+		else
+			return javax.crypto.Cipher.getInstance(transformation, provider);
+	}
+	
+	
+	/**
+	 * Returns a mac instance from the pinned provider of the algorithm,<br>
+	 * or from the default provider if there is no pinned provider.
+	 * @param algorithm Mac algorithm, such as HmacSHA256
+	 * @return Mac instance.
+	 * @throws Exception May throw exception based on Javax.Crypto classes.
+	 */
+	public static Mac getMac(String algorithm) throws Exception
+	{
+		Provider provider = SELECTED_PROVIDERS.get(algorithm);
+		
+		if(provider == null)
+			return Mac.getInstance(algorithm);
+		else
+			return Mac.getInstance(algorithm, provider);
+	}
+	
+	
+	/**
+	 * Returns the pinned provider of an algorithm.
+	 * @param algorithm Cipher transformation or mac algorithm.
+	 * @return Pinned provider, or null if the default provider is used.
+	 */
+	public static Provider getSelectedProvider(String algorithm)
+	{
+		return SELECTED_PROVIDERS.get(algorithm);
+	}
+	
+	
+	/**
+	 * Returns measured throughputs.
+	 * @return Copy of throughput in MB/s, for each algorithm and provider name.
+	 */
+	public static synchronized Map<String, Map<String, Double>> getResults()
+	{
+		Map<String, Map<String, Double>> result = new TreeMap<String, Map<String, Double>>();
+		
+		Iterator<Map.Entry<String, Map<String, Double>>> itr = CALIBRATION_RESULTS.entrySet().iterator();
+		while(itr.hasNext())
+		{
+			Map.Entry<String, Map<String, Double>> entry = itr.next();
+			result.put(entry.getKey(), new TreeMap<String, Double>(entry.getValue()));
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns measured throughputs and pinned providers as text, for diagnostics.
+	 * @return One line for each algorithm and provider.
+	 */
+	public static synchronized String getDiagnostics()
+	{
+		StringBuilder result = new StringBuilder();
+		
+		Iterator<Map.Entry<String, Map<String, Double>>> itr = CALIBRATION_RESULTS.entrySet().iterator();
+		while(itr.hasNext())
+		{
+			Map.Entry<String, Map<String, Double>> entry = itr.next();
+			Provider selected = SELECTED_PROVIDERS.get(entry.getKey());
+			
+			Iterator<Map.Entry<String, Double>> itrRates = entry.getValue().entrySet().iterator();
+			while(itrRates.hasNext())
+			{
+				Map.Entry<String, Double> rate = itrRates.next();
+				boolean isSelected = selected != null && selected.getName().equals(rate.getKey());
+				
+				result.append(String.format("%-24s %-16s %10.1f MB/s%s%n", entry.getKey(), rate.getKey(), rate.getValue(), isSelected ? " *" : ""));
+			}
+		}
+		
+		return result.toString();
+	}
+	
+	
+	/**
+	 * Removes pinned providers and results, so that default providers are used.
+	 */
+	public static synchronized void reset()
+	{
+		SELECTED_PROVIDERS.clear();
+		CALIBRATION_RESULTS.clear();
+	}
+}
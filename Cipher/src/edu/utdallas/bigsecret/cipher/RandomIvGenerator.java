@@ -0,0 +1,99 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher;
+
+import java.security.SecureRandom;
+
+
+/**
+ * This class extends IvGenerator. Every iv is drawn completely from SecureRandom.<br>
+ * Each thread has its own SecureRandom instance.
+ */
+public class RandomIvGenerator extends IvGenerator
+{
+	/**
+	 * Number of bytes in an iv.
+	 */
+	protected int m_ivSize;
+	
+	/**
+	 * Random generator of each thread.
+	 */
+	protected ThreadLocal<SecureRandom> m_random;
+	
+	/**
+	 * Temporary random bytes of each thread.
+	 */
+	protected ThreadLocal<byte[]> m_buffer;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param ivSize Number of bytes in an iv.
+	 * @throws Exception Throws exception if ivSize is not positive.
+	 */
+	public RandomIvGenerator(int ivSize) throws Exception
+	{
+		if(ivSize <= 0)
+			throw new Exception("Iv size should be positive");
+		
+		m_ivSize = ivSize;
+		
+		m_random = new ThreadLocal<SecureRandom>()
+		{
+			protected SecureRandom initialValue()
+			{
+				return new SecureRandom();
+			}
+		};
+		
+		m_buffer = new ThreadLocal<byte[]>()
+		{
+			protected byte[] initialValue()
+			{
+				return new byte[m_ivSize];
+			}
+		};
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void nextIv(byte[] out, int offset)
+	{
+		if(offset == 0 && out.length == m_ivSize)
+		{
+			m_random.get().nextBytes(out);
+		}
+		else
+		{
+			byte[] buffer = m_buffer.get();
+			m_random.get().nextBytes(buffer);
+			System.arraycopy(buffer, 0, out, offset, m_ivSize);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIvSize()
+	{
+		return m_ivSize;
+	}
+}
@@ -18,6 +18,9 @@ package edu.utdallas.bigsecret.cipher.test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -116,5 +119,256 @@ public class TestAesCtr
 			e.printStackTrace();
 		}
 	}
-
+	
+	@Test
+	public void testEncryptIntoBuffer() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesCtr cip = new AesCtr(key);
+			
+			byte[] originalData = Bytes.toBytes("Follow the white rabbit.");
+			
+			//encrypt into an array, after 3 bytes of prefix
+			byte[] encData = new byte[3 + cip.getEncryptedSize(originalData.length)];
+			int encSize = cip.encrypt(originalData, 0, originalData.length, encData, 3);
+			
+			byte[] decData = new byte[cip.getDecryptedSize(encSize)];
+			int decSize = cip.decrypt(encData, 3, encSize, decData, 0);
+			
+			if(! Arrays.equals(originalData, Arrays.copyOf(decData, decSize)))
+			{
+				fail("AesCtr array encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+			
+			//encrypt into direct byte buffers
+			ByteBuffer src = ByteBuffer.allocateDirect(originalData.length);
+			src.put(originalData);
+			src.flip();
+			
+			ByteBuffer enc = ByteBuffer.allocateDirect(cip.getEncryptedSize(originalData.length));
+			cip.encrypt(src, enc);
+			enc.flip();
+			
+			ByteBuffer dec = ByteBuffer.allocateDirect(cip.getDecryptedSize(enc.remaining()));
+			cip.decrypt(enc, dec);
+			dec.flip();
+			
+			byte[] bufferData = new byte[dec.remaining()];
+			dec.get(bufferData);
+			
+			if(! Arrays.equals(originalData, bufferData))
+			{
+				fail("AesCtr buffer encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesCtr buffer encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testEncryptInPlace() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesCtr cip = new AesCtr(key);
+			
+			byte[] originalData = Bytes.toBytes("Follow the white rabbit.");
+			
+			//plain text at the start and in the middle of the array, cipher text written over it
+			for(int offset = 0; offset < 2 * originalData.length; offset += originalData.length)
+			{
+				byte[] data = new byte[offset + cip.getEncryptedSize(originalData.length)];
+				System.arraycopy(originalData, 0, data, offset, originalData.length);
+				
+				int encSize = cip.encrypt(data, offset, originalData.length, data, 0);
+				int decSize = cip.decrypt(data, 0, encSize, data, 0);
+				
+				if(! Arrays.equals(originalData, Arrays.copyOf(data, decSize)))
+				{
+					fail("AesCtr in place encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+				}
+			}
+			
+			//heap buffers sharing the same array
+			byte[] data = new byte[cip.getEncryptedSize(originalData.length)];
+			System.arraycopy(originalData, 0, data, 0, originalData.length);
+			
+			ByteBuffer src = ByteBuffer.wrap(data, 0, originalData.length);
+			ByteBuffer enc = ByteBuffer.wrap(data);
+			int encSize = cip.encrypt(src, enc);
+			
+			byte[] decData = cip.decrypt(Arrays.copyOf(data, encSize));
+			
+			if(! Arrays.equals(originalData, decData))
+			{
+				fail("AesCtr in place buffer encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesCtr in place encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testBatch() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesCtr cip = new AesCtr(key);
+			
+			byte[][] originalData = new byte[][]{Bytes.toBytes("Free your mind."),
+												 Bytes.toBytes("There is no spoon."),
+												 Bytes.toBytes("Sixteen bytes!!!"),
+												 Bytes.toBytes("I know kung fu.")};
+			
+			byte[][] encData = cip.encryptBatch(originalData);
+			byte[][] decData = cip.decryptBatch(encData);
+			
+			for(int a = 0; a<originalData.length; a++)
+			{
+				if(! Arrays.equals(originalData[a], decData[a]))
+				{
+					fail("AesCtr batch encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+				}
+			}
+			
+			//values of a batch should also be decrypted one by one
+			for(int a = 0; a<originalData.length; a++)
+			{
+				if(! Arrays.equals(originalData[a], cip.decrypt(encData[a])))
+				{
+					fail("AesCtr could not decrypt a single value of a batch.");
+				}
+			}
+			
+			//values that are not encrypted together should be decrypted together
+			byte[][] mixedData = new byte[][]{cip.encrypt(originalData[1]), encData[0], encData[2], cip.encrypt(originalData[3])};
+			decData = cip.decryptBatch(mixedData);
+			
+			if(! Arrays.equals(originalData[1], decData[0]) || ! Arrays.equals(originalData[0], decData[1]) ||
+			   ! Arrays.equals(originalData[2], decData[2]) || ! Arrays.equals(originalData[3], decData[3]))
+			{
+				fail("AesCtr could not decrypt a batch of separately encrypted values.");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesCtr batch test failed.");
+		}
+	}
+	
+	@Test
+	public void testParallelChunks() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesCtr parallelCip = new AesCtr(key);
+			parallelCip.setParallelThreshold(1000, 256);
+			AesCtr plainCip = new AesCtr(key);
+			
+			//sizes around the threshold and chunk boundaries, some not multiple of block size
+			int[] sizes = {999, 1000, 1024, 1025, 4096, 10007};
+			for(int a = 0; a<sizes.length; a++)
+			{
+				byte[] originalData = new byte[sizes[a]];
+				for(int b = 0; b<originalData.length; b++)
+					originalData[b] = (byte)(b * 31 + a);
+				
+				//both directions should be byte compatible with single cipher format
+				if(! Arrays.equals(originalData, plainCip.decrypt(parallelCip.encrypt(originalData))))
+				{
+					fail("AesCtr could not decrypt parallel encryption of " + sizes[a] + " bytes.");
+				}
+				
+				if(! Arrays.equals(originalData, parallelCip.decrypt(plainCip.encrypt(originalData))))
+				{
+					fail("Parallel AesCtr could not decrypt encryption of " + sizes[a] + " bytes.");
+				}
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesCtr parallel test failed.");
+		}
+		
+		try
+		{
+			new AesCtr(key).setParallelThreshold(1000, 100);
+			
+			fail("AesCtr should not accept a chunk size that is not a multiple of 16.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+	
+	@Test
+	public void testStream() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesCtr cip = new AesCtr(key);
+			
+			//larger than the stream buffer, not a multiple of block size
+			byte[] originalData = new byte[200003];
+			for(int a = 0; a<originalData.length; a++)
+				originalData[a] = (byte)(a * 7);
+			
+			ByteArrayOutputStream encStream = new ByteArrayOutputStream();
+			long encSize = cip.encrypt(new ByteArrayInputStream(originalData), encStream);
+			byte[] encData = encStream.toByteArray();
+			
+			if(encSize != encData.length || encData.length != cip.getEncryptedSize(originalData.length))
+			{
+				fail("AesCtr stream encryption has wrong size.");
+			}
+			
+			//stream result should be readable by array decryption and vice versa
+			if(! Arrays.equals(originalData, cip.decrypt(encData)))
+			{
+				fail("AesCtr could not decrypt stream encryption.");
+			}
+			
+			ByteArrayOutputStream decStream = new ByteArrayOutputStream();
+			cip.decrypt(new ByteArrayInputStream(cip.encrypt(originalData)), decStream);
+			
+			if(! Arrays.equals(originalData, decStream.toByteArray()))
+			{
+				fail("AesCtr stream decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesCtr stream test failed.");
+		}
+		
+		try
+		{
+			new AesCtr(key).encrypt(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+			
+			fail("AesCtr should not encrypt an empty stream.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
 }
@@ -18,6 +18,7 @@ package edu.utdallas.bigsecret.cipher.test;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -117,4 +118,96 @@ public class TestAesEcb
 			e.printStackTrace();
 		}	
 	}
+	
+	@Test
+	public void testEncryptIntoBuffer() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesEcb cip = new AesEcb(key);
+			
+			byte[] originalData = Bytes.toBytes("Follow the white rabbit.");
+			
+			//encrypt into an array, after 3 bytes of prefix
+			byte[] encData = new byte[3 + cip.getEncryptedSize(originalData.length)];
+			int encSize = cip.encrypt(originalData, 0, originalData.length, encData, 3);
+			
+			byte[] decData = new byte[cip.getDecryptedSize(encSize)];
+			int decSize = cip.decrypt(encData, 3, encSize, decData, 0);
+			
+			if(! Arrays.equals(originalData, Arrays.copyOf(decData, decSize)))
+			{
+				fail("AesEcb array encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+			
+			//encrypt into direct byte buffers
+			ByteBuffer src = ByteBuffer.allocateDirect(originalData.length);
+			src.put(originalData);
+			src.flip();
+			
+			ByteBuffer enc = ByteBuffer.allocateDirect(cip.getEncryptedSize(originalData.length));
+			cip.encrypt(src, enc);
+			enc.flip();
+			
+			ByteBuffer dec = ByteBuffer.allocateDirect(cip.getDecryptedSize(enc.remaining()));
+			cip.decrypt(enc, dec);
+			dec.flip();
+			
+			byte[] bufferData = new byte[dec.remaining()];
+			dec.get(bufferData);
+			
+			if(! Arrays.equals(originalData, bufferData))
+			{
+				fail("AesEcb buffer encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesEcb buffer encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testBatch() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesEcb cip = new AesEcb(key);
+			
+			byte[][] originalData = new byte[][]{Bytes.toBytes("Free your mind."),
+												 Bytes.toBytes("There is no spoon."),
+												 Bytes.toBytes("Sixteen bytes!!!"),
+												 Bytes.toBytes("I know kung fu.")};
+			
+			byte[][] encData = cip.encryptBatch(originalData);
+			byte[][] decData = cip.decryptBatch(encData);
+			
+			for(int a = 0; a<originalData.length; a++)
+			{
+				if(! Arrays.equals(originalData[a], decData[a]))
+				{
+					fail("AesEcb batch encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+				}
+			}
+			
+			//deterministic cipher should give the same result one by one
+			for(int a = 0; a<originalData.length; a++)
+			{
+				if(! Arrays.equals(cip.encrypt(originalData[a]), encData[a]))
+				{
+					fail("AesEcb batch encryption differs from single encryption.");
+				}
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesEcb batch test failed.");
+		}
+	}
 }
@@ -0,0 +1,169 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.cipher.AesFfx;
+
+
+/**
+ * Test class for Aes Ffx class.
+ */
+public class TestAesFfx 
+{
+	@Test
+	public void testDecryptByteArray() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesFfx cip = new AesFfx(key);
+			
+			//sizes around block boundaries, for both halves
+			for(int size = AesFfx.MIN_DATA_SIZE; size<100; size++)
+			{
+				byte[] originalData = new byte[size];
+				for(int a = 0; a<size; a++)
+					originalData[a] = (byte)(a * 7 + size);
+				
+				byte[] encData = cip.encrypt(originalData);
+				
+				if(encData.length != size || cip.getEncryptedSize(size) != size)
+				{
+					fail("AesFfx encryption changes the size of " + size + " bytes.");
+				}
+				
+				if(! Arrays.equals(encData, cip.encrypt(originalData)))
+				{
+					fail("AesFfx encryption is not deterministic.");
+				}
+				
+				if(! Arrays.equals(originalData, cip.decrypt(encData)))
+				{
+					fail("AesFfx encryption decryption mechanism failed for " + size + " bytes.");
+				}
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesFfx encrypt test failed.");
+		}	
+	}
+	
+	@Test
+	public void testDecryptByteArrayInt() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesFfx cip = new AesFfx(key);
+			
+			byte[] originalData = Bytes.toBytes("There is no spoon.");
+			
+			byte[] encData = cip.encrypt(originalData);
+			
+			byte[] pad = new byte[2];
+			pad[0] = 1;
+			pad[1] = 0;
+			
+			byte[] padded = ArrayUtils.addAll(pad, encData);
+			
+			byte[] decData = cip.decrypt(padded, 2);
+			
+			if(! Arrays.equals(originalData, decData))
+			{
+				fail("AesFfx encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+			
+			//encrypt in place, after 3 bytes of prefix
+			byte[] buffer = ArrayUtils.addAll(new byte[3], originalData);
+			cip.encrypt(buffer, 3, originalData.length, buffer, 3);
+			
+			if(! Arrays.equals(encData, Arrays.copyOfRange(buffer, 3, buffer.length)))
+			{
+				fail("AesFfx in place encryption differs from array encryption.");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesFfx encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testDiffusion() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesFfx cip = new AesFfx(key);
+			
+			//inputs share the first 32 bytes, as key tuples with the same row do
+			byte[] first = Bytes.toBytes("the same row key, and the family|qualifier 1");
+			byte[] second = Bytes.toBytes("the same row key, and the family|qualifier 2");
+			
+			byte[] firstEnc = cip.encrypt(first);
+			byte[] secondEnc = cip.encrypt(second);
+			
+			if(Arrays.equals(Arrays.copyOf(firstEnc, 16), Arrays.copyOf(secondEnc, 16)))
+			{
+				fail("AesFfx reveals equal prefixes.");
+			}
+			
+			//a different key gives a different permutation
+			AesFfx other = new AesFfx(Bytes.toBytes("1234567890123457"));
+			
+			if(Arrays.equals(firstEnc, other.encrypt(first)))
+			{
+				fail("AesFfx encryption does not depend on the key.");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesFfx diffusion test failed.");
+		}
+	}
+	
+	@Test
+	public void testShortData() 
+	{
+		try 
+		{
+			AesFfx cip = new AesFfx(Bytes.toBytes("1234567890123456"));
+			
+			cip.encrypt(new byte[1]);
+			
+			fail("AesFfx should not accept data shorter than 2 bytes.");
+		} 
+		catch (Exception e) 
+		{
+		}
+	}
+}
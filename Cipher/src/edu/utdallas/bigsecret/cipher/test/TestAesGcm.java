@@ -0,0 +1,228 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher.test;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.cipher.AesGcm;
+
+
+/**
+ * Test class for Aes Gcm class.
+ */
+public class TestAesGcm 
+{
+	@Test
+	public void testDecryptByteArray() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesGcm cip = new AesGcm(key);
+			
+			byte[] originalData = Bytes.toBytes("Do you think it's air that you breath?");
+			
+			byte[] encData = cip.encrypt(originalData);
+			
+			if(encData.length != cip.getEncryptedSize(originalData.length))
+			{
+				fail("AesGcm encryption has wrong size.");
+			}
+			
+			byte[] decData = cip.decrypt(encData);
+			
+			if(! Arrays.equals(originalData, decData))
+			{
+				fail("AesGcm encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesGcm encrypt test failed.");
+		}	
+	}
+	
+	@Test
+	public void testDecryptByteArrayInt() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesGcm cip = new AesGcm(key);
+			
+			byte[] originalData = Bytes.toBytes("He is the one.");
+			
+			byte[] encData = cip.encrypt(originalData);
+			
+			byte[] pad = new byte[2];
+			pad[0] = 1;
+			pad[1] = 0;
+			
+			byte[] padded = ArrayUtils.addAll(pad, encData);
+			
+			byte[] decData = cip.decrypt(padded, 2);
+			
+			if(! Arrays.equals(originalData, decData))
+			{
+				fail("AesGcm encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesGcm encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testModifiedData() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		byte[] encData = null;
+		
+		try 
+		{
+			AesGcm cip = new AesGcm(key);
+			
+			encData = cip.encrypt(Bytes.toBytes("Wake up, Neo."));
+			
+			//flip a bit of encrypted data
+			encData[14] ^= 1;
+			
+			cip.decrypt(encData);
+			
+			fail("AesGcm should not decrypt modified data.");
+		} 
+		catch (Exception e) 
+		{
+		}
+		
+		if(encData == null)
+		{
+			fail("AesGcm encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testEncryptIntoBuffer() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesGcm cip = new AesGcm(key);
+			
+			byte[] originalData = Bytes.toBytes("Follow the white rabbit.");
+			
+			//encrypt into an array, after 3 bytes of prefix
+			byte[] encData = new byte[3 + cip.getEncryptedSize(originalData.length)];
+			int encSize = cip.encrypt(originalData, 0, originalData.length, encData, 3);
+			
+			byte[] decData = new byte[cip.getDecryptedSize(encSize)];
+			int decSize = cip.decrypt(encData, 3, encSize, decData, 0);
+			
+			if(! Arrays.equals(originalData, Arrays.copyOf(decData, decSize)))
+			{
+				fail("AesGcm array encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+			
+			//encrypt into direct byte buffers
+			ByteBuffer src = ByteBuffer.allocateDirect(originalData.length);
+			src.put(originalData);
+			src.flip();
+			
+			ByteBuffer enc = ByteBuffer.allocateDirect(cip.getEncryptedSize(originalData.length));
+			cip.encrypt(src, enc);
+			enc.flip();
+			
+			ByteBuffer dec = ByteBuffer.allocateDirect(cip.getDecryptedSize(enc.remaining()));
+			cip.decrypt(enc, dec);
+			dec.flip();
+			
+			byte[] bufferData = new byte[dec.remaining()];
+			dec.get(bufferData);
+			
+			if(! Arrays.equals(originalData, bufferData))
+			{
+				fail("AesGcm buffer encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesGcm buffer encrypt test failed.");
+		}
+	}
+	
+	@Test
+	public void testEncryptInPlace() 
+	{
+		byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try 
+		{
+			AesGcm cip = new AesGcm(key);
+			
+			byte[] originalData = Bytes.toBytes("Follow the white rabbit.");
+			
+			//plain text at the start and in the middle of the array, cipher text written over it
+			for(int offset = 0; offset < 2 * originalData.length; offset += originalData.length)
+			{
+				byte[] data = new byte[offset + cip.getEncryptedSize(originalData.length)];
+				System.arraycopy(originalData, 0, data, offset, originalData.length);
+				
+				int encSize = cip.encrypt(data, offset, originalData.length, data, 0);
+				int decSize = cip.decrypt(data, 0, encSize, data, 0);
+				
+				if(! Arrays.equals(originalData, Arrays.copyOf(data, decSize)))
+				{
+					fail("AesGcm in place encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+				}
+			}
+			
+			//heap buffers sharing the same array
+			byte[] data = new byte[cip.getEncryptedSize(originalData.length)];
+			System.arraycopy(originalData, 0, data, 0, originalData.length);
+			
+			ByteBuffer src = ByteBuffer.wrap(data, 0, originalData.length);
+			ByteBuffer enc = ByteBuffer.wrap(data);
+			int encSize = cip.encrypt(src, enc);
+			
+			byte[] decData = cip.decrypt(Arrays.copyOf(data, encSize));
+			
+			if(! Arrays.equals(originalData, decData))
+			{
+				fail("AesGcm in place buffer encryption decryption mechanism failed. Data changes after encryption and decryption!!");
+			}
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			fail("AesGcm in place encrypt test failed.");
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.AesEcb;
+import edu.utdallas.bigsecret.cipher.AesGcm;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.CipherFactory;
+import edu.utdallas.bigsecret.cipher.ConcurrentCipher;
+import edu.utdallas.bigsecret.cipher.CounterIvGenerator;
+import edu.utdallas.bigsecret.cipher.KeystreamPool;
+
+
+/**
+ * Test class for Concurrent Cipher class.
+ */
+public class TestConcurrentCipher
+{
+	/**
+	 * Encrypts and decrypts with the given cipher from several threads at the same time.
+	 * @param cip Cipher instance shared by all threads.
+	 * @return Number of failed encryption-decryption rounds.
+	 */
+	public static int runThreads(final Cipher cip) throws Exception
+	{
+		final AtomicInteger failures = new AtomicInteger(0);
+		
+		Thread[] threads = new Thread[8];
+		for(int a = 0; a<threads.length; a++)
+		{
+			final int threadNo = a;
+			threads[a] = new Thread()
+			{
+				public void run()
+				{
+					for(int b = 0; b<2000; b++)
+					{
+						try
+						{
+							byte[] originalData = Bytes.toBytes("thread " + threadNo + " round " + b);
+							byte[] decData = cip.decrypt(cip.encrypt(originalData));
+							
+							if(! Arrays.equals(originalData, decData))
+								failures.incrementAndGet();
+						}
+						catch (Exception e)
+						{
+							failures.incrementAndGet();
+						}
+					}
+				}
+			};
+		}
+		
+		for(int a = 0; a<threads.length; a++)
+			threads[a].start();
+		for(int a = 0; a<threads.length; a++)
+			threads[a].join();
+		
+		return failures.get();
+	}
+	
+	@Test
+	public void testAesCtrThreads()
+	{
+		try
+		{
+			ConcurrentCipher cip = new ConcurrentCipher(AesCtr.class, Bytes.toBytes("1234567890123456"));
+			
+			int failures = runThreads(cip);
+			
+			if(failures != 0)
+			{
+				fail("ConcurrentCipher with AesCtr failed " + failures + " times.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("ConcurrentCipher AesCtr test failed.");
+		}
+	}
+	
+	@Test
+	public void testAesEcbThreads()
+	{
+		try
+		{
+			ConcurrentCipher cip = new ConcurrentCipher(AesEcb.class, Bytes.toBytes("1234567890123456"));
+			
+			int failures = runThreads(cip);
+			
+			if(failures != 0)
+			{
+				fail("ConcurrentCipher with AesEcb failed " + failures + " times.");
+			}
+			
+			//deterministic cipher should give the same result as a plain AesEcb instance
+			byte[] originalData = Bytes.toBytes("there is no spoon");
+			AesEcb plain = new AesEcb(Bytes.toBytes("1234567890123456"));
+			
+			if(! Arrays.equals(plain.encrypt(originalData), cip.encrypt(originalData)))
+			{
+				fail("ConcurrentCipher output differs from AesEcb output.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("ConcurrentCipher AesEcb test failed.");
+		}
+	}
+	
+	@Test
+	public void testFactory()
+	{
+		final byte[] key = Bytes.toBytes("1234567890123456");
+		
+		try
+		{
+			//aes ctr with a keystream pool shared by all threads
+			final KeystreamPool pool = new KeystreamPool(key, new CounterIvGenerator(), 64, 256, 1);
+			final AtomicInteger created = new AtomicInteger(0);
+			
+			ConcurrentCipher cip = new ConcurrentCipher(new CipherFactory()
+			{
+				public Cipher newCipher() throws Exception
+				{
+					created.incrementAndGet();
+					return new AesCtr(key, pool);
+				}
+			});
+			
+			int failures = runThreads(cip);
+			pool.close();
+			
+			if(failures != 0)
+			{
+				fail("ConcurrentCipher with pooled AesCtr failed " + failures + " times.");
+			}
+			
+			//one instance for the constructing thread, and one for each worker thread
+			if(created.get() != 9)
+			{
+				fail("ConcurrentCipher created " + created.get() + " cipher instances instead of 9.");
+			}
+			
+			//aes gcm with a nonce generator shared by all threads
+			final CounterIvGenerator nonceGenerator = new CounterIvGenerator(12);
+			
+			cip = new ConcurrentCipher(new CipherFactory()
+			{
+				public Cipher newCipher() throws Exception
+				{
+					return new AesGcm(key, nonceGenerator);
+				}
+			});
+			
+			failures = runThreads(cip);
+			
+			if(failures != 0)
+			{
+				fail("ConcurrentCipher with AesGcm failed " + failures + " times.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("ConcurrentCipher factory test failed.");
+		}
+	}
+	
+	@Test
+	public void testInvalidKey()
+	{
+		try
+		{
+			new ConcurrentCipher(AesCtr.class, Bytes.toBytes("short key"));
+			
+			fail("ConcurrentCipher should not accept an invalid key.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+}
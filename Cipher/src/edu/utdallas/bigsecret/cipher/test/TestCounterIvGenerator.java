@@ -0,0 +1,178 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher.test;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.CounterIvGenerator;
+import edu.utdallas.bigsecret.cipher.RandomIvGenerator;
+
+
+/**
+ * Test class for Counter Iv Generator class.
+ */
+public class TestCounterIvGenerator
+{
+	@Test
+	public void testUniqueIvs()
+	{
+		CounterIvGenerator gen = new CounterIvGenerator();
+		
+		Set<ByteBuffer> ivSet = new HashSet<ByteBuffer>();
+		byte[] first = new byte[20];
+		gen.nextIv(first, 4);
+		
+		for(int a = 0; a<10000; a++)
+		{
+			byte[] iv = new byte[16];
+			gen.nextIv(iv, 0);
+			
+			//prefix stays the same, block counter is 0
+			if(! Arrays.equals(Arrays.copyOfRange(first, 4, 12), Arrays.copyOf(iv, 8)))
+				fail("CounterIvGenerator changed prefix before counter wrapped around.");
+			if(iv[12] != 0 || iv[13] != 0 || iv[14] != 0 || iv[15] != 0)
+				fail("CounterIvGenerator block counter is not 0.");
+			
+			if(! ivSet.add(ByteBuffer.wrap(iv)))
+				fail("CounterIvGenerator created the same iv twice.");
+		}
+	}
+	
+	@Test
+	public void testNonceSize()
+	{
+		try
+		{
+			CounterIvGenerator gen = new CounterIvGenerator(12);
+			
+			//nonce should not touch bytes after its 12 bytes
+			byte[] nonce = new byte[16];
+			Arrays.fill(nonce, (byte)7);
+			gen.nextIv(nonce, 0);
+			
+			if(gen.getIvSize() != 12 || nonce[12] != 7 || nonce[15] != 7)
+				fail("CounterIvGenerator wrote more than 12 bytes for a nonce.");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("CounterIvGenerator nonce test failed.");
+		}
+		
+		try
+		{
+			new CounterIvGenerator(8);
+			
+			fail("CounterIvGenerator should not accept 8 byte ivs.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+	
+	@Test
+	public void testThreadPrefixes()
+	{
+		try
+		{
+			runThreadPrefixes();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("CounterIvGenerator thread test failed.");
+		}
+	}
+	
+	@Test
+	public void testAesCtrGenerators()
+	{
+		try
+		{
+			byte[] key = Bytes.toBytes("1234567890123456");
+			byte[] originalData = Bytes.toBytes("there is no spoon");
+			
+			AesCtr counterCipher = new AesCtr(key, new CounterIvGenerator());
+			AesCtr randomCipher = new AesCtr(key, new RandomIvGenerator(16));
+			AesCtr defaultCipher = new AesCtr(key);
+			
+			//every instance should decrypt the others' outputs
+			if(! Arrays.equals(originalData, defaultCipher.decrypt(counterCipher.encrypt(originalData))))
+				fail("AesCtr could not decrypt data encrypted with CounterIvGenerator.");
+			if(! Arrays.equals(originalData, defaultCipher.decrypt(randomCipher.encrypt(originalData))))
+				fail("AesCtr could not decrypt data encrypted with RandomIvGenerator.");
+			if(! Arrays.equals(originalData, randomCipher.decrypt(defaultCipher.encrypt(originalData))))
+				fail("AesCtr could not decrypt data encrypted with default generator.");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("AesCtr iv generator test failed.");
+		}
+		
+		try
+		{
+			new AesCtr(Bytes.toBytes("1234567890123456"), new RandomIvGenerator(8));
+			
+			fail("AesCtr should not accept an 8 byte iv generator.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+	
+	/**
+	 * Checks that each thread gets its own iv prefix.
+	 */
+	public static void runThreadPrefixes() throws Exception
+	{
+		final CounterIvGenerator gen = new CounterIvGenerator();
+		final byte[][] ivs = new byte[4][16];
+		
+		Thread[] threads = new Thread[ivs.length];
+		for(int a = 0; a<threads.length; a++)
+		{
+			final int threadNo = a;
+			threads[a] = new Thread()
+			{
+				public void run()
+				{
+					gen.nextIv(ivs[threadNo], 0);
+				}
+			};
+			threads[a].start();
+		}
+		for(int a = 0; a<threads.length; a++)
+			threads[a].join();
+		
+		Set<ByteBuffer> prefixSet = new HashSet<ByteBuffer>();
+		for(int a = 0; a<ivs.length; a++)
+		{
+			if(! prefixSet.add(ByteBuffer.wrap(Arrays.copyOf(ivs[a], 8))))
+				fail("Two threads use the same prefix.");
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.CounterIvGenerator;
+import edu.utdallas.bigsecret.cipher.IvGenerator;
+import edu.utdallas.bigsecret.cipher.KeystreamPool;
+
+
+/**
+ * Test class for Keystream Pool class.
+ */
+public class TestKeystreamPool
+{
+	@Test
+	public void testPooledEncryption()
+	{
+		KeystreamPool pool = null;
+		
+		try
+		{
+			byte[] key = Bytes.toBytes("1234567890123456");
+			pool = new KeystreamPool(key, new CounterIvGenerator(), 64, 16, 2);
+			
+			AesCtr pooledCipher = new AesCtr(key, pool);
+			AesCtr plainCipher = new AesCtr(key);
+			
+			//wait until workers fill the pool
+			for(int a = 0; a<100 && pool.size() < 16; a++)
+				Thread.sleep(10);
+			
+			//short values use the pool, long values use the usual path
+			for(int a = 1; a<=200; a += 7)
+			{
+				byte[] originalData = new byte[a];
+				for(int b = 0; b<a; b++)
+					originalData[b] = (byte)(a + b);
+				
+				byte[] encData = pooledCipher.encrypt(originalData);
+				
+				if(encData.length != a + 16)
+					fail("Pooled AesCtr encryption has wrong size.");
+				
+				if(! Arrays.equals(originalData, plainCipher.decrypt(encData)))
+					fail("AesCtr could not decrypt pooled AesCtr encryption.");
+			}
+			
+			if(pool.getHitCount() == 0)
+				fail("Pooled AesCtr did not use the pool.");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("KeystreamPool test failed.");
+		}
+		finally
+		{
+			try
+			{
+				if(pool != null)
+					pool.close();
+			}
+			catch (Exception e)
+			{
+				fail("KeystreamPool could not be closed.");
+			}
+		}
+	}
+	
+	@Test
+	public void testDifferentKey()
+	{
+		KeystreamPool pool = null;
+		
+		try
+		{
+			pool = new KeystreamPool(Bytes.toBytes("1234567890123456"), new CounterIvGenerator(), 64, 4, 1);
+			
+			new AesCtr(Bytes.toBytes("6543210987654321"), pool);
+			
+			fail("AesCtr should not accept a keystream pool with a different key.");
+		}
+		catch (Exception e)
+		{
+		}
+		finally
+		{
+			try
+			{
+				if(pool != null)
+					pool.close();
+			}
+			catch (Exception e)
+			{
+				fail("KeystreamPool could not be closed.");
+			}
+		}
+	}
+	
+	@Test
+	public void testWorkerFailure()
+	{
+		KeystreamPool pool = null;
+		
+		try
+		{
+			//iv generator that fails on the first iv
+			IvGenerator failing = new IvGenerator()
+			{
+				public void nextIv(byte[] out, int offset)
+				{
+					throw new IllegalStateException("iv generator failed");
+				}
+				
+				public int getIvSize()
+				{
+					return 16;
+				}
+			};
+			
+			pool = new KeystreamPool(Bytes.toBytes("1234567890123456"), failing, 64, 4, 1);
+			
+			//wait for the worker to fail
+			for(int a = 0; a<500 && pool.getFailure() == null; a++)
+				Thread.sleep(10);
+			
+			if(pool.getFailure() == null)
+			{
+				fail("KeystreamPool should record the failure of a worker.");
+			}
+			
+			try
+			{
+				pool.poll();
+				fail("KeystreamPool should throw the failure of a worker from poll.");
+			}
+			catch (Exception e)
+			{
+			}
+			
+			try
+			{
+				pool.close();
+				pool = null;
+				fail("KeystreamPool should throw the failure of a worker from close.");
+			}
+			catch (Exception e)
+			{
+				pool = null;
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("KeystreamPool worker failure test failed.");
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.cipher.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.ProviderRegistry;
+import edu.utdallas.bigsecret.hash.Sha256;
+
+
+/**
+ * Test class for Provider Registry class.
+ */
+public class TestProviderRegistry
+{
+	@Test
+	public void testCalibration()
+	{
+		File file = null;
+		
+		try
+		{
+			ProviderRegistry.reset();
+			ProviderRegistry.calibrate(20);
+			
+			//every algorithm used in the project should have a provider
+			for(int a = 0; a<ProviderRegistry.CIPHER_ALGORITHMS.length; a++)
+			{
+				if(ProviderRegistry.getSelectedProvider(ProviderRegistry.CIPHER_ALGORITHMS[a]) == null)
+					fail("No provider is selected for " + ProviderRegistry.CIPHER_ALGORITHMS[a]);
+			}
+			if(ProviderRegistry.getSelectedProvider("HmacSHA256") == null)
+				fail("No provider is selected for HmacSHA256");
+			
+			if(ProviderRegistry.getDiagnostics().length() == 0)
+				fail("ProviderRegistry has no diagnostics.");
+			
+			//ciphers and hashers should work with pinned providers
+			AesCtr cip = new AesCtr(Bytes.toBytes("1234567890123456"));
+			byte[] originalData = Bytes.toBytes("Welcome to the real world.");
+			if(! Arrays.equals(originalData, cip.decrypt(cip.encrypt(originalData))))
+				fail("AesCtr failed with pinned provider.");
+			
+			if(new Sha256(Bytes.toBytes("1234")).getHash(originalData).length != 32)
+				fail("Sha256 failed with pinned provider.");
+			
+			//results should survive a save and load
+			Map<String, Map<String, Double>> results = ProviderRegistry.getResults();
+			
+			file = File.createTempFile("providers", ".properties");
+			ProviderRegistry.save(file);
+			ProviderRegistry.reset();
+			ProviderRegistry.initialize(file, 20);
+			
+			if(! results.equals(ProviderRegistry.getResults()))
+				fail("ProviderRegistry results changed after save and load.");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("ProviderRegistry test failed.");
+		}
+		finally
+		{
+			ProviderRegistry.reset();
+			
+			if(file != null)
+				file.delete();
+		}
+	}
+}
@@ -0,0 +1,394 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.hash;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hasher decorator that remembers digests of recent inputs. Read traffic is skewed, so<br>
+ * the same row keys are hashed again and again; a hit returns the remembered digest<br>
+ * without running the wrapped hasher.<br>
+ * The cache is split into segments by the hash code of the input. Each segment is an<br>
+ * LRU map with its own lock and its own share of the byte budget, so threads that look<br>
+ * up different keys rarely wait for each other. Size of an entry is the size of its<br>
+ * input and digest plus a fixed overhead. Misses run the wrapped hasher outside of the<br>
+ * lock, so the wrapped hasher should be thread-safe, e.g. ConcurrentSha256 or SipHash,<br>
+ * if the decorator is shared between threads.<br>
+ * Cached inputs are plain key-parts, and stay in memory until they are evicted.
+ */
+public class CachingHasher extends Hasher
+{
+	/**
+	 * Approximate memory of an entry besides its input and digest: map entry, key object<br>
+	 * and two array headers.
+	 */
+	public static final int ENTRY_OVERHEAD_BYTES = 96;
+	
+	/**
+	 * Input of a cache entry. Lookups wrap the caller's array without copying it,<br>
+	 * stored keys own a copy.
+	 */
+	protected static class CacheKey
+	{
+		protected byte[] m_data;
+		protected int m_offset;
+		protected int m_length;
+		protected int m_hashCode;
+		
+		public CacheKey(byte[] data, int offset, int length)
+		{
+			m_data = data;
+			m_offset = offset;
+			m_length = length;
+			
+			int hash = 1;
+			for(int a = offset; a<offset + length; a++)
+				hash = 31 * hash + data[a];
+			m_hashCode = hash;
+		}
+		
+		public int hashCode()
+		{
+			return m_hashCode;
+		}
+		
+		public boolean equals(Object obj)
+		{
+			if(! (obj instanceof CacheKey))
+				return false;
+			
+			CacheKey other = (CacheKey)obj;
+			if(other.m_length != m_length || other.m_hashCode != m_hashCode)
+				return false;
+			
+			for(int a = 0; a<m_length; a++)
+			{
+				if(m_data[m_offset + a] != other.m_data[other.m_offset + a])
+					return false;
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Returns a key that owns a copy of the input.
+		 */
+		public CacheKey copy()
+		{
+			return new CacheKey(Arrays.copyOfRange(m_data, m_offset, m_offset + m_length), 0, m_length);
+		}
+	}
+	
+	/**
+	 * One lock-protected LRU part of the cache.
+	 */
+	protected static class Segment
+	{
+		protected LinkedHashMap<CacheKey, byte[]> m_map = new LinkedHashMap<CacheKey, byte[]>(16, 0.75f, true);
+		protected long m_weight;
+		protected long m_maxWeight;
+		protected long m_hits;
+		protected long m_misses;
+		
+		public Segment(long maxWeight)
+		{
+			m_maxWeight = maxWeight;
+		}
+	}
+	
+	
+	/**
+	 * Wrapped hasher.
+	 */
+	protected Hasher m_hasher;
+	
+	/**
+	 * Segments of the cache. Length is a power of two.
+	 */
+	protected Segment[] m_segments;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param hasher Hasher whose digests are cached.
+	 * @param maxBytes Memory budget of the cache in bytes.
+	 * @throws Exception Throws exception if hasher is null, or budget is not positive.
+	 */
+	public CachingHasher(Hasher hasher, long maxBytes) throws Exception
+	{
+		this(hasher, maxBytes, 4 * Runtime.getRuntime().availableProcessors());
+	}
+	
+	
+	/**
+	 * Class constructor.
+	 * @param hasher Hasher whose digests are cached.
+	 * @param maxBytes Memory budget of the cache in bytes.
+	 * @param concurrency Expected number of threads. Number of segments is the next power of two.
+	 * @throws Exception Throws exception if hasher is null, or budget or concurrency is not positive.
+	 */
+	public CachingHasher(Hasher hasher, long maxBytes, int concurrency) throws Exception
+	{
+		if(hasher == null)
+			throw new Exception("Hasher is null");
+		else if(maxBytes <= 0)
+			throw new Exception("Cache size should be positive");
+		else if(concurrency <= 0)
+			throw new Exception("Concurrency should be positive");
+		
+		m_hasher = hasher;
+		
+		int segmentCount = 1;
+		while(segmentCount < concurrency)
+			segmentCount <<= 1;
+		
+		m_segments = new Segment[segmentCount];
+		for(int a = 0; a<segmentCount; a++)
+			m_segments[a] = new Segment(Math.max(1, maxBytes / segmentCount));
+	}
+	
+	
+	/**
+	 * Returns the segment of a key.
+	 * @param key Cache key.
+	 * @return Segment that holds the key.
+	 */
+	protected Segment getSegment(CacheKey key)
+	{
+		//spread the bits, since row keys often differ only in the last bytes
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		hash *= 0x85ebca6b;
+		hash ^= (hash >>> 13);
+		
+		return m_segments[hash & (m_segments.length - 1)];
+	}
+	
+	
+	/**
+	 * Returns the cached digest of the input, or computes and caches it.
+	 * @param in Input array.
+	 * @param off Starting index of the input.
+	 * @param len Number of input bytes.
+	 * @return Cached digest. Should not be modified.
+	 * @throws Exception Throws exception thrown by the wrapped hasher.
+	 */
+	protected byte[] lookup(byte[] in, int off, int len) throws Exception
+	{
+		CacheKey key = new CacheKey(in, off, len);
+		Segment segment = getSegment(key);
+		
+		synchronized(segment)
+		{
+			byte[] digest = segment.m_map.get(key);
+			if(digest != null)
+			{
+				segment.m_hits++;
+				return digest;
+			}
+			
+			segment.m_misses++;
+		}
+		
+		//compute outside of the lock, a concurrent miss of the same key only hashes twice
+		byte[] digest = new byte[m_hasher.hashSize()];
+		m_hasher.getHash(in, off, len, digest, 0);
+		
+		long weight = len + digest.length + ENTRY_OVERHEAD_BYTES;
+		if(weight > segment.m_maxWeight)
+			return digest;
+		
+		synchronized(segment)
+		{
+			byte[] previous = segment.m_map.put(key.copy(), digest);
+			if(previous != null)
+				segment.m_weight -= len + previous.length + ENTRY_OVERHEAD_BYTES;
+			segment.m_weight += weight;
+			
+			//evict least recently used entries
+			Iterator<Map.Entry<CacheKey, byte[]>> iter = segment.m_map.entrySet().iterator();
+			while(segment.m_weight > segment.m_maxWeight && iter.hasNext())
+			{
+				Map.Entry<CacheKey, byte[]> eldest = iter.next();
+				segment.m_weight -= eldest.getKey().m_length + eldest.getValue().length + ENTRY_OVERHEAD_BYTES;
+				iter.remove();
+			}
+		}
+		
+		return digest;
+	}
+	
+	
+	/**
+	 * Returns digest of the input, from the cache if possible.
+	 * @param data Input byte array.
+	 * @return Digest of the input.
+	 * @throws Exception Throws exception if data is null.<br>
+	 * 					 Throws exception thrown by the wrapped hasher.
+	 */
+	public byte[] getHash(byte[] data) throws Exception
+	{
+		if(data == null)
+			throw new Exception("Data is null");
+		
+		//callers own the returned array
+		return lookup(data, 0, data.length).clone();
+	}
+	
+	
+	/**
+	 * Writes digest of the input to out, from the cache if possible.
+	 * @param in Input array.
+	 * @param off Starting index of the input.
+	 * @param len Number of input bytes.
+	 * @param out Output array.
+	 * @param outOff Starting index of the digest.
+	 * @return Number of bytes written to out.
+	 * @throws Exception Throws exception if in is null.<br>
+	 * 					 Throws exception thrown by the wrapped hasher.
+	 */
+	public int getHash(byte[] in, int off, int len, byte[] out, int outOff) throws Exception
+	{
+		if(in == null)
+			throw new Exception("Data is null");
+		
+		byte[] digest = lookup(in, off, len);
+		System.arraycopy(digest, 0, out, outOff, digest.length);
+		
+		return digest.length;
+	}
+	
+	
+	/**
+	 * Returns digest size of the wrapped hasher.
+	 * @return Digest size.
+	 */
+	public int hashSize()
+	{
+		return m_hasher.hashSize();
+	}
+	
+	
+	/**
+	 * Returns number of lookups that were answered from the cache.
+	 * @return Hit count.
+	 */
+	public long getHitCount()
+	{
+		long result = 0;
+		for(Segment segment : m_segments)
+		{
+			synchronized(segment)
+			{
+				result += segment.m_hits;
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns number of lookups that ran the wrapped hasher.
+	 * @return Miss count.
+	 */
+	public long getMissCount()
+	{
+		long result = 0;
+		for(Segment segment : m_segments)
+		{
+			synchronized(segment)
+			{
+				result += segment.m_misses;
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns ratio of hits to all lookups.
+	 * @return Hit rate between 0 and 1, 0 if there was no lookup.
+	 */
+	public double getHitRate()
+	{
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		
+		return total == 0 ? 0 : (double)hits / total;
+	}
+	
+	
+	/**
+	 * Returns number of cached digests.
+	 * @return Number of entries.
+	 */
+	public int size()
+	{
+		int result = 0;
+		for(Segment segment : m_segments)
+		{
+			synchronized(segment)
+			{
+				result += segment.m_map.size();
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns approximate memory used by the cached entries.
+	 * @return Size in bytes.
+	 */
+	public long getWeight()
+	{
+		long result = 0;
+		for(Segment segment : m_segments)
+		{
+			synchronized(segment)
+			{
+				result += segment.m_weight;
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Removes all entries, and resets counters.
+	 */
+	public void clear()
+	{
+		for(Segment segment : m_segments)
+		{
+			synchronized(segment)
+			{
+				segment.m_map.clear();
+				segment.m_weight = 0;
+				segment.m_hits = 0;
+				segment.m_misses = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.hash;
+
+import javax.crypto.Mac;
+
+/**
+ * Thread-safe Sha256. Sha256 holds a single javax.crypto.Mac instance, and doFinal<br>
+ * on it can not be called by two threads at the same time. This class keeps one Mac<br>
+ * per thread, cloned from the Mac that is initialized in the constructor, so the key<br>
+ * schedule is not repeated. Hence a single instance can be given to CrypterMode2 and<br>
+ * CrypterMode3 that are used by many proxy threads. Digests are the same as Sha256.
+ */
+public class ConcurrentSha256 extends Sha256
+{
+	/**
+	 * Mac instance of each thread.
+	 */
+	protected ThreadLocal<Mac> m_localMac;
+	
+	/**
+	 * Digest scratch array of each thread.
+	 */
+	protected ThreadLocal<byte[]> m_localDigest;
+	
+	
+	/**
+	 * Constructor for the class that does not trim the output.
+	 * @param key Secret key for the hash function.
+	 * @throws Exception Throws exception if the key is null, or empty.
+	 */
+	public ConcurrentSha256(byte[] key) throws Exception
+	{
+		this(key, 0);
+	}
+	
+	
+	/**
+	 * Class constructor that trims the output.
+	 * @param key Secret key for the hash function.
+	 * @param trimCount Number of bytes of the output.
+	 * @throws Exception Throws exception if the key is null, or empty.<br> 
+	 * 					 Throws exception if the trim value is invalid.
+	 */
+	public ConcurrentSha256(byte[] key, int trimCount) throws Exception
+	{
+		//call constructor of super class, which initializes m_mac
+		super(key, trimCount);
+		
+		m_localMac = new ThreadLocal<Mac>()
+		{
+			protected Mac initialValue()
+			{
+				try
+				{
+					return newMac();
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException("Mac instance could not be created", e);
+				}
+			}
+		};
+		
+		m_localDigest = new ThreadLocal<byte[]>()
+		{
+			protected byte[] initialValue()
+			{
+				return new byte[m_mac.getMacLength()];
+			}
+		};
+	}
+	
+	
+	/**
+	 * Creates the Mac of a thread. Clones m_mac, or creates and initializes a new Mac<br>
+	 * of the same provider if the provider does not support cloning.
+	 * @return New Mac instance.
+	 * @throws Exception May throw exception based on Javax.Crypto classes.
+	 */
+	protected Mac newMac() throws Exception
+	{
+		//m_mac is never used for hashing, so it stays in its initial state
+		synchronized(m_mac)
+		{
+			try
+			{
+				return (Mac)m_mac.clone();
+			}
+			catch (CloneNotSupportedException e)
+			{
+				//fall back to a new instance below
+			}
+		}
+		
+		Mac mac = Mac.getInstance(m_mac.getAlgorithm(), m_mac.getProvider());
+		mac.init(m_keySpec);
+		
+		return mac;
+	}
+	
+	
+	/**
+	 * Returns the Mac of the calling thread.
+	 * @return Mac instance that is used only by the calling thread.
+	 */
+	protected Mac getMac()
+	{
+		return m_localMac.get();
+	}
+	
+	
+	/**
+	 * Returns the digest scratch array of the calling thread.
+	 * @return Array that is used only by the calling thread.
+	 */
+	protected byte[] getDigestBuffer()
+	{
+		return m_localDigest.get();
+	}
+}
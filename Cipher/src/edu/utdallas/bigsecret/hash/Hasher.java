@@ -16,8 +16,14 @@
 
 package edu.utdallas.bigsecret.hash;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * This is an abstract class that contains functions for a hash function.
+ * This is an abstract class that contains functions for a hash function.<br>
+ * Besides getHash that returns a new array, there are functions that write the digest<br>
+ * into a caller provided byte array or ByteBuffer. Default implementations of those<br>
+ * copy the result of getHash, sub-classes override them to avoid temporary arrays.
  */
 public abstract class Hasher 
 {	
@@ -44,4 +50,44 @@ public abstract class Hasher
 	 * @return Size of the hash value.
 	 */
 	public abstract int hashSize();
+	
+	
+	/**
+	 * Calculate hash of len bytes of in starting from off, and write it to out starting from outOff.<br>
+	 * out should have at least hashSize() bytes after outOff.
+	 * @param in Input data.
+	 * @param off Starting index in input data.
+	 * @param len Number of bytes to hash.
+	 * @param out Output array.
+	 * @param outOff Starting index in output array.
+	 * @return Number of bytes written to out.
+	 * @throws Exception
+	 */
+	public int getHash(byte[] in, int off, int len, byte[] out, int outOff) throws Exception
+	{
+		byte[] result = getHash(Arrays.copyOfRange(in, off, off + len));
+		System.arraycopy(result, 0, out, outOff, result.length);
+		
+		return result.length;
+	}
+	
+	
+	/**
+	 * Calculate hash of remaining bytes of in, and write it to out. Both buffers may be direct.<br>
+	 * Position of in is moved to its limit, position of out is moved by the number of written bytes.
+	 * @param in Input data.
+	 * @param out Output buffer. Should have at least hashSize() bytes remaining.
+	 * @return Number of bytes written to out.
+	 * @throws Exception
+	 */
+	public int getHash(ByteBuffer in, ByteBuffer out) throws Exception
+	{
+		byte[] data = new byte[in.remaining()];
+		in.get(data);
+		
+		byte[] result = getHash(data);
+		out.put(result);
+		
+		return result.length;
+	}
 }
@@ -16,11 +16,13 @@
 
 package edu.utdallas.bigsecret.hash;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
+import edu.utdallas.bigsecret.cipher.ProviderRegistry;
+
 /**
  * This class extends abstract class Hasher. It implements Sha 256. By <br>
  * default, the output size is 256 bits. Moreover, a trim can be performed <br>
@@ -34,6 +36,11 @@ public class Sha256 extends JavaxHasher
 	 */
 	protected int m_trimCount;
 	
+	/**
+	 * Scratch array for trimmed digests.
+	 */
+	protected byte[] m_digest;
+	
 	
 	/**
 	 * Constructor for the class that does not trim the output.
@@ -62,7 +69,7 @@ public class Sha256 extends JavaxHasher
 		m_keySpec = new SecretKeySpec(key, "HmacSHA256");
 		
 		//init mac object
-		m_mac = Mac.getInstance("HmacSHA256");
+		m_mac = ProviderRegistry.getMac("HmacSHA256");
 		m_mac.init(m_keySpec);
 		
 		if(0 < trimCount && trimCount < m_mac.getMacLength())
@@ -85,9 +92,88 @@ public class Sha256 extends JavaxHasher
 	public byte[] getHash(byte[] data) throws Exception 
 	{
 		if(m_trimCount == 0)
-			return m_mac.doFinal(data);
-		else
-			return Arrays.copyOf(m_mac.doFinal(data), m_trimCount);
+			return getMac().doFinal(data);
+		
+		//trimmed digest is written straight into the result
+		byte[] result = new byte[m_trimCount];
+		getHash(data, 0, data.length, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Calculates hash of len bytes of in, and writes hashSize() bytes to out.
+	 * @param in Input array.
+	 * @param off Starting index of the input.
+	 * @param len Number of input bytes.
+	 * @param out Output array.
+	 * @param outOff Starting index of the digest.
+	 * @return Number of bytes written to out.
+	 * @throws May throw exception based on Javax.Crypto class
+	 */
+	public int getHash(byte[] in, int off, int len, byte[] out, int outOff) throws Exception
+	{
+		Mac mac = getMac();
+		mac.update(in, off, len);
+		
+		if(m_trimCount == 0)
+		{
+			mac.doFinal(out, outOff);
+			return mac.getMacLength();
+		}
+		
+		//full digest goes to the scratch array, only the trimmed part is copied
+		byte[] digest = getDigestBuffer();
+		mac.doFinal(digest, 0);
+		System.arraycopy(digest, 0, out, outOff, m_trimCount);
+		
+		return m_trimCount;
+	}
+	
+	
+	/**
+	 * Calculates hash of remaining bytes of in, and writes hashSize() bytes to out.
+	 * @param in Input buffer.
+	 * @param out Output buffer.
+	 * @return Number of bytes written to out.
+	 * @throws May throw exception based on Javax.Crypto class
+	 */
+	public int getHash(ByteBuffer in, ByteBuffer out) throws Exception
+	{
+		Mac mac = getMac();
+		mac.update(in);
+		
+		byte[] digest = getDigestBuffer();
+		mac.doFinal(digest, 0);
+		
+		int size = hashSize();
+		out.put(digest, 0, size);
+		
+		return size;
+	}
+	
+	
+	/**
+	 * Returns the scratch array for full digests.
+	 * @return Array of the mac length.
+	 */
+	protected byte[] getDigestBuffer()
+	{
+		if(m_digest == null)
+			m_digest = new byte[m_mac.getMacLength()];
+		
+		return m_digest;
+	}
+	
+	
+	/**
+	 * Returns the mac instance that computes the digest.
+	 * @return m_mac
+	 */
+	protected Mac getMac()
+	{
+		return m_mac;
 	}
 
 	
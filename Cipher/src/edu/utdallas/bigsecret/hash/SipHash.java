@@ -0,0 +1,266 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class extends abstract class Hasher. It implements the SipHash-2-4 keyed PRF,<br>
+ * which is much cheaper than HMAC-SHA256 for the short inputs of index digests, such as<br>
+ * timestamps, families and qualifiers. Digest is 8 bytes by default. Digests of 9 to 16<br>
+ * bytes use the 128-bit variant of SipHash-2-4. Smaller digest sizes trim the output,<br>
+ * like the trimCount of Sha256.<br>
+ * A 64-bit digest collides after about 2^32 distinct inputs, so row keys of large tables<br>
+ * should use a 16 byte digest, or Sha256. Instances hold only the key, so they are<br>
+ * thread-safe.
+ */
+public class SipHash extends Hasher
+{
+	/**
+	 * Size of the key in bytes.
+	 */
+	public static final int KEY_SIZE_BYTES = 16;
+	
+	/**
+	 * First and second halves of the key.
+	 */
+	protected long m_k0;
+	protected long m_k1;
+	
+	/**
+	 * Number of bytes returned.
+	 */
+	protected int m_digestSize;
+	
+	
+	/**
+	 * Constructor for the class with 8 byte digests.
+	 * @param key Secret key for the hash function. Should be 16 bytes long.
+	 * @throws Exception Throws exception if the key is not 16 bytes long.
+	 */
+	public SipHash(byte[] key) throws Exception
+	{
+		this(key, 8);
+	}
+	
+	
+	/**
+	 * Class constructor with the given digest size.
+	 * @param key Secret key for the hash function. Should be 16 bytes long.
+	 * @param digestSize Number of bytes of the output, between 1 and 16.
+	 * @throws Exception Throws exception if the key is not 16 bytes long.<br> 
+	 * 					 Throws exception if the digest size is invalid.
+	 */
+	public SipHash(byte[] key, int digestSize) throws Exception
+	{
+		//check key value
+		if(key == null || key.length != KEY_SIZE_BYTES)
+			throw new Exception("Key should be " + KEY_SIZE_BYTES + " bytes long");
+		else if(digestSize < 1 || digestSize > 16)
+			throw new Exception("Digest size should be between 1 and 16");
+		
+		m_k0 = readLong(key, 0, 8);
+		m_k1 = readLong(key, 8, 8);
+		m_digestSize = digestSize;
+	}
+	
+	
+	/**
+	 * Reads up to 8 bytes as a little-endian long.
+	 * @param data Input array.
+	 * @param offset Starting index.
+	 * @param length Number of bytes to read.
+	 * @return Little-endian value.
+	 */
+	protected static long readLong(byte[] data, int offset, int length)
+	{
+		long result = 0;
+		for(int a = length - 1; a>=0; a--)
+			result = (result << 8) | (data[offset + a] & 0xffL);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Writes up to 8 bytes of a long in little-endian order.
+	 * @param value Value to write.
+	 * @param out Output array.
+	 * @param offset Starting index.
+	 * @param length Number of bytes to write.
+	 */
+	protected static void writeLong(long value, byte[] out, int offset, int length)
+	{
+		for(int a = 0; a<length; a++)
+		{
+			out[offset + a] = (byte)value;
+			value >>>= 8;
+		}
+	}
+	
+	
+	/**
+	 * Calculates hash result for the input data.
+	 * @param data Input byte array.
+	 * @return Digest of the input.
+	 * @throws Exception Throws exception if data is null.
+	 */
+	public byte[] getHash(byte[] data) throws Exception
+	{
+		if(data == null)
+			throw new Exception("Data is null");
+		
+		byte[] result = new byte[m_digestSize];
+		hash(data, 0, data.length, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Calculates hash of len bytes of in, and writes hashSize() bytes to out.
+	 * @param in Input array.
+	 * @param off Starting index of the input.
+	 * @param len Number of input bytes.
+	 * @param out Output array.
+	 * @param outOff Starting index of the digest.
+	 * @return Number of bytes written to out.
+	 * @throws Exception Throws exception if in is null.
+	 */
+	public int getHash(byte[] in, int off, int len, byte[] out, int outOff) throws Exception
+	{
+		if(in == null)
+			throw new Exception("Data is null");
+		
+		hash(in, off, len, out, outOff);
+		
+		return m_digestSize;
+	}
+	
+	
+	/**
+	 * Calculates hash of remaining bytes of in, and writes hashSize() bytes to out.<br>
+	 * Heap buffers are hashed in place. Direct buffers are copied, as SipHash keeps<br>
+	 * no scratch array in order to stay thread-safe.
+	 * @param in Input buffer.
+	 * @param out Output buffer.
+	 * @return Number of bytes written to out.
+	 * @throws Exception
+	 */
+	public int getHash(ByteBuffer in, ByteBuffer out) throws Exception
+	{
+		if(out.remaining() < m_digestSize)
+			throw new Exception("Output buffer is too small");
+		else if(! in.hasArray() || ! out.hasArray())
+			return super.getHash(in, out);
+		
+		hash(in.array(), in.arrayOffset() + in.position(), in.remaining(), out.array(), out.arrayOffset() + out.position());
+		
+		in.position(in.limit());
+		out.position(out.position() + m_digestSize);
+		
+		return m_digestSize;
+	}
+	
+	
+	/**
+	 * Returns the number of bytes of this hasher's digest.
+	 * @return Digest size.
+	 */
+	public int hashSize()
+	{
+		return m_digestSize;
+	}
+	
+	
+	/**
+	 * Computes SipHash-2-4 of len bytes of data, and writes the digest to out.
+	 * @param data Input array.
+	 * @param off Starting index of the input.
+	 * @param len Number of input bytes.
+	 * @param out Output array.
+	 * @param outOff Starting index of the digest.
+	 */
+	protected void hash(byte[] data, int off, int len, byte[] out, int outOff)
+	{
+		boolean wide = m_digestSize > 8;
+		
+		long v0 = m_k0 ^ 0x736f6d6570736575L;
+		long v1 = m_k1 ^ 0x646f72616e646f6dL;
+		long v2 = m_k0 ^ 0x6c7967656e657261L;
+		long v3 = m_k1 ^ 0x7465646279746573L;
+		
+		if(wide)
+			v1 ^= 0xee;
+		
+		//compression of full 8 byte words, 2 rounds each
+		int end = off + (len & ~7);
+		for(int pos = off; pos<end; pos += 8)
+		{
+			long m = readLong(data, pos, 8);
+			
+			v3 ^= m;
+			for(int r = 0; r<2; r++)
+			{
+				v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+				v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+				v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+				v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+			}
+			v0 ^= m;
+		}
+		
+		//last word holds the remaining bytes and the input length
+		long m = readLong(data, end, len & 7) | ((long)len << 56);
+		
+		v3 ^= m;
+		for(int r = 0; r<2; r++)
+		{
+			v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+			v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+			v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+			v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+		}
+		v0 ^= m;
+		
+		//finalization, 4 rounds for each 64-bit half of the output
+		v2 ^= wide ? 0xee : 0xff;
+		for(int r = 0; r<4; r++)
+		{
+			v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+			v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+			v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+			v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+		}
+		
+		writeLong(v0 ^ v1 ^ v2 ^ v3, out, outOff, Math.min(m_digestSize, 8));
+		
+		if(! wide)
+			return;
+		
+		v1 ^= 0xdd;
+		for(int r = 0; r<4; r++)
+		{
+			v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+			v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+			v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+			v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+		}
+		
+		writeLong(v0 ^ v1 ^ v2 ^ v3, out, outOff + 8, m_digestSize - 8);
+	}
+}
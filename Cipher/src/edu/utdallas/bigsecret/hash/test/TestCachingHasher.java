@@ -0,0 +1,233 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.hash.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.hash.CachingHasher;
+import edu.utdallas.bigsecret.hash.ConcurrentSha256;
+import edu.utdallas.bigsecret.hash.Hasher;
+import edu.utdallas.bigsecret.hash.Sha256;
+import edu.utdallas.bigsecret.hash.SipHash;
+
+/**
+ * Test class for CachingHasher class.
+ */
+public class TestCachingHasher
+{
+	@Test
+	public void testSameDigests()
+	{
+		try
+		{
+			Hasher plain = new Sha256(Bytes.toBytes("123"), 10);
+			CachingHasher h = new CachingHasher(new Sha256(Bytes.toBytes("123"), 10), 1 << 20);
+			
+			for(int a = 0; a<2; a++)
+			{
+				byte[] data = Bytes.toBytes("user" + a);
+				
+				if(! Arrays.equals(plain.getHash(data), h.getHash(data)) || ! Arrays.equals(plain.getHash(data), h.getHash(data)))
+				{
+					fail("CachingHasher digest differs from the wrapped hasher.");
+				}
+			}
+			
+			if(h.getHitCount() != 2 || h.getMissCount() != 2 || h.getHitRate() != 0.5 || h.size() != 2)
+			{
+				fail("CachingHasher counters are wrong.");
+			}
+			
+			//changing a returned digest should not change the cache
+			byte[] digest = h.getHash(Bytes.toBytes("user0"));
+			digest[0]++;
+			if(! Arrays.equals(plain.getHash(Bytes.toBytes("user0")), h.getHash(Bytes.toBytes("user0"))))
+			{
+				fail("CachingHasher shares its cached digest with callers.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("CachingHasher digest test failed.");
+		}
+	}
+	
+	@Test
+	public void testHashIntoBuffer()
+	{
+		try
+		{
+			Hasher plain = new SipHash(Bytes.toBytes("1234567890123456"));
+			CachingHasher h = new CachingHasher(new SipHash(Bytes.toBytes("1234567890123456")), 1 << 20);
+			
+			byte[] data = Bytes.toBytes("xxuser1xx");
+			byte[] out = new byte[12];
+			
+			for(int a = 0; a<2; a++)
+			{
+				if(h.getHash(data, 2, 5, out, 3) != 8 || ! Arrays.equals(plain.getHash(Bytes.toBytes("user1")), Arrays.copyOfRange(out, 3, 11)))
+				{
+					fail("CachingHasher digest into buffer is wrong.");
+				}
+			}
+			
+			//the cached key should not depend on the caller's array
+			data[2] = 'x';
+			if(! Arrays.equals(plain.getHash(Bytes.toBytes("user1")), h.getHash(Bytes.toBytes("user1"))) || h.getHitCount() != 2)
+			{
+				fail("CachingHasher does not keep its own copy of the input.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("CachingHasher buffer test failed.");
+		}
+	}
+	
+	@Test
+	public void testBound()
+	{
+		try
+		{
+			long maxBytes = 4096;
+			CachingHasher h = new CachingHasher(new SipHash(Bytes.toBytes("1234567890123456")), maxBytes, 1);
+			
+			for(int a = 0; a<1000; a++)
+				h.getHash(Bytes.toBytes("user" + a));
+			
+			if(h.getWeight() > maxBytes || h.size() == 0)
+			{
+				fail("CachingHasher exceeds its memory budget.");
+			}
+			
+			//most recent key is kept, the first one is evicted
+			h.getHash(Bytes.toBytes("user999"));
+			h.getHash(Bytes.toBytes("user0"));
+			if(h.getHitCount() != 1)
+			{
+				fail("CachingHasher does not evict least recently used entries.");
+			}
+			
+			h.clear();
+			if(h.size() != 0 || h.getWeight() != 0 || h.getHitRate() != 0)
+			{
+				fail("CachingHasher clear failed.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("CachingHasher bound test failed.");
+		}
+	}
+	
+	@Test
+	public void testThreads()
+	{
+		try
+		{
+			final CachingHasher h = new CachingHasher(new ConcurrentSha256(Bytes.toBytes("123")), 8192, 4);
+			final AtomicInteger failures = new AtomicInteger(0);
+			
+			Thread[] threads = new Thread[8];
+			for(int a = 0; a<threads.length; a++)
+			{
+				threads[a] = new Thread()
+				{
+					public void run()
+					{
+						Hasher plain;
+						try
+						{
+							plain = new Sha256(Bytes.toBytes("123"));
+						}
+						catch (Exception e)
+						{
+							failures.incrementAndGet();
+							return;
+						}
+						
+						for(int b = 0; b<2000; b++)
+						{
+							try
+							{
+								//a few hot keys and many cold ones
+								byte[] data = Bytes.toBytes("user" + (b % 2 == 0 ? b % 10 : b));
+								
+								if(! Arrays.equals(plain.getHash(data), h.getHash(data)))
+									failures.incrementAndGet();
+							}
+							catch (Exception e)
+							{
+								failures.incrementAndGet();
+							}
+						}
+					}
+				};
+			}
+			
+			for(int a = 0; a<threads.length; a++)
+				threads[a].start();
+			for(int a = 0; a<threads.length; a++)
+				threads[a].join();
+			
+			if(failures.get() != 0)
+			{
+				fail("CachingHasher failed " + failures.get() + " times.");
+			}
+			else if(h.getHitCount() + h.getMissCount() != 16000 || h.getHitRate() < 0.4)
+			{
+				fail("CachingHasher counters are wrong under concurrent use.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("CachingHasher thread test failed.");
+		}
+	}
+	
+	@Test
+	public void testInvalidParameters()
+	{
+		try
+		{
+			new CachingHasher(null, 1024);
+			fail("CachingHasher should not accept a null hasher.");
+		}
+		catch (Exception e)
+		{
+		}
+		
+		try
+		{
+			new CachingHasher(new SipHash(Bytes.toBytes("1234567890123456")), 0);
+			fail("CachingHasher should not accept an empty budget.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+}
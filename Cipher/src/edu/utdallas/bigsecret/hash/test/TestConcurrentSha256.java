@@ -0,0 +1,151 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.hash.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.hash.ConcurrentSha256;
+import edu.utdallas.bigsecret.hash.Hasher;
+import edu.utdallas.bigsecret.hash.Sha256;
+
+/**
+ * Test class for Concurrent Sha 256 class.
+ */
+public class TestConcurrentSha256
+{
+	/**
+	 * Hashes with the given hasher from several threads at the same time, and compares<br>
+	 * every digest with the digest of a plain Sha256 instance of each thread.
+	 * @param shared Hasher shared by all threads.
+	 * @param key Key of the shared hasher.
+	 * @param trimCount Trim count of the shared hasher.
+	 * @return Number of wrong digests.
+	 */
+	public static int runThreads(final Hasher shared, final byte[] key, final int trimCount) throws Exception
+	{
+		final AtomicInteger failures = new AtomicInteger(0);
+		
+		Thread[] threads = new Thread[8];
+		for(int a = 0; a<threads.length; a++)
+		{
+			final int threadNo = a;
+			threads[a] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						Sha256 plain = new Sha256(key, trimCount);
+						
+						for(int b = 0; b<2000; b++)
+						{
+							byte[] data = Bytes.toBytes("thread " + threadNo + " round " + b);
+							
+							if(! Arrays.equals(plain.getHash(data), shared.getHash(data)))
+								failures.incrementAndGet();
+						}
+					}
+					catch (Exception e)
+					{
+						failures.incrementAndGet();
+					}
+				}
+			};
+		}
+		
+		for(int a = 0; a<threads.length; a++)
+			threads[a].start();
+		for(int a = 0; a<threads.length; a++)
+			threads[a].join();
+		
+		return failures.get();
+	}
+	
+	@Test
+	public void testWithoutTrim()
+	{
+		byte[] key = Bytes.toBytes("1234566");
+		
+		try
+		{
+			ConcurrentSha256 h = new ConcurrentSha256(key);
+			
+			int failures = runThreads(h, key, 0);
+			
+			if(failures != 0)
+			{
+				fail("ConcurrentSha256 gave " + failures + " wrong digests.");
+			}
+			else if(h.hashSize() != 32)
+			{
+				fail("ConcurrentSha256 has wrong digest size.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("ConcurrentSha256 without trim test failed.");
+		}
+	}
+	
+	@Test
+	public void testWithTrim()
+	{
+		byte[] key = Bytes.toBytes("1234566");
+		
+		try
+		{
+			ConcurrentSha256 h = new ConcurrentSha256(key, 7);
+			
+			int failures = runThreads(h, key, 7);
+			
+			if(failures != 0)
+			{
+				fail("ConcurrentSha256 gave " + failures + " wrong digests.");
+			}
+			else if(h.hashSize() != 7 || h.getHash(key).length != 7)
+			{
+				fail("ConcurrentSha256 has wrong digest size.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("ConcurrentSha256 with trim test failed.");
+		}
+	}
+	
+	@Test
+	public void testInvalidKey()
+	{
+		try
+		{
+			new ConcurrentSha256(new byte[0]);
+			
+			fail("ConcurrentSha256 should not accept an empty key.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+}
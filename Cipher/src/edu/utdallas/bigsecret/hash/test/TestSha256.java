@@ -18,6 +18,9 @@ package edu.utdallas.bigsecret.hash.test;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
 
@@ -80,4 +83,52 @@ public class TestSha256
 			e.printStackTrace();			
 		}
 	}
+	
+	@Test
+	public void testHashIntoBuffer()
+	{
+		byte[] key = Bytes.toBytes("1234566");
+		
+		try
+		{
+			for(int trimCount = 0; trimCount<=10; trimCount += 10)
+			{
+				Sha256 h = new Sha256(key, trimCount);
+				
+				byte[] data = Bytes.toBytes("it's not who I am underneath, but what I do that defines me");
+				byte[] expected = h.getHash(data);
+				
+				//hash the middle of an array into the middle of another array
+				byte[] out = new byte[3 + h.hashSize()];
+				int size = h.getHash(data, 5, data.length - 5, out, 3);
+				
+				if(size != h.hashSize() || ! Arrays.equals(h.getHash(Arrays.copyOfRange(data, 5, data.length)), Arrays.copyOfRange(out, 3, out.length)))
+				{
+					fail("Sha256 array digest differs from getHash.");
+				}
+				
+				//hash direct byte buffers
+				ByteBuffer src = ByteBuffer.allocateDirect(data.length);
+				src.put(data);
+				src.flip();
+				
+				ByteBuffer dst = ByteBuffer.allocateDirect(h.hashSize());
+				h.getHash(src, dst);
+				dst.flip();
+				
+				byte[] bufferHash = new byte[dst.remaining()];
+				dst.get(bufferHash);
+				
+				if(src.hasRemaining() || ! Arrays.equals(expected, bufferHash))
+				{
+					fail("Sha256 buffer digest differs from getHash.");
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Sha256 buffer test failed.");
+		}
+	}
 }
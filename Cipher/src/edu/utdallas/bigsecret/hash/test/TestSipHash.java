@@ -0,0 +1,166 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.hash.test;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.hash.SipHash;
+
+/**
+ * Test class for SipHash class.
+ */
+public class TestSipHash
+{
+	/**
+	 * Returns the bytes 0, 1, ..., size-1, which are the key and inputs of the reference vectors.
+	 */
+	public static byte[] sequence(int size)
+	{
+		byte[] result = new byte[size];
+		for(int a = 0; a<size; a++)
+			result[a] = (byte)a;
+		return result;
+	}
+	
+	@Test
+	public void testReferenceVectors()
+	{
+		try
+		{
+			SipHash h = new SipHash(sequence(16));
+			
+			//vectors of the reference implementation, for inputs of size 0 and 15
+			byte[] empty = {(byte)0x31, (byte)0x0e, (byte)0x0e, (byte)0xdd, (byte)0x47, (byte)0xdb, (byte)0x6f, (byte)0x72};
+			byte[] fifteen = {(byte)0xe5, (byte)0x45, (byte)0xbe, (byte)0x49, (byte)0x61, (byte)0xca, (byte)0x29, (byte)0xa1};
+			
+			if(! Arrays.equals(empty, h.getHash(new byte[0])))
+			{
+				fail("SipHash digest of empty input is wrong.");
+			}
+			else if(! Arrays.equals(fifteen, h.getHash(sequence(15))))
+			{
+				fail("SipHash digest of 15 byte input is wrong.");
+			}
+			
+			SipHash wide = new SipHash(sequence(16), 16);
+			byte[] emptyWide = {(byte)0xa3, (byte)0x81, (byte)0x7f, (byte)0x04, (byte)0xba, (byte)0x25, (byte)0xa8, (byte)0xe6, 
+								(byte)0x6d, (byte)0xf6, (byte)0x72, (byte)0x14, (byte)0xc7, (byte)0x55, (byte)0x02, (byte)0x93};
+			
+			if(! Arrays.equals(emptyWide, wide.getHash(new byte[0])))
+			{
+				fail("128-bit SipHash digest of empty input is wrong.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("SipHash reference test failed.");
+		}
+	}
+	
+	@Test
+	public void testDigestSize()
+	{
+		try
+		{
+			byte[] key = Bytes.toBytes("1234567890123456");
+			byte[] data = Bytes.toBytes("why do we fall?");
+			
+			byte[] full = new SipHash(key).getHash(data);
+			byte[] trimmed = new SipHash(key, 7).getHash(data);
+			
+			if(full.length != 8 || trimmed.length != 7 || new SipHash(key, 7).hashSize() != 7)
+			{
+				fail("SipHash has wrong digest size.");
+			}
+			else if(! Arrays.equals(Arrays.copyOf(full, 7), trimmed))
+			{
+				fail("Trimmed SipHash digest is not a prefix of the full digest.");
+			}
+			else if(Arrays.equals(full, new SipHash(Bytes.toBytes("1234567890123457")).getHash(data)))
+			{
+				fail("SipHash digest does not depend on the key.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("SipHash digest size test failed.");
+		}
+	}
+	
+	@Test
+	public void testInvalidKey()
+	{
+		try
+		{
+			new SipHash(Bytes.toBytes("123"));
+			
+			fail("SipHash should not accept a key that is not 16 bytes long.");
+		}
+		catch (Exception e)
+		{
+		}
+	}
+	
+	@Test
+	public void testHashIntoBuffer()
+	{
+		try
+		{
+			SipHash h = new SipHash(sequence(16), 16);
+			byte[] data = sequence(40);
+			byte[] expected = h.getHash(Arrays.copyOfRange(data, 5, data.length));
+			
+			byte[] out = new byte[3 + h.hashSize()];
+			h.getHash(data, 5, data.length - 5, out, 3);
+			
+			if(! Arrays.equals(expected, Arrays.copyOfRange(out, 3, out.length)))
+			{
+				fail("SipHash array digest differs from getHash.");
+			}
+			
+			//heap buffers are hashed in place, direct buffers are copied
+			ByteBuffer[] sources = {ByteBuffer.wrap(data, 5, data.length - 5), ByteBuffer.allocateDirect(data.length - 5)};
+			sources[1].put(data, 5, data.length - 5);
+			sources[1].flip();
+			
+			for(int a = 0; a<sources.length; a++)
+			{
+				ByteBuffer dst = ByteBuffer.allocate(h.hashSize() + 2);
+				dst.position(2);
+				h.getHash(sources[a], dst);
+				
+				if(sources[a].hasRemaining() || dst.hasRemaining() || ! Arrays.equals(expected, Arrays.copyOfRange(dst.array(), 2, dst.capacity())))
+				{
+					fail("SipHash buffer digest differs from getHash.");
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("SipHash buffer test failed.");
+		}
+	}
+}
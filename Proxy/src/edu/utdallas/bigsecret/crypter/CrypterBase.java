@@ -16,7 +16,21 @@
 
 package edu.utdallas.bigsecret.crypter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.xerial.snappy.Snappy;
+
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.hash.Hasher;
 
 
 /**
@@ -25,6 +39,52 @@ import org.apache.hadoop.hbase.KeyValue;
  */
 public abstract class CrypterBase
 {
+	/**
+	 * Values of at least this many bytes are not copied into batches. They are encrypted<br>
+	 * one by one, directly from the KeyValue buffer.
+	 */
+	protected static int LARGE_VALUE_SIZE = 64 * 1024;
+	
+	/**
+	 * Value format of tables whose values are stored as they are. Tables that are created<br>
+	 * before the compression stage, or without it, have this format.
+	 */
+	public static final byte VALUE_FORMAT_PLAIN = 0;
+	
+	/**
+	 * Value format of tables whose values all start with the header and a flag byte.
+	 */
+	public static final byte VALUE_FORMAT_FLAGGED = 1;
+	
+	/**
+	 * Header in front of every value of a table in the flagged value format: a marker<br>
+	 * followed by the format version.
+	 */
+	protected static byte[] VALUE_HEADER = {(byte)0xB5, (byte)0xEC, (byte)0x7A, 1};
+	
+	/**
+	 * Flag of a value that is stored without compression.
+	 */
+	protected static byte VALUE_RAW = 0;
+	
+	/**
+	 * Flag of a value that is compressed with Snappy before encryption.
+	 */
+	protected static byte VALUE_SNAPPY = 1;
+	
+	/**
+	 * Values of at least this many bytes are compressed before encryption.<br>
+	 * 0 if the compression stage is disabled. Only used for writing.
+	 */
+	protected int m_compressionThreshold = 0;
+	
+	/**
+	 * Value format of the table in use. It decides if values are read and written with the<br>
+	 * header and flag byte, so it should come from the table, not from this proxy.
+	 */
+	protected byte m_valueFormat = VALUE_FORMAT_PLAIN;
+	
+	
 	/**
 	 * Class constructor
 	 */
@@ -33,6 +93,532 @@ public abstract class CrypterBase
 	}
 	
 	
+	/**
+	 * Encrypts complete key data, size(row)||size(fam)||size(qua)||row||fam||qua||ts, with the given cipher,<br>
+	 * and puts the index data in front of it. Result is written into a single array.
+	 * @param keyCipher Cipher for the complete key.
+	 * @param index Index data that is put in front of the encrypted key. May be null.
+	 * @param row Row data
+	 * @param family Family data
+	 * @param qualifier Qualifier data
+	 * @param ts Timestamp data
+	 * @return index||Ek(size(row)||size(fam)||size(qua)||row||fam||qua||ts)
+	 * @throws Exception
+	 */
+	protected byte[] wrapKey(Cipher keyCipher, byte[] index, byte[] row, byte[] family, byte[] qualifier, long ts) throws Exception
+	{
+		int indexSize = (index == null) ? 0 : index.length;
+		
+		byte[] result = wrapKey(keyCipher, indexSize, row, family, qualifier, ts);
+		if(indexSize > 0)
+			System.arraycopy(index, 0, result, 0, indexSize);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Encrypts complete key data like wrapKey, and writes the digest of indexData in front of it,<br>
+	 * so the index needs no array of its own.
+	 * @param keyCipher Cipher for the complete key.
+	 * @param indexHasher Hasher for the index data.
+	 * @param indexData Input of the index digest.
+	 * @param row Row data
+	 * @param family Family data
+	 * @param qualifier Qualifier data
+	 * @param ts Timestamp data
+	 * @return H(indexData)||Ek(size(row)||size(fam)||size(qua)||row||fam||qua||ts)
+	 * @throws Exception
+	 */
+	protected byte[] wrapKey(Cipher keyCipher, Hasher indexHasher, byte[] indexData, byte[] row, byte[] family, byte[] qualifier, long ts) throws Exception
+	{
+		byte[] result = wrapKey(keyCipher, indexHasher.hashSize(), row, family, qualifier, ts);
+		indexHasher.getHash(indexData, 0, indexData.length, result, 0);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Encrypts complete key data into a new array, after indexSize bytes that are left for the index.
+	 * @param keyCipher Cipher for the complete key.
+	 * @param indexSize Number of bytes in front of the encrypted key.
+	 * @param row Row data
+	 * @param family Family data
+	 * @param qualifier Qualifier data
+	 * @param ts Timestamp data
+	 * @return Array of indexSize empty bytes, followed by the encrypted key.
+	 * @throws Exception
+	 */
+	private byte[] wrapKey(Cipher keyCipher, int indexSize, byte[] row, byte[] family, byte[] qualifier, long ts) throws Exception
+	{
+		//concatenate sizes, key-parts and timestamp
+		byte[] completeData = new byte[12 + row.length + family.length + qualifier.length + 8];
+		int position = Bytes.putInt(completeData, 0, row.length);
+		position = Bytes.putInt(completeData, position, family.length);
+		position = Bytes.putInt(completeData, position, qualifier.length);
+		position = Bytes.putBytes(completeData, position, row, 0, row.length);
+		position = Bytes.putBytes(completeData, position, family, 0, family.length);
+		position = Bytes.putBytes(completeData, position, qualifier, 0, qualifier.length);
+		Bytes.putLong(completeData, position, ts);
+		
+		//put index and encryption result in the same array
+		byte[] result = new byte[indexSize + keyCipher.getEncryptedSize(completeData.length)];
+		
+		keyCipher.encrypt(completeData, 0, completeData.length, result, indexSize);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Enables the compression stage of values. Values of at least threshold bytes are<br>
+	 * compressed with Snappy before encryption, and the compressed form is kept only if it<br>
+	 * is smaller. Compression needs the flag byte, so it is used only for tables in the<br>
+	 * flagged value format. Threshold does not change how values are read.
+	 * @param threshold Minimum value size for compression. 0 disables the stage.
+	 * @throws Exception Throws exception if threshold is negative.
+	 */
+	public void setValueCompression(int threshold) throws Exception
+	{
+		if(threshold < 0)
+			throw new Exception("Compression threshold should not be negative");
+		
+		m_compressionThreshold = threshold;
+	}
+	
+	
+	/**
+	 * Returns the compression threshold.
+	 * @return Minimum value size for compression, 0 if the stage is disabled.
+	 */
+	public int getValueCompression()
+	{
+		return m_compressionThreshold;
+	}
+	
+	
+	/**
+	 * Sets value format of the table in use. In the flagged format, the versioned header and<br>
+	 * a flag byte are put in front of every value before encryption, and the flag tells if the<br>
+	 * value is compressed. Every value of such a table can be read whether compression is<br>
+	 * enabled or not. In the plain format, values are stored and read as they are.
+	 * @param format VALUE_FORMAT_PLAIN or VALUE_FORMAT_FLAGGED.
+	 * @throws Exception Throws exception if format is unknown.
+	 */
+	public void setValueFormat(byte format) throws Exception
+	{
+		if(format != VALUE_FORMAT_PLAIN && format != VALUE_FORMAT_FLAGGED)
+			throw new Exception("Unknown value format: " + format);
+		
+		m_valueFormat = format;
+	}
+	
+	
+	/**
+	 * Returns value format of the table in use.
+	 * @return VALUE_FORMAT_PLAIN or VALUE_FORMAT_FLAGGED.
+	 */
+	public byte getValueFormat()
+	{
+		return m_valueFormat;
+	}
+	
+	
+	/**
+	 * Puts the header and flag byte in front of the value, and compresses the value if it is<br>
+	 * large enough.
+	 * @param value Input array
+	 * @param offset Starting index of the value
+	 * @param length Number of bytes in the value
+	 * @return header||flag||value, or header||flag||compressed value
+	 * @throws Exception May throw exception based on Snappy.
+	 */
+	protected byte[] compressValue(byte[] value, int offset, int length) throws Exception
+	{
+		int headerSize = VALUE_HEADER.length + 1;
+		
+		if(m_compressionThreshold > 0 && length >= m_compressionThreshold)
+		{
+			byte[] result = new byte[headerSize + Snappy.maxCompressedLength(length)];
+			int size = Snappy.compress(value, offset, length, result, headerSize);
+			
+			//keep compressed form only if it saves space
+			if(size < length)
+			{
+				putValueHeader(result, VALUE_SNAPPY);
+				return Arrays.copyOf(result, headerSize + size);
+			}
+		}
+		
+		byte[] result = new byte[headerSize + length];
+		putValueHeader(result, VALUE_RAW);
+		System.arraycopy(value, offset, result, headerSize, length);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Writes the header and the given flag to the beginning of the array.
+	 * @param data Output array
+	 * @param flag Flag of the value
+	 */
+	protected static void putValueHeader(byte[] data, byte flag)
+	{
+		System.arraycopy(VALUE_HEADER, 0, data, 0, VALUE_HEADER.length);
+		data[VALUE_HEADER.length] = flag;
+	}
+	
+	
+	/**
+	 * Checks if the data starts with the header of the compression stage.
+	 * @param data Input array
+	 * @param length Number of bytes in data
+	 * @return true if data starts with the header and a flag byte.
+	 */
+	protected static boolean hasValueHeader(byte[] data, int length)
+	{
+		if(length < VALUE_HEADER.length + 1)
+			return false;
+		
+		for(int a = 0; a<VALUE_HEADER.length; a++)
+		{
+			if(data[a] != VALUE_HEADER[a])
+				return false;
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Removes the header and flag byte from the value, and decompresses the value if it is<br>
+	 * compressed.
+	 * @param data header||flag||value, or header||flag||compressed value
+	 * @return Value
+	 * @throws Exception Throws exception if the header is missing or the flag is unknown.<br>
+	 * 					 May throw exception based on Snappy.
+	 */
+	protected byte[] decompressValue(byte[] data) throws Exception
+	{
+		if(!hasValueHeader(data, data.length))
+			throw new Exception("Value has no header of the flagged value format");
+		
+		int headerSize = VALUE_HEADER.length + 1;
+		byte flag = data[VALUE_HEADER.length];
+		
+		if(flag == VALUE_RAW)
+		{
+			return Arrays.copyOfRange(data, headerSize, data.length);
+		}
+		else if(flag == VALUE_SNAPPY)
+		{
+			byte[] result = new byte[Snappy.uncompressedLength(data, headerSize, data.length - headerSize)];
+			Snappy.uncompress(data, headerSize, data.length - headerSize, result, 0);
+			
+			return result;
+		}
+		else
+		{
+			throw new Exception("Unknown value flag: " + flag);
+		}
+	}
+	
+	
+	/**
+	 * Encrypts a value with the given cipher, after the header and flag byte are added in the<br>
+	 * flagged value format. Value is not copied in the plain value format.
+	 * @param valCipher Cipher for the value.
+	 * @param value Input array
+	 * @param offset Starting index of the value
+	 * @param length Number of bytes in the value
+	 * @return Encrypted value
+	 * @throws Exception Throws exception if value has no data.
+	 */
+	protected byte[] wrapValue(Cipher valCipher, byte[] value, int offset, int length) throws Exception
+	{
+		if(value == null || length == 0)
+			throw new Exception("Value is null or has no data");
+		
+		if(m_valueFormat == VALUE_FORMAT_FLAGGED)
+		{
+			value = compressValue(value, offset, length);
+			offset = 0;
+			length = value.length;
+		}
+		
+		byte[] result = new byte[valCipher.getEncryptedSize(length)];
+		int size = valCipher.encrypt(value, offset, length, result, 0);
+		
+		//size estimate is exact for current ciphers, trim otherwise
+		if(size != result.length)
+			result = Arrays.copyOf(result, size);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Decrypts a value with the given cipher, and removes the header and flag byte in the<br>
+	 * flagged value format.
+	 * @param valCipher Cipher for the value.
+	 * @param value Input array
+	 * @param offset Starting index of the encrypted value
+	 * @param length Number of bytes in the encrypted value
+	 * @return Decrypted value
+	 * @throws Exception Throws exception if value has no data.
+	 */
+	protected byte[] unwrapValue(Cipher valCipher, byte[] value, int offset, int length) throws Exception
+	{
+		if(value == null || length == 0)
+			throw new Exception("Value is null or has no data");
+		
+		byte[] result = new byte[valCipher.getDecryptedSize(length)];
+		int size = valCipher.decrypt(value, offset, length, result, 0);
+		
+		//padding may make the result smaller
+		if(size != result.length)
+			result = Arrays.copyOf(result, size);
+		
+		if(m_valueFormat == VALUE_FORMAT_FLAGGED)
+			result = decompressValue(result);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Encrypts the value of a KeyValue with the given cipher. Value is read directly from<br>
+	 * the KeyValue buffer, so it is not copied before encryption.
+	 * @param valCipher Cipher for the value.
+	 * @param data Input KeyValue data
+	 * @return Encrypted value
+	 * @throws Exception Throws exception if value has no data.
+	 */
+	protected byte[] wrapValue(Cipher valCipher, KeyValue data) throws Exception
+	{
+		return wrapValue(valCipher, data.getBuffer(), data.getValueOffset(), data.getValueLength());
+	}
+	
+	
+	/**
+	 * Decrypts the value of a KeyValue with the given cipher. Value is read directly from<br>
+	 * the KeyValue buffer, so it is not copied before decryption.
+	 * @param valCipher Cipher for the value.
+	 * @param data Input KeyValue data
+	 * @return Decrypted value
+	 * @throws Exception Throws exception if value has no data.
+	 */
+	protected byte[] unwrapValue(Cipher valCipher, KeyValue data) throws Exception
+	{
+		return unwrapValue(valCipher, data.getBuffer(), data.getValueOffset(), data.getValueLength());
+	}
+	
+	
+	/**
+	 * Encrypts a value stream with the given cipher. In the flagged value format, the value<br>
+	 * gets the header and the flag of an uncompressed value, since compressing it needs the<br>
+	 * whole value in memory.
+	 * @param valCipher Cipher for the value.
+	 * @param value Input value stream
+	 * @param out Output stream for the encrypted value
+	 * @return Number of bytes written to out
+	 * @throws Exception
+	 */
+	protected long wrapValue(Cipher valCipher, InputStream value, OutputStream out) throws Exception
+	{
+		if(m_valueFormat == VALUE_FORMAT_FLAGGED)
+		{
+			byte[] header = new byte[VALUE_HEADER.length + 1];
+			putValueHeader(header, VALUE_RAW);
+			value = new SequenceInputStream(new ByteArrayInputStream(header), value);
+		}
+		
+		return valCipher.encrypt(value, out);
+	}
+	
+	
+	/**
+	 * Decrypts a value stream with the given cipher, and removes the header and flag byte in<br>
+	 * the flagged value format. Uncompressed values are streamed, compressed values are kept<br>
+	 * in memory.
+	 * @param valCipher Cipher for the value.
+	 * @param value Input encrypted value stream
+	 * @param out Output stream for the value
+	 * @return Number of bytes written to out
+	 * @throws Exception
+	 */
+	protected long unwrapValue(Cipher valCipher, InputStream value, OutputStream out) throws Exception
+	{
+		if(m_valueFormat == VALUE_FORMAT_PLAIN)
+			return valCipher.decrypt(value, out);
+		
+		FlaggedValueOutputStream flaggedOut = new FlaggedValueOutputStream(out);
+		valCipher.decrypt(value, flaggedOut);
+		
+		return flaggedOut.finish();
+	}
+	
+	
+	/**
+	 * Output stream that reads the header and flag byte of a decrypted value, and writes the<br>
+	 * value without them to the underlying stream. Compressed values are collected, and<br>
+	 * written after decompression when finish is called.
+	 */
+	protected static class FlaggedValueOutputStream extends OutputStream
+	{
+		protected OutputStream m_out;
+		protected int m_flag = -1;
+		protected byte[] m_header = new byte[VALUE_HEADER.length + 1];
+		protected int m_headerLength = 0;
+		protected ByteArrayOutputStream m_compressed;
+		protected long m_count = 0;
+		
+		public FlaggedValueOutputStream(OutputStream out)
+		{
+			m_out = out;
+		}
+		
+		public void write(int b) throws IOException
+		{
+			write(new byte[]{(byte)b}, 0, 1);
+		}
+		
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			if(len > 0 && m_flag == -1)
+			{
+				//collect the first bytes until header and flag can be checked
+				int headerPart = Math.min(len, m_header.length - m_headerLength);
+				System.arraycopy(b, off, m_header, m_headerLength, headerPart);
+				m_headerLength += headerPart;
+				off += headerPart;
+				len -= headerPart;
+				
+				if(m_headerLength < m_header.length)
+					return;
+				
+				readHeader();
+			}
+			
+			if(len == 0)
+				return;
+			
+			if(m_flag == VALUE_SNAPPY)
+			{
+				m_compressed.write(b, off, len);
+			}
+			else
+			{
+				m_out.write(b, off, len);
+				m_count += len;
+			}
+		}
+		
+		/**
+		 * Sets the flag from the collected first bytes of the value.
+		 * @throws IOException Throws exception if the header is missing or the flag is unknown.
+		 */
+		protected void readHeader() throws IOException
+		{
+			if(!hasValueHeader(m_header, m_headerLength))
+				throw new IOException("Value has no header of the flagged value format");
+			
+			m_flag = m_header[VALUE_HEADER.length];
+			
+			if(m_flag == VALUE_SNAPPY)
+				m_compressed = new ByteArrayOutputStream();
+			else if(m_flag != VALUE_RAW)
+				throw new IOException("Unknown value flag: " + m_flag);
+		}
+		
+		/**
+		 * Writes the decompressed value if the value is compressed.
+		 * @return Number of value bytes written to the underlying stream.
+		 * @throws Exception Throws exception if the value has no data.
+		 */
+		public long finish() throws Exception
+		{
+			if(m_flag == -1)
+				throw new Exception("Value has no header of the flagged value format");
+			
+			if(m_flag == VALUE_SNAPPY)
+			{
+				byte[] result = Snappy.uncompress(m_compressed.toByteArray());
+				m_out.write(result);
+				m_count += result.length;
+			}
+			
+			return m_count;
+		}
+	}
+	
+	
+	/**
+	 * Encrypts values of the given KeyValues with the given cipher. Small values are<br>
+	 * encrypted as a single batch, large values are encrypted one by one without copying.<br>
+	 * In the flagged value format, all values are encrypted as a single batch.
+	 * @param valCipher Cipher for the values.
+	 * @param data Input KeyValue data
+	 * @return Encrypted values, in the same order as data
+	 * @throws Exception Throws exception if a value has no data.
+	 */
+	protected byte[][] wrapValues(Cipher valCipher, List<KeyValue> data) throws Exception
+	{
+		byte[][] result = new byte[data.size()][];
+		
+		//flag byte needs a new array for every value, encrypt all of them as a batch
+		if(m_valueFormat == VALUE_FORMAT_FLAGGED)
+		{
+			for(int a = 0; a<result.length; a++)
+			{
+				KeyValue current = data.get(a);
+				if(current.getValueLength() == 0)
+					throw new Exception("Value is null or has no data");
+				
+				result[a] = compressValue(current.getBuffer(), current.getValueOffset(), current.getValueLength());
+			}
+			
+			return valCipher.encryptBatch(result);
+		}
+		
+		//count small values
+		int smallCount = 0;
+		for(int a = 0; a<result.length; a++)
+		{
+			int length = data.get(a).getValueLength();
+			
+			if(length == 0)
+				throw new Exception("Value is null or has no data");
+			else if(length < LARGE_VALUE_SIZE)
+				smallCount++;
+		}
+		
+		//encrypt small values with a single cipher initialization
+		byte[][] smallValues = new byte[smallCount][];
+		int smallIndex = 0;
+		for(int a = 0; a<result.length; a++)
+		{
+			if(data.get(a).getValueLength() < LARGE_VALUE_SIZE)
+				smallValues[smallIndex++] = data.get(a).getValue();
+		}
+		byte[][] encSmallValues = valCipher.encryptBatch(smallValues);
+		
+		//put results back in order
+		smallIndex = 0;
+		for(int a = 0; a<result.length; a++)
+		{
+			if(data.get(a).getValueLength() < LARGE_VALUE_SIZE)
+				result[a] = encSmallValues[smallIndex++];
+			else
+				result[a] = wrapValue(valCipher, data.get(a));
+		}
+		
+		return result;
+	}
+	
+	
 	/**
 	 * Close this crypter. Any other object that needs to be closed down should be close in this function.
 	 * @throws Exception
@@ -133,6 +719,27 @@ public abstract class CrypterBase
 	public abstract byte[] getIndexRowData(byte[] row) throws Exception;
 	
 	
+	/**
+	 * Writes auxiliary data for row into out, so that callers with their own buffer do not<br>
+	 * need a new array. Default implementation copies the result of getIndexRowData.
+	 * @param row Array of the row data
+	 * @param offset Starting index of the row data
+	 * @param length Size of the row data
+	 * @param out Output array, with at least getIndexRowDataSize() bytes after outOffset,<br>
+	 * or RowBucketSplits.getMaxIndexRowSize of it if row buckets are split
+	 * @param outOffset Starting index in output array
+	 * @return Number of bytes written to out
+	 * @throws Exception
+	 */
+	public int getIndexRowData(byte[] row, int offset, int length, byte[] out, int outOffset) throws Exception
+	{
+		byte[] result = getIndexRowData(Arrays.copyOfRange(row, offset, offset + length));
+		System.arraycopy(result, 0, out, outOffset, result.length);
+		
+		return result.length;
+	}
+	
+	
 	/**
 	 * Returns size of the auxiliary row data
 	 * @return
@@ -681,4 +1288,50 @@ public abstract class CrypterBase
 	 * @throws Exception
 	 */
 	public abstract byte[] unwrapValue(byte[] row, byte[] family, byte[] qualifier, long ts, byte[] value) throws Exception;
+	
+	
+	/**
+	 * Wrap values of the given KeyValues. Default implementation wraps them one by one,<br>
+	 * sub-classes encrypt them as a single batch.
+	 * @param data Input KeyValue data
+	 * @return Wrapped values, in the same order as data
+	 * @throws Exception
+	 */
+	public byte[][] wrapValues(List<KeyValue> data) throws Exception
+	{
+		byte[][] result = new byte[data.size()][];
+		
+		for(int a = 0; a<result.length; a++)
+			result[a] = wrapValue(data.get(a));
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Wrap a value that is read from a stream, and write the wrapped value to out.<br>
+	 * Large values can be processed this way with a bounded amount of memory.
+	 * @param value Input value stream
+	 * @param out Output stream for the wrapped value
+	 * @return Number of bytes written to out
+	 * @throws Exception Throws exception if the crypter does not support streams.
+	 */
+	public long wrapValue(InputStream value, OutputStream out) throws Exception
+	{
+		throw new Exception("Value streams are not supported");
+	}
+	
+	
+	/**
+	 * Unwrap a value that is read from a stream, and write the unwrapped value to out.<br>
+	 * Large values can be processed this way with a bounded amount of memory.
+	 * @param value Input wrapped value stream
+	 * @param out Output stream for the unwrapped value
+	 * @return Number of bytes written to out
+	 * @throws Exception Throws exception if the crypter does not support streams.
+	 */
+	public long unwrapValue(InputStream value, OutputStream out) throws Exception
+	{
+		throw new Exception("Value streams are not supported");
+	}
 }
@@ -16,12 +16,16 @@
 
 package edu.utdallas.bigsecret.crypter;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.util.Bytes;
 
-import edu.utdallas.bigsecret.bucketizer.HBaseBucketizer;
+import edu.utdallas.bigsecret.bucketizer.BucketizerBase;
 import edu.utdallas.bigsecret.cipher.Cipher;
 import edu.utdallas.bigsecret.util.Utilities;
 
@@ -41,22 +45,22 @@ public class CrypterMode1 extends CrypterBase
 	/**
 	 * Bucketizer for row.
 	 */
-	private HBaseBucketizer m_rowBucketizer;
+	private BucketizerBase m_rowBucketizer;
 	
 	/**
 	 * Bucketizer for family.
 	 */
-	private HBaseBucketizer m_famBucketizer;
+	private BucketizerBase m_famBucketizer;
 	
 	/**
 	 * Bucketizer for qualifier.
 	 */
-	private HBaseBucketizer m_quaBucketizer;
+	private BucketizerBase m_quaBucketizer;
 	
 	/**
 	 * Bucketizer for timestamp.
 	 */
-	private HBaseBucketizer m_tsBucketizer;
+	private BucketizerBase m_tsBucketizer;
 	
 	/**
 	 * Cipher for the complete Key part.
@@ -68,6 +72,11 @@ public class CrypterMode1 extends CrypterBase
 	 */
 	private Cipher m_valCipher;
 	
+	/**
+	 * Split row buckets. Null if rows are stored only in their buckets.
+	 */
+	private RowBucketSplits m_rowSplits;
+	
 	
 	/**
 	 * Constructor for this class. 
@@ -79,10 +88,10 @@ public class CrypterMode1 extends CrypterBase
 	 * @param valCipher Cipher for value part.
 	 * @throws Exception Throws exception if one of the parameters is null.
 	 */
-	public CrypterMode1(HBaseBucketizer rowBucketizer,
-						HBaseBucketizer famBucketizer,
-						HBaseBucketizer quaBucketizer,
-						HBaseBucketizer tsBucketizer,
+	public CrypterMode1(BucketizerBase rowBucketizer,
+						BucketizerBase famBucketizer,
+						BucketizerBase quaBucketizer,
+						BucketizerBase tsBucketizer,
 						Cipher keyCipher,
 						Cipher valCipher) throws Exception
 	{
@@ -142,7 +151,28 @@ public class CrypterMode1 extends CrypterBase
 
 	
 	/**
-	 * Returns the bucket value of the row key-part.
+	 * Sets split row buckets. Rows of a split bucket are written to its sub-buckets.
+	 * @param rowSplits Split row buckets, null to disable splits.
+	 */
+	public void setRowBucketSplits(RowBucketSplits rowSplits)
+	{
+		m_rowSplits = rowSplits;
+	}
+	
+	
+	/**
+	 * Returns split row buckets.
+	 * @return null if splits are disabled.
+	 */
+	public RowBucketSplits getRowBucketSplits()
+	{
+		return m_rowSplits;
+	}
+	
+	
+	/**
+	 * Returns the bucket value of the row key-part.<br>
+	 * If the bucket is split, sub-bucket of the row is appended to the bucket value.
 	 * @param row Input data
 	 * @throws Throws exception if input data is empty or null.
 	 */
@@ -154,6 +184,10 @@ public class CrypterMode1 extends CrypterBase
 		
 		//get bucket data
 		byte[] bucketData = getRowBucket(row);
+		
+		//get sub-bucket data
+		if(m_rowSplits != null)
+			bucketData = m_rowSplits.getIndexRow(bucketData, row);
 					
 		//return bucket data
 		return bucketData;
@@ -161,7 +195,8 @@ public class CrypterMode1 extends CrypterBase
 
 	
 	/**
-	 * Returns size of a bucket value for the bucketizer.
+	 * Returns size of a bucket value for the bucketizer.<br>
+	 * Rows of split buckets are longer, see RowBucketSplits.getMaxIndexRowSize.
 	 */
 	public int getIndexRowDataSize() 
 	{
@@ -383,18 +418,7 @@ public class CrypterMode1 extends CrypterBase
 		
 		byte[] qualifierIndex = getIndexQualifierData(qualifier);
 		
-		byte[] sizeArray = Bytes.toBytes(row.length);
-		sizeArray = ArrayUtils.addAll(sizeArray, Bytes.toBytes(family.length));
-		sizeArray = ArrayUtils.addAll(sizeArray, Bytes.toBytes(qualifier.length));
-		
-		byte[] completeData = ArrayUtils.addAll(sizeArray, row);
-		completeData = ArrayUtils.addAll(completeData, family);
-		completeData = ArrayUtils.addAll(completeData, qualifier);
-		completeData = ArrayUtils.addAll(completeData, Bytes.toBytes(ts));
-		
-		completeData = m_keyCipher.encrypt(completeData);
-		
-		return ArrayUtils.addAll(qualifierIndex, completeData);
+		return wrapKey(m_keyCipher, qualifierIndex, row, family, qualifier, ts);
 	}
 	
 
@@ -558,7 +582,7 @@ public class CrypterMode1 extends CrypterBase
 	 */
 	public byte[] wrapValue(KeyValue data) throws Exception 
 	{
-		return wrapValue(null, null, null, 0, data.getValue());
+		return wrapValue(m_valCipher, data);
 	}
 
 	
@@ -570,18 +594,34 @@ public class CrypterMode1 extends CrypterBase
 		if(value == null || value.length == 0)
 			throw new Exception("Value is null or has no data");
 		
-		byte[] encVal = encryptValue(value);
-		
-		return encVal;
+		return wrapValue(m_valCipher, value, 0, value.length);
 	}
 
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[][] wrapValues(List<KeyValue> data) throws Exception 
+	{
+		return wrapValues(m_valCipher, data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long wrapValue(InputStream value, OutputStream out) throws Exception 
+	{
+		return wrapValue(m_valCipher, value, out);
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	public byte[] unwrapValue(KeyValue data) throws Exception 
 	{
-		return unwrapValue(null, null, null, 0, data.getValue());
+		return unwrapValue(m_valCipher, data);
 	}
 
 	
@@ -593,6 +633,15 @@ public class CrypterMode1 extends CrypterBase
 		if(value == null || value.length == 0)
 			throw new Exception("Value is null or has no data");
 		
-		return decryptValue(value);
+		return unwrapValue(m_valCipher, value, 0, value.length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long unwrapValue(InputStream value, OutputStream out) throws Exception 
+	{
+		return unwrapValue(m_valCipher, value, out);
 	}
 }
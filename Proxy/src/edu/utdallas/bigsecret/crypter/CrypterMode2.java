@@ -15,6 +15,10 @@
 */
 package edu.utdallas.bigsecret.crypter;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hadoop.hbase.KeyValue;
@@ -34,7 +38,9 @@ import edu.utdallas.bigsecret.util.Utilities;
  * fam = H(fam)<br>
  * qua = H(qua) || Ed(row||fam||qua||ts)<br>
  * ts = H(ts)<br>
- * val = Ep(val)
+ * val = Ep(val)<br>
+ * Every key-part has its own Hasher, so a fast PRF such as SipHash can be used for<br>
+ * the short digests, e.g. timestamps, while rows keep Sha256.
  */
 public class CrypterMode2 extends CrypterBase
 {
@@ -144,6 +150,19 @@ public class CrypterMode2 extends CrypterBase
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIndexRowData(byte[] row, int offset, int length, byte[] out, int outOffset) throws Exception 
+	{
+		//check necessary inputs to this function
+		if(row == null || length <= 0)
+			throw new Exception("Row data is null or has no data");
+		
+		return m_rowHasher.getHash(row, offset, length, out, outOffset);
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -344,20 +363,8 @@ public class CrypterMode2 extends CrypterBase
 		else if(qualifier == null || qualifier.length == 0)
 			throw new Exception("Qualifier is null or has no data");
 		
-		byte[] qualifierIndex = getIndexQualifierData(qualifier);
-		
-		byte[] sizeArray = Bytes.toBytes(row.length);
-		sizeArray = ArrayUtils.addAll(sizeArray, Bytes.toBytes(family.length));
-		sizeArray = ArrayUtils.addAll(sizeArray, Bytes.toBytes(qualifier.length));
-		
-		byte[] completeData = ArrayUtils.addAll(sizeArray, row);
-		completeData = ArrayUtils.addAll(completeData, family);
-		completeData = ArrayUtils.addAll(completeData, qualifier);
-		completeData = ArrayUtils.addAll(completeData, Bytes.toBytes(ts));
-		
-		completeData = m_keyCipher.encrypt(completeData);
-		
-		return ArrayUtils.addAll(qualifierIndex, completeData);
+		//qualifier digest is written in front of the encrypted key
+		return wrapKey(m_keyCipher, m_quaHasher, qualifier, row, family, qualifier, ts);
 	}
 	
 	
@@ -496,7 +503,7 @@ public class CrypterMode2 extends CrypterBase
 	 */
 	public byte[] wrapValue(KeyValue data) throws Exception 
 	{
-		return wrapValue(null, null, null, 0, data.getValue());
+		return wrapValue(m_valCipher, data);
 	}
 	
 	
@@ -508,9 +515,25 @@ public class CrypterMode2 extends CrypterBase
 		if(value == null || value.length == 0)
 			throw new Exception("Value is null or has no data");
 		
-		byte[] encVal = encryptValue(value);
-		
-		return encVal;
+		return wrapValue(m_valCipher, value, 0, value.length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[][] wrapValues(List<KeyValue> data) throws Exception 
+	{
+		return wrapValues(m_valCipher, data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long wrapValue(InputStream value, OutputStream out) throws Exception 
+	{
+		return wrapValue(m_valCipher, value, out);
 	}
 	
 	
@@ -519,7 +542,7 @@ public class CrypterMode2 extends CrypterBase
 	 */
 	public byte[] unwrapValue(KeyValue data) throws Exception 
 	{
-		return unwrapValue(null, null, null, 0, data.getValue());
+		return unwrapValue(m_valCipher, data);
 	}
 	
 	
@@ -531,6 +554,15 @@ public class CrypterMode2 extends CrypterBase
 		if(value == null || value.length == 0)
 			throw new Exception("Value is null or has no data");
 		
-		return decryptValue(value);
+		return unwrapValue(m_valCipher, value, 0, value.length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long unwrapValue(InputStream value, OutputStream out) throws Exception 
+	{
+		return unwrapValue(m_valCipher, value, out);
 	}
-}
\ No newline at end of file
+}
@@ -15,6 +15,10 @@
 */
 package edu.utdallas.bigsecret.crypter;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -110,6 +114,19 @@ public class CrypterMode3 extends CrypterBase
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIndexRowData(byte[] row, int offset, int length, byte[] out, int outOffset) throws Exception 
+	{
+		//check necessary inputs to this function
+		if(row == null || length <= 0)
+			throw new Exception("Row data is null or has no data");
+		
+		return m_rowHasher.getHash(row, offset, length, out, outOffset);
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -276,18 +293,7 @@ public class CrypterMode3 extends CrypterBase
 		else if(qualifier == null || qualifier.length == 0)
 			throw new Exception("Qualifier is null or has no data");
 		
-		byte[] sizeArray = Bytes.toBytes(row.length);
-		sizeArray = ArrayUtils.addAll(sizeArray, Bytes.toBytes(family.length));
-		sizeArray = ArrayUtils.addAll(sizeArray, Bytes.toBytes(qualifier.length));
-		
-		byte[] completeData = ArrayUtils.addAll(sizeArray, row);
-		completeData = ArrayUtils.addAll(completeData, family);
-		completeData = ArrayUtils.addAll(completeData, qualifier);
-		completeData = ArrayUtils.addAll(completeData, Bytes.toBytes(ts));
-		
-		completeData = m_keyCipher.encrypt(completeData);
-		
-		return completeData;
+		return wrapKey(m_keyCipher, null, row, family, qualifier, ts);
 	}
 	
 	
@@ -412,7 +418,7 @@ public class CrypterMode3 extends CrypterBase
 	 */
 	public byte[] wrapValue(KeyValue data) throws Exception 
 	{
-		return wrapValue(null, null, null, 0, data.getValue());
+		return wrapValue(m_valCipher, data);
 	}
 	
 	
@@ -424,9 +430,25 @@ public class CrypterMode3 extends CrypterBase
 		if(value == null || value.length == 0)
 			throw new Exception("Value is null or has no data");
 		
-		byte[] encVal = encryptValue(value);
-		
-		return encVal;
+		return wrapValue(m_valCipher, value, 0, value.length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[][] wrapValues(List<KeyValue> data) throws Exception 
+	{
+		return wrapValues(m_valCipher, data);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long wrapValue(InputStream value, OutputStream out) throws Exception 
+	{
+		return wrapValue(m_valCipher, value, out);
 	}
 	
 	
@@ -435,7 +457,7 @@ public class CrypterMode3 extends CrypterBase
 	 */
 	public byte[] unwrapValue(KeyValue data) throws Exception 
 	{
-		return unwrapValue(null, null, null, 0, data.getValue());
+		return unwrapValue(m_valCipher, data);
 	}
 	
 	
@@ -447,6 +469,15 @@ public class CrypterMode3 extends CrypterBase
 		if(value == null || value.length == 0)
 			throw new Exception("Value is null or has no data");
 		
-		return decryptValue(value);
+		return unwrapValue(m_valCipher, value, 0, value.length);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long unwrapValue(InputStream value, OutputStream out) throws Exception 
+	{
+		return unwrapValue(m_valCipher, value, out);
 	}
 }
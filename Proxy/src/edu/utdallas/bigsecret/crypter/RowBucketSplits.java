@@ -0,0 +1,195 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.crypter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.utdallas.bigsecret.hash.SipHash;
+import edu.utdallas.bigsecret.util.ByteArray;
+
+/**
+ * Split row buckets of a table. Rows of a split bucket B are stored in sub-buckets<br>
+ * B || s, where s is a keyed hash of the plain text row modulo the fan-out of B.<br>
+ * Sub-buckets sort between B and the next bucket value, so row range scans over<br>
+ * bucket values still cover them. A bucket is in MOVING state while its cells are<br>
+ * copied to sub-buckets, and readers should read both B and B || s in that state.
+ */
+public class RowBucketSplits
+{
+	/**
+	 * Cells of the bucket are being moved to its sub-buckets.
+	 */
+	public static final byte STATE_MOVING = 1;
+	
+	/**
+	 * All cells of the bucket are in its sub-buckets.
+	 */
+	public static final byte STATE_SPLIT = 2;
+	
+	/**
+	 * Maximum fan-out of a bucket, sub-bucket is a single byte.
+	 */
+	public static final int MAX_FANOUT = 256;
+	
+	/**
+	 * Fan-out and state of a split bucket.
+	 */
+	public static class Split
+	{
+		protected int m_fanout;
+		
+		protected byte m_state;
+		
+		public Split(int fanout, byte state)
+		{
+			m_fanout = fanout;
+			m_state = state;
+		}
+		
+		public int getFanout()
+		{
+			return m_fanout;
+		}
+		
+		public byte getState()
+		{
+			return m_state;
+		}
+	}
+	
+	/**
+	 * Split of each bucket value. Buckets that are not split are not in the map.
+	 */
+	protected Map<ByteArray, Split> m_splits = new ConcurrentHashMap<ByteArray, Split>();
+	
+	/**
+	 * Keyed hash that picks the sub-bucket of a row.
+	 */
+	protected SipHash m_hash;
+	
+	
+	/**
+	 * Class constructor.
+	 * @param key 16 byte key for the sub-bucket hash.
+	 * @throws Exception Throws exception if key is invalid.
+	 */
+	public RowBucketSplits(byte[] key) throws Exception
+	{
+		m_hash = new SipHash(key);
+	}
+	
+	
+	/**
+	 * Sets split of a bucket.
+	 * @param bucket Bucket value.
+	 * @param fanout Number of sub-buckets, a power of 2 between 2 and MAX_FANOUT.
+	 * @param state STATE_MOVING or STATE_SPLIT.
+	 * @throws Exception Throws exception if an input is invalid.
+	 */
+	public void setSplit(byte[] bucket, int fanout, byte state) throws Exception
+	{
+		//check inputs
+		if(bucket == null || bucket.length == 0)
+			throw new Exception("Bucket is null or has no data");
+		else if(fanout < 2 || fanout > MAX_FANOUT || (fanout & (fanout - 1)) != 0)
+			throw new Exception("Fan-out should be a power of 2 between 2 and " + MAX_FANOUT);
+		else if(state != STATE_MOVING && state != STATE_SPLIT)
+			throw new Exception("Invalid split state");
+		
+		m_splits.put(new ByteArray(bucket.clone()), new Split(fanout, state));
+	}
+	
+	
+	/**
+	 * Removes split of a bucket.
+	 * @param bucket Bucket value.
+	 */
+	public void removeSplit(byte[] bucket)
+	{
+		m_splits.remove(new ByteArray(bucket));
+	}
+	
+	
+	/**
+	 * Returns split of a bucket.
+	 * @param bucket Bucket value.
+	 * @return null if the bucket is not split.
+	 */
+	public Split getSplit(byte[] bucket)
+	{
+		return m_splits.get(new ByteArray(bucket));
+	}
+	
+	
+	/**
+	 * Returns number of split buckets.
+	 * @return Number of buckets that are split or moving.
+	 */
+	public int size()
+	{
+		return m_splits.size();
+	}
+	
+	
+	/**
+	 * Returns the row of the given bucket where the plain text row is stored.
+	 * @param bucket Bucket value of the row.
+	 * @param row Plain text row.
+	 * @return bucket itself if it is not split, bucket || sub-bucket otherwise.
+	 * @throws Exception
+	 */
+	public byte[] getIndexRow(byte[] bucket, byte[] row) throws Exception
+	{
+		Split split = getSplit(bucket);
+		
+		if(split == null)
+			return bucket;
+		
+		byte[] result = new byte[bucket.length + 1];
+		System.arraycopy(bucket, 0, result, 0, bucket.length);
+		result[bucket.length] = (byte)getSubBucket(row, split.getFanout());
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Returns maximum size of a row that getIndexRow returns.
+	 * @param bucketSize Size of bucket values.
+	 * @return Size of a bucket value with a sub-bucket.
+	 */
+	public static int getMaxIndexRowSize(int bucketSize)
+	{
+		return bucketSize + 1;
+	}
+	
+	
+	/**
+	 * Calculates sub-bucket of a plain text row.
+	 * @param row Plain text row.
+	 * @param fanout Number of sub-buckets.
+	 * @return Sub-bucket between 0 and fanout - 1.
+	 * @throws Exception
+	 */
+	protected int getSubBucket(byte[] row, int fanout) throws Exception
+	{
+		byte[] digest = m_hash.getHash(row);
+		
+		return (digest[digest.length - 1] & 0xff) & (fanout - 1);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.crypter.test;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.bucketizer.BucketizerBase;
+import edu.utdallas.bigsecret.bucketizer.PrfByteBucketizer;
+import edu.utdallas.bigsecret.bucketizer.PrfLongBucketizer;
+import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.AesEcb;
+import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.crypter.CrypterBase;
+import edu.utdallas.bigsecret.crypter.CrypterMode1;
+
+/**
+ * Test class for CrypterMode1 with PrfBucketizers. Does not need HBase.
+ */
+public class TestCrypterMode1Prf 
+{
+	@Test
+	public void testPrfBucketizers() 
+	{
+		try
+		{
+			BucketizerBase rowBucketizer = new PrfByteBucketizer(Bytes.toBytes("1234567890123451"), 8, 16);
+			BucketizerBase famBucketizer = new PrfByteBucketizer(Bytes.toBytes("1234567890123452"), 8, 16);
+			BucketizerBase quaBucketizer = new PrfByteBucketizer(Bytes.toBytes("1234567890123453"), 8, 16);
+			BucketizerBase tsBucketizer = new PrfLongBucketizer(Bytes.toBytes("1234567890123454"), 0, 1024*1024, 1024, 16);
+			Cipher keyCipher = new AesEcb(Bytes.toBytes("1234567890123454"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			CrypterBase cr = new CrypterMode1(rowBucketizer, famBucketizer, quaBucketizer, tsBucketizer, keyCipher, valCipher);
+			
+			KeyValue testItem = new KeyValue(Bytes.toBytes("12341"), Bytes.toBytes("fam123"), Bytes.toBytes("qua161"), 100, Bytes.toBytes(100689L));
+			
+			KeyValue encItem = new KeyValue(cr.wrapRow(testItem),
+											cr.wrapFamily(testItem),
+											cr.wrapQualifier(testItem),
+											cr.wrapTimestamp(testItem),
+											cr.wrapValue(testItem));
+			
+			if(!Bytes.toString(cr.unwrapRow(encItem)).equals("12341"))
+			{
+				fail("row-keys are not equal");
+			}
+			else if(!Bytes.toString(cr.unwrapFamily(encItem)).equals("fam123"))
+			{
+				fail("families are not equal");
+			}
+			else if(!Bytes.toString(cr.unwrapQualifier(encItem)).equals("qua161"))
+			{
+				fail("qualifiers are not equal");
+			}
+			else if(cr.unwrapTimestamp(encItem) != 100)
+			{
+				fail("timestamps are not equal");
+			}
+			else if(Bytes.toLong(cr.unwrapValue(encItem)) != 100689)
+			{
+				fail("values are not equal");
+			}
+			
+			cr.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace(); 
+			fail("CrypterMode1 with PrfBucketizers failed.");
+		}	
+	}
+}
@@ -28,6 +28,7 @@ import edu.utdallas.bigsecret.crypter.CrypterBase;
 import edu.utdallas.bigsecret.crypter.CrypterMode2;
 import edu.utdallas.bigsecret.hash.Hasher;
 import edu.utdallas.bigsecret.hash.Sha256;
+import edu.utdallas.bigsecret.hash.SipHash;
 
 public class TestCrypterMode2 {
 
@@ -99,4 +100,58 @@ public class TestCrypterMode2 {
 			fail("Test failed");
 		}
 	}
+	
+	@Test
+	public void testSipHashIndexes() 
+	{
+		try
+		{
+			//sha256 for rows, siphash for the short key-parts
+			Hasher rowHasher = new Sha256(Bytes.toBytes("1234"));
+			Hasher famHasher = new SipHash(Bytes.toBytes("1234567890123451"), 16);
+			Hasher quaHasher = new SipHash(Bytes.toBytes("1234567890123452"), 16);
+			Hasher tsHasher = new SipHash(Bytes.toBytes("1234567890123453"), 7);
+			Cipher keyCipher = new AesCtr(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			CrypterBase cr = new CrypterMode2(rowHasher, famHasher, quaHasher, tsHasher, keyCipher, valCipher);
+			
+			byte[] row = Bytes.toBytes("12341");
+			byte[] family = Bytes.toBytes("fam123");
+			byte[] qualifier = Bytes.toBytes("qua161");
+			long timestampData = 100;
+			
+			KeyValue testItem = new KeyValue(row, family, qualifier, timestampData, Bytes.toBytes(100689L));
+			
+			KeyValue encItem = new KeyValue(cr.wrapRow(testItem),
+											cr.wrapFamily(testItem),
+											cr.wrapQualifier(testItem),
+											cr.wrapTimestamp(testItem),
+											cr.wrapValue(testItem));
+			
+			if(!Bytes.equals(family, cr.unwrapFamily(encItem)))
+			{
+				fail("families are not equal");
+			}
+			else if(!Bytes.equals(qualifier, cr.unwrapQualifier(encItem)))
+			{
+				fail("qualifiers are not equal");
+			}
+			else if(timestampData != cr.unwrapTimestamp(encItem))
+			{
+				fail("timestamps are not equal");
+			}
+			else if(cr.wrapTimestamp(testItem) != cr.wrapTimestamp(new KeyValue(row, family, qualifier, timestampData, Bytes.toBytes(1L))))
+			{
+				fail("timestamp index is not deterministic");
+			}
+			
+			cr.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Test failed");
+		}
+	}
 }
@@ -18,11 +18,18 @@ package edu.utdallas.bigsecret.crypter.test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
 
 import edu.utdallas.bigsecret.cipher.AesCtr;
+import edu.utdallas.bigsecret.cipher.AesFfx;
 import edu.utdallas.bigsecret.cipher.Cipher;
 import edu.utdallas.bigsecret.crypter.CrypterBase;
 import edu.utdallas.bigsecret.crypter.CrypterMode3;
@@ -96,4 +103,285 @@ public class TestCrypterMode3
 			fail("Test failed");
 		}	
 	}
+	
+	@Test
+	public void testCompactKeyCipher() 
+	{
+		try
+		{
+			Hasher rowHasher = new Sha256(Bytes.toBytes("1234"));
+			Cipher keyCipher = new AesFfx(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			CrypterBase cr = new CrypterMode3(rowHasher, keyCipher, valCipher);
+			
+			byte[] row = Bytes.toBytes("12341");
+			byte[] family = Bytes.toBytes("fam123");
+			byte[] qualifier = Bytes.toBytes("qua161");
+			
+			KeyValue testItem = new KeyValue(row, family, qualifier, 100, Bytes.toBytes(100689L));
+			
+			byte[] encQualifier = cr.wrapQualifier(testItem);
+			
+			//sizes, key-parts and timestamp, without padding
+			if(encQualifier.length != 12 + row.length + family.length + qualifier.length + 8)
+			{
+				fail("qualifier is padded");
+			}
+			
+			KeyValue encItem = new KeyValue(cr.wrapRow(testItem),
+											cr.wrapFamily(testItem),
+											encQualifier,
+											cr.wrapTimestamp(testItem),
+											cr.wrapValue(testItem));
+			
+			if(!Arrays.equals(qualifier, cr.unwrapQualifier(encItem)))
+			{
+				fail("qualifiers are not equal");
+			}
+			else if(!Arrays.equals(row, cr.unwrapRow(encItem)))
+			{
+				fail("row-keys are not equal");
+			}
+			else if(cr.unwrapTimestamp(encItem) != 100)
+			{
+				fail("timestamps are not equal");
+			}
+			
+			cr.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Test failed");
+		}	
+	}
+	
+	@Test
+	public void testIndexRowIntoBuffer() 
+	{
+		try
+		{
+			Hasher rowHasher = new Sha256(Bytes.toBytes("1234"), 12);
+			Cipher keyCipher = new AesCtr(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			CrypterBase cr = new CrypterMode3(rowHasher, keyCipher, valCipher);
+			
+			byte[] row = Bytes.toBytes("row12341");
+			byte[] expected = cr.getIndexRowData(row);
+			
+			byte[] out = new byte[2 + cr.getIndexRowDataSize()];
+			int size = cr.getIndexRowData(row, 0, row.length, out, 2);
+			
+			if(size != expected.length || expected.length != 12)
+			{
+				fail("row index has wrong size");
+			}
+			else if(!Arrays.equals(expected, Arrays.copyOfRange(out, 2, out.length)))
+			{
+				fail("row index written into buffer differs");
+			}
+			
+			cr.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Test failed");
+		}	
+	}
+	
+	@Test
+	public void testValueCompression() 
+	{
+		try
+		{
+			Hasher rowHasher = new Sha256(Bytes.toBytes("1234"));
+			Cipher keyCipher = new AesCtr(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			CrypterBase cr = new CrypterMode3(rowHasher, keyCipher, valCipher);
+			cr.setValueFormat(CrypterBase.VALUE_FORMAT_FLAGGED);
+			cr.setValueCompression(64);
+			
+			byte[] row = Bytes.toBytes("12341");
+			byte[] family = Bytes.toBytes("fam123");
+			byte[] qualifier = Bytes.toBytes("qua161");
+			
+			//compressible large value, and a value below threshold
+			StringBuilder json = new StringBuilder();
+			for(int a = 0; a<50; a++)
+				json.append("{\"field\":\"value\",\"count\":" + a + "},");
+			byte[] largeValue = Bytes.toBytes(json.toString());
+			byte[] smallValue = Bytes.toBytes("small value");
+			
+			List<KeyValue> items = new ArrayList<KeyValue>();
+			items.add(new KeyValue(row, family, qualifier, 100, largeValue));
+			items.add(new KeyValue(row, family, qualifier, 101, smallValue));
+			
+			byte[][] encValues = cr.wrapValues(items);
+			
+			if(encValues[0].length >= largeValue.length)
+			{
+				fail("compressible value is not compressed");
+			}
+			
+			KeyValue encLarge = new KeyValue(row, family, qualifier, 100, encValues[0]);
+			KeyValue encSmall = new KeyValue(row, family, qualifier, 101, encValues[1]);
+			
+			if(! Arrays.equals(largeValue, cr.unwrapValue(encLarge)))
+			{
+				fail("compressed values are not equal");
+			}
+			else if(! Arrays.equals(smallValue, cr.unwrapValue(encSmall)))
+			{
+				fail("uncompressed values are not equal");
+			}
+			
+			//streamed values are stored uncompressed, and can be read both ways
+			ByteArrayOutputStream encStream = new ByteArrayOutputStream();
+			cr.wrapValue(new ByteArrayInputStream(largeValue), encStream);
+			
+			ByteArrayOutputStream decStream = new ByteArrayOutputStream();
+			cr.unwrapValue(new ByteArrayInputStream(encValues[0]), decStream);
+			
+			if(! Arrays.equals(largeValue, cr.unwrapValue(new KeyValue(row, family, qualifier, 100, encStream.toByteArray()))))
+			{
+				fail("streamed values are not equal");
+			}
+			else if(! Arrays.equals(largeValue, decStream.toByteArray()))
+			{
+				fail("compressed values are not equal after stream decryption");
+			}
+			
+			cr.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Test failed");
+		}	
+	}
+	
+	@Test
+	public void testCompressionOffReader() 
+	{
+		try
+		{
+			Hasher rowHasher = new Sha256(Bytes.toBytes("1234"));
+			Cipher keyCipher = new AesCtr(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			//two proxies of the same flagged table, only one of them compresses
+			CrypterBase crOn = new CrypterMode3(rowHasher, keyCipher, valCipher);
+			crOn.setValueFormat(CrypterBase.VALUE_FORMAT_FLAGGED);
+			crOn.setValueCompression(64);
+			
+			CrypterBase crOff = new CrypterMode3(rowHasher, keyCipher, valCipher);
+			crOff.setValueFormat(CrypterBase.VALUE_FORMAT_FLAGGED);
+			
+			byte[] row = Bytes.toBytes("12341");
+			byte[] family = Bytes.toBytes("fam123");
+			byte[] qualifier = Bytes.toBytes("qua161");
+			
+			StringBuilder json = new StringBuilder();
+			for(int a = 0; a<50; a++)
+				json.append("{\"field\":\"value\",\"count\":" + a + "},");
+			byte[] largeValue = Bytes.toBytes(json.toString());
+			
+			//written with the stage on, read with it off
+			KeyValue encOn = new KeyValue(row, family, qualifier, 100, crOn.wrapValue(new KeyValue(row, family, qualifier, 100, largeValue)));
+			
+			ByteArrayOutputStream decStream = new ByteArrayOutputStream();
+			crOff.unwrapValue(new ByteArrayInputStream(encOn.getValue()), decStream);
+			
+			if(! Arrays.equals(largeValue, crOff.unwrapValue(encOn)))
+			{
+				fail("compressed value is not read with compression disabled");
+			}
+			else if(! Arrays.equals(largeValue, decStream.toByteArray()))
+			{
+				fail("compressed value is not read with compression disabled after stream decryption");
+			}
+			
+			//written with the stage off, read with it on
+			KeyValue encOff = new KeyValue(row, family, qualifier, 101, crOff.wrapValue(new KeyValue(row, family, qualifier, 101, largeValue)));
+			
+			if(! Arrays.equals(largeValue, crOn.unwrapValue(encOff)))
+			{
+				fail("uncompressed value is not read with compression enabled");
+			}
+			
+			crOn.close();
+			crOff.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Test failed");
+		}	
+	}
+	
+	@Test
+	public void testPlainValueFormat() 
+	{
+		try
+		{
+			Hasher rowHasher = new Sha256(Bytes.toBytes("1234"));
+			Cipher keyCipher = new AesCtr(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			//compression is not used for tables in the plain format
+			CrypterBase cr = new CrypterMode3(rowHasher, keyCipher, valCipher);
+			cr.setValueCompression(64);
+			
+			byte[] row = Bytes.toBytes("12341");
+			byte[] family = Bytes.toBytes("fam123");
+			byte[] qualifier = Bytes.toBytes("qua161");
+			
+			//values that start like the header and flag bytes, and a value shorter than the header
+			byte[][] plainValues = new byte[][]{	new byte[]{(byte)0xB5, (byte)0xEC, (byte)0x7A, 1, 0, 10, 20, 30},
+													new byte[]{(byte)0xB5, (byte)0xEC, (byte)0x7A, 1, 1, 10, 20, 30},
+													new byte[]{1},
+													Bytes.toBytes("legacy value")};
+			
+			for(int a = 0; a<plainValues.length; a++)
+			{
+				byte[] encValue = cr.wrapValue(new KeyValue(row, family, qualifier, 100, plainValues[a]));
+				
+				ByteArrayOutputStream decStream = new ByteArrayOutputStream();
+				cr.unwrapValue(new ByteArrayInputStream(encValue), decStream);
+				
+				if(! Arrays.equals(plainValues[a], cr.unwrapValue(new KeyValue(row, family, qualifier, 100, encValue))))
+				{
+					fail("plain values are not equal");
+				}
+				else if(! Arrays.equals(plainValues[a], decStream.toByteArray()))
+				{
+					fail("plain values are not equal after stream decryption");
+				}
+			}
+			
+			//values of a plain table are not read as flagged values
+			byte[] encPlain = cr.wrapValue(new KeyValue(row, family, qualifier, 100, Bytes.toBytes("legacy value")));
+			cr.setValueFormat(CrypterBase.VALUE_FORMAT_FLAGGED);
+			
+			try
+			{
+				cr.unwrapValue(new KeyValue(row, family, qualifier, 100, encPlain));
+				fail("value without header should be rejected");
+			}
+			catch(Exception e)
+			{
+			}
+			
+			cr.close();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("Test failed");
+		}	
+	}
 }
@@ -0,0 +1,133 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.crypter.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.crypter.RowBucketSplits;
+
+/**
+ * Test class for RowBucketSplits class.
+ */
+public class TestRowBucketSplits
+{
+	@Test
+	public void testIndexRow()
+	{
+		try
+		{
+			RowBucketSplits splits = new RowBucketSplits(Bytes.toBytes("1234567890123456"));
+			byte[] bucket = Bytes.toBytes(1000);
+			byte[] nextBucket = Bytes.toBytes(1001);
+			
+			//bucket that is not split is the index row itself
+			if(!Arrays.equals(splits.getIndexRow(bucket, Bytes.toBytes("row1")), bucket))
+			{
+				fail("Bucket that is not split should not be changed.");
+			}
+			
+			splits.setSplit(bucket, 16, RowBucketSplits.STATE_SPLIT);
+			
+			boolean[] used = new boolean[16];
+			for(int a = 0; a<1000; a++)
+			{
+				byte[] row = Bytes.toBytes("row" + a);
+				byte[] indexRow = splits.getIndexRow(bucket, row);
+				
+				//same row always goes to the same sub-bucket
+				if(!Arrays.equals(indexRow, splits.getIndexRow(bucket, row)))
+				{
+					fail("Sub-bucket of a row should not change.");
+				}
+				
+				//sub-bucket is between the bucket and the next bucket
+				if(indexRow.length != RowBucketSplits.getMaxIndexRowSize(bucket.length) || Bytes.compareTo(indexRow, bucket) <= 0 || Bytes.compareTo(indexRow, nextBucket) >= 0)
+				{
+					fail("Sub-bucket is out of the range of its bucket.");
+				}
+				
+				if(indexRow[4] < 0 || indexRow[4] >= 16)
+				{
+					fail("Sub-bucket is larger than the fan-out.");
+				}
+				used[indexRow[4]] = true;
+			}
+			
+			for(int a = 0; a<used.length; a++)
+			{
+				if(!used[a])
+				{
+					fail("Sub-bucket " + a + " is never used.");
+				}
+			}
+			
+			//other buckets are not affected
+			if(!Arrays.equals(splits.getIndexRow(nextBucket, Bytes.toBytes("row1")), nextBucket))
+			{
+				fail("Other buckets should not be split.");
+			}
+			
+			splits.removeSplit(bucket);
+			if(splits.size() != 0)
+			{
+				fail("Split should be removed.");
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("RowBucketSplits index row test failed.");
+		}
+	}
+	
+	@Test
+	public void testInvalidSplit()
+	{
+		try
+		{
+			RowBucketSplits splits = new RowBucketSplits(Bytes.toBytes("1234567890123456"));
+			
+			try
+			{
+				splits.setSplit(Bytes.toBytes(1), 12, RowBucketSplits.STATE_SPLIT);
+				fail("Fan-out that is not a power of 2 should not be accepted.");
+			}
+			catch (Exception e)
+			{
+			}
+			
+			try
+			{
+				splits.setSplit(Bytes.toBytes(1), 512, RowBucketSplits.STATE_SPLIT);
+				fail("Fan-out larger than 256 should not be accepted.");
+			}
+			catch (Exception e)
+			{
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail("RowBucketSplits invalid split test failed.");
+		}
+	}
+}
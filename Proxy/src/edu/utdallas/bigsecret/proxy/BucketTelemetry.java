@@ -0,0 +1,224 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.proxy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.utdallas.bigsecret.util.ByteArray;
+
+/**
+ * Counts fetched and returned cells of every encrypted row that is read by a proxy.<br>
+ * Cells that are fetched but not returned are false positives of bucketization, so<br>
+ * the counters show which buckets have grown too large. Counters can be updated by<br>
+ * many threads at once. Number of rows with counters is bounded. When the bound is<br>
+ * reached, all counters are halved and rows that drop to a single cell are removed,<br>
+ * so cold rows make room for new ones while hot rows keep their ratios.
+ */
+public class BucketTelemetry
+{
+	/**
+	 * Counters of a single encrypted row.
+	 */
+	public static class Counter
+	{
+		protected AtomicLong m_fetched = new AtomicLong(0);
+		
+		protected AtomicLong m_returned = new AtomicLong(0);
+		
+		public long getFetched()
+		{
+			return m_fetched.get();
+		}
+		
+		public long getReturned()
+		{
+			return m_returned.get();
+		}
+		
+		/**
+		 * Returns share of fetched cells that are not returned.
+		 * @return Ratio between 0 and 1, 0 if nothing is fetched.
+		 */
+		public double getFalsePositiveRatio()
+		{
+			long fetched = m_fetched.get();
+			
+			if(fetched == 0)
+				return 0;
+			else
+				return (double)(fetched - m_returned.get()) / fetched;
+		}
+	}
+	
+	/**
+	 * Counters of each encrypted row.
+	 */
+	protected ConcurrentHashMap<ByteArray, Counter> m_counters = new ConcurrentHashMap<ByteArray, Counter>();
+	
+	/**
+	 * Maximum number of rows with counters.
+	 */
+	protected int m_maxRows;
+	
+	/**
+	 * Number of records since the last decay. Counters are decayed at most once per m_maxRows records.
+	 */
+	protected AtomicLong m_recordsSinceDecay = new AtomicLong(0);
+	
+	
+	/**
+	 * Class constructor.
+	 * @param maxRows Maximum number of encrypted rows with counters.
+	 * @throws Exception Throws exception if maxRows is not positive.
+	 */
+	public BucketTelemetry(int maxRows) throws Exception
+	{
+		if(maxRows <= 0)
+			throw new Exception("Maximum number of rows should be positive");
+		
+		m_maxRows = maxRows;
+	}
+	
+	
+	/**
+	 * Adds the result of a read to the counters of the encrypted row.
+	 * @param encRow Encrypted row that is read.
+	 * @param fetched Number of cells that are fetched from HBase.
+	 * @param returned Number of cells that are returned to the client.
+	 */
+	public void record(byte[] encRow, int fetched, int returned)
+	{
+		if(fetched == 0)
+			return;
+		
+		m_recordsSinceDecay.incrementAndGet();
+		
+		ByteArray key = new ByteArray(encRow);
+		
+		Counter counter = m_counters.get(key);
+		if(counter == null)
+		{
+			if(m_counters.size() >= m_maxRows)
+			{
+				decay();
+				
+				//rows are not counted until there is room
+				if(m_counters.size() >= m_maxRows)
+					return;
+			}
+			
+			Counter newCounter = new Counter();
+			counter = m_counters.putIfAbsent(new ByteArray(encRow.clone()), newCounter);
+			if(counter == null)
+				counter = newCounter;
+		}
+		
+		counter.m_fetched.addAndGet(fetched);
+		counter.m_returned.addAndGet(returned);
+	}
+	
+	
+	/**
+	 * Halves all counters and removes rows with at most one fetched cell.<br>
+	 * Does nothing if counters are decayed in the last m_maxRows records.
+	 */
+	protected synchronized void decay()
+	{
+		if(m_recordsSinceDecay.get() < m_maxRows)
+			return;
+		
+		m_recordsSinceDecay.set(0);
+		
+		Iterator<Map.Entry<ByteArray, Counter>> itr = m_counters.entrySet().iterator();
+		while(itr.hasNext())
+		{
+			Counter counter = itr.next().getValue();
+			
+			//concurrent records are kept, only half of the old counts is removed
+			counter.m_fetched.addAndGet(-(counter.m_fetched.get() / 2));
+			counter.m_returned.addAndGet(-(counter.m_returned.get() / 2));
+			
+			if(counter.m_fetched.get() <= 1)
+				itr.remove();
+		}
+	}
+	
+	
+	/**
+	 * Returns counters of an encrypted row.
+	 * @param encRow Encrypted row.
+	 * @return null if the row is not read yet.
+	 */
+	public Counter getCounter(byte[] encRow)
+	{
+		return m_counters.get(new ByteArray(encRow));
+	}
+	
+	
+	/**
+	 * Returns encrypted rows whose false positive ratio exceeds the threshold.
+	 * @param rowSize Size of the rows to check. Rows of other sizes are skipped.
+	 * @param threshold False positive ratio threshold, between 0 and 1.
+	 * @param minFetched Rows with fewer fetched cells are skipped, their ratio is not reliable yet.
+	 * @return Encrypted rows, in no particular order.
+	 */
+	public List<byte[]> getHotRows(int rowSize, double threshold, long minFetched)
+	{
+		List<byte[]> result = new ArrayList<byte[]>();
+		
+		Iterator<Map.Entry<ByteArray, Counter>> itr = m_counters.entrySet().iterator();
+		while(itr.hasNext())
+		{
+			Map.Entry<ByteArray, Counter> entry = itr.next();
+			Counter counter = entry.getValue();
+			
+			if(entry.getKey().getData().length == rowSize &&
+					counter.getFetched() >= minFetched &&
+					counter.getFalsePositiveRatio() > threshold)
+			{
+				result.add(entry.getKey().getData().clone());
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Removes counters of an encrypted row.
+	 * @param encRow Encrypted row.
+	 */
+	public void reset(byte[] encRow)
+	{
+		m_counters.remove(new ByteArray(encRow));
+	}
+	
+	
+	/**
+	 * Returns number of encrypted rows with counters.
+	 * @return Number of rows.
+	 */
+	public int size()
+	{
+		return m_counters.size();
+	}
+}
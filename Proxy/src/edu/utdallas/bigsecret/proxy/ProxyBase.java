@@ -22,6 +22,7 @@ import java.util.NavigableSet;
 import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.KeyValue;
@@ -43,6 +44,11 @@ import edu.utdallas.bigsecret.util.ByteArray;
  */
 public abstract class ProxyBase
 {
+	/**
+	 * Name of the table attribute that holds the value format of the table.
+	 */
+	protected static String VALUE_FORMAT_KEY = "BIGSECRET_VALUE_FORMAT";
+	
 	/**
 	 * Configuration object for HBase connection to data server
 	 */
@@ -91,7 +97,8 @@ public abstract class ProxyBase
 	
 	
 	/**
-	 * Connect to the HBase Data Table for the given table.
+	 * Connect to the HBase Data Table for the given table.<br>
+	 * Values are read and written with the value format that is stored in the table.
 	 * @param tableName Name of table to connect to.
 	 * @throws Exception
 	 */
@@ -99,6 +106,29 @@ public abstract class ProxyBase
 	{
 		m_table = new HTable(m_confData, tableName);
 		m_table.setAutoFlush(false);
+		
+		//tables without the attribute are created before value formats
+		String format = m_table.getTableDescriptor().getValue(VALUE_FORMAT_KEY);
+		if(format == null)
+			m_crypter.setValueFormat(CrypterBase.VALUE_FORMAT_PLAIN);
+		else
+			m_crypter.setValueFormat(Byte.parseByte(format));
+	}
+	
+	
+	/**
+	 * Stores value format of a new table in its descriptor. Tables that are created while<br>
+	 * value compression is enabled get the flagged format, so that every proxy can read<br>
+	 * their values, whether compression is enabled on it or not.
+	 * @param desc Descriptor of the new table.
+	 */
+	protected void setValueFormat(HTableDescriptor desc)
+	{
+		byte format = CrypterBase.VALUE_FORMAT_PLAIN;
+		if(m_crypter.getValueCompression() > 0)
+			format = CrypterBase.VALUE_FORMAT_FLAGGED;
+		
+		desc.setValue(VALUE_FORMAT_KEY, Byte.toString(format));
 	}
 	
 	
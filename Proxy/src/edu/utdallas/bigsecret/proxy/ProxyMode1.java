@@ -19,12 +19,17 @@ package edu.utdallas.bigsecret.proxy;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
@@ -34,6 +39,7 @@ import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
@@ -44,9 +50,11 @@ import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 
-import edu.utdallas.bigsecret.bucketizer.HBaseBucketizer;
+import edu.utdallas.bigsecret.bucketizer.BucketizerBase;
 import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.ConcurrentCipher;
 import edu.utdallas.bigsecret.crypter.CrypterMode1;
+import edu.utdallas.bigsecret.crypter.RowBucketSplits;
 import edu.utdallas.bigsecret.scanner.EncryptedScanner;
 import edu.utdallas.bigsecret.util.ByteArray;
 import edu.utdallas.bigsecret.util.Utilities;
@@ -58,6 +66,97 @@ import edu.utdallas.bigsecret.util.Utilities;
  */
 public class ProxyMode1 extends ProxyBase
 {	
+	/**
+	 * Static name for the table that holds split row buckets of every data table.
+	 */
+	protected static String BUCKET_SPLIT_TABLE_NAME = "bucketSplits";
+	
+	/**
+	 * Static name for the split table family.
+	 */
+	protected static byte[] BUCKET_SPLIT_FAMILY_NAME = Bytes.toBytes("f");
+	
+	/**
+	 * Static name for the split table family that holds split versions and proxy acknowledgements.
+	 */
+	protected static byte[] BUCKET_SPLIT_META_FAMILY_NAME = Bytes.toBytes("m");
+	
+	/**
+	 * Qualifier of the split version, which is incremented on every change of splits.
+	 */
+	protected static byte[] BUCKET_SPLIT_VERSION = Bytes.toBytes("version");
+	
+	/**
+	 * Qualifier of the cell that is written to read the time of the bucket HBase.
+	 */
+	protected static byte[] BUCKET_SPLIT_CLOCK = Bytes.toBytes("clock");
+	
+	/**
+	 * Qualifier prefix of the split version that each proxy has loaded.
+	 */
+	protected static byte[] BUCKET_SPLIT_ACK_PREFIX = Bytes.toBytes("ack:");
+	
+	/**
+	 * Number of cells that are moved at once while splitting a bucket.
+	 */
+	protected static int SPLIT_BATCH_SIZE = 1000;
+	
+	/**
+	 * Fetched and returned cell counters of every encrypted row. Null if telemetry is disabled.
+	 */
+	protected BucketTelemetry m_telemetry;
+	
+	/**
+	 * Cipher for the whole key.
+	 */
+	protected Cipher m_keyCipher;
+	
+	/**
+	 * Split row buckets. Null if splits are disabled.
+	 */
+	protected RowBucketSplits m_rowSplits;
+	
+	/**
+	 * HTable instance for the split table. It is shared with the splitter, so it is used in synchronized blocks.
+	 */
+	protected HTable m_tableSplits;
+	
+	/**
+	 * Unique id of this proxy in the split table.
+	 */
+	protected byte[] m_proxyId = Bytes.toBytes(UUID.randomUUID().toString());
+	
+	/**
+	 * Split version that is loaded by this proxy, -1 if nothing is loaded yet.
+	 */
+	protected long m_splitVersion = -1;
+	
+	/**
+	 * Time when the split version should be checked again.
+	 */
+	protected volatile long m_nextSplitRefresh = 0;
+	
+	/**
+	 * Time between two checks of the split version, in milliseconds.
+	 */
+	protected long m_splitRefreshMillis = 1000;
+	
+	/**
+	 * Proxies that have not checked the split version for this long are not waited for, in milliseconds.
+	 */
+	protected long m_splitAckTimeoutMillis = 30000;
+	
+	/**
+	 * Background job that splits hot buckets. Null if it is not started.
+	 */
+	protected ScheduledExecutorService m_splitter;
+	
+	/**
+	 * Last failure of the background job. Null if it has not failed.
+	 */
+	protected volatile Exception m_splitterFailure;
+	
+	
 	/**
 	 * Constructor for this class.
 	 * @param confData Configuration instance that points to HBase that holds actual data.
@@ -72,19 +171,668 @@ public class ProxyMode1 extends ProxyBase
 	 */
 	public ProxyMode1(Configuration confData, 
 					Configuration confBucket,
-					HBaseBucketizer rowBucketizer,
-					HBaseBucketizer famBucketizer,
-					HBaseBucketizer quaBucketizer,
-					HBaseBucketizer tsBucketizer,
+					BucketizerBase rowBucketizer,
+					BucketizerBase famBucketizer,
+					BucketizerBase quaBucketizer,
+					BucketizerBase tsBucketizer,
 					Cipher keyCipher,
 					Cipher valCipher) throws Exception
 	{
 		super(confData, confBucket);
 		
 		m_crypter = new CrypterMode1(rowBucketizer, famBucketizer, quaBucketizer, tsBucketizer, keyCipher, valCipher);
+		m_keyCipher = keyCipher;
 
 	}
 	
+	
+	/**
+	 * Constructor for this class that enables splitting of row buckets.<br>
+	 * Split buckets of a table are loaded from the bucket HBase when the table is connected,<br>
+	 * and reloaded when another proxy changes them. Telemetry is not enabled by this constructor.
+	 * @param confData Configuration instance that points to HBase that holds actual data.
+	 * @param confBucket Configuration instance that points to HBase that holds bucket data.
+	 * @param rowBucketizer Bucketizer for the row key-part.
+	 * @param famBucketizer Bucketizer for the family key-part.
+	 * @param quaBucketizer Bucketizer for the qualifier key-part.
+	 * @param tsBucketizer Bucketizer for the timstamp key-part.
+	 * @param keyCipher Cipher for the whole key.
+	 * @param valCipher Cipher for the value part.
+	 * @param splitKey 16 byte key that picks the sub-bucket of a row. Should be the same for every proxy of a table.
+	 * @throws Exception
+	 */
+	public ProxyMode1(Configuration confData, 
+					Configuration confBucket,
+					BucketizerBase rowBucketizer,
+					BucketizerBase famBucketizer,
+					BucketizerBase quaBucketizer,
+					BucketizerBase tsBucketizer,
+					Cipher keyCipher,
+					Cipher valCipher,
+					byte[] splitKey) throws Exception
+	{
+		this(confData, confBucket, rowBucketizer, famBucketizer, quaBucketizer, tsBucketizer, keyCipher, valCipher);
+		
+		m_rowSplits = new RowBucketSplits(splitKey);
+		((CrypterMode1)m_crypter).setRowBucketSplits(m_rowSplits);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * If splits are enabled, split buckets of the table are loaded.
+	 */
+	public void connect(String tableName) throws Exception
+	{
+		super.connect(tableName);
+		
+		if(m_rowSplits == null)
+			return;
+		
+		//create split table if it does not exist
+		HBaseAdmin admin = new HBaseAdmin(m_confBucket);
+		if(!admin.tableExists(BUCKET_SPLIT_TABLE_NAME))
+		{
+			HTableDescriptor desc = new HTableDescriptor(BUCKET_SPLIT_TABLE_NAME);
+			desc.addFamily(new HColumnDescriptor(BUCKET_SPLIT_FAMILY_NAME));
+			desc.addFamily(new HColumnDescriptor(BUCKET_SPLIT_META_FAMILY_NAME));
+			admin.createTable(desc);
+		}
+		admin.close();
+		
+		m_tableSplits = new HTable(m_confBucket, BUCKET_SPLIT_TABLE_NAME);
+		
+		//load split buckets of this table
+		m_nextSplitRefresh = 0;
+		refreshBucketSplits();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() throws Exception
+	{
+		try
+		{
+			stopBucketSplitter();
+		}
+		finally
+		{
+			try
+			{
+				if(m_tableSplits != null)
+				{
+					//buffered puts are flushed when the table is closed
+					refreshBucketSplits();
+					
+					//splitters should not wait for this proxy anymore
+					synchronized(m_tableSplits)
+					{
+						Delete deleteItem = new Delete(getTableName());
+						deleteItem.deleteColumns(BUCKET_SPLIT_META_FAMILY_NAME, Bytes.add(BUCKET_SPLIT_ACK_PREFIX, m_proxyId));
+						
+						m_tableSplits.delete(deleteItem);
+						m_tableSplits.close();
+					}
+				}
+			}
+			finally
+			{
+				super.close();
+			}
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}<br>
+	 * Buffered puts are moved to the rows of the latest splits first.
+	 */
+	public void flushAll() throws Exception
+	{
+		refreshBucketSplits();
+		
+		super.flushAll();
+	}
+	
+	
+	/**
+	 * Sets how often this proxy checks the split version of its table.<br>
+	 * Every proxy of a table should use the same values.
+	 * @param refreshMillis Time between two checks, in milliseconds.
+	 * @param ackTimeoutMillis Splitters do not wait for proxies that have not checked the version for this long.<br>
+	 * Should be much larger than refreshMillis.
+	 * @throws Exception Throws exception if an input is invalid.
+	 */
+	public void setSplitRefresh(long refreshMillis, long ackTimeoutMillis) throws Exception
+	{
+		if(refreshMillis <= 0)
+			throw new Exception("Refresh interval should be positive");
+		else if(ackTimeoutMillis <= refreshMillis)
+			throw new Exception("Acknowledgement timeout should be larger than the refresh interval");
+		
+		m_splitRefreshMillis = refreshMillis;
+		m_splitAckTimeoutMillis = ackTimeoutMillis;
+	}
+	
+	
+	/**
+	 * Enables fetched and returned cell counters of encrypted rows.<br>
+	 * Telemetry is needed to find hot buckets.
+	 * @param maxRows Maximum number of encrypted rows with counters.
+	 * @throws Exception Throws exception if maxRows is not positive.
+	 */
+	public void enableBucketTelemetry(int maxRows) throws Exception
+	{
+		m_telemetry = new BucketTelemetry(maxRows);
+	}
+	
+	
+	/**
+	 * Returns fetched and returned cell counters of encrypted rows.
+	 * @return Telemetry of this proxy, null if it is not enabled.
+	 */
+	public BucketTelemetry getBucketTelemetry()
+	{
+		return m_telemetry;
+	}
+	
+	
+	/**
+	 * Checks the split version of the table, and reloads splits if another proxy has changed them.<br>
+	 * The version is read at most once per refresh interval. After a reload, this proxy<br>
+	 * moves its buffered puts to the rows of the new splits, flushes them, and acknowledges<br>
+	 * the version, so that splitters know that it has stopped writing to the old rows.<br>
+	 * Acknowledgement is written on every check, which shows splitters that the proxy is alive.<br>
+	 * A proxy that is not waited for, because it has not checked for too long, moves its<br>
+	 * buffered puts on its next check, so they never reach a bucket row that is already moved.
+	 * @throws Exception
+	 */
+	protected void refreshBucketSplits() throws Exception
+	{
+		if(m_rowSplits == null || System.currentTimeMillis() < m_nextSplitRefresh)
+			return;
+		
+		synchronized(m_tableSplits)
+		{
+			long version = readBucketSplitVersion();
+			
+			if(version != m_splitVersion)
+			{
+				//load split buckets of this table
+				Get getItem = new Get(getTableName());
+				getItem.addFamily(BUCKET_SPLIT_FAMILY_NAME);
+				
+				Result result = m_tableSplits.get(getItem);
+				List<KeyValue> keyList = result.list();
+				if(keyList != null)
+				{
+					for(int a = 0; a<keyList.size(); a++)
+					{
+						byte[] value = keyList.get(a).getValue();
+						m_rowSplits.setSplit(keyList.get(a).getQualifier(), Bytes.toInt(value, 0), value[4]);
+					}
+				}
+				
+				//buffered puts may still go to rows of the old splits
+				rerouteWriteBuffer();
+				m_table.flushCommits();
+				
+				m_splitVersion = version;
+			}
+			
+			Put putItem = new Put(getTableName());
+			putItem.add(BUCKET_SPLIT_META_FAMILY_NAME, Bytes.add(BUCKET_SPLIT_ACK_PREFIX, m_proxyId), Bytes.toBytes(m_splitVersion));
+			
+			m_tableSplits.put(putItem);
+			m_tableSplits.flushCommits();
+			
+			m_nextSplitRefresh = System.currentTimeMillis() + m_splitRefreshMillis;
+		}
+	}
+	
+	
+	/**
+	 * Replaces buffered puts to split bucket rows with puts to their sub-buckets.<br>
+	 * Each put holds cells of a single plain text row, which is decrypted from its first cell.
+	 * @throws Exception
+	 */
+	protected void rerouteWriteBuffer() throws Exception
+	{
+		int bucketSize = m_crypter.getIndexRowDataSize();
+		List<Put> buffer = m_table.getWriteBuffer();
+		
+		for(int a = 0; a<buffer.size(); a++)
+		{
+			byte[] encRow = buffer.get(a).getRow();
+			
+			//sub-bucket rows and buckets that are not split are already right
+			if(encRow.length != bucketSize || m_rowSplits.getSplit(encRow) == null)
+				continue;
+			
+			Put newPut = null;
+			
+			Iterator<List<KeyValue>> itr = buffer.get(a).getFamilyMap().values().iterator();
+			while(itr.hasNext())
+			{
+				List<KeyValue> keyList = itr.next();
+				
+				for(int b = 0; b<keyList.size(); b++)
+				{
+					KeyValue kv = keyList.get(b);
+					
+					if(newPut == null)
+						newPut = new Put(m_rowSplits.getIndexRow(encRow, m_crypter.unwrapRow(kv)));
+					
+					newPut.add(kv.getFamily(), kv.getQualifier(), kv.getTimestamp(), kv.getValue());
+				}
+			}
+			
+			if(newPut != null)
+				buffer.set(a, newPut);
+		}
+	}
+	
+	
+	/**
+	 * Reads split version of the table. Should be called in a block synchronized on m_tableSplits.
+	 * @return Split version, 0 if splits of the table are never changed.
+	 * @throws Exception
+	 */
+	protected long readBucketSplitVersion() throws Exception
+	{
+		Get getItem = new Get(getTableName());
+		getItem.addColumn(BUCKET_SPLIT_META_FAMILY_NAME, BUCKET_SPLIT_VERSION);
+		
+		Result result = m_tableSplits.get(getItem);
+		List<KeyValue> keyList = result.list();
+		
+		if(keyList == null || keyList.size() == 0)
+			return 0;
+		else
+			return Bytes.toLong(keyList.get(0).getValue());
+	}
+	
+	
+	/**
+	 * Returns encrypted rows that may hold cells of the plain text row.<br>
+	 * While the bucket of the row is being split, both the sub-bucket and the bucket are returned.
+	 * @param row Plain text row.
+	 * @return Encrypted rows, the row that new cells are written to is the first one.
+	 * @throws Exception
+	 */
+	protected List<byte[]> getIndexRows(byte[] row) throws Exception
+	{
+		refreshBucketSplits();
+		
+		List<byte[]> result = new ArrayList<byte[]>(2);
+		result.add(m_crypter.getIndexRowData(row));
+		
+		if(m_rowSplits != null)
+		{
+			byte[] bucket = m_crypter.getRowBucket(row);
+			RowBucketSplits.Split split = m_rowSplits.getSplit(bucket);
+			
+			if(split != null && split.getState() == RowBucketSplits.STATE_MOVING)
+				result.add(bucket);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Stores split of a bucket in the split table, and increments the split version.
+	 * @param bucket Bucket value.
+	 * @param fanout Number of sub-buckets.
+	 * @param state Split state.
+	 * @return New split version.
+	 * @throws Exception
+	 */
+	protected long saveBucketSplit(byte[] bucket, int fanout, byte state) throws Exception
+	{
+		synchronized(m_tableSplits)
+		{
+			Put putItem = new Put(getTableName());
+			putItem.add(BUCKET_SPLIT_FAMILY_NAME, bucket, Bytes.add(Bytes.toBytes(fanout), new byte[] {state}));
+			
+			m_tableSplits.put(putItem);
+			m_tableSplits.flushCommits();
+			
+			return m_tableSplits.incrementColumnValue(getTableName(), BUCKET_SPLIT_META_FAMILY_NAME, BUCKET_SPLIT_VERSION, 1);
+		}
+	}
+	
+	
+	/**
+	 * Waits until every live proxy of the table has acknowledged the split version.<br>
+	 * Proxies whose acknowledgement is older than the acknowledgement timeout are not<br>
+	 * waited for. They check the version before their next operation.
+	 * @param version Split version to wait for.
+	 * @throws Exception
+	 */
+	protected void awaitBucketSplitAcks(long version) throws Exception
+	{
+		while(true)
+		{
+			boolean pending = false;
+			
+			synchronized(m_tableSplits)
+			{
+				//write a cell to read the time of the bucket HBase, proxy clocks may differ
+				Put putItem = new Put(getTableName());
+				putItem.add(BUCKET_SPLIT_META_FAMILY_NAME, BUCKET_SPLIT_CLOCK, new byte[0]);
+				
+				m_tableSplits.put(putItem);
+				m_tableSplits.flushCommits();
+				
+				Get getItem = new Get(getTableName());
+				getItem.addFamily(BUCKET_SPLIT_META_FAMILY_NAME);
+				
+				Result result = m_tableSplits.get(getItem);
+				List<KeyValue> keyList = result.list();
+				if(keyList == null)
+					return;
+				
+				long now = 0;
+				for(int a = 0; a<keyList.size(); a++)
+				{
+					if(Bytes.equals(keyList.get(a).getQualifier(), BUCKET_SPLIT_CLOCK))
+						now = keyList.get(a).getTimestamp();
+				}
+				
+				for(int a = 0; a<keyList.size() && !pending; a++)
+				{
+					KeyValue kv = keyList.get(a);
+					
+					if(Bytes.startsWith(kv.getQualifier(), BUCKET_SPLIT_ACK_PREFIX) &&
+							Bytes.toLong(kv.getValue()) < version &&
+							kv.getTimestamp() > now - m_splitAckTimeoutMillis)
+					{
+						pending = true;
+					}
+				}
+			}
+			
+			if(!pending)
+				return;
+			
+			Thread.sleep(m_splitRefreshMillis);
+		}
+	}
+	
+	
+	/**
+	 * Splits a row bucket into sub-buckets, while the table is in use.<br>
+	 * The split is stored in MOVING state first, and cells are not moved until every proxy<br>
+	 * of the table has loaded it. From then on new cells are written to sub-buckets, and<br>
+	 * reads and deletes use both rows. Then cells of the bucket are moved in batches.<br>
+	 * Encrypted cells are copied as they are, since the plain text row is in the encrypted<br>
+	 * qualifier. A copy whose source is deleted during the move is deleted as well. A move<br>
+	 * that is interrupted continues when the bucket is split again.
+	 * @param bucket Bucket value of the row bucketizer.
+	 * @param fanout Number of sub-buckets, a power of 2 up to 256.
+	 * @param maxCellsPerSecond Moving is slowed down to this many cells per second.
+	 * @throws Exception Throws exception if splits are disabled, or an input is invalid.
+	 */
+	public void splitBucket(byte[] bucket, int fanout, int maxCellsPerSecond) throws Exception
+	{
+		splitBucket(bucket, fanout, maxCellsPerSecond, true);
+	}
+	
+	
+	/**
+	 * Splits a row bucket into sub-buckets, while the table is in use.
+	 * @param bucket Bucket value of the row bucketizer.
+	 * @param fanout Number of sub-buckets, a power of 2 up to 256.
+	 * @param maxCellsPerSecond Moving is slowed down to this many cells per second.
+	 * @param proxyThread True if called by the thread that uses the proxy, which may flush the proxy table.<br>
+	 * Otherwise the proxy acknowledges the split on its next operation, like other proxies.
+	 * @throws Exception Throws exception if splits are disabled, or an input is invalid.
+	 */
+	protected void splitBucket(byte[] bucket, int fanout, int maxCellsPerSecond, boolean proxyThread) throws Exception
+	{
+		//check inputs
+		if(m_rowSplits == null)
+			throw new Exception("Bucket splits are not enabled");
+		else if(bucket == null || bucket.length == 0)
+			throw new Exception("Bucket is null or has no data");
+		else if(maxCellsPerSecond <= 0)
+			throw new Exception("Move rate should be positive");
+		
+		RowBucketSplits.Split split = m_rowSplits.getSplit(bucket);
+		if(split != null)
+		{
+			//already split, or continue an interrupted move with its fan-out
+			if(split.getState() == RowBucketSplits.STATE_SPLIT)
+				return;
+			
+			fanout = split.getFanout();
+		}
+		
+		//validate fan-out before storing it
+		m_rowSplits.setSplit(bucket, fanout, RowBucketSplits.STATE_MOVING);
+		long version = saveBucketSplit(bucket, fanout, RowBucketSplits.STATE_MOVING);
+		
+		//this proxy moves its buffered puts and acknowledges first, so it does not wait for itself
+		if(proxyThread)
+		{
+			m_nextSplitRefresh = 0;
+			refreshBucketSplits();
+		}
+		
+		//proxies that still write to the bucket row would leave cells behind
+		awaitBucketSplitAcks(version);
+		
+		//proxy table is not thread-safe, so moves use their own table
+		HTable table = new HTable(m_confData, getTableName());
+		try
+		{
+			//only the bucket row, sub-buckets start with bucket || 0
+			Scan scan = new Scan(bucket, Bytes.add(bucket, new byte[1]));
+			scan.setMaxVersions(Integer.MAX_VALUE);
+			scan.setBatch(SPLIT_BATCH_SIZE);
+			
+			long startTime = System.currentTimeMillis();
+			long moved = 0;
+			
+			ResultScanner scanner = table.getScanner(scan);
+			try
+			{
+				for(Result rr = scanner.next(); rr != null; rr = scanner.next())
+				{
+					List<KeyValue> keyList = rr.list();
+					List<byte[]> subBuckets = new ArrayList<byte[]>(keyList.size());
+					List<Put> putList = new ArrayList<Put>(keyList.size());
+					List<Get> getList = new ArrayList<Get>(keyList.size());
+					
+					for(int a = 0; a<keyList.size(); a++)
+					{
+						KeyValue kv = keyList.get(a);
+						byte[] subBucket = m_rowSplits.getIndexRow(bucket, m_crypter.unwrapRow(kv));
+						subBuckets.add(subBucket);
+						
+						Put putItem = new Put(subBucket);
+						putItem.add(kv.getFamily(), kv.getQualifier(), kv.getTimestamp(), kv.getValue());
+						putList.add(putItem);
+						
+						Get getItem = new Get(bucket);
+						getItem.addColumn(kv.getFamily(), kv.getQualifier());
+						getItem.setTimeStamp(kv.getTimestamp());
+						getList.add(getItem);
+					}
+					
+					//copies are written before the originals are deleted
+					table.put(putList);
+					table.flushCommits();
+					
+					//check the originals again, a delete that ran before the copy is applied to the copy too
+					Result[] sources = table.get(getList);
+					List<Delete> deleteList = new ArrayList<Delete>(keyList.size());
+					
+					for(int a = 0; a<keyList.size(); a++)
+					{
+						KeyValue kv = keyList.get(a);
+						
+						Delete deleteItem;
+						if(sources[a] == null || sources[a].isEmpty())
+							deleteItem = new Delete(subBuckets.get(a));
+						else
+							deleteItem = new Delete(bucket);
+						
+						deleteItem.deleteColumn(kv.getFamily(), kv.getQualifier(), kv.getTimestamp());
+						deleteList.add(deleteItem);
+					}
+					
+					table.delete(deleteList);
+					
+					//throttle
+					moved += keyList.size();
+					long wait = moved * 1000 / maxCellsPerSecond - (System.currentTimeMillis() - startTime);
+					if(wait > 0)
+						Thread.sleep(wait);
+				}
+			}
+			finally
+			{
+				scanner.close();
+			}
+		}
+		finally
+		{
+			table.close();
+		}
+		
+		saveBucketSplit(bucket, fanout, RowBucketSplits.STATE_SPLIT);
+		m_rowSplits.setSplit(bucket, fanout, RowBucketSplits.STATE_SPLIT);
+		
+		//old counters describe the bucket before the split
+		if(m_telemetry != null)
+			m_telemetry.reset(bucket);
+	}
+	
+	
+	/**
+	 * Splits every bucket whose false positive ratio exceeds the threshold.
+	 * @param threshold False positive ratio threshold, between 0 and 1.
+	 * @param minFetched Buckets with fewer fetched cells are not split.
+	 * @param fanout Number of sub-buckets of each split.
+	 * @param maxCellsPerSecond Moving is slowed down to this many cells per second.
+	 * @return Number of split buckets.
+	 * @throws Exception Throws exception if splits or telemetry are disabled.
+	 */
+	public int splitHotBuckets(double threshold, long minFetched, int fanout, int maxCellsPerSecond) throws Exception
+	{
+		return splitHotBuckets(threshold, minFetched, fanout, maxCellsPerSecond, true);
+	}
+	
+	
+	/**
+	 * Splits every bucket whose false positive ratio exceeds the threshold.
+	 * @param threshold False positive ratio threshold, between 0 and 1.
+	 * @param minFetched Buckets with fewer fetched cells are not split.
+	 * @param fanout Number of sub-buckets of each split.
+	 * @param maxCellsPerSecond Moving is slowed down to this many cells per second.
+	 * @param proxyThread True if called by the thread that uses the proxy.
+	 * @return Number of split buckets.
+	 * @throws Exception Throws exception if splits or telemetry are disabled.
+	 */
+	protected int splitHotBuckets(double threshold, long minFetched, int fanout, int maxCellsPerSecond, boolean proxyThread) throws Exception
+	{
+		if(m_rowSplits == null)
+			throw new Exception("Bucket splits are not enabled");
+		else if(m_telemetry == null)
+			throw new Exception("Bucket telemetry is not enabled");
+		
+		//sub-buckets are not split again, so only rows of bucket size are checked
+		int bucketSize = m_crypter.getIndexRowDataSize();
+		List<byte[]> hotRows = m_telemetry.getHotRows(bucketSize, threshold, minFetched);
+		
+		for(int a = 0; a<hotRows.size(); a++)
+			splitBucket(hotRows.get(a), fanout, maxCellsPerSecond, proxyThread);
+		
+		return hotRows.size();
+	}
+	
+	
+	/**
+	 * Starts a background job that splits hot buckets periodically.<br>
+	 * The job decrypts rows while the proxy is in use, so key cipher should be a ConcurrentCipher,<br>
+	 * and row bucketizer should be thread-safe, such as an HBaseBucketizer. Failures of the<br>
+	 * job are returned by getBucketSplitterFailure, and thrown by stopBucketSplitter.
+	 * @param threshold False positive ratio threshold, between 0 and 1.
+	 * @param minFetched Buckets with fewer fetched cells are not split.
+	 * @param fanout Number of sub-buckets of each split.
+	 * @param maxCellsPerSecond Moving is slowed down to this many cells per second.
+	 * @param intervalMillis Time between two checks.
+	 * @throws Exception Throws exception if splits or telemetry are disabled, key cipher is not<br>
+	 * a ConcurrentCipher, or the job is already started.
+	 */
+	public synchronized void startBucketSplitter(final double threshold, final long minFetched, final int fanout, final int maxCellsPerSecond, long intervalMillis) throws Exception
+	{
+		if(m_rowSplits == null)
+			throw new Exception("Bucket splits are not enabled");
+		else if(m_telemetry == null)
+			throw new Exception("Bucket telemetry is not enabled");
+		else if(!(m_keyCipher instanceof ConcurrentCipher))
+			throw new Exception("Bucket splitter needs a ConcurrentCipher as key cipher");
+		else if(m_splitter != null)
+			throw new Exception("Bucket splitter is already started");
+		else if(intervalMillis <= 0)
+			throw new Exception("Interval should be positive");
+		
+		m_splitterFailure = null;
+		
+		m_splitter = Executors.newSingleThreadScheduledExecutor();
+		m_splitter.scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					splitHotBuckets(threshold, minFetched, fanout, maxCellsPerSecond, false);
+				}
+				catch (Exception e)
+				{
+					//keep the job running, the move continues on the next check
+					m_splitterFailure = e;
+				}
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	
+	/**
+	 * Returns the last failure of the background job that splits hot buckets.
+	 * @return null if the job has not failed.
+	 */
+	public Exception getBucketSplitterFailure()
+	{
+		return m_splitterFailure;
+	}
+	
+	
+	/**
+	 * Stops the background job that splits hot buckets, and waits for the current move.
+	 * @throws Exception Throws exception if the job has failed since it is started.
+	 */
+	public synchronized void stopBucketSplitter() throws Exception
+	{
+		if(m_splitter == null)
+			return;
+		
+		m_splitter.shutdown();
+		m_splitter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		m_splitter = null;
+		
+		Exception failure = m_splitterFailure;
+		m_splitterFailure = null;
+		
+		if(failure != null)
+			throw new Exception("Bucket splitter failed", failure);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -120,6 +868,9 @@ public class ProxyMode1 extends ProxyBase
 			desc.addFamily(colDesc);
 		}
 		
+		//values are read with the format of the table
+		setValueFormat(desc);
+		
 		//create table
 		admin.createTable(desc);
 		
@@ -191,12 +942,39 @@ public class ProxyMode1 extends ProxyBase
 	
 	
 	/**
-	 * {@inheritDoc}
+	 * Adds deletes of the matching cells in every encrypted row of the plain text row.
 	 */
 	private void delete(List<Delete> deleteList, byte[] row, byte[] fam, byte[] qua, long timestamp, boolean allQual) throws Exception
 	{
-		byte[] encRow = m_crypter.getIndexRowData(row);
+		List<byte[]> encRows = getIndexRows(row);
 		
+		for(int a = 0; a<encRows.size(); a++)
+			delete(deleteList, encRows.get(a), encRows, row, fam, qua, timestamp, allQual);
+	}
+	
+	
+	/**
+	 * Adds deletes of an encrypted cell to every encrypted row of the plain text row.<br>
+	 * While a bucket is split, a cell that is found in one row may be copied to the other<br>
+	 * one at any time. The delete in the other row masks such a copy.
+	 */
+	private void addDeletes(List<Delete> deleteList, List<byte[]> encRows, byte[] encFam, byte[] encQua, long encTs)
+	{
+		for(int a = 0; a<encRows.size(); a++)
+		{
+			Delete tempDelete = new Delete(encRows.get(a));
+			tempDelete.deleteColumn(encFam, encQua, encTs);
+			
+			deleteList.add(tempDelete);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	private void delete(List<Delete> deleteList, byte[] encRow, List<byte[]> encRows, byte[] row, byte[] fam, byte[] qua, long timestamp, boolean allQual) throws Exception
+	{
 		Get getItem = new Get(encRow);
 		
 		if(fam == null && qua == null && timestamp == HConstants.LATEST_TIMESTAMP && allQual == false)
@@ -218,10 +996,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}
 		}
@@ -248,10 +1023,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}
 		}
@@ -277,10 +1049,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}
 		}
@@ -310,10 +1079,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}			
 		}
@@ -341,10 +1107,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}			
 		}
@@ -376,10 +1139,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}			
 		}
@@ -412,10 +1172,7 @@ public class ProxyMode1 extends ProxyBase
 					byte[] encQua = keyList.get(a).getQualifier();
 					long encTs = keyList.get(a).getTimestamp();
 					
-					Delete tempDelete = new Delete(encRow);
-					tempDelete.deleteColumn(encFam, encQua, encTs);
-					
-					deleteList.add(tempDelete);
+					addDeletes(deleteList, encRows, encFam, encQua, encTs);
 				}
 			}	
 		}
@@ -435,9 +1192,9 @@ public class ProxyMode1 extends ProxyBase
 		if(getItem == null)
 			throw new IOException("Get item is null");
 
-		//plain text row key
+		//plain text row key, and encrypted rows that may hold its cells
 		byte[] plainRowKey = getItem.getRow();
-		byte[] encRowKey = m_crypter.getIndexRowData(plainRowKey);
+		List<byte[]> encRowKeys = getIndexRows(plainRowKey);
 		
 		//resulting keyvalue data
 		List<KeyValue> resultKeyValues = new ArrayList<KeyValue>();
@@ -461,15 +1218,13 @@ public class ProxyMode1 extends ProxyBase
 			encMaxTimestamp = Utilities.getLong(tempData);
 		}
 		
-		Get encGet = new Get(encRowKey);
-		encGet.setTimeRange(encMinTimestamp, encMaxTimestamp);
-		
 		//get family map from plain text get item
 		Set<byte[]> familySet = getItem.familySet();
 		Map<byte[], NavigableSet<byte[]>> familyMap = getItem.getFamilyMap();
 		
 		Iterator<byte[]> itrFamily = familySet.iterator();
 		Set<byte[]> qualifierSet = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
+		List<byte[]> encFamilies = new ArrayList<byte[]>();
 		
 		while(itrFamily.hasNext())
 		{
@@ -479,7 +1234,7 @@ public class ProxyMode1 extends ProxyBase
 			//wrap family
 			byte[] encCurrentFamily = m_crypter.getIndexFamilyData(currentFamily);
 			
-			encGet.addFamily(encCurrentFamily);
+			encFamilies.add(encCurrentFamily);
 			
 			//get qualifiers list for this family
 			Set<byte[]> currentQualifierSet = getItem.getFamilyMap().get(currentFamily);
@@ -504,40 +1259,57 @@ public class ProxyMode1 extends ProxyBase
 			counter++;
 		}
 		
-		encGet.setFilter(new MultipleColumnPrefixFilter(qualifierPrefixes));
-		
-		Result result = m_table.get(encGet);
-		List<KeyValue> encKeyValues = result.list();
-		
-		if(encKeyValues != null)
+		for(int r = 0; r<encRowKeys.size(); r++)
 		{
-			Iterator<KeyValue> itrKeyValue = encKeyValues.iterator();
+			byte[] encRowKey = encRowKeys.get(r);
 			
-			while(itrKeyValue.hasNext())
+			Get encGet = new Get(encRowKey);
+			encGet.setTimeRange(encMinTimestamp, encMaxTimestamp);
+			
+			for(int a = 0; a<encFamilies.size(); a++)
+				encGet.addFamily(encFamilies.get(a));
+			
+			encGet.setFilter(new MultipleColumnPrefixFilter(qualifierPrefixes));
+			
+			Result result = m_table.get(encGet);
+			List<KeyValue> encKeyValues = result.list();
+			
+			if(encKeyValues != null)
 			{
-				KeyValue currentValue = itrKeyValue.next();
+				int returned = 0;
+				Iterator<KeyValue> itrKeyValue = encKeyValues.iterator();
 				
-				byte[] decRow = m_crypter.unwrapRow(currentValue);
-				if(Arrays.equals(decRow, plainRowKey))
+				while(itrKeyValue.hasNext())
 				{
-					long decTimestamp = m_crypter.unwrapTimestamp(currentValue);
+					KeyValue currentValue = itrKeyValue.next();
 					
-					if(plainMinTimestamp <= decTimestamp && decTimestamp <= plainMaxTimestamp)
+					byte[] decRow = m_crypter.unwrapRow(currentValue);
+					if(Arrays.equals(decRow, plainRowKey))
 					{
-						byte[] decFamily = m_crypter.unwrapFamily(currentValue);
-						byte[] decQualifier = m_crypter.unwrapQualifier(currentValue);
-						if(doesFamilyQualifierExist(familyMap, decFamily, decQualifier))
+						long decTimestamp = m_crypter.unwrapTimestamp(currentValue);
+						
+						if(plainMinTimestamp <= decTimestamp && decTimestamp <= plainMaxTimestamp)
 						{
-							KeyValue decTempItem = new KeyValue(plainRowKey,
-																decFamily,
-																decQualifier,
-																decTimestamp,
-																m_crypter.unwrapValue(currentValue));
-
-							addKeyValueToList(0, resultKeyValues.size()-1, decTempItem, resultKeyValues);							
-						}									
+							byte[] decFamily = m_crypter.unwrapFamily(currentValue);
+							byte[] decQualifier = m_crypter.unwrapQualifier(currentValue);
+							if(doesFamilyQualifierExist(familyMap, decFamily, decQualifier))
+							{
+								KeyValue decTempItem = new KeyValue(plainRowKey,
+																	decFamily,
+																	decQualifier,
+																	decTimestamp,
+																	m_crypter.unwrapValue(currentValue));
+								
+								returned++;
+								addUniqueKeyValue(decTempItem, resultKeyValues);
+							}									
+						}
 					}
 				}
+				
+				//cells of other rows in the same bucket are false positives
+				if(m_telemetry != null)
+					m_telemetry.record(encRowKey, encKeyValues.size(), returned);
 			}
 		}
 		
@@ -574,7 +1346,7 @@ public class ProxyMode1 extends ProxyBase
 		
 		byte[] firstValue = encQuaItr.next().getData();
 		byte[] currentPlainRow = m_crypter.unwrapRow(null, null, firstValue, 0, null);
-		Get encGet = new Get(m_crypter.getIndexRowData(currentPlainRow));
+		List<byte[]> encRowKeys = getIndexRows(currentPlainRow);
 		
 		byte[][] qualifierPrefixes = new byte[encQuaSet.size()][];
 		qualifierPrefixes[0] = firstValue;
@@ -585,35 +1357,50 @@ public class ProxyMode1 extends ProxyBase
 			counter++;
 		}
 		
-		encGet.setFilter(new MultipleColumnPrefixFilter(qualifierPrefixes));
-		encGet.setTimeRange(encMinTimestamp, encMaxTimestamp);
-		
-		Result encResult = m_table.get(encGet);
-		List<KeyValue> encKeyValues = encResult.list();
-		
-		Iterator<KeyValue> itrKeyValue = encKeyValues.iterator();
-		while(itrKeyValue.hasNext())
+		for(int r = 0; r<encRowKeys.size(); r++)
 		{
-			//for every key value
-			KeyValue currentEncKeyValue = itrKeyValue.next();
+			byte[] encRowKey = encRowKeys.get(r);
 			
-			//decrypt family, qualifier and timestamp
-			long decTimestamp = m_crypter.unwrapTimestamp(currentEncKeyValue);
+			Get encGet = new Get(encRowKey);
+			encGet.setFilter(new MultipleColumnPrefixFilter(qualifierPrefixes));
+			encGet.setTimeRange(encMinTimestamp, encMaxTimestamp);
 			
-			//check if decrypted time stamp is in plain text timestamp range and family qualifier pair exists in the original get
-			if(minTs <= decTimestamp && decTimestamp <= maxTs) 
+			Result encResult = m_table.get(encGet);
+			List<KeyValue> encKeyValues = encResult.list();
+			
+			//while a bucket is split, one of its rows may be empty
+			if(encKeyValues == null)
+				continue;
+			
+			int returned = 0;
+			Iterator<KeyValue> itrKeyValue = encKeyValues.iterator();
+			while(itrKeyValue.hasNext())
 			{
-				byte[] decFamily = m_crypter.unwrapFamily(currentEncKeyValue);
-				byte[] decQualifier = m_crypter.unwrapQualifier(currentEncKeyValue);
+				//for every key value
+				KeyValue currentEncKeyValue = itrKeyValue.next();
+				
+				//decrypt family, qualifier and timestamp
+				long decTimestamp = m_crypter.unwrapTimestamp(currentEncKeyValue);
 				
-				if(doesFamilyQualifierExist(plainFamilyMap, decFamily, decQualifier))
+				//check if decrypted time stamp is in plain text timestamp range and family qualifier pair exists in the original get
+				if(minTs <= decTimestamp && decTimestamp <= maxTs) 
 				{
-					KeyValue tempKeyvalueItem = new KeyValue(currentPlainRow, decFamily, decQualifier, decTimestamp, 
-														m_crypter.unwrapValue(currentEncKeyValue));
-
-					addKeyValueToList(0, resultKeyValues.size()-1, tempKeyvalueItem, resultKeyValues);
+					byte[] decFamily = m_crypter.unwrapFamily(currentEncKeyValue);
+					byte[] decQualifier = m_crypter.unwrapQualifier(currentEncKeyValue);
+					
+					if(doesFamilyQualifierExist(plainFamilyMap, decFamily, decQualifier))
+					{
+						KeyValue tempKeyvalueItem = new KeyValue(currentPlainRow, decFamily, decQualifier, decTimestamp, 
+															m_crypter.unwrapValue(currentEncKeyValue));
+						
+						returned++;
+						addUniqueKeyValue(tempKeyvalueItem, resultKeyValues);
+					}
 				}
 			}
+			
+			if(m_telemetry != null)
+				m_telemetry.record(encRowKey, encKeyValues.size(), returned);
 		}
 		
 		//if there are no result keys, return empty Result object
@@ -734,6 +1521,19 @@ public class ProxyMode1 extends ProxyBase
 	}
 
 	
+	/**
+	 * Adds a key value to the sorted list, unless it is already there.<br>
+	 * While a bucket is split, a cell can be read from both the bucket and its sub-bucket.
+	 * @param newItem Key value to add.
+	 * @param list Sorted list of key values.
+	 */
+	protected void addUniqueKeyValue(KeyValue newItem, List<KeyValue> list)
+	{
+		if(Collections.binarySearch(list, newItem, new KeyValue.KVComparator()) < 0)
+			addKeyValueToList(0, list.size()-1, newItem, list);
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -743,6 +1543,9 @@ public class ProxyMode1 extends ProxyBase
 		if(putItem == null)
 			throw new IOException("Put item is null");
 		
+		//new cells go to sub-buckets of the latest splits
+		refreshBucketSplits();
+		
 		//get family map from plain text put item
 		Map<byte[], List<KeyValue>> familyMap = putItem.getFamilyMap();
 		
@@ -760,6 +1563,10 @@ public class ProxyMode1 extends ProxyBase
 			//get entry list for that family
 			List<KeyValue> entryList = familyMap.get(itr.next());
 			
+			//wrap values of the family as a single batch
+			byte[][] encValues = m_crypter.wrapValues(entryList);
+			int valueIndex = 0;
+			
 			//for every entry in a family
 			Iterator<KeyValue> entryItr = entryList.iterator();
 
@@ -774,7 +1581,7 @@ public class ProxyMode1 extends ProxyBase
 				byte[] encFamily = m_crypter.wrapFamily(tempItem);
 				
 				//wrap value
-				byte[] encValue = m_crypter.wrapValue(tempItem);
+				byte[] encValue = encValues[valueIndex++];
 				
 				long encTs;
 				byte[] encQualifier;
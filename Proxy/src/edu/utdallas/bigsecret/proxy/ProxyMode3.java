@@ -49,6 +49,13 @@ import edu.utdallas.bigsecret.util.ByteArray;
  */
 public class ProxyMode3 extends ProxyBase
 {	
+	/**
+	 * Index row of the current get or delete. HBase does not keep the row of a Get<br>
+	 * or Delete after the call returns, so the array is reused by every call.
+	 */
+	protected byte[] m_indexRow;
+	
+	
 	/**
 	 * Constructor for this class.
 	 * @param confData Configuration instance that points to HBase that holds actual data.
@@ -67,6 +74,22 @@ public class ProxyMode3 extends ProxyBase
 		super(confData, confBucket);
 		
 		m_crypter = new CrypterMode3(rowHasher, keyCipher, valCipher);
+		m_indexRow = new byte[m_crypter.getIndexRowDataSize()];
+	}
+	
+	
+	/**
+	 * Writes index row of the plain text row into m_indexRow.<br>
+	 * Returned array is overwritten by the next call, so it should not be kept.
+	 * @param row Plain text row.
+	 * @return m_indexRow
+	 * @throws Exception
+	 */
+	protected byte[] getIndexRow(byte[] row) throws Exception
+	{
+		m_crypter.getIndexRowData(row, 0, row.length, m_indexRow, 0);
+		
+		return m_indexRow;
 	}
 	
 	
@@ -99,6 +122,9 @@ public class ProxyMode3 extends ProxyBase
 		HColumnDescriptor colDesc = new HColumnDescriptor(m_crypter.getIndexFamilyData(null));
 		desc.addFamily(colDesc);
 		
+		//values are read with the format of the table
+		setValueFormat(desc);
+		
 		//create table
 		admin.createTable(desc);
 		
@@ -171,7 +197,7 @@ public class ProxyMode3 extends ProxyBase
 	
 	private void delete(List<Delete> deleteList, byte[] row, byte[] fam, byte[] qua, long timestamp, boolean allQual) throws Exception
 	{
-		byte[] encRow = m_crypter.getIndexRowData(row);
+		byte[] encRow = getIndexRow(row);
 		
 		Get getItem = new Get(encRow);		
 
@@ -345,7 +371,7 @@ public class ProxyMode3 extends ProxyBase
 
 		//plain text row key
 		byte[] plainRowKey = getItem.getRow();
-		byte[] encRowKey = m_crypter.getIndexRowData(plainRowKey);
+		byte[] encRowKey = getIndexRow(plainRowKey);
 		
 		//resulting keyvalue data
 		List<KeyValue> resultKeyValues = new ArrayList<KeyValue>();
@@ -429,6 +455,10 @@ public class ProxyMode3 extends ProxyBase
 			//get entry list for that family
 			List<KeyValue> entryList = familyMap.get(itr.next());
 			
+			//wrap values of the family as a single batch
+			byte[][] encValues = m_crypter.wrapValues(entryList);
+			int valueIndex = 0;
+			
 			//for every entry in a family
 			Iterator<KeyValue> entryItr = entryList.iterator();
 
@@ -443,7 +473,7 @@ public class ProxyMode3 extends ProxyBase
 				byte[] encFamily = m_crypter.wrapFamily(tempItem);
 				
 				//wrap value
-				byte[] encValue = m_crypter.wrapValue(tempItem);
+				byte[] encValue = encValues[valueIndex++];
 				
 				long encTs;
 				byte[] encQualifier;
@@ -0,0 +1,139 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.proxy.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.proxy.BucketTelemetry;
+
+/**
+ * Test class for BucketTelemetry class. Does not need HBase.
+ */
+public class TestBucketTelemetry
+{
+	@Test
+	public void testHotRows() throws Exception
+	{
+		BucketTelemetry telemetry = new BucketTelemetry(100);
+		
+		//hot bucket, 90 percent false positives
+		for(int a = 0; a<10; a++)
+			telemetry.record(Bytes.toBytes(1), 100, 10);
+		
+		//cold bucket
+		for(int a = 0; a<10; a++)
+			telemetry.record(Bytes.toBytes(2), 100, 90);
+		
+		//hot, but too few cells
+		telemetry.record(Bytes.toBytes(3), 10, 0);
+		
+		//sub-bucket of a split bucket
+		telemetry.record(Bytes.add(Bytes.toBytes(4), new byte[1]), 1000, 0);
+		
+		List<byte[]> hotRows = telemetry.getHotRows(4, 0.5, 100);
+		
+		if(hotRows.size() != 1 || Bytes.toInt(hotRows.get(0)) != 1)
+		{
+			fail("Only bucket 1 should be hot.");
+		}
+		
+		BucketTelemetry.Counter counter = telemetry.getCounter(Bytes.toBytes(1));
+		if(counter.getFetched() != 1000 || counter.getReturned() != 100 || Math.abs(counter.getFalsePositiveRatio() - 0.9) > 0.05)
+		{
+			fail("Counters of bucket 1 are wrong.");
+		}
+		
+		telemetry.reset(Bytes.toBytes(1));
+		if(telemetry.getCounter(Bytes.toBytes(1)) != null || telemetry.size() != 3)
+		{
+			fail("Counters of bucket 1 should be removed.");
+		}
+	}
+	
+	@Test
+	public void testThreads() throws Exception
+	{
+		final BucketTelemetry telemetry = new BucketTelemetry(16);
+		
+		Thread[] threads = new Thread[8];
+		for(int a = 0; a<threads.length; a++)
+		{
+			threads[a] = new Thread()
+			{
+				public void run()
+				{
+					for(int b = 0; b<10000; b++)
+						telemetry.record(Bytes.toBytes(b % 16), 2, 1);
+				}
+			};
+		}
+		
+		for(int a = 0; a<threads.length; a++)
+			threads[a].start();
+		for(int a = 0; a<threads.length; a++)
+			threads[a].join();
+		
+		long fetched = 0;
+		for(int a = 0; a<16; a++)
+			fetched += telemetry.getCounter(Bytes.toBytes(a)).getFetched();
+		
+		if(fetched != 8 * 10000 * 2)
+		{
+			fail("Concurrent records are lost: " + fetched);
+		}
+	}
+	
+	@Test
+	public void testBound() throws Exception
+	{
+		BucketTelemetry telemetry = new BucketTelemetry(8);
+		
+		//many cold rows read once, and a hot bucket that is read often
+		for(int a = 1; a<1000; a++)
+		{
+			telemetry.record(Bytes.toBytes(a), 1, 1);
+			
+			if(a % 4 == 0)
+				telemetry.record(Bytes.toBytes(0), 100, 10);
+		}
+		
+		if(telemetry.size() > 8)
+		{
+			fail("Number of rows exceeds the bound: " + telemetry.size());
+		}
+		
+		BucketTelemetry.Counter counter = telemetry.getCounter(Bytes.toBytes(0));
+		if(counter == null || Math.abs(counter.getFalsePositiveRatio() - 0.9) > 0.05)
+		{
+			fail("Hot bucket should keep its ratio after decay.");
+		}
+		
+		try
+		{
+			new BucketTelemetry(0);
+			fail("Bound should be positive.");
+		}
+		catch(Exception e)
+		{
+		}
+	}
+}
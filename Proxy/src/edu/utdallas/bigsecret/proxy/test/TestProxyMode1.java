@@ -210,5 +210,75 @@ public class TestProxyMode1
 		//delete current table
 		proxy.deleteTable(tableName);
 	}
-
+	
+	
+	@Test
+	public void testSplitBufferedPut() throws Exception 
+	{
+		Configuration confData = HBaseConfiguration.create();
+		
+		Configuration confBucket = HBaseConfiguration.create();
+		
+		byte[] splitKey = Bytes.toBytes("1234567890123450");
+		ProxyMode1[] proxies = new ProxyMode1[2];
+		
+		for(int a = 0; a<proxies.length; a++)
+		{
+			HBaseBucketizer rowBucketizer = new ByteBucketizer(rowBucketizerId, confBucket);
+			HBaseBucketizer famBucketizer = new ByteBucketizer(famBucketizerId, confBucket);
+			HBaseBucketizer quaBucketizer = new ByteBucketizer(quaBucketizerId, confBucket);
+			HBaseBucketizer tsBucketizer = new LongBucketizer(tsBucketizerId, confBucket);
+			Cipher keyCipher = new AesEcb(Bytes.toBytes("1234567890123459"));
+			Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+			
+			proxies[a] = new ProxyMode1(confData, confBucket, rowBucketizer, famBucketizer, quaBucketizer, tsBucketizer, keyCipher, valCipher, splitKey);
+			proxies[a].setSplitRefresh(100, 500);
+		}
+		
+		Set<String> families = new HashSet<String>();
+		families.add("fam1");
+		
+		proxies[0].createTable(tableName + "Split", families);
+		proxies[0].connect(tableName + "Split");
+		proxies[1].connect(tableName + "Split");
+		
+		//second proxy buffers a put, then stays idle until splitters stop waiting for it
+		Put putItem = new Put(Bytes.toBytes("dark knight"));
+		putItem.add(Bytes.toBytes("fam1"), Bytes.toBytes("car"), 1001L, Bytes.toBytes("batmobile"));
+		proxies[1].put(putItem);
+		
+		Thread.sleep(1000);
+		
+		//splitting proxy buffers a put of its own
+		Put putItem2 = new Put(Bytes.toBytes("dark knight"));
+		putItem2.add(Bytes.toBytes("fam1"), Bytes.toBytes("plane"), 1023L, Bytes.toBytes("the bat"));
+		proxies[0].put(putItem2);
+		
+		long startTime = System.currentTimeMillis();
+		proxies[0].splitBucket(proxies[0].getCrypter().getRowBucket(Bytes.toBytes("dark knight")), 4, 1000);
+		
+		if(System.currentTimeMillis() - startTime > 5000)
+		{
+			fail("Splitting proxy should not wait for itself.");
+		}
+		
+		//flushed after the move
+		proxies[1].flushAll();
+		
+		Result res = proxies[0].get(new Get(Bytes.toBytes("dark knight")));
+		
+		if(!"batmobile".equals(Bytes.toString(res.getValue(Bytes.toBytes("fam1"), Bytes.toBytes("car")))))
+		{
+			fail("Put that is buffered during the split is lost.");
+		}
+		else if(!"the bat".equals(Bytes.toString(res.getValue(Bytes.toBytes("fam1"), Bytes.toBytes("plane")))))
+		{
+			fail("Put of the splitting proxy is lost.");
+		}
+		
+		proxies[1].close();
+		proxies[0].close();
+		
+		proxies[0].deleteTable(tableName + "Split");
+	}
 }
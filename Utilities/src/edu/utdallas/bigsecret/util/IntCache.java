@@ -0,0 +1,126 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Direct-mapped cache of non-negative int keys to int values, for bucketId-bucketValue pairs.<br>
+ * Every key has a single slot, the key modulo number of slots, and a slot holds the key and<br>
+ * its value packed into one long. A lookup is one array read, and it allocates nothing. A<br>
+ * new pair replaces the pair in its slot. Bucket IDs are dense, so a range of IDs that is<br>
+ * not larger than the cache never collides.<br>
+ * Slots are read and written atomically, so the cache can be shared between threads.
+ */
+public class IntCache 
+{
+	/**
+	 * Returned by get if the key is not in the cache.
+	 */
+	public static final int MISSING = -1;
+	
+	/**
+	 * Slot value that holds no pair, key part is -1.
+	 */
+	protected static final long EMPTY = -1L;
+	
+	/**
+	 * Slots of the cache. Length is a power of two.
+	 */
+	protected AtomicLongArray m_slots;
+	
+	/**
+	 * Number of elements that the cache is created for.
+	 */
+	protected int m_cacheSize;
+	
+	/**
+	 * Number of slots minus one.
+	 */
+	protected int m_mask;
+	
+	
+	/**
+	 * Constructor with cache size parameter.
+	 * @param cacheSize Number of elements that cache holds. Number of slots is the next power of two.
+	 */
+	public IntCache(int cacheSize)
+	{
+		m_cacheSize = Math.max(0, cacheSize);
+		
+		int slotCount = 1;
+		while(slotCount < m_cacheSize)
+			slotCount <<= 1;
+		
+		m_slots = new AtomicLongArray(m_cacheSize == 0 ? 0 : slotCount);
+		m_mask = slotCount - 1;
+		clear();
+	}
+	
+	
+	/**
+	 * Returns the size of the cache.
+	 * @return Size of the cache.
+	 */
+	public int getSize()
+	{
+		return m_cacheSize;
+	}
+	
+	
+	/**
+	 * Get the value of a key.
+	 * @param key Non-negative key.
+	 * @return Value of the key if it is in the cache, MISSING otherwise.
+	 */
+	public int get(int key)
+	{
+		if(m_slots.length() == 0 || key < 0)
+			return MISSING;
+		
+		long slot = m_slots.get(key & m_mask);
+		
+		if((int)(slot >>> 32) == key)
+			return (int)slot;
+		else
+			return MISSING;
+	}
+	
+	
+	/**
+	 * Puts a key-value pair to the cache, replacing the pair in its slot.
+	 * @param key Non-negative key.
+	 * @param value Value of the key. MISSING is not cached.
+	 */
+	public void put(int key, int value)
+	{
+		if(m_slots.length() == 0 || key < 0 || value == MISSING)
+			return;
+		
+		m_slots.set(key & m_mask, ((long)key << 32) | (value & 0xffffffffL));
+	}
+	
+	
+	/**
+	 * Removes all pairs.
+	 */
+	public void clear()
+	{
+		for(int a = 0; a<m_slots.length(); a++)
+			m_slots.set(a, EMPTY);
+	}
+}
@@ -0,0 +1,86 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs at most one load per key at a time. Threads that ask for a key while its load<br>
+ * is in progress wait for that load and share its result, instead of running their own.<br>
+ * A key is forgotten when its load finishes, so results should be cached by the caller.
+ */
+public class SingleFlight<K, V>
+{
+	/**
+	 * Loads in progress.
+	 */
+	protected ConcurrentHashMap<K, FutureTask<V>> m_calls = new ConcurrentHashMap<K, FutureTask<V>>();
+	
+	
+	/**
+	 * Runs the loader for the key, or waits for the load that is already in progress.
+	 * @param key Key to load.
+	 * @param loader Loader that is run if no load of the key is in progress.
+	 * @return Result of the load.
+	 * @throws Exception Throws exception thrown by the loader.
+	 */
+	public V execute(K key, Callable<V> loader) throws Exception
+	{
+		FutureTask<V> task = new FutureTask<V>(loader);
+		FutureTask<V> running = m_calls.putIfAbsent(key, task);
+		
+		if(running == null)
+		{
+			//this thread runs the load
+			running = task;
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				m_calls.remove(key, task);
+			}
+		}
+		
+		try
+		{
+			return running.get();
+		}
+		catch (ExecutionException e)
+		{
+			//unwrap the exception of the loader
+			if(e.getCause() instanceof Exception)
+				throw (Exception)e.getCause();
+			else
+				throw e;
+		}
+	}
+	
+	
+	/**
+	 * Returns number of loads in progress.
+	 * @return Number of keys that are being loaded.
+	 */
+	public int getInFlightCount()
+	{
+		return m_calls.size();
+	}
+}
@@ -0,0 +1,86 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.util.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.util.IntCache;
+
+
+/**
+ * Test class for IntCache class.
+ */
+public class TestIntCache 
+{
+	@Test
+	public void testGetPut() 
+	{
+		IntCache cache = new IntCache(1000);
+		
+		//a dense range as large as the cache does not collide
+		for(int a = 0; a<1000; a++)
+			cache.put(a, a * 3);
+		
+		for(int a = 0; a<1000; a++)
+		{
+			if(cache.get(a) != a * 3)
+			{
+				fail("IntCache lost the value of key " + a);
+			}
+		}
+		
+		if(cache.get(1000) != IntCache.MISSING || cache.get(-5) != IntCache.MISSING)
+		{
+			fail("IntCache returned a value for a missing key.");
+		}
+	}
+	
+	@Test
+	public void testReplace() 
+	{
+		IntCache cache = new IntCache(1024);
+		
+		//keys with the same slot replace each other
+		cache.put(5, 1);
+		cache.put(5 + 1024, Integer.MAX_VALUE);
+		
+		if(cache.get(5) != IntCache.MISSING || cache.get(5 + 1024) != Integer.MAX_VALUE)
+		{
+			fail("IntCache should replace the pair in the slot.");
+		}
+		
+		cache.clear();
+		if(cache.get(5 + 1024) != IntCache.MISSING)
+		{
+			fail("IntCache clear failed.");
+		}
+	}
+	
+	@Test
+	public void testEmpty() 
+	{
+		IntCache cache = new IntCache(0);
+		cache.put(0, 1);
+		
+		if(cache.get(0) != IntCache.MISSING || cache.getSize() != 0)
+		{
+			fail("IntCache with size 0 should not hold values.");
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+* Copyright (c) 2013 The University of Texas at Dallas, Data Security and Privacy Lab. 
+* All rights reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not use this 
+* file except in compliance with the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software distributed 
+* under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
+* CONDITIONS OF ANY KIND, either express or implied. See the License for the specific 
+* language governing permissions and limitations under the License. See accompanying
+* LICENSE file.
+*/
+
+package edu.utdallas.bigsecret.util.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.utdallas.bigsecret.util.SingleFlight;
+
+
+/**
+ * Test class for SingleFlight class.
+ */
+public class TestSingleFlight 
+{
+	@Test
+	public void testSharedLoad() throws Exception
+	{
+		final SingleFlight<Integer, String> flight = new SingleFlight<Integer, String>();
+		final AtomicInteger loads = new AtomicInteger(0);
+		final AtomicInteger failures = new AtomicInteger(0);
+		final CountDownLatch arrived = new CountDownLatch(8);
+		
+		//load waits until every thread has asked for the key
+		final Callable<String> loader = new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				loads.incrementAndGet();
+				arrived.await();
+				Thread.sleep(200);
+				return "value";
+			}
+		};
+		
+		Thread[] threads = new Thread[8];
+		for(int a = 0; a<threads.length; a++)
+		{
+			threads[a] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						arrived.countDown();
+						if(!"value".equals(flight.execute(7, loader)))
+							failures.incrementAndGet();
+					}
+					catch (Exception e)
+					{
+						failures.incrementAndGet();
+					}
+				}
+			};
+		}
+		
+		for(int a = 0; a<threads.length; a++)
+			threads[a].start();
+		for(int a = 0; a<threads.length; a++)
+			threads[a].join();
+		
+		if(failures.get() != 0)
+		{
+			fail("SingleFlight returned a wrong value " + failures.get() + " times.");
+		}
+		else if(loads.get() != 1)
+		{
+			fail("SingleFlight ran " + loads.get() + " loads for one key.");
+		}
+		else if(flight.getInFlightCount() != 0)
+		{
+			fail("SingleFlight did not forget the finished load.");
+		}
+	}
+	
+	@Test
+	public void testException() throws Exception
+	{
+		SingleFlight<Integer, String> flight = new SingleFlight<Integer, String>();
+		
+		try
+		{
+			flight.execute(1, new Callable<String>()
+			{
+				public String call() throws Exception
+				{
+					throw new Exception("load failed");
+				}
+			});
+			
+			fail("SingleFlight should throw the exception of the loader.");
+		}
+		catch (Exception e)
+		{
+			if(!"load failed".equals(e.getMessage()))
+			{
+				fail("SingleFlight should unwrap the exception of the loader.");
+			}
+		}
+		
+		//failed load is not remembered
+		String value = flight.execute(1, new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				return "retry";
+			}
+		});
+		
+		if(!"retry".equals(value))
+		{
+			fail("SingleFlight should run the loader again after a failure.");
+		}
+	}
+}
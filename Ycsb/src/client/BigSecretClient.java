@@ -16,6 +16,7 @@
 
 package client;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -37,14 +38,25 @@ import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 
+import edu.utdallas.bigsecret.bucketizer.BucketizerBase;
 import edu.utdallas.bigsecret.bucketizer.ByteBucketizer;
 import edu.utdallas.bigsecret.bucketizer.HBaseBucketizer;
 import edu.utdallas.bigsecret.bucketizer.LongBucketizer;
+import edu.utdallas.bigsecret.bucketizer.PrfByteBucketizer;
+import edu.utdallas.bigsecret.bucketizer.PrfLongBucketizer;
 import edu.utdallas.bigsecret.cipher.AesCtr;
 import edu.utdallas.bigsecret.cipher.AesEcb;
+import edu.utdallas.bigsecret.cipher.AesFfx;
 import edu.utdallas.bigsecret.cipher.Cipher;
+import edu.utdallas.bigsecret.cipher.CipherFactory;
+import edu.utdallas.bigsecret.cipher.ConcurrentCipher;
+import edu.utdallas.bigsecret.cipher.CounterIvGenerator;
+import edu.utdallas.bigsecret.cipher.KeystreamPool;
+import edu.utdallas.bigsecret.cipher.ProviderRegistry;
+import edu.utdallas.bigsecret.hash.CachingHasher;
 import edu.utdallas.bigsecret.hash.Hasher;
 import edu.utdallas.bigsecret.hash.Sha256;
+import edu.utdallas.bigsecret.hash.SipHash;
 import edu.utdallas.bigsecret.proxy.ProxyBase;
 import edu.utdallas.bigsecret.proxy.ProxyMode1;
 import edu.utdallas.bigsecret.proxy.ProxyMode2;
@@ -60,6 +72,35 @@ public class BigSecretClient extends DB
 	protected byte[] m_familyName;
 	protected ProxyBase m_proxy;
 	protected int m_proxyMode;
+	protected boolean m_compactKeys;
+	protected boolean m_concurrentCiphers;
+	protected boolean m_usesKeystreamPool;
+	protected boolean m_usesSharedBucketizers;
+	
+	/**
+	 * Keystream pool of the value cipher, shared by all client threads.
+	 */
+	protected static KeystreamPool VALUE_KEYSTREAM_POOL;
+	
+	/**
+	 * Number of clients that use the shared keystream pool. Last one closes it.
+	 */
+	protected static int VALUE_KEYSTREAM_POOL_USERS = 0;
+	
+	/**
+	 * HBase bucketizers of mode 1 (row, family, qualifier, timestamp), shared by all client threads.
+	 */
+	protected static HBaseBucketizer[] SHARED_BUCKETIZERS;
+	
+	/**
+	 * Number of clients that use the shared bucketizers. Last one closes them.
+	 */
+	protected static int SHARED_BUCKETIZER_USERS = 0;
+	
+	/**
+	 * Ids of the shared bucketizers, in the order of SHARED_BUCKETIZERS.
+	 */
+	protected static final String[] SHARED_BUCKETIZER_IDS = {"rowLong1", "famByte1", "quaByte1", "tsLong1"};
 
     public static final int Ok=0;
     public static final int ServerError=-1;
@@ -67,6 +108,272 @@ public class BigSecretClient extends DB
     public static final int NoMatchingRecord=-3;
     
     
+    /**
+     * Returns a cipher created by the factory. If concurrentCiphers=true is set, it is wrapped
+     * in a ConcurrentCipher, so it can be used by threads other than the client thread,
+     * such as the bucket splitter of mode 1.
+     */
+    protected Cipher getCipher(CipherFactory factory) throws Exception
+    {
+    	if(m_concurrentCiphers)
+    		return new ConcurrentCipher(factory);
+    	else
+    		return factory.newCipher();
+    }
+    
+    
+    /**
+     * Returns the cipher for the key tuple of the qualifier.
+     * AesFfx when keyCipher=ffx is set, so qualifiers are not padded; AesEcb otherwise.
+     */
+    public Cipher getKeyCipher(byte[] key) throws Exception
+    {
+    	if(m_compactKeys)
+    		return getCipher(ConcurrentCipher.getClassFactory(AesFfx.class, key));
+    	else
+    		return getCipher(ConcurrentCipher.getClassFactory(AesEcb.class, key));
+    }
+    
+    
+    /**
+     * Returns the value cipher of mode 1, AesCtr.
+     * If valueKeystreamPool property is set, short values are encrypted with precomputed
+     * keystream from a pool of that many segments, shared by all client threads.
+     * valueKeystreamSegment is the largest value size served by the pool (default 1024),
+     * valueKeystreamThreads is the number of worker threads of the pool (default 1).
+     */
+    public Cipher getValueCipher(final byte[] key) throws Exception
+    {
+    	String capacity = getProperties().getProperty("valueKeystreamPool");
+    	if(capacity == null)
+    		return getCipher(ConcurrentCipher.getClassFactory(AesCtr.class, key));
+    	
+    	synchronized(BigSecretClient.class)
+    	{
+    		if(VALUE_KEYSTREAM_POOL == null)
+    		{
+    			int segmentSize = Integer.parseInt(getProperties().getProperty("valueKeystreamSegment", "1024"));
+    			int threads = Integer.parseInt(getProperties().getProperty("valueKeystreamThreads", "1"));
+    			
+    			VALUE_KEYSTREAM_POOL = new KeystreamPool(key, new CounterIvGenerator(), segmentSize, Integer.parseInt(capacity), threads);
+    		}
+    		
+    		//every cipher instance of this client uses the same pool
+    		final KeystreamPool pool = VALUE_KEYSTREAM_POOL;
+    		Cipher result = getCipher(new CipherFactory()
+    		{
+    			public Cipher newCipher() throws Exception
+    			{
+    				return new AesCtr(key, pool);
+    			}
+    		});
+    		VALUE_KEYSTREAM_POOL_USERS++;
+    		m_usesKeystreamPool = true;
+    		
+    		return result;
+    	}
+    }
+    
+    
+    /**
+     * Releases the shared keystream pool, and closes it if this is its last user.
+     * Throws the failure of a pool worker, if there is one.
+     */
+    protected void releaseValueCipher() throws Exception
+    {
+    	if(! m_usesKeystreamPool)
+    		return;
+    	
+    	m_usesKeystreamPool = false;
+    	synchronized(BigSecretClient.class)
+    	{
+    		VALUE_KEYSTREAM_POOL_USERS--;
+    		if(VALUE_KEYSTREAM_POOL_USERS == 0)
+    		{
+    			KeystreamPool pool = VALUE_KEYSTREAM_POOL;
+    			VALUE_KEYSTREAM_POOL = null;
+    			pool.close();
+    		}
+    	}
+    }
+    
+    
+    /**
+     * Bucketizer that is given to a proxy in place of a shared bucketizer.
+     * Proxies close their bucketizers, so close does nothing here. Shared bucketizers
+     * are closed by releaseSharedBucketizers.
+     */
+    protected static class SharedBucketizer extends BucketizerBase
+    {
+    	protected BucketizerBase m_bucketizer;
+    	
+    	public SharedBucketizer(BucketizerBase bucketizer) throws Exception
+    	{
+    		m_bucketizer = bucketizer;
+    	}
+    	
+    	public byte[] getBucketValue(byte[] input) throws Exception
+    	{
+    		return m_bucketizer.getBucketValue(input);
+    	}
+    	
+    	public byte[] getNextBucketValue(byte[] input) throws Exception
+    	{
+    		return m_bucketizer.getNextBucketValue(input);
+    	}
+    	
+    	public byte[] getPrevBucketValue(byte[] input) throws Exception
+    	{
+    		return m_bucketizer.getPrevBucketValue(input);
+    	}
+    	
+    	public int getBucketValueSize()
+    	{
+    		return m_bucketizer.getBucketValueSize();
+    	}
+    	
+    	public void createBuckets() throws Exception
+    	{
+    		throw new Exception("Shared bucketizers can not be created by a client");
+    	}
+    	
+    	public void removeBuckets() throws Exception
+    	{
+    		throw new Exception("Shared bucketizers can not be removed by a client");
+    	}
+    	
+    	public void close() throws Exception
+    	{
+    	}
+    }
+    
+    
+    /**
+     * Returns the HBase bucketizers of mode 1, shared by all client threads.
+     * The first client creates them, loads local snapshots if bucketSnapshotDir is set
+     * (exported on first use), and fills the row bucketizer cache. Others wait and reuse them.
+     */
+    protected HBaseBucketizer[] getSharedBucketizers(Configuration confBucket) throws Exception
+    {
+    	synchronized(BigSecretClient.class)
+    	{
+    		if(SHARED_BUCKETIZERS == null)
+    		{
+    			HBaseBucketizer[] bucketizers = new HBaseBucketizer[SHARED_BUCKETIZER_IDS.length];
+    			try
+    			{
+    				bucketizers[0] = new LongBucketizer(SHARED_BUCKETIZER_IDS[0], confBucket);
+    				bucketizers[1] = new ByteBucketizer(SHARED_BUCKETIZER_IDS[1], confBucket);
+    				bucketizers[2] = new ByteBucketizer(SHARED_BUCKETIZER_IDS[2], confBucket);
+    				bucketizers[3] = new LongBucketizer(SHARED_BUCKETIZER_IDS[3], confBucket);
+    				
+    				//bucket values are read from local snapshots if a directory is given
+    				String snapshotDir = getProperties().getProperty("bucketSnapshotDir");
+    				if(snapshotDir != null)
+    				{
+    					for(int a = 0; a<bucketizers.length; a++)
+    					{
+    						File file = new File(snapshotDir, SHARED_BUCKETIZER_IDS[a] + ".snapshot");
+    						if(! file.exists())
+    							bucketizers[a].exportSnapshot(file);
+    						bucketizers[a].loadSnapshot(file);
+    					}
+    				}
+    				
+    				bucketizers[0].fillCache();
+    			}
+    			catch (Exception e)
+    			{
+    				for(int a = 0; a<bucketizers.length; a++)
+    				{
+    					try
+    					{
+    						if(bucketizers[a] != null)
+    							bucketizers[a].close();
+    					}
+    					catch (Exception e2)
+    					{
+    						//first failure is thrown
+    					}
+    				}
+    				throw e;
+    			}
+    			
+    			SHARED_BUCKETIZERS = bucketizers;
+    		}
+    		
+    		SHARED_BUCKETIZER_USERS++;
+    		m_usesSharedBucketizers = true;
+    		
+    		return SHARED_BUCKETIZERS;
+    	}
+    }
+    
+    
+    /**
+     * Releases the shared bucketizers, and closes them if this is their last user.
+     */
+    protected void releaseSharedBucketizers() throws Exception
+    {
+    	if(! m_usesSharedBucketizers)
+    		return;
+    	
+    	m_usesSharedBucketizers = false;
+    	synchronized(BigSecretClient.class)
+    	{
+    		SHARED_BUCKETIZER_USERS--;
+    		if(SHARED_BUCKETIZER_USERS == 0)
+    		{
+    			HBaseBucketizer[] bucketizers = SHARED_BUCKETIZERS;
+    			SHARED_BUCKETIZERS = null;
+    			
+    			Exception failure = null;
+    			for(int a = 0; a<bucketizers.length; a++)
+    			{
+    				try
+    				{
+    					bucketizers[a].close();
+    				}
+    				catch (Exception e)
+    				{
+    					if(failure == null)
+    						failure = e;
+    				}
+    			}
+    			
+    			if(failure != null)
+    				throw failure;
+    		}
+    	}
+    }
+    
+    
+    /**
+     * Returns the hasher of a key-part, selected by the <field>Hasher property.
+     * sha256 (default) or siphash. digestSize 0 means the full digest, which is
+     * 16 bytes for siphash so that row keys of large tables do not collide.
+     * If <field>HashCache property is set, digests are cached in that many bytes.
+     */
+    public Hasher getHasher(String field, int digestSize) throws Exception
+    {
+    	String name = getProperties().getProperty(field + "Hasher", "sha256");
+    	
+    	Hasher hasher;
+    	if(name.equals("sha256"))
+    		hasher = new Sha256(Bytes.toBytes("123"), digestSize);
+    	else if(name.equals("siphash"))
+    		hasher = new SipHash(Bytes.toBytes("1234567890123451"), digestSize == 0 ? 16 : digestSize);
+    	else
+    		throw new Exception(field + "Hasher should be sha256 or siphash");
+    	
+    	String cacheSize = getProperties().getProperty(field + "HashCache");
+    	if(cacheSize != null)
+    		hasher = new CachingHasher(hasher, Long.parseLong(cacheSize));
+    	
+    	return hasher;
+    }
+    
+    
     /**
      * proxy mode 1 = bucket
      * proxy mode 2 = hash
@@ -74,35 +381,47 @@ public class BigSecretClient extends DB
      */
     public ProxyBase getProxy(int mode, Configuration confData, Configuration confBucket) throws Exception
     {
-    	if(mode == 1)
+    	if(mode == 1 && getProperties().getProperty("bucketizer", "hbase").equals("prf"))
     	{
-    		HBaseBucketizer rowBucketizer = new LongBucketizer("rowLong1", confBucket);
-    		HBaseBucketizer famBucketizer = new ByteBucketizer("famByte1", confBucket);
-    		HBaseBucketizer quaBucketizer = new ByteBucketizer("quaByte1", confBucket);
-    		HBaseBucketizer tsBucketizer = new LongBucketizer("tsLong1", confBucket);
-    		Cipher keyCipher = new AesEcb(Bytes.toBytes("1234567890123459"));
-    		Cipher valCipher = new AesCtr(Bytes.toBytes("1234567890123454"));
+    		//bucket values are computed from keys, row keys are positive longs, timestamps are milliseconds until 2109
+    		BucketizerBase rowBucketizer = new PrfLongBucketizer(Bytes.toBytes("1234567890123461"), 0, Long.MAX_VALUE, 1 << 20, 31);
+    		BucketizerBase famBucketizer = new PrfByteBucketizer(Bytes.toBytes("1234567890123462"), 16, 24);
+    		BucketizerBase quaBucketizer = new PrfByteBucketizer(Bytes.toBytes("1234567890123463"), 16, 24);
+    		BucketizerBase tsBucketizer = new PrfLongBucketizer(Bytes.toBytes("1234567890123464"), 0, 1L << 42, 1 << 24, 31);
+    		Cipher keyCipher = getKeyCipher(Bytes.toBytes("1234567890123459"));
+    		Cipher valCipher = getValueCipher(Bytes.toBytes("1234567890123454"));
     		
-    		rowBucketizer.fillCache();
+    		return new ProxyMode1(confData, confBucket, rowBucketizer, famBucketizer, quaBucketizer, tsBucketizer, keyCipher, valCipher);
+    	}
+    	else if(mode == 1)
+    	{
+    		//bucketizers are thread-safe, every client thread uses the same ones
+    		HBaseBucketizer[] shared = getSharedBucketizers(confBucket);
+    		BucketizerBase rowBucketizer = new SharedBucketizer(shared[0]);
+    		BucketizerBase famBucketizer = new SharedBucketizer(shared[1]);
+    		BucketizerBase quaBucketizer = new SharedBucketizer(shared[2]);
+    		BucketizerBase tsBucketizer = new SharedBucketizer(shared[3]);
+    		Cipher keyCipher = getKeyCipher(Bytes.toBytes("1234567890123459"));
+    		Cipher valCipher = getValueCipher(Bytes.toBytes("1234567890123454"));
     		
     		return new ProxyMode1(confData, confBucket, rowBucketizer, famBucketizer, quaBucketizer, tsBucketizer, keyCipher, valCipher);
     	}
     	else if(mode == 2)
     	{
-    		Hasher rowHasher = new Sha256(Bytes.toBytes("123"));
-    		Hasher famHasher = new Sha256(Bytes.toBytes("123"));
-    		Hasher quaHasher = new Sha256(Bytes.toBytes("123"));
-    		Hasher tsHasher = new Sha256(Bytes.toBytes("123"), 7);
-    		Cipher keyCipher = new AesEcb(Bytes.toBytes("1234567890123459"));
-    		Cipher valCipher = new AesEcb(Bytes.toBytes("1234567890123454"));
+    		Hasher rowHasher = getHasher("row", 0);
+    		Hasher famHasher = getHasher("fam", 0);
+    		Hasher quaHasher = getHasher("qua", 0);
+    		Hasher tsHasher = getHasher("ts", 7);
+    		Cipher keyCipher = getKeyCipher(Bytes.toBytes("1234567890123459"));
+    		Cipher valCipher = getCipher(ConcurrentCipher.getClassFactory(AesEcb.class, Bytes.toBytes("1234567890123454")));
 
     		return new ProxyMode2(confData, confBucket, rowHasher, famHasher, quaHasher, tsHasher, keyCipher, valCipher);
     	}
     	else if(mode == 3)
     	{
-    		Hasher rowHasher = new Sha256(Bytes.toBytes("123"));
-    		Cipher keyCipher = new AesEcb(Bytes.toBytes("1234567890123459"));
-    		Cipher valCipher = new AesEcb(Bytes.toBytes("1234567890123454"));
+    		Hasher rowHasher = getHasher("row", 0);
+    		Cipher keyCipher = getKeyCipher(Bytes.toBytes("1234567890123459"));
+    		Cipher valCipher = getCipher(ConcurrentCipher.getClassFactory(AesEcb.class, Bytes.toBytes("1234567890123454")));
     		
     		return new ProxyMode3(confData, confBucket, rowHasher, keyCipher, valCipher);
     	}
@@ -116,7 +435,22 @@ public class BigSecretClient extends DB
 	{
 		try
 		{
-			m_proxy.close();
+			try
+			{
+				m_proxy.close();
+			}
+			finally
+			{
+				//shared keystream pool and bucketizers are released even if the proxy fails to close
+				try
+				{
+					releaseValueCipher();
+				}
+				finally
+				{
+					releaseSharedBucketizers();
+				}
+			}
 		}
 		catch (Exception e)
 		{
@@ -183,6 +517,34 @@ public class BigSecretClient extends DB
 			confBucket.set("hbase.zookeeper.property.clientPort", bucketServerPort);	
 		}
 		
+		//pin fastest JCE providers before ciphers are created, results are cached in the given file
+		String providerCache = getProperties().getProperty("providerCache");
+		if(providerCache != null)
+		{
+			try
+			{
+				ProviderRegistry.initialize(new File(providerCache), 500);
+			}
+			catch (Exception e)
+			{
+				throw new DBException(e);
+			}
+		}
+		
+		//key tuple cipher, ecb by default
+		String keyCipher = getProperties().getProperty("keyCipher", "ecb");
+		if(keyCipher.equals("ffx"))
+		{
+			m_compactKeys = true;
+		}
+		else if(! keyCipher.equals("ecb"))
+		{
+			throw new DBException("Key cipher should be ecb or ffx");
+		}
+		
+		//wrap ciphers in ConcurrentCipher, so they can be shared by threads
+		m_concurrentCiphers = Boolean.parseBoolean(getProperties().getProperty("concurrentCiphers", "false"));
+		
 		m_tableName = getProperties().getProperty("tableName");
 		if(m_tableName == null)
 		{